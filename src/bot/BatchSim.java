@@ -0,0 +1,436 @@
+package bot;
+
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * Plays thousands of independent rounds side by side, one move in every round per step
+ *
+ * The rounds are lanes of struct-of-arrays: what every move looks at (building piles,
+ * the seat to move, its stock top card and which values it holds) is one int array
+ * with an element per lane; the piles themselves are byte blocks per lane. A step runs
+ * in two phases:
+ * 1. over all lanes at once, with straight loops over the int arrays: the mask of
+ *    values that fit on a building pile, whether the stock card fits and which number
+ *    cards in the hand fit;
+ * 2. per lane: the move the policy picks from those masks, then playing it.
+ *
+ * The four building piles of a lane are packed in one int, a byte per pile holding the
+ * value the next card must have (SWAR): the fitting mask is four shifts, and the pile a
+ * card fits on is found by looking for a zero byte, without a loop.
+ *
+ * The policy is the one of RolloutPolicy, the rules those of SimState. A round that is
+ * over (won, or stalled: the draw pile is empty and no seat built for two full rounds)
+ * is counted and a new round is dealt in its lane, so every lane keeps playing.
+ *
+ * The gain over playing one round at a time comes from the layout and from dealing
+ * without allocating, the engine does not rely on SIMD.
+ */
+public class BatchSim {
+    // Like SimState: 18 Skip-Bo cards and 9 of every number
+    private static final int SKIPBO_CARDS = 18;
+    private static final int NUMBER_COPIES = 9;
+    private static final int DECK_SIZE = SimState.DECK_SIZE;
+    private static final int VALUES = SimState.VALUES;
+    private static final int SKIPBO = SimState.SKIPBO;
+    private static final int NUMBER_CARDS = ~(1 << SKIPBO);
+    private static final int STOCK_CAPACITY = STOCK_SIZE_SMALL_GAME;
+    private static final int PILE_CAPACITY = DECK_SIZE;
+
+    private final int lanes;
+    private final int seats;
+    private final int stockSize;
+    private final Random random;
+    private final byte[] deck = new byte[DECK_SIZE];
+
+    // One element per lane, read by the lane-parallel phase
+    private final int[] building;       // Next value of pile p in byte p (1-12)
+    private final int[] stockTop;       // Stock top card of the seat to move
+    private final int[] handMask;       // Bit v: the seat to move holds a card of value v
+    private final int[] fitting;        // Bit v: a card of value v fits on a building pile
+    private final int[] stockFits;      // 1 if the stock card of the seat to move fits
+    private final int[] handFits;       // Number cards of the seat to move that fit
+
+    // One element per lane, used by the per-lane phase
+    private final int[] current;
+    private final int[] drawPosition;
+    private final int[] buildsThisTurn;
+    private final int[] turnsWithoutBuild;
+
+    // Blocks per lane (and seat, and pile)
+    private final byte[] draw;          // [lane][DECK_SIZE]
+    private final byte[] stock;         // [lane][seat][STOCK_CAPACITY], top card last
+    private final int[] stockSizes;     // [lane][seat]
+    private final byte[] hand;          // [lane][seat][VALUES] counts
+    private final int[] handSizes;      // [lane][seat]
+    private final byte[] discards;      // [lane][seat][pile][PILE_CAPACITY], top card last
+    private final int[] discardSizes;   // [lane][seat][pile]
+
+    private long moves;
+    private long rounds;
+    private long stalled;
+    private long turns;
+
+    /**
+     * Deals a round in every lane
+     * @param lanes Rounds played side by side
+     * @param seats Seats of every round (2-6)
+     */
+    public BatchSim(int lanes, int seats, long seed) {
+        this.lanes = lanes;
+        this.seats = seats;
+        this.stockSize = seats <= 4 ? STOCK_SIZE_SMALL_GAME : STOCK_SIZE_LARGE_GAME;
+        this.random = new Random(seed);
+        building = new int[lanes];
+        stockTop = new int[lanes];
+        handMask = new int[lanes];
+        fitting = new int[lanes];
+        stockFits = new int[lanes];
+        handFits = new int[lanes];
+        current = new int[lanes];
+        drawPosition = new int[lanes];
+        buildsThisTurn = new int[lanes];
+        turnsWithoutBuild = new int[lanes];
+        draw = new byte[lanes * DECK_SIZE];
+        stock = new byte[lanes * seats * STOCK_CAPACITY];
+        stockSizes = new int[lanes * seats];
+        hand = new byte[lanes * seats * VALUES];
+        handSizes = new int[lanes * seats];
+        discards = new byte[lanes * seats * NUM_DISCARD_PILES * PILE_CAPACITY];
+        discardSizes = new int[lanes * seats * NUM_DISCARD_PILES];
+        for (int lane = 0; lane < lanes; lane++) {
+            deal(lane);
+        }
+    }
+
+    /**
+     * Plays one move in every lane (and deals again in lanes whose round ended)
+     */
+    public void step() {
+        int n = lanes;
+        int[] building = this.building;
+        int[] fitting = this.fitting;
+        int[] stockTop = this.stockTop;
+        int[] handMask = this.handMask;
+        int[] stockFits = this.stockFits;
+        int[] handFits = this.handFits;
+
+        // Phase 1: all lanes side by side (no branches, no lane depends on another)
+        for (int lane = 0; lane < n; lane++) {
+            int b = building[lane];
+            fitting[lane] = 1 << SKIPBO | 1 << (b & 0xFF) | 1 << ((b >>> 8) & 0xFF)
+                    | 1 << ((b >>> 16) & 0xFF) | 1 << (b >>> 24);
+        }
+        for (int lane = 0; lane < n; lane++) {
+            // An empty stock is -1: shifted by 31 that is the sign bit, never set in fitting
+            stockFits[lane] = (fitting[lane] >>> stockTop[lane]) & 1;
+            handFits[lane] = fitting[lane] & handMask[lane] & NUMBER_CARDS;
+        }
+
+        // Phase 2: every lane picks and plays its move
+        for (int lane = 0; lane < n; lane++) {
+            play(lane, choose(lane));
+            moves++;
+            if (isRoundOver(lane)) {
+                roundOver(lane);
+            }
+        }
+    }
+
+    // ========== POLICY ==========
+
+    /**
+     * The move of RolloutPolicy for the seat to move of a lane
+     */
+    private int choose(int lane) {
+        int card = stockTop[lane];
+        if (stockFits[lane] != 0) {
+            return Move.stockToBuilding(card == SKIPBO ? 0 : pileOf(building[lane], card));
+        }
+
+        int seat = current[lane];
+        int at = lane * seats + seat;
+        int discardMask = 0;
+        int discardSkipBo = -1;
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int top = discardTop(at, pile);
+            if (top >= 0) {
+                discardMask |= 1 << top;
+                if (top == SKIPBO) {
+                    discardSkipBo = pile;
+                }
+            }
+        }
+        int numbers = handFits[lane] | (discardMask & fitting[lane] & NUMBER_CARDS);
+
+        // The pile nearest to the stock card, and the nearest one a number card fits on
+        int packed = building[lane];
+        int nearest = 0;
+        int nearestSteps = BUILDING_PILE_FULL_SIZE;
+        int playable = -1;
+        int playableSteps = BUILDING_PILE_FULL_SIZE;
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            int next = (packed >>> (pile * 8)) & 0xFF;
+            int steps = card - next;
+            if (steps < 0) {
+                steps += BUILDING_PILE_FULL_SIZE;
+            }
+            if (steps < nearestSteps) {
+                nearest = pile;
+                nearestSteps = steps;
+            }
+            if ((numbers & (1 << next)) != 0 && steps < playableSteps) {
+                playable = pile;
+                playableSteps = steps;
+            }
+        }
+
+        if (playable != nearest) {
+            int skipBos = hand[at * VALUES + SKIPBO] + (discardSkipBo >= 0 ? 1 : 0);
+            if (nearestSteps <= skipBos) {
+                return discardSkipBo >= 0 ? Move.discardToBuilding(discardSkipBo, nearest)
+                        : Move.handToBuilding(SKIPBO, nearest);
+            }
+        }
+        if (playable >= 0) {
+            int next = (packed >>> (playable * 8)) & 0xFF;
+            if ((discardMask & (1 << next)) != 0) {
+                int pile = 0;
+                while (discardTop(at, pile) != next) {
+                    pile++;
+                }
+                return Move.discardToBuilding(pile, playable);
+            }
+            return Move.handToBuilding(next, playable);
+        }
+        if ((handMask[lane] & NUMBER_CARDS) == 0 && handMask[lane] != 0) {
+            return Move.handToBuilding(SKIPBO, nearest);
+        }
+        return discard(at, handMask[lane] & NUMBER_CARDS);
+    }
+
+    private int discard(int at, int numbers) {
+        if (numbers == 0) {
+            return Move.END;
+        }
+        int best = -1;
+        int bestScore = -1;
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int top = discardTop(at, pile);
+            int card = top > 1 && (numbers & (1 << (top - 1))) != 0 ? top - 1
+                    : top > 0 && (numbers & (1 << top)) != 0 ? top
+                    : 31 - Integer.numberOfLeadingZeros(numbers);
+            int rank = card == top - 1 ? 3 : card == top ? 2 : top < 0 ? 1 : 0;
+            int score = rank << 4 | card;
+            if (score > bestScore) {
+                bestScore = score;
+                best = Move.handToDiscard(card, pile);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the first pile of a packed building word that takes a number card (SWAR):
+     * the byte that equals the card becomes zero, the zero-byte test marks its high bit
+     */
+    static int pileOf(int packed, int card) {
+        int x = packed ^ (card * 0x01010101);
+        int zero = (x - 0x01010101) & ~x & 0x80808080;
+        return Integer.numberOfTrailingZeros(zero) >>> 3;
+    }
+
+    // ========== RULES ==========
+
+    private void play(int lane, int move) {
+        int at = lane * seats + current[lane];
+        switch (Move.kind(move)) {
+            case Move.STOCK_TO_BUILDING: {
+                int size = --stockSizes[at];
+                stockTop[lane] = size == 0 ? -1 : stock[at * STOCK_CAPACITY + size - 1];
+                build(lane, Move.building(move));
+                refillEmptyHand(lane, at);
+                break;
+            }
+            case Move.HAND_TO_BUILDING:
+                takeFromHand(lane, at, Move.card(move));
+                build(lane, Move.building(move));
+                refillEmptyHand(lane, at);
+                break;
+            case Move.DISCARD_TO_BUILDING:
+                discardSizes[at * NUM_DISCARD_PILES + Move.discardPile(move)]--;
+                build(lane, Move.building(move));
+                refillEmptyHand(lane, at);
+                break;
+            case Move.HAND_TO_DISCARD: {
+                int card = Move.card(move);
+                takeFromHand(lane, at, card);
+                int pile = at * NUM_DISCARD_PILES + Move.discardPile(move);
+                discards[pile * PILE_CAPACITY + discardSizes[pile]++] = (byte) card;
+                endTurn(lane);
+                break;
+            }
+            default:
+                endTurn(lane);
+        }
+    }
+
+    private void build(int lane, int pile) {
+        int shift = pile * 8;
+        int next = (building[lane] >>> shift) & 0xFF;
+        int after = next == BUILDING_PILE_FULL_SIZE ? 1 : next + 1;
+        building[lane] += (after - next) << shift;
+        buildsThisTurn[lane]++;
+    }
+
+    private void takeFromHand(int lane, int at, int card) {
+        if (--hand[at * VALUES + card] == 0) {
+            handMask[lane] &= ~(1 << card);
+        }
+        handSizes[at]--;
+    }
+
+    private void refillEmptyHand(int lane, int at) {
+        if (handSizes[at] == 0) {
+            fillHand(lane, at);
+        }
+    }
+
+    private void endTurn(int lane) {
+        turnsWithoutBuild[lane] = buildsThisTurn[lane] == 0 ? turnsWithoutBuild[lane] + 1 : 0;
+        buildsThisTurn[lane] = 0;
+        turns++;
+        int seat = current[lane] + 1 == seats ? 0 : current[lane] + 1;
+        current[lane] = seat;
+        int at = lane * seats + seat;
+        fillHand(lane, at);
+        int size = stockSizes[at];
+        stockTop[lane] = size == 0 ? -1 : stock[at * STOCK_CAPACITY + size - 1];
+        int mask = 0;
+        for (int value = 0; value < VALUES; value++) {
+            if (hand[at * VALUES + value] != 0) {
+                mask |= 1 << value;
+            }
+        }
+        handMask[lane] = mask;
+    }
+
+    /**
+     * Draws up to HAND_SIZE cards for the seat of at (the seat to move of the lane)
+     */
+    private void fillHand(int lane, int at) {
+        int position = drawPosition[lane];
+        int size = handSizes[at];
+        int mask = handMask[lane];
+        int from = lane * DECK_SIZE;
+        while (size < HAND_SIZE && position < DECK_SIZE) {
+            int card = draw[from + position++];
+            hand[at * VALUES + card]++;
+            mask |= 1 << card;
+            size++;
+        }
+        drawPosition[lane] = position;
+        handSizes[at] = size;
+        handMask[lane] = mask;
+    }
+
+    private int discardTop(int at, int pile) {
+        int index = at * NUM_DISCARD_PILES + pile;
+        int size = discardSizes[index];
+        return size == 0 ? -1 : discards[index * PILE_CAPACITY + size - 1];
+    }
+
+    /**
+     * Checks if the round of a lane is over: the seat to move emptied its stock pile
+     * (only a stock play does that, before the turn changes), or the round stalled
+     */
+    private boolean isRoundOver(int lane) {
+        return stockTop[lane] < 0
+                || (drawPosition[lane] == DECK_SIZE && turnsWithoutBuild[lane] >= 2 * seats);
+    }
+
+    private void roundOver(int lane) {
+        rounds++;
+        if (stockTop[lane] >= 0) {
+            stalled++;
+        }
+        deal(lane);
+    }
+
+    /**
+     * Deals a new round in a lane like SimState.deal
+     */
+    private void deal(int lane) {
+        int n = 0;
+        for (int i = 0; i < SKIPBO_CARDS; i++) {
+            deck[n++] = SKIPBO;
+        }
+        for (int copy = 0; copy < NUMBER_COPIES; copy++) {
+            for (int value = 1; value <= BUILDING_PILE_FULL_SIZE; value++) {
+                deck[n++] = (byte) value;
+            }
+        }
+        for (int i = DECK_SIZE - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            byte swap = deck[i];
+            deck[i] = deck[j];
+            deck[j] = swap;
+        }
+        System.arraycopy(deck, 0, draw, lane * DECK_SIZE, DECK_SIZE);
+
+        int position = 0;
+        for (int seat = 0; seat < seats; seat++) {
+            int at = lane * seats + seat;
+            System.arraycopy(deck, position, stock, at * STOCK_CAPACITY, stockSize);
+            position += stockSize;
+            stockSizes[at] = stockSize;
+            handSizes[at] = 0;
+            for (int value = 0; value < VALUES; value++) {
+                hand[at * VALUES + value] = 0;
+            }
+            for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+                discardSizes[at * NUM_DISCARD_PILES + pile] = 0;
+            }
+        }
+        drawPosition[lane] = position;
+        building[lane] = 0x01010101;
+        buildsThisTurn[lane] = 0;
+        turnsWithoutBuild[lane] = 0;
+
+        int seat = random.nextInt(seats);
+        int at = lane * seats + seat;
+        current[lane] = seat;
+        handMask[lane] = 0;
+        fillHand(lane, at);
+        stockTop[lane] = stock[at * STOCK_CAPACITY + stockSize - 1];
+    }
+
+    // ========== RESULTS ==========
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the rounds that ended (and were dealt again)
+     */
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the ended rounds nobody won (the draw pile ran out and nobody could build)
+     */
+    public long getStalled() {
+        return stalled;
+    }
+
+    public long getTurns() {
+        return turns;
+    }
+}
@@ -0,0 +1,75 @@
+package bot;
+
+import java.util.Random;
+
+/**
+ * Compares the batch engine with playing one round at a time, in simulated moves per second
+ *
+ * One at a time: deal a SimState, play it out with RolloutPolicy, repeat. Batch: a
+ * BatchSim with the same policy and rules, stepped for the same time, at several lane
+ * counts. Both deal new rounds as they go and run on one thread, so the numbers are per
+ * core. The moves per round and stalled rounds show that both play the same game.
+ * Usage: BatchSimBenchmark [seats] [seconds per row] [seed]
+ */
+public class BatchSimBenchmark {
+    private static final int[] LANES = {64, 1024, 4096, 16384};
+
+    public static void main(String[] args) {
+        int seats = args.length >= 1 ? Integer.parseInt(args[0]) : 2;
+        double seconds = args.length >= 2 ? Double.parseDouble(args[1]) : 2;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 42;
+        long nanos = (long) (seconds * 1e9);
+
+        // Warm up the JIT on both paths
+        oneAtATime(seats, seed, nanos / 4);
+        batch(1024, seats, seed, nanos / 4);
+
+        System.out.printf("%d seats, %.1f s per row, one thread%n", seats, seconds);
+        System.out.printf("%-20s %14s %10s %12s %10s%n", "Engine", "Moves/s", "ns/move", "Moves/round", "Stalled");
+        System.out.println(oneAtATime(seats, seed, nanos));
+        for (int lanes : LANES) {
+            System.out.println(batch(lanes, seats, seed, nanos));
+        }
+    }
+
+    private static String oneAtATime(int seats, long seed, long nanos) {
+        Random random = new Random(seed);
+        RolloutPolicy policy = new RolloutPolicy();
+        long moves = 0;
+        long rounds = 0;
+        long stalled = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            SimState state = SimState.deal(seats, random);
+            while (!state.isRoundOver()) {
+                state.apply(policy.choose(state, random));
+                moves++;
+            }
+            rounds++;
+            if (state.getWinner() == SimState.NONE) {
+                stalled++;
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return row("One at a time", moves, rounds, stalled, elapsed);
+    }
+
+    private static String batch(int lanes, int seats, long seed, long nanos) {
+        BatchSim sim = new BatchSim(lanes, seats, seed);
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 16; i++) {
+                sim.step();
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return row("Batch of " + lanes, sim.getMoves(), sim.getRounds(), sim.getStalled(), elapsed);
+    }
+
+    private static String row(String name, long moves, long rounds, long stalled, long nanos) {
+        return String.format("%-20s %14.0f %10.1f %12.1f %9.1f%%", name, moves / (nanos / 1e9),
+                (double) nanos / moves, (double) moves / Math.max(rounds, 1), 100.0 * stalled / Math.max(rounds, 1));
+    }
+}
@@ -0,0 +1,146 @@
+package bot;
+
+import java.util.Random;
+
+/**
+ * Plays two-player rounds between two planners and keeps the score of the first one
+ *
+ * The seats and the first player are random per round. Without recycled building
+ * piles most rounds stall once the draw pile is empty; like SimulatedGame, a stalled
+ * round goes to the player with the smaller stock pile (a tie counts half).
+ */
+public class BotMatch {
+    /** Safety limit: a round that takes more turns than this counts as stalled */
+    public static final int MAX_TURNS = 2000;
+
+    private final int rounds;
+    private double wins;
+    private int stalled;
+    private long firstStock;
+    private long secondStock;
+    private long decisions;
+    private long iterations;
+    private long searchNanos;
+
+    private BotMatch(int rounds) {
+        this.rounds = rounds;
+    }
+
+    /**
+     * Plays a number of rounds and returns the result, seen from the first planner
+     */
+    public static BotMatch play(TurnPlanner first, SearchBudget firstBudget,
+                                TurnPlanner second, SearchBudget secondBudget, int rounds, long seed) {
+        BotMatch match = new BotMatch(rounds);
+        Random random = new Random(seed);
+        for (int r = 0; r < rounds; r++) {
+            SimState state = SimState.deal(2, random);
+            int firstSeat = random.nextInt(2);
+            while (!state.isRoundOver() && state.getTurns() < MAX_TURNS) {
+                if (state.getCurrent() == firstSeat) {
+                    match.playTurn(first, firstBudget, state, true);
+                } else {
+                    match.playTurn(second, secondBudget, state, false);
+                }
+            }
+            match.roundOver(state, firstSeat);
+        }
+        return match;
+    }
+
+    /**
+     * Plans and plays until the turn is over, planning again after every draw
+     */
+    private void playTurn(TurnPlanner planner, SearchBudget budget, SimState state, boolean count) {
+        int turn = state.getTurns();
+        while (state.getTurns() == turn && !state.isRoundOver()) {
+            TurnPlan plan = planner.planTurn(state, budget);
+            if (count) {
+                decisions++;
+                iterations += plan.getIterations();
+                searchNanos += plan.getNanos();
+            }
+            for (int move : plan.getMoves()) {
+                state.apply(move);
+            }
+        }
+    }
+
+    private void roundOver(SimState state, int firstSeat) {
+        int mine = state.getStockSize(firstSeat);
+        int theirs = state.getStockSize(1 - firstSeat);
+        firstStock += mine;
+        secondStock += theirs;
+        if (state.getWinner() == SimState.NONE) {
+            stalled++;
+            wins += mine < theirs ? 1 : mine == theirs ? 0.5 : 0;
+        } else if (state.getWinner() == firstSeat) {
+            wins++;
+        }
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the share of rounds the first planner won
+     */
+    public double getWinRate() {
+        return wins / rounds;
+    }
+
+    /**
+     * Gets the half width of the 95% confidence interval of the win rate
+     */
+    public double getMargin() {
+        double rate = getWinRate();
+        return 1.96 * Math.sqrt(rate * (1 - rate) / rounds);
+    }
+
+    public int getStalled() {
+        return stalled;
+    }
+
+    public double getFirstStockLeft() {
+        return firstStock / (double) rounds;
+    }
+
+    public double getSecondStockLeft() {
+        return secondStock / (double) rounds;
+    }
+
+    /**
+     * Gets the plans per second of the first planner
+     */
+    public double getDecisionsPerSecond() {
+        return decisions / (Math.max(searchNanos, 1) / 1e9);
+    }
+
+    /**
+     * Gets the search iterations per second of the first planner
+     */
+    public double getIterationsPerSecond() {
+        return iterations / (Math.max(searchNanos, 1) / 1e9);
+    }
+
+    /**
+     * Formats the result as one row: win rate, interval, stalled rounds, stock left, speed
+     */
+    public String toRow() {
+        double rate = getWinRate();
+        double margin = getMargin();
+        String stock = String.format("%.1f/%.1f", getFirstStockLeft(), getSecondStockLeft());
+        return String.format("%7.1f%% %5.1f-%5.1f%% %8d %10s %12.0f %14.0f",
+                rate * 100, Math.max(0, rate - margin) * 100, Math.min(1, rate + margin) * 100,
+                stalled, stock, getDecisionsPerSecond(), getIterationsPerSecond());
+    }
+
+    /**
+     * Gets the header that matches toRow, after a first column of the given width
+     */
+    public static String header(String first, int width) {
+        return String.format("%-" + width + "s %8s %13s %8s %10s %12s %14s", first, "Win rate",
+                "95% interval", "Stalled", "Stock left", "Decisions/s", "Iterations/s");
+    }
+}
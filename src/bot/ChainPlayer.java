@@ -0,0 +1,14 @@
+package bot;
+
+/**
+ * Plays every turn with the chain solver, solving again after each stock card or refill
+ * Ignores the search budget: the solver is exact and takes microseconds.
+ */
+public class ChainPlayer implements TurnPlanner {
+    private final ChainSolver solver = new ChainSolver();
+
+    @Override
+    public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+        return solver.solve(observed).toTurnPlan();
+    }
+}
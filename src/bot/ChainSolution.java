@@ -0,0 +1,85 @@
+package bot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The best chain of plays for the rest of a turn, found by ChainSolver
+ */
+public class ChainSolution {
+    private final int[] moves;
+    private final boolean stockPlayed;
+    private final boolean complete;
+    private final int score;
+    private final int states;
+    private final long nanos;
+
+    public ChainSolution(int[] moves, boolean stockPlayed, boolean complete, int score, int states, long nanos) {
+        this.moves = moves;
+        this.stockPlayed = stockPlayed;
+        this.complete = complete;
+        this.score = score;
+        this.states = states;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Gets the moves (see Move)
+     */
+    public int[] getMoves() {
+        return moves;
+    }
+
+    /**
+     * Checks if the chain ends with playing the stock card
+     */
+    public boolean isStockPlayed() {
+        return stockPlayed;
+    }
+
+    /**
+     * Checks if the chain ends the turn (or wins the round)
+     * Otherwise it stops at a new stock card or new hand cards, solve again then.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the number of positions the solver visited
+     */
+    public int getStates() {
+        return states;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets the moves as protocol commands
+     */
+    public List<String> toProtocol() {
+        List<String> commands = new ArrayList<>();
+        for (int move : moves) {
+            commands.add(Move.toProtocol(move));
+        }
+        return commands;
+    }
+
+    /**
+     * Gets the chain as a turn plan (the visited positions count as iterations)
+     */
+    public TurnPlan toTurnPlan() {
+        return new TurnPlan(moves, complete, states, nanos, stockPlayed ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", toProtocol()) + " (score " + score + ")";
+    }
+}
@@ -0,0 +1,493 @@
+package bot;
+
+import model.BuildingPile;
+import model.Card;
+import model.DiscardPile;
+import model.Game;
+import model.Player;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static model.GameConstants.*;
+
+/**
+ * Finds the best chain of plays for the rest of one turn, exactly
+ *
+ * Looks at the building pile tops, the stock top, the hand and the discard piles of
+ * the player and tries every order of building plays from hand and discard tops. A
+ * chain ends when:
+ * - the stock card fits: it is played and the chain stops, the next stock card is
+ *   not known yet (solve again after it is turned)
+ * - the hand is emptied and refilled: the new cards are not known yet either
+ * - the player stops building and discards the best card (or ends the turn)
+ *
+ * Chains are scored by STOCK_PLAY for the stock card (WIN when it is the last one),
+ * a few points per card played, minus SKIPBO_COST for every Skip-Bo used, plus
+ * REFILL for drawing new cards or the value of the final discard. Playing the stock
+ * card as soon as it fits is never worse, so it is done right away.
+ *
+ * Positions are memoized on a 60 bit key (building tops, hand, cards taken from
+ * each discard pile), and branches are cut when an upper bound on their score cannot
+ * beat the best chain found. The bound knows that a Skip-Bo can stand in for any
+ * missing value, so a stock card that needs more missing values than there are
+ * Skip-Bos is unreachable. One solver is not thread safe, it reuses its buffers.
+ */
+public class ChainSolver {
+    public static final int WIN = 100000;
+    public static final int STOCK_PLAY = 1000;
+    public static final int REFILL = 40;
+    public static final int SKIPBO_COST = 30;
+    private static final int HAND_PLAY = 2;
+    private static final int DISCARD_PLAY = 3;
+    private static final int BEST_DISCARD = 4;
+
+    // Memo table: open addressing, cleared in O(1) by bumping the generation
+    private static final int MEMO_BITS = 15;
+    private static final int MEMO_MASK = (1 << MEMO_BITS) - 1;
+    private static final int MAX_PROBES = 16;
+    private static final long NO_KEY = -1;
+    private static final byte EXACT = 1;
+    private static final byte UPPER = 2;
+
+    private final long[] memoKeys = new long[1 << MEMO_BITS];
+    private final int[] memoScores = new int[1 << MEMO_BITS];
+    private final int[] memoMoves = new int[1 << MEMO_BITS];
+    private final byte[] memoFlags = new byte[1 << MEMO_BITS];
+    private final int[] memoGenerations = new int[1 << MEMO_BITS];
+    private int generation;
+
+    // The position being solved
+    private final int[] tops = new int[NUM_BUILDING_PILES];   // 0 (empty) - 11
+    private final int[] hand = new int[SimState.VALUES];
+    private int handSize;
+    private final byte[][] discards = new byte[NUM_DISCARD_PILES][SimState.DECK_SIZE];
+    private final int[] discardSizes = new int[NUM_DISCARD_PILES];
+    private final int[] discardStart = new int[NUM_DISCARD_PILES];
+    private int stockTop;
+    private int stockSize;
+    private boolean canDraw;
+
+    private final int[] available = new int[SimState.VALUES];
+    private boolean memoize = true;
+    private boolean prune = true;
+    private int states;
+
+    /**
+     * Solves the rest of the turn of the current player of a state
+     */
+    public ChainSolution solve(SimState state) {
+        int seat = state.getCurrent();
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            tops[b] = state.getBuildingNext(b) - 1;
+        }
+        handSize = 0;
+        for (int value = 0; value < SimState.VALUES; value++) {
+            hand[value] = state.getHandCount(seat, value);
+            handSize += hand[value];
+        }
+        for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+            int size = state.getDiscardSize(seat, d);
+            for (int i = 0; i < size; i++) {
+                discards[d][i] = (byte) state.getDiscardCard(seat, d, i);
+            }
+            discardSizes[d] = size;
+        }
+        stockTop = state.getStockTop(seat);
+        stockSize = state.getStockSize(seat);
+        canDraw = state.getDrawPileSize() > 0;
+        return solve();
+    }
+
+    /**
+     * Solves the rest of the turn of a player of a server game (for hints)
+     */
+    public ChainSolution solve(Game game, Player player) {
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            BuildingPile pile = game.getBuildingPile(b);
+            tops[b] = pile.size() % BUILDING_PILE_FULL_SIZE;
+        }
+        Arrays.fill(hand, 0);
+        List<Card> cards = game.getHand(player);
+        for (Card card : cards) {
+            hand[valueOf(card)]++;
+        }
+        handSize = cards.size();
+        for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+            DiscardPile pile = game.getDiscardPile(player, d);
+            for (int i = 0; i < pile.size(); i++) {
+                discards[d][i] = (byte) valueOf(pile.getCard(i));
+            }
+            discardSizes[d] = pile.size();
+        }
+        Card top = game.getStockPile(player).topCard();
+        stockTop = top == null ? -1 : valueOf(top);
+        stockSize = game.getStockPile(player).size();
+        canDraw = game.getDrawPileSize() > 0;
+        return solve();
+    }
+
+    /**
+     * Turns memoization on or off (off is only useful to measure what it saves)
+     */
+    public void setMemoize(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    /**
+     * Turns the upper bound cuts on or off (off is only useful to check the results)
+     */
+    public void setPrune(boolean prune) {
+        this.prune = prune;
+    }
+
+    public boolean isMemoize() {
+        return memoize;
+    }
+
+    public boolean isPrune() {
+        return prune;
+    }
+
+    // ========== SEARCH ==========
+
+    private ChainSolution solve() {
+        long start = System.nanoTime();
+        generation++;
+        states = 0;
+        System.arraycopy(discardSizes, 0, discardStart, 0, NUM_DISCARD_PILES);
+
+        int score = search(Integer.MIN_VALUE);
+
+        // Follow the best moves from the memo, searching again where an entry was lost
+        int[] moves = new int[16];
+        int length = 0;
+        boolean stockPlayed = false;
+        boolean complete = false;
+        while (true) {
+            int move = stockMove();
+            if (move < 0) {
+                move = lookupMove(key());
+                if (move < 0) {
+                    boolean old = memoize;
+                    memoize = true;
+                    search(Integer.MIN_VALUE);
+                    memoize = old;
+                    move = lookupMove(key());
+                }
+                if (move < 0) {
+                    move = stopMove();  // The memo table is full, stop here
+                }
+            }
+            if (length == moves.length) {
+                moves = Arrays.copyOf(moves, length * 2);
+            }
+            moves[length++] = move;
+
+            int kind = Move.kind(move);
+            if (kind == Move.STOCK_TO_BUILDING) {
+                stockPlayed = true;
+                complete = stockSize == 1;
+                break;
+            }
+            if (kind == Move.HAND_TO_DISCARD || kind == Move.END_TURN) {
+                complete = true;
+                break;
+            }
+            play(move);
+            if (handSize == 0 && canDraw) {
+                break;  // Refilled with cards that are not known yet
+            }
+        }
+        return new ChainSolution(Arrays.copyOf(moves, length), stockPlayed, complete, score, states,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Gets the best score still reachable from the current position
+     * The result is exact when it is above alpha, otherwise it is an upper bound.
+     */
+    private int search(int alpha) {
+        states++;
+        if (stockMove() >= 0) {
+            return stockSize == 1 ? STOCK_PLAY + WIN : STOCK_PLAY;
+        }
+
+        long key = memoize ? key() : NO_KEY;
+        int slot = key == NO_KEY ? -1 : find(key);
+        if (slot >= 0 && memoGenerations[slot] == generation && memoKeys[slot] == key) {
+            if (memoFlags[slot] == EXACT || memoScores[slot] <= alpha) {
+                return memoScores[slot];
+            }
+        }
+
+        if (prune) {
+            int bound = upperBound();
+            if (bound <= alpha) {
+                return bound;
+            }
+        }
+
+        int bestMove = stopMove();
+        int best = stopValue(bestMove);
+        int seen = 0;
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            // Building piles with the same top give the same positions
+            int bit = 1 << tops[b];
+            if ((seen & bit) != 0) {
+                continue;
+            }
+            seen |= bit;
+            int next = tops[b] + 1;
+
+            for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+                int size = discardSizes[d];
+                if (size == 0) {
+                    continue;
+                }
+                int card = discards[d][size - 1];
+                if (card == SimState.SKIPBO || card == next) {
+                    int move = Move.discardToBuilding(d, b);
+                    int gain = DISCARD_PLAY - (card == SimState.SKIPBO ? SKIPBO_COST : 0);
+                    int value = gain + playAndSearch(move, Math.max(alpha, best) - gain);
+                    if (value > best) {
+                        best = value;
+                        bestMove = move;
+                    }
+                }
+            }
+            for (int i = 0; i < 2; i++) {
+                int card = i == 0 ? next : SimState.SKIPBO;
+                if (hand[card] == 0) {
+                    continue;
+                }
+                int move = Move.handToBuilding(card, b);
+                int gain = HAND_PLAY - (card == SimState.SKIPBO ? SKIPBO_COST : 0);
+                int value = gain + playAndSearch(move, Math.max(alpha, best) - gain);
+                if (value > best) {
+                    best = value;
+                    bestMove = move;
+                }
+            }
+        }
+
+        if (slot >= 0) {
+            boolean exact = best > alpha;
+            // Never replace an exact entry with a bound, the best line is read back from them
+            if (memoGenerations[slot] != generation || memoFlags[slot] != EXACT || exact) {
+                memoGenerations[slot] = generation;
+                memoKeys[slot] = key;
+                memoScores[slot] = best;
+                memoMoves[slot] = exact ? bestMove : -1;
+                memoFlags[slot] = exact ? EXACT : UPPER;
+            }
+        }
+        return best;
+    }
+
+    private int playAndSearch(int move, int alpha) {
+        int top = play(move);
+        int value = handSize == 0 && canDraw ? REFILL : search(alpha);
+        undo(move, top);
+        return value;
+    }
+
+    /**
+     * Gets the most the current position can still score
+     * Every card could still be played, and the stock card is reachable only when the
+     * missing values on the way to it can be covered by Skip-Bos.
+     */
+    private int upperBound() {
+        int discardCards = 0;
+        System.arraycopy(hand, 0, available, 0, SimState.VALUES);
+        for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+            for (int i = 0; i < discardSizes[d]; i++) {
+                available[discards[d][i]]++;
+            }
+            discardCards += discardSizes[d];
+        }
+        int skipbos = available[SimState.SKIPBO];
+        int plays = HAND_PLAY * (handSize - hand[SimState.SKIPBO])
+                + DISCARD_PLAY * (discardCards - (skipbos - hand[SimState.SKIPBO]));
+
+        int end = Math.max(REFILL, BEST_DISCARD);
+        if (stockTop > 0) {
+            int fewestSkipbos = Integer.MAX_VALUE;
+            for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+                int missing = 0;
+                for (int value = tops[b] + 1; value != stockTop; value = value % BUILDING_PILE_FULL_SIZE + 1) {
+                    if (available[value] == 0) {
+                        missing++;
+                    }
+                }
+                fewestSkipbos = Math.min(fewestSkipbos, missing);
+            }
+            if (fewestSkipbos <= skipbos) {
+                // Playing a Skip-Bo still earns the points of a played card
+                int stock = (stockSize == 1 ? STOCK_PLAY + WIN : STOCK_PLAY)
+                        - (SKIPBO_COST - DISCARD_PLAY) * fewestSkipbos;
+                end = Math.max(end, stock);
+            }
+        }
+        return plays + end;
+    }
+
+    // ========== ENDING THE TURN ==========
+
+    /**
+     * Gets the stock move if the stock card fits on a building pile now, otherwise -1
+     */
+    private int stockMove() {
+        if (stockTop < 0) {
+            return -1;
+        }
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            if (stockTop == SimState.SKIPBO || stockTop == tops[b] + 1) {
+                return Move.stockToBuilding(b);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the best way to stop building: the best discard, or END when every discard
+     * would hurt (or the hand is empty)
+     */
+    private int stopMove() {
+        int best = Move.END;
+        int bestValue = 0;
+        for (int card = 0; card < SimState.VALUES; card++) {
+            if (hand[card] == 0) {
+                continue;
+            }
+            for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+                int value = discardValue(card, d);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = Move.handToDiscard(card, d);
+                }
+            }
+        }
+        return best;
+    }
+
+    private int stopValue(int move) {
+        return Move.kind(move) == Move.END_TURN ? 0 : discardValue(Move.card(move), Move.discardPile(move));
+    }
+
+    /**
+     * Scores putting a card on a discard pile: building down is best, covering a lower
+     * card is bad, and Skip-Bos belong in the hand
+     */
+    private int discardValue(int card, int pile) {
+        if (card == SimState.SKIPBO) {
+            return -SKIPBO_COST;
+        }
+        int size = discardSizes[pile];
+        if (size == 0) {
+            return 2;
+        }
+        int top = discards[pile][size - 1];
+        if (top == card + 1) {
+            return BEST_DISCARD;
+        }
+        if (top == card) {
+            return 3;
+        }
+        if (top != SimState.SKIPBO && top < card) {
+            return top - card;
+        }
+        return 1;
+    }
+
+    // ========== HELPER METHODS ==========
+
+    /**
+     * Plays a building move and returns the old top of the building pile
+     */
+    private int play(int move) {
+        int building = Move.building(move);
+        if (Move.kind(move) == Move.HAND_TO_BUILDING) {
+            hand[Move.card(move)]--;
+            handSize--;
+        } else {
+            discardSizes[Move.discardPile(move)]--;
+        }
+        int old = tops[building];
+        tops[building] = (old + 1) % BUILDING_PILE_FULL_SIZE;
+        return old;
+    }
+
+    private void undo(int move, int top) {
+        if (Move.kind(move) == Move.HAND_TO_BUILDING) {
+            hand[Move.card(move)]++;
+            handSize++;
+        } else {
+            discardSizes[Move.discardPile(move)]++;
+        }
+        tops[Move.building(move)] = top;
+    }
+
+    /**
+     * Packs the position in 60 bits: 4 building tops of 4 bits, the hand as up to 5
+     * sorted values of 4 bits, and 6 bits per discard pile for the cards taken from it
+     */
+    private long key() {
+        if (handSize > HAND_SIZE) {
+            return NO_KEY;
+        }
+        long key = 0;
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            key = key << 4 | tops[b];
+        }
+        int packed = 0;
+        int cards = 0;
+        for (int value = 0; value < SimState.VALUES; value++) {
+            for (int c = 0; c < hand[value]; c++) {
+                packed = packed << 4 | value;
+                cards++;
+            }
+        }
+        for (; cards < HAND_SIZE; cards++) {
+            packed = packed << 4 | 0xF;
+        }
+        key = key << 20 | packed;
+        for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+            int taken = discardStart[d] - discardSizes[d];
+            if (taken > 63) {
+                return NO_KEY;
+            }
+            key = key << 6 | taken;
+        }
+        return key;
+    }
+
+    /**
+     * Finds the slot of a key, or a free (old generation) slot for it, or -1
+     */
+    private int find(long key) {
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - MEMO_BITS));
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int index = (slot + probe) & MEMO_MASK;
+            if (memoGenerations[index] != generation || memoKeys[index] == key) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int lookupMove(long key) {
+        if (key == NO_KEY) {
+            return -1;
+        }
+        int slot = find(key);
+        if (slot < 0 || memoGenerations[slot] != generation || memoKeys[slot] != key || memoFlags[slot] != EXACT) {
+            return -1;
+        }
+        return memoMoves[slot];
+    }
+
+    private static int valueOf(Card card) {
+        return card.isSkipBo() ? SimState.SKIPBO : card.getNumber();
+    }
+}
@@ -0,0 +1,118 @@
+package bot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the chain solver and checks it against an exhaustive search
+ *
+ * Collects the positions at the start of every turn of rounds played by the rollout
+ * policy (2-4 players), then solves all of them with and without memoization and
+ * without the bound cuts (the scores must be the same). Finally plays the ChainPlayer
+ * against the AIClient strategy and against MCTS.
+ * Usage: ChainSolverBenchmark [positions] [rounds] [seed]
+ */
+public class ChainSolverBenchmark {
+
+    public static void main(String[] args) {
+        int positionCount = args.length >= 1 ? Integer.parseInt(args[0]) : 20000;
+        int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 200;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 42;
+
+        List<SimState> positions = buildCorpus(positionCount, seed);
+        ChainSolver solver = new ChainSolver();
+        int[] scores = new int[positions.size()];
+
+        // Warm up
+        for (int i = 0; i < 3; i++) {
+            run(solver, positions, scores, false);
+        }
+        System.out.printf("%d positions%n", positions.size());
+        System.out.printf("%-22s %10s %10s %10s %12s %10s%n", "Solver", "Mean us", "p50 us", "p99 us",
+                "Mean states", "Max states");
+        run(solver, positions, scores, true);
+        int[] memoScores = scores.clone();
+
+        solver.setMemoize(false);
+        run(solver, positions, scores, false);
+        run(solver, positions, scores, true);
+        int memoMismatches = mismatches(memoScores, scores);
+
+        solver.setPrune(false);
+        run(solver, positions, scores, true);
+        int exhaustiveMismatches = mismatches(memoScores, scores);
+        System.out.printf("Score differences: %d without memo, %d with an exhaustive search%n",
+                memoMismatches, exhaustiveMismatches);
+
+        System.out.println();
+        System.out.println(BotMatch.header("Match", 30));
+        SearchBudget budget = SearchBudget.iterations(512);
+        BotMatch heuristic = BotMatch.play(new ChainPlayer(), budget, new HeuristicPlayer(seed + 2), budget,
+                rounds, seed);
+        System.out.printf("%-30s %s%n", "Chain vs heuristic", heuristic.toRow());
+        BotMatch mcts = BotMatch.play(new ChainPlayer(), budget, new MctsBot(seed + 2), budget, rounds, seed);
+        System.out.printf("%-30s %s%n", "Chain vs MCTS, " + budget, mcts.toRow());
+    }
+
+    /**
+     * Solves every position, stores the scores, and prints the timing if asked
+     */
+    private static void run(ChainSolver solver, List<SimState> positions, int[] scores, boolean print) {
+        long[] nanos = new long[positions.size()];
+        long states = 0;
+        int maxStates = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            long start = System.nanoTime();
+            ChainSolution solution = solver.solve(positions.get(i));
+            nanos[i] = System.nanoTime() - start;
+            scores[i] = solution.getScore();
+            states += solution.getStates();
+            maxStates = Math.max(maxStates, solution.getStates());
+        }
+        if (!print) {
+            return;
+        }
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-22s %10.2f %10.2f %10.2f %12.1f %10d%n", describe(solver),
+                total / 1e3 / nanos.length, nanos[nanos.length / 2] / 1e3, nanos[nanos.length * 99 / 100] / 1e3,
+                states / (double) nanos.length, maxStates);
+    }
+
+    private static String describe(ChainSolver solver) {
+        return solver.isPrune() ? (solver.isMemoize() ? "memo + bounds" : "bounds only") : "exhaustive";
+    }
+
+    private static int mismatches(int[] expected, int[] actual) {
+        int count = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<SimState> buildCorpus(int count, long seed) {
+        Random random = new Random(seed);
+        RolloutPolicy policy = new RolloutPolicy();
+        List<SimState> positions = new ArrayList<>();
+        while (positions.size() < count) {
+            SimState state = SimState.deal(2 + random.nextInt(3), random);
+            int turn = -1;
+            while (!state.isRoundOver() && positions.size() < count) {
+                if (state.getTurns() != turn) {
+                    positions.add(state.copy());
+                    turn = state.getTurns();
+                }
+                state.apply(policy.choose(state, random));
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,68 @@
+package bot;
+
+import java.util.Random;
+
+/**
+ * A fixed set of preallocated states to sample determinizations into
+ *
+ * A determinization is the observed state with every card the viewer cannot see dealt
+ * again at random: the other hands, the stock cards below the tops and the draw pile.
+ * It keeps everything the viewer did see: its own hand, the stock tops, building and
+ * discard piles, and how many cards are in each hidden place. The cards that were
+ * played (the TABLE, STOCK and PLAY messages) are therefore never dealt again, so
+ * the observed state may hold any assignment of the unseen cards.
+ *
+ * States are reset in place (one arraycopy and a shuffle), so sampling thousands of
+ * determinizations per decision does not allocate.
+ */
+public class DeterminizationPool {
+    private final SimState observed;
+    private final SimState[] states;
+    private final byte[] scratch = new byte[SimState.DECK_SIZE];
+    private int viewer;
+
+    public DeterminizationPool(int size, int seats) {
+        this.observed = new SimState(seats);
+        this.states = new SimState[size];
+        for (int i = 0; i < size; i++) {
+            states[i] = new SimState(seats);
+        }
+    }
+
+    public int getSeats() {
+        return observed.getSeats();
+    }
+
+    public int size() {
+        return states.length;
+    }
+
+    /**
+     * Starts a new decision: remembers the observed state and samples every state of the pool
+     */
+    public void reset(SimState observed, int viewer, Random random) {
+        this.observed.copyFrom(observed);
+        this.viewer = viewer;
+        for (int i = 0; i < states.length; i++) {
+            resample(i, random);
+        }
+    }
+
+    /**
+     * Gets determinization number index of this decision
+     * Past the pool size the states are reused, each one sampled again first, so
+     * every index gives a fresh determinization. The caller may play moves on it.
+     */
+    public SimState sample(int index, Random random) {
+        int slot = index % states.length;
+        if (index >= states.length) {
+            resample(slot, random);
+        }
+        return states[slot];
+    }
+
+    private void resample(int slot, Random random) {
+        states[slot].copyFrom(observed);
+        states[slot].determinize(viewer, random, scratch);
+    }
+}
@@ -0,0 +1,290 @@
+package bot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * A learned evaluation of a position: the chance that a seat wins the round
+ *
+ * The position is reduced to FEATURES numbers of 0-1 (stock cards left, how far the
+ * stock cards are from fitting, playable discard tops and hand cards, ...), then put
+ * through a small model: logistic regression, or one hidden layer of softsign units
+ * (x / (1 + |x|), as smooth as tanh but without the slow Math.tanh) with a logistic
+ * output. The weights are fitted by EvaluatorTrainer on self-play rounds.
+ *
+ * Weights file (big-endian): MAGIC, VERSION (short), features (short), hidden units
+ * (short), then the weights as floats: the hidden biases, per feature its weight into
+ * every hidden unit, then the output bias and one weight per hidden unit (without a
+ * hidden layer: the bias and one weight per feature). The feature-major order lets
+ * all hidden units be summed side by side instead of one long chain of additions.
+ * A model of 16 hidden units is under 1 KB.
+ *
+ * The weights are shared and never change; every copy() has its own scratch arrays,
+ * so one evaluator per thread evaluates without allocating.
+ */
+public class Evaluator {
+    public static final int MAGIC = 0x53424556;  // "SBEV"
+    public static final short VERSION = 1;
+
+    /** The weights file bots load when no other file is given (system property evaluator.file) */
+    public static final String DEFAULT_FILE = "evaluator.bin";
+
+    // ========== FEATURES ==========
+    public static final int OWN_STOCK = 0;            // Own stock cards left / 30
+    public static final int OPPONENT_STOCK = 1;       // Fewest stock cards of an opponent / 30
+    public static final int OWN_DISTANCE = 2;         // Building steps before the own stock card fits / 12
+    public static final int OPPONENT_DISTANCE = 3;    // Fewest steps of an opponent / 12
+    public static final int OWN_DISCARD_FITS = 4;     // Own discard tops that fit now / 4
+    public static final int OPPONENT_DISCARD_FITS = 5; // Most discard tops of an opponent that fit now / 4
+    public static final int HAND_FITS = 6;            // Own hand cards that fit now / 5
+    public static final int HAND_SKIPBO = 7;          // Own Skip-Bo cards in the hand / 5
+    public static final int HAND_SIZE_FEATURE = 8;    // Own hand size / 5
+    public static final int EMPTY_DISCARDS = 9;       // Own empty discard piles / 4
+    public static final int DRAW_PILE = 10;           // Draw pile left / deck size
+    public static final int TO_MOVE = 11;             // 1 if the seat plays next
+    public static final int FEATURES = 12;
+
+    private final int hidden;
+    private final float[] weights;
+    private final float[] features = new float[FEATURES];
+    private final float[] activations;
+
+    /**
+     * Creates an evaluator
+     * @param hidden Hidden units, 0 for logistic regression
+     * @param weights The weights in file order (see weightCount)
+     */
+    public Evaluator(int hidden, float[] weights) {
+        if (weights.length != weightCount(hidden)) {
+            throw new IllegalArgumentException("Expected " + weightCount(hidden) + " weights, got " + weights.length);
+        }
+        this.hidden = hidden;
+        this.weights = weights;
+        this.activations = new float[hidden];
+    }
+
+    /**
+     * Creates an evaluator with small random weights (the start of training)
+     */
+    public static Evaluator random(int hidden, Random random) {
+        float[] weights = new float[weightCount(hidden)];
+        double scale = 1 / Math.sqrt(FEATURES + 1);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = hidden == 0 ? 0 : (float) (random.nextGaussian() * scale);
+        }
+        return new Evaluator(hidden, weights);
+    }
+
+    /**
+     * Gets the number of weights of a model with this many hidden units
+     */
+    public static int weightCount(int hidden) {
+        return hidden == 0 ? FEATURES + 1 : hidden * (FEATURES + 1) + hidden + 1;
+    }
+
+    /**
+     * Gets an evaluator with the same weights and its own scratch arrays (one per thread)
+     */
+    public Evaluator copy() {
+        return new Evaluator(hidden, weights);
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    /**
+     * Gets the weights (shared, the trainer changes them in place)
+     */
+    float[] getWeights() {
+        return weights;
+    }
+
+    // ========== EVALUATION ==========
+
+    /**
+     * Gets the chance that a seat wins the round (1 or 0 when it is over)
+     */
+    public double evaluate(SimState state, int seat) {
+        int winner = state.getWinner();
+        if (winner != SimState.NONE) {
+            return winner == seat ? 1 : 0;
+        }
+        extract(state, seat, features, 0);
+        return predict(features, 0);
+    }
+
+    /**
+     * Runs the model on FEATURES numbers starting at an offset
+     */
+    public double predict(float[] x, int offset) {
+        float[] w = weights;
+        if (hidden == 0) {
+            float sum = w[0];
+            for (int f = 0; f < FEATURES; f++) {
+                sum += w[1 + f] * x[offset + f];
+            }
+            return sigmoid(sum);
+        }
+
+        float[] a = activations;
+        System.arraycopy(w, 0, a, 0, hidden);
+        for (int f = 0; f < FEATURES; f++) {
+            float xf = x[offset + f];
+            int row = hidden * (1 + f);
+            for (int h = 0; h < hidden; h++) {
+                a[h] += w[row + h] * xf;
+            }
+        }
+        int output = hidden * (FEATURES + 1);
+        float sum = w[output];
+        for (int h = 0; h < hidden; h++) {
+            a[h] = a[h] / (1 + Math.abs(a[h]));
+            sum += w[output + 1 + h] * a[h];
+        }
+        return sigmoid(sum);
+    }
+
+    /**
+     * Gets the hidden activations of the last predict (for training)
+     */
+    float[] getActivations() {
+        return activations;
+    }
+
+    static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    /**
+     * Writes the features of a position for a seat into x, from offset on
+     */
+    public static void extract(SimState state, int seat, float[] x, int offset) {
+        // Bit v is set when a card of value v fits on a building pile now
+        int fitting = 1 << SimState.SKIPBO;
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            fitting |= 1 << state.getBuildingNext(pile);
+        }
+
+        int opponentStock = Integer.MAX_VALUE;
+        int opponentDistance = BUILDING_PILE_FULL_SIZE;
+        int opponentDiscardFits = 0;
+        for (int p = 0; p < state.getSeats(); p++) {
+            if (p != seat) {
+                opponentStock = Math.min(opponentStock, state.getStockSize(p));
+                opponentDistance = Math.min(opponentDistance, distance(state, p));
+                opponentDiscardFits = Math.max(opponentDiscardFits, discardFits(state, p, fitting));
+            }
+        }
+
+        int handFits = 0;
+        for (int value = 0; value < SimState.VALUES; value++) {
+            if ((fitting & (1 << value)) != 0) {
+                handFits += state.getHandCount(seat, value);
+            }
+        }
+        int emptyDiscards = 0;
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            if (state.getDiscardSize(seat, pile) == 0) {
+                emptyDiscards++;
+            }
+        }
+
+        x[offset + OWN_STOCK] = state.getStockSize(seat) / (float) STOCK_SIZE_SMALL_GAME;
+        x[offset + OPPONENT_STOCK] = opponentStock / (float) STOCK_SIZE_SMALL_GAME;
+        x[offset + OWN_DISTANCE] = distance(state, seat) / (float) BUILDING_PILE_FULL_SIZE;
+        x[offset + OPPONENT_DISTANCE] = opponentDistance / (float) BUILDING_PILE_FULL_SIZE;
+        x[offset + OWN_DISCARD_FITS] = discardFits(state, seat, fitting) / (float) NUM_DISCARD_PILES;
+        x[offset + OPPONENT_DISCARD_FITS] = opponentDiscardFits / (float) NUM_DISCARD_PILES;
+        x[offset + HAND_FITS] = handFits / (float) HAND_SIZE;
+        x[offset + HAND_SKIPBO] = state.getHandCount(seat, SimState.SKIPBO) / (float) HAND_SIZE;
+        x[offset + HAND_SIZE_FEATURE] = state.getHandSize(seat) / (float) HAND_SIZE;
+        x[offset + EMPTY_DISCARDS] = emptyDiscards / (float) NUM_DISCARD_PILES;
+        x[offset + DRAW_PILE] = state.getDrawPileSize() / (float) SimState.DECK_SIZE;
+        x[offset + TO_MOVE] = state.getCurrent() == seat ? 1 : 0;
+    }
+
+    /**
+     * Building steps before the stock card of a seat fits (0 for Skip-Bo or an empty stock)
+     */
+    private static int distance(SimState state, int seat) {
+        int top = state.getStockTop(seat);
+        if (top <= SimState.SKIPBO) {
+            return 0;
+        }
+        int distance = BUILDING_PILE_FULL_SIZE;
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            int next = state.getBuildingNext(pile);
+            distance = Math.min(distance, (top - next + BUILDING_PILE_FULL_SIZE) % BUILDING_PILE_FULL_SIZE);
+        }
+        return distance;
+    }
+
+    private static int discardFits(SimState state, int seat, int fitting) {
+        int fits = 0;
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int top = state.getDiscardTop(seat, pile);
+            if (top >= 0 && (fitting & (1 << top)) != 0) {
+                fits++;
+            }
+        }
+        return fits;
+    }
+
+    // ========== WEIGHTS FILE ==========
+
+    /**
+     * Writes the weights file
+     */
+    public void save(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(FEATURES);
+            out.writeShort(hidden);
+            for (float weight : weights) {
+                out.writeFloat(weight);
+            }
+        }
+    }
+
+    /**
+     * Reads a weights file
+     * @throws IOException If the file cannot be read or is not a weights file of these features
+     */
+    public static Evaluator load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an evaluator weights file: " + file);
+            }
+            short version = in.readShort();
+            short features = in.readShort();
+            if (version != VERSION || features != FEATURES) {
+                throw new IOException("Weights file " + file + " is version " + version + " with "
+                        + features + " features, expected version " + VERSION + " with " + FEATURES);
+            }
+            int hidden = in.readShort();
+            float[] weights = new float[weightCount(hidden)];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = in.readFloat();
+            }
+            return new Evaluator(hidden, weights);
+        }
+    }
+
+    /**
+     * Reads the weights file given by the system property evaluator.file (default DEFAULT_FILE)
+     */
+    public static Evaluator loadDefault() throws IOException {
+        return load(Paths.get(System.getProperty("evaluator.file", DEFAULT_FILE)));
+    }
+}
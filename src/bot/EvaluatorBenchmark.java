@@ -0,0 +1,134 @@
+package bot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Measures the cost of one position evaluation in nanoseconds
+ *
+ * Builds a corpus of positions (rounds played by the rollout policy, stopped at random
+ * turns), then evaluates all of them for every seat over and over: the hand-made
+ * reward of MctsBot, the feature extraction alone, the models alone on extracted
+ * features (logistic regression and MLPs of several sizes) and the whole evaluation
+ * with the weights file, if there is one.
+ * Usage: EvaluatorBenchmark [file] [positions] [seed]
+ */
+public class EvaluatorBenchmark {
+    private static final int[] HIDDEN = {0, 16, 64};
+    private static final long NANOS_PER_ROW = 500_000_000L;
+
+    private static double sink;
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length >= 1 ? args[0] : Evaluator.DEFAULT_FILE);
+        int count = args.length >= 2 ? Integer.parseInt(args[1]) : 4096;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 42;
+
+        List<SimState> positions = buildCorpus(count, seed);
+        int evaluations = 0;
+        for (SimState position : positions) {
+            evaluations += position.getSeats();
+        }
+        float[] features = new float[evaluations * Evaluator.FEATURES];
+        int at = 0;
+        for (SimState position : positions) {
+            for (int seat = 0; seat < position.getSeats(); seat++) {
+                Evaluator.extract(position, seat, features, at);
+                at += Evaluator.FEATURES;
+            }
+        }
+        Evaluator loaded = Files.exists(file) ? Evaluator.load(file) : null;
+
+        // Warm up the JIT on everything once
+        for (int i = 0; i < 3; i++) {
+            measure(positions, MctsBot::reward);
+            measure(positions, EvaluatorBenchmark::extractOnly);
+            for (int hidden : HIDDEN) {
+                measurePredict(Evaluator.random(hidden, new Random(seed)), features);
+            }
+        }
+
+        System.out.printf("%d positions, %d evaluations per pass%n", positions.size(), evaluations);
+        System.out.printf("%-32s %10s%n", "Evaluation", "ns/eval");
+        System.out.printf("%-32s %10.1f%n", "Hand-made reward (MctsBot)", measure(positions, MctsBot::reward));
+        System.out.printf("%-32s %10.1f%n", "Feature extraction", measure(positions, EvaluatorBenchmark::extractOnly));
+        for (int hidden : HIDDEN) {
+            Evaluator model = Evaluator.random(hidden, new Random(seed));
+            System.out.printf("%-32s %10.1f%n", (hidden == 0 ? "Logistic regression" : "MLP " + hidden + " hidden")
+                    + " (model only)", measurePredict(model, features));
+        }
+        if (loaded != null) {
+            measure(positions, loaded::evaluate);
+            System.out.printf("%-32s %10.1f%n", file.getFileName() + " (" + loaded.getHidden() + " hidden, whole)",
+                    measure(positions, loaded::evaluate));
+        } else {
+            System.out.println("No weights file " + file + " (see EvaluatorTrainer)");
+        }
+    }
+
+    private static final float[] scratch = new float[Evaluator.FEATURES];
+
+    private static double extractOnly(SimState state, int seat) {
+        Evaluator.extract(state, seat, scratch, 0);
+        return scratch[Evaluator.OWN_STOCK];
+    }
+
+    /**
+     * Evaluates every position for every seat until NANOS_PER_ROW passed, returns ns per evaluation
+     */
+    private static double measure(List<SimState> positions, ToDoubleBiFunction<SimState, Integer> evaluation) {
+        long evaluations = 0;
+        double sum = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (SimState position : positions) {
+                for (int seat = 0; seat < position.getSeats(); seat++) {
+                    sum += evaluation.applyAsDouble(position, seat);
+                    evaluations++;
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < NANOS_PER_ROW);
+        sink += sum;
+        return (double) elapsed / evaluations;
+    }
+
+    /**
+     * Runs a model on extracted features until NANOS_PER_ROW passed, returns ns per evaluation
+     */
+    private static double measurePredict(Evaluator model, float[] features) {
+        long evaluations = 0;
+        double sum = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int offset = 0; offset < features.length; offset += Evaluator.FEATURES) {
+                sum += model.predict(features, offset);
+                evaluations++;
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < NANOS_PER_ROW);
+        sink += sum;
+        return (double) elapsed / evaluations;
+    }
+
+    private static List<SimState> buildCorpus(int count, long seed) {
+        Random random = new Random(seed);
+        RolloutPolicy policy = new RolloutPolicy();
+        List<SimState> positions = new ArrayList<>();
+        while (positions.size() < count) {
+            SimState state = SimState.deal(2 + random.nextInt(3), random);
+            policy.playOut(state, random.nextInt(40), random);
+            if (!state.isRoundOver()) {
+                positions.add(state);
+            }
+        }
+        return positions;
+    }
+}
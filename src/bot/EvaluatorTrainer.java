@@ -0,0 +1,320 @@
+package bot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Fits the weights of an Evaluator on self-play rounds and writes the weights file
+ *
+ * The rounds are played by the rollout policy for every seat (2-4 seats), the same
+ * policy that plays on from the positions MCTS evaluates. Positions are taken at the
+ * start of a random part of the turns; every seat of such a position is one sample,
+ * labelled 1 if that seat won the round (a stuck round goes to the fewest stock cards,
+ * shared on a tie). The rounds are played in parallel, in batches of ROUNDS_PER_TASK
+ * with a seed each; every tenth batch is kept apart to validate on.
+ *
+ * The model is fitted with Adam on the log loss. The report compares the validation
+ * loss and accuracy with the hand-made reward of MctsBot on the same positions.
+ * Usage: EvaluatorTrainer [file] [rounds] [hidden units] [threads] [epochs] [seed]
+ */
+public class EvaluatorTrainer {
+    /** Rounds played by one task (and kept together for validation) */
+    public static final int ROUNDS_PER_TASK = 100;
+
+    /** On average one turn in this many becomes a position */
+    public static final int SAMPLE_EVERY = 4;
+
+    private static final int BATCH = 256;
+    private static final double LEARNING_RATE = 0.01;
+    private static final double L2 = 1e-5;
+
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length >= 1 ? args[0] : Evaluator.DEFAULT_FILE);
+        int rounds = args.length >= 2 ? Integer.parseInt(args[1]) : 5000;
+        int hidden = args.length >= 3 ? Integer.parseInt(args[2]) : 16;
+        int threads = args.length >= 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int epochs = args.length >= 5 ? Integer.parseInt(args[4]) : 8;
+        long seed = args.length >= 6 ? Long.parseLong(args[5]) : 42;
+
+        // Self-play
+        long start = System.nanoTime();
+        Samples[] sets = generate(rounds, threads, seed);
+        Samples train = sets[0];
+        Samples validation = sets[1];
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Played %d rounds on %d threads in %.1f s (%.0f rounds/s): %d training and %d validation samples%n",
+                rounds, threads, seconds, rounds / seconds, train.count, validation.count);
+
+        // Fit
+        Evaluator model = Evaluator.random(hidden, new Random(seed));
+        Random random = new Random(seed + 1);
+        Adam adam = new Adam(model.getWeights().length);
+        System.out.printf("%-6s %12s %12s %10s%n", "Epoch", "Train loss", "Valid loss", "Seconds");
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            long epochStart = System.nanoTime();
+            train(model, train, adam, random);
+            System.out.printf("%-6d %12.4f %12.4f %10.1f%n", epoch, logLoss(model, train), logLoss(model, validation),
+                    (System.nanoTime() - epochStart) / 1e9);
+        }
+
+        System.out.printf("%nValidation (%d samples)  %10s %10s%n", validation.count, "Log loss", "Accuracy");
+        System.out.printf("%-25s %10.4f %9.1f%%%n", "Hand-made reward", baselineLogLoss(validation),
+                100 * baselineAccuracy(validation));
+        System.out.printf("%-25s %10.4f %9.1f%%%n", hidden == 0 ? "Logistic regression" : "MLP " + hidden + " hidden",
+                logLoss(model, validation), 100 * accuracy(model, validation));
+
+        model.save(file);
+        System.out.printf("Wrote %s (%d weights, %d bytes)%n", file, model.getWeights().length, Files.size(file));
+    }
+
+    // ========== SELF-PLAY ==========
+
+    /**
+     * Positions with their features, label (chance the seat won) and the hand-made reward
+     */
+    static final class Samples {
+        float[] features = new float[1024 * Evaluator.FEATURES];
+        float[] labels = new float[1024];
+        float[] baseline = new float[1024];
+        int count;
+
+        void add(SimState state, int seat) {
+            grow();
+            Evaluator.extract(state, seat, features, count * Evaluator.FEATURES);
+            baseline[count] = (float) MctsBot.reward(state, seat);
+            count++;
+        }
+
+        private void grow() {
+            if (count == labels.length) {
+                features = Arrays.copyOf(features, features.length * 2);
+                labels = Arrays.copyOf(labels, labels.length * 2);
+                baseline = Arrays.copyOf(baseline, baseline.length * 2);
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                grow();
+                System.arraycopy(other.features, i * Evaluator.FEATURES, features, count * Evaluator.FEATURES,
+                        Evaluator.FEATURES);
+                labels[count] = other.labels[i];
+                baseline[count] = other.baseline[i];
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Plays the rounds on a pool and returns the training and the validation samples
+     */
+    static Samples[] generate(int rounds, int threads, long seed) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "evaluator-selfplay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Samples>> tasks = new ArrayList<>();
+            for (int first = 0; first < rounds; first += ROUNDS_PER_TASK) {
+                int count = Math.min(ROUNDS_PER_TASK, rounds - first);
+                long taskSeed = seed + first;
+                tasks.add(pool.submit(() -> playRounds(count, taskSeed)));
+            }
+            Samples train = new Samples();
+            Samples validation = new Samples();
+            for (int t = 0; t < tasks.size(); t++) {
+                (t % 10 == 9 ? validation : train).addAll(tasks.get(t).get());
+            }
+            return new Samples[]{train, validation};
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays rounds with the rollout policy and samples positions from them
+     */
+    static Samples playRounds(int rounds, long seed) {
+        Random random = new Random(seed);
+        RolloutPolicy policy = new RolloutPolicy();
+        Samples samples = new Samples();
+        int[] seats = new int[64];
+        for (int r = 0; r < rounds; r++) {
+            SimState state = SimState.deal(2 + random.nextInt(3), random);
+            int first = samples.count;
+            int lastTurn = -1;
+            while (!state.isRoundOver()) {
+                if (state.getTurns() != lastTurn) {
+                    lastTurn = state.getTurns();
+                    if (random.nextInt(SAMPLE_EVERY) == 0) {
+                        for (int seat = 0; seat < state.getSeats(); seat++) {
+                            if (samples.count - first == seats.length) {
+                                seats = Arrays.copyOf(seats, seats.length * 2);
+                            }
+                            seats[samples.count - first] = seat;
+                            samples.add(state, seat);
+                        }
+                    }
+                }
+                state.apply(policy.choose(state, random));
+            }
+            for (int i = first; i < samples.count; i++) {
+                samples.labels[i] = (float) roundShare(state, seats[i - first]);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Gets what a seat won of a finished round: 1 for the winner, or for a stuck round
+     * 1 split between the seats with the fewest stock cards
+     */
+    private static double roundShare(SimState state, int seat) {
+        if (state.getWinner() != SimState.NONE) {
+            return state.getWinner() == seat ? 1 : 0;
+        }
+        int least = Integer.MAX_VALUE;
+        int tied = 0;
+        for (int p = 0; p < state.getSeats(); p++) {
+            int stock = state.getStockSize(p);
+            if (stock < least) {
+                least = stock;
+                tied = 1;
+            } else if (stock == least) {
+                tied++;
+            }
+        }
+        return state.getStockSize(seat) == least ? 1.0 / tied : 0;
+    }
+
+    // ========== FITTING ==========
+
+    /**
+     * Adam state: moving averages of the gradient and its square
+     */
+    static final class Adam {
+        final double[] mean;
+        final double[] square;
+        int steps;
+
+        Adam(int weights) {
+            mean = new double[weights];
+            square = new double[weights];
+        }
+
+        void step(float[] weights, double[] gradient, int batch) {
+            steps++;
+            double correctMean = 1 - Math.pow(0.9, steps);
+            double correctSquare = 1 - Math.pow(0.999, steps);
+            for (int i = 0; i < weights.length; i++) {
+                double g = gradient[i] / batch + L2 * weights[i];
+                mean[i] = 0.9 * mean[i] + 0.1 * g;
+                square[i] = 0.999 * square[i] + 0.001 * g * g;
+                weights[i] -= (float) (LEARNING_RATE * (mean[i] / correctMean)
+                        / (Math.sqrt(square[i] / correctSquare) + 1e-8));
+            }
+        }
+    }
+
+    /**
+     * Runs one epoch of mini-batches over the samples in random order
+     */
+    static void train(Evaluator model, Samples samples, Adam adam, Random random) {
+        int features = Evaluator.FEATURES;
+        int hidden = model.getHidden();
+        float[] w = model.getWeights();
+        double[] gradient = new double[w.length];
+        int[] order = new int[samples.count];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        int output = hidden * (features + 1);
+        for (int from = 0; from < order.length; from += BATCH) {
+            int to = Math.min(order.length, from + BATCH);
+            Arrays.fill(gradient, 0);
+            for (int b = from; b < to; b++) {
+                int sample = order[b];
+                int offset = sample * features;
+                double error = model.predict(samples.features, offset) - samples.labels[sample];
+                if (hidden == 0) {
+                    gradient[0] += error;
+                    for (int f = 0; f < features; f++) {
+                        gradient[1 + f] += error * samples.features[offset + f];
+                    }
+                    continue;
+                }
+                float[] activations = model.getActivations();
+                gradient[output] += error;
+                for (int h = 0; h < hidden; h++) {
+                    double a = activations[h];
+                    gradient[output + 1 + h] += error * a;
+                    // Softsign: the slope at x is 1 / (1 + |x|)^2 = (1 - |a|)^2
+                    double slope = (1 - Math.abs(a)) * (1 - Math.abs(a));
+                    double delta = error * w[output + 1 + h] * slope;
+                    gradient[h] += delta;
+                    for (int f = 0; f < features; f++) {
+                        gradient[hidden * (1 + f) + h] += delta * samples.features[offset + f];
+                    }
+                }
+            }
+            adam.step(w, gradient, to - from);
+        }
+    }
+
+    // ========== METRICS ==========
+
+    static double logLoss(Evaluator model, Samples samples) {
+        double loss = 0;
+        for (int i = 0; i < samples.count; i++) {
+            loss += logLoss(model.predict(samples.features, i * Evaluator.FEATURES), samples.labels[i]);
+        }
+        return loss / samples.count;
+    }
+
+    static double accuracy(Evaluator model, Samples samples) {
+        int right = 0;
+        for (int i = 0; i < samples.count; i++) {
+            double p = model.predict(samples.features, i * Evaluator.FEATURES);
+            right += (p > 0.5) == (samples.labels[i] > 0.5) ? 1 : 0;
+        }
+        return right / (double) samples.count;
+    }
+
+    static double baselineLogLoss(Samples samples) {
+        double loss = 0;
+        for (int i = 0; i < samples.count; i++) {
+            loss += logLoss(samples.baseline[i], samples.labels[i]);
+        }
+        return loss / samples.count;
+    }
+
+    static double baselineAccuracy(Samples samples) {
+        int right = 0;
+        for (int i = 0; i < samples.count; i++) {
+            right += (samples.baseline[i] > 0.5) == (samples.labels[i] > 0.5) ? 1 : 0;
+        }
+        return right / (double) samples.count;
+    }
+
+    private static double logLoss(double p, double label) {
+        p = Math.min(1 - 1e-7, Math.max(1e-7, p));
+        return -(label * Math.log(p) + (1 - label) * Math.log(1 - p));
+    }
+}
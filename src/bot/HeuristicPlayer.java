@@ -0,0 +1,78 @@
+package bot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * The strategy of AIClient as a bot engine player, used as the baseline opponent
+ * Plays the stock card on the first building pile that takes it (one to three times),
+ * then discards a random hand card on a random discard pile. Ignores the search budget.
+ */
+public class HeuristicPlayer implements TurnPlanner {
+    private final Random random;
+    private final int[] moves = new int[8];
+
+    public HeuristicPlayer(long seed) {
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+        long start = System.nanoTime();
+        int count = playTurn(observed.copy(), moves);
+        return new TurnPlan(Arrays.copyOf(moves, count), true, 0, System.nanoTime() - start, 0);
+    }
+
+    /**
+     * Plays one whole turn of the current player
+     */
+    public void playTurn(SimState state) {
+        playTurn(state, moves);
+    }
+
+    private int playTurn(SimState state, int[] played) {
+        int count = 0;
+        int seat = state.getCurrent();
+        int stockPlays = 1 + random.nextInt(3);
+        for (int i = 0; i < stockPlays && state.getWinner() == SimState.NONE; i++) {
+            int card = state.getStockTop(seat);
+            int pile = firstFitting(state, card);
+            if (pile < 0) {
+                break;
+            }
+            played[count++] = Move.stockToBuilding(pile);
+            state.apply(Move.stockToBuilding(pile));
+        }
+        if (state.getWinner() != SimState.NONE) {
+            return count;
+        }
+
+        int move;
+        if (state.getHandSize(seat) == 0) {
+            move = Move.END;
+        } else {
+            // Pick a random card from the hand
+            int index = random.nextInt(state.getHandSize(seat));
+            int card = 0;
+            while (index >= state.getHandCount(seat, card)) {
+                index -= state.getHandCount(seat, card);
+                card++;
+            }
+            move = Move.handToDiscard(card, random.nextInt(NUM_DISCARD_PILES));
+        }
+        played[count++] = move;
+        state.apply(move);
+        return count;
+    }
+
+    private static int firstFitting(SimState state, int card) {
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            if (state.fits(card, pile)) {
+                return pile;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,70 @@
+package bot;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Compares information set MCTS with the single determinization MctsBot
+ *
+ * Plays both against the AIClient strategy and against each other at the same
+ * iteration budgets, then measures the speed of the determinization pool and how
+ * many bytes it allocates per determinization (should be 0).
+ * Usage: IsmctsBenchmark [rounds] [seed]
+ */
+public class IsmctsBenchmark {
+    private static final int[] BUDGETS = {128, 512, 2048};
+
+    public static void main(String[] args) {
+        int rounds = args.length >= 1 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length >= 2 ? Long.parseLong(args[1]) : 42;
+
+        System.out.println(BotMatch.header("Match", 30));
+        for (int iterations : BUDGETS) {
+            SearchBudget budget = SearchBudget.iterations(iterations);
+            BotMatch mcts = BotMatch.play(new MctsBot(seed + 1), budget,
+                    new HeuristicPlayer(seed + 2), budget, rounds, seed);
+            System.out.printf("%-30s %s%n", "MCTS vs heuristic, " + budget, mcts.toRow());
+            BotMatch ismcts = BotMatch.play(new IsmctsBot(seed + 1), budget,
+                    new HeuristicPlayer(seed + 2), budget, rounds, seed);
+            System.out.printf("%-30s %s%n", "ISMCTS vs heuristic, " + budget, ismcts.toRow());
+            BotMatch duel = BotMatch.play(new IsmctsBot(seed + 1), budget,
+                    new MctsBot(seed + 2), budget, rounds, seed);
+            System.out.printf("%-30s %s%n", "ISMCTS vs MCTS, " + budget, duel.toRow());
+        }
+
+        measurePool(seed);
+    }
+
+    private static void measurePool(long seed) {
+        Random random = new Random(seed);
+        SimState observed = SimState.deal(4, random);
+        new RolloutPolicy().playOut(observed, 20, random);
+        DeterminizationPool pool = new DeterminizationPool(IsmctsBot.DEFAULT_POOL_SIZE, observed.getSeats());
+        int count = 2_000_000;
+
+        // Warm up, then count the bytes this thread allocates
+        for (int i = 0; i < 2; i++) {
+            pool.reset(observed, observed.getCurrent(), random);
+            sample(pool, count / 10, random);
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        pool.reset(observed, observed.getCurrent(), random);
+        long checksum = sample(pool, count, random);
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        System.out.printf("Determinizations (4 players): %.0f per second, %.3f bytes allocated each (checksum %d)%n",
+                count / (nanos / 1e9), bytes / (double) count, checksum);
+    }
+
+    private static long sample(DeterminizationPool pool, int count, Random random) {
+        long checksum = 0;
+        for (int i = 0; i < count; i++) {
+            checksum += pool.sample(i, random).getStockTop(1);
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,179 @@
+package bot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Bot that plans its turn with information set MCTS (single observer)
+ *
+ * Unlike MctsBot, which searches one guess of the hidden cards, every iteration here
+ * samples a new determinization from a DeterminizationPool, so the tree holds the
+ * statistics of the moves over all card layouts the bot considers possible. After
+ * the bot draws new cards, the legal moves depend on the determinization: a node
+ * only chooses between the children that are legal in the current one, and uses how
+ * often a child was available instead of the parent visits in the UCT formula.
+ *
+ * The priors, rollouts and rewards are the same as in MctsBot (with an Evaluator too).
+ */
+public class IsmctsBot implements TurnPlanner {
+    /** Determinizations sampled per decision before the pool states are reused */
+    public static final int DEFAULT_POOL_SIZE = 256;
+
+    private final Random random;
+    private final int poolSize;
+    private final RolloutPolicy rolloutPolicy = new RolloutPolicy();
+    private final Evaluator evaluator;     // null = the hand-made reward of MctsBot
+    private final int[] moves = new int[Move.MAX_MOVES];
+    private DeterminizationPool pool;
+
+    public IsmctsBot(long seed) {
+        this(seed, DEFAULT_POOL_SIZE);
+    }
+
+    public IsmctsBot(long seed, int poolSize) {
+        this(seed, poolSize, null);
+    }
+
+    /**
+     * Creates a bot that scores its rollouts with a learned evaluator (null for the hand-made reward)
+     */
+    public IsmctsBot(long seed, int poolSize, Evaluator evaluator) {
+        this.random = new Random(seed);
+        this.poolSize = poolSize;
+        this.evaluator = evaluator == null ? null : evaluator.copy();
+    }
+
+    /**
+     * A move of the information set tree
+     */
+    private static final class Node {
+        final int move;
+        final Node parent;
+        final boolean leaf;
+        Node[] children = new Node[4];
+        int childCount;
+        int visits;
+        int availability;   // How often the move was legal when its parent was visited
+        double reward;
+
+        Node(int move, Node parent, boolean leaf) {
+            this.move = move;
+            this.parent = parent;
+            this.leaf = leaf;
+        }
+
+        Node child(int move) {
+            for (int i = 0; i < childCount; i++) {
+                if (children[i].move == move) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void add(Node child) {
+            if (childCount == children.length) {
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            children[childCount++] = child;
+        }
+    }
+
+    @Override
+    public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+        long start = System.nanoTime();
+        long deadline = MctsBot.deadline(start, budget);
+        int seat = observed.getCurrent();
+        if (pool == null || pool.getSeats() != observed.getSeats()) {
+            pool = new DeterminizationPool(poolSize, observed.getSeats());
+        }
+        pool.reset(observed, seat, random);
+
+        Node rootNode = new Node(-1, null, false);
+        int iterations = 0;
+        while (iterations < budget.maxIterations) {
+            if ((iterations & 15) == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+            SimState state = pool.sample(iterations, random);
+            Node node = select(rootNode, state);
+            rolloutPolicy.playOut(state, MctsBot.ROLLOUT_TURNS, random);
+            double reward = evaluator == null ? MctsBot.reward(state, seat) : evaluator.evaluate(state, seat);
+            for (; node != null; node = node.parent) {
+                node.visits++;
+                node.reward += reward;
+            }
+            iterations++;
+        }
+
+        int[] path = new int[MctsBot.MAX_PATH];
+        int length = 0;
+        for (Node node = mostVisited(rootNode); node != null && length < path.length; node = mostVisited(node)) {
+            path[length++] = node.move;
+        }
+        Node first = mostVisited(rootNode);
+        double expected = first == null ? 0
+                : (first.reward - MctsBot.PRIOR_VISITS * MctsBot.prior(first.move)) / (first.visits - MctsBot.PRIOR_VISITS);
+        // The plan stops at the first draw or stock card, up to there only known cards are used
+        return MctsBot.completePlan(observed, path, length, expected, iterations,
+                System.nanoTime() - start, rolloutPolicy, random);
+    }
+
+    // ========== SEARCH ==========
+
+    /**
+     * Walks down the moves that are legal in this determinization, playing them on the
+     * state, and adds one new node for a legal move that has none yet
+     */
+    private Node select(Node node, SimState state) {
+        while (!node.leaf) {
+            int n = state.legalMoves(moves);
+
+            // Expand a random legal move without a node
+            int untried = 0;
+            for (int i = 0; i < n; i++) {
+                if (node.child(moves[i]) == null) {
+                    moves[untried++] = moves[i];
+                }
+            }
+            if (untried > 0) {
+                int move = moves[random.nextInt(untried)];
+                boolean leaf = state.endsTurn(move);
+                state.apply(move);
+                Node child = new Node(move, node, leaf || state.isRoundOver());
+                child.visits = MctsBot.PRIOR_VISITS;
+                child.availability = MctsBot.PRIOR_VISITS;
+                child.reward = MctsBot.PRIOR_VISITS * MctsBot.prior(move);
+                node.add(child);
+                return child;
+            }
+
+            // All legal moves have nodes: UCT over them
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                Node child = node.child(moves[i]);
+                child.availability++;
+                double value = child.reward / child.visits
+                        + MctsBot.EXPLORATION * Math.sqrt(Math.log(child.availability) / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            state.apply(best.move);
+            node = best;
+        }
+        return node;
+    }
+
+    private static Node mostVisited(Node node) {
+        Node best = null;
+        for (int i = 0; i < node.childCount; i++) {
+            if (best == null || node.children[i].visits > best.visits) {
+                best = node.children[i];
+            }
+        }
+        return best;
+    }
+}
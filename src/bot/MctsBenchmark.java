@@ -0,0 +1,35 @@
+package bot;
+
+/**
+ * Plays MCTS against the AIClient strategy at several search budgets
+ *
+ * Every round is a two player round with a random first player (see BotMatch).
+ * Prints per budget the win rate of the MCTS bot (with a 95% interval), how many
+ * rounds stalled, the average stock cards left of both players, decisions (plans)
+ * per second and search iterations per second.
+ * A budget of 0 iterations plays the rollout policy alone.
+ * Usage: MctsBenchmark [rounds] [seed]
+ */
+public class MctsBenchmark {
+    private static final SearchBudget[] BUDGETS = {
+            SearchBudget.iterations(0),
+            SearchBudget.iterations(32),
+            SearchBudget.iterations(128),
+            SearchBudget.iterations(512),
+            SearchBudget.iterations(2048),
+            SearchBudget.millis(1),
+            SearchBudget.millis(5),
+    };
+
+    public static void main(String[] args) {
+        int rounds = args.length >= 1 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length >= 2 ? Long.parseLong(args[1]) : 42;
+
+        System.out.println(BotMatch.header("Budget", 18));
+        for (SearchBudget budget : BUDGETS) {
+            BotMatch match = BotMatch.play(new MctsBot(seed + 1), budget,
+                    new HeuristicPlayer(seed + 2), budget, rounds, seed);
+            System.out.printf("%-18s %s%n", budget, match.toRow());
+        }
+    }
+}
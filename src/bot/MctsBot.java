@@ -0,0 +1,317 @@
+package bot;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * Bot that plans its turn with Monte Carlo tree search
+ *
+ * The hidden cards (other hands, stock piles below the top, draw pile) are shuffled
+ * once per decision (see SimState.determinize), then UCT runs over the moves of this
+ * turn. A move that ends the turn is a leaf: from there the RolloutPolicy plays a few
+ * more turns. The reward is 1 for winning the round, 0 for losing it, and otherwise
+ * the lead in stock cards over the best opponent on a logistic curve, or the chance
+ * to win of a learned Evaluator when the bot has one.
+ *
+ * The search is anytime: it runs until the budget is used up and then returns the
+ * most visited line through the tree as the plan for the whole turn.
+ */
+public class MctsBot implements TurnPlanner {
+    /** UCT exploration constant (rewards are 0-1) */
+    public static final double EXPLORATION = 0.7;
+
+    /** How many turns (of all players) a rollout plays before it is scored, longer ones only add noise */
+    public static final int ROLLOUT_TURNS = 4;
+
+    /** Lead (in stock cards) that scores 0.73 (logistic curve) */
+    private static final double LEAD_SCALE = 4;
+
+    /** Value of one building pile step towards the stock card, in stock cards */
+    private static final double DISTANCE_WEIGHT = 0.1;
+
+    // New moves start with PRIOR_VISITS made up visits of these values. A short
+    // rollout can barely tell most moves apart, without this the search plays
+    // almost at random and mostly discards.
+    static final int PRIOR_VISITS = 20;
+    private static final double PRIOR_STOCK = 1.0;
+    private static final double PRIOR_BUILD = 0.7;
+    private static final double PRIOR_DISCARD = 0.5;
+    private static final double PRIOR_END = 0.3;
+
+    /** Longest line of moves taken from a tree (the rollout policy plays on after it) */
+    static final int MAX_PATH = 64;
+
+    private final Random random;
+    private final RolloutPolicy rolloutPolicy;
+    private final Evaluator evaluator;     // null = the hand-made reward
+    private final int[] moves = new int[Move.MAX_MOVES];
+
+    public MctsBot(long seed) {
+        this(seed, null);
+    }
+
+    /**
+     * Creates a bot that scores its rollouts with a learned evaluator
+     * @param evaluator The weights to use (the bot keeps its own copy), null for the hand-made reward
+     */
+    public MctsBot(long seed, Evaluator evaluator) {
+        this.random = new Random(seed);
+        this.rolloutPolicy = new RolloutPolicy();
+        this.evaluator = evaluator == null ? null : evaluator.copy();
+    }
+
+    /**
+     * A position in the tree, reached by playing move in the parent
+     */
+    static final class Node {
+        final int move;
+        final Node parent;
+        final boolean leaf;      // The turn (or round) is over after the move
+        Node[] children;
+        int childCount;
+        int[] untried;
+        int untriedCount;
+        int visits;
+        double reward;
+
+        Node(int move, Node parent, boolean leaf) {
+            this.move = move;
+            this.parent = parent;
+            this.leaf = leaf;
+        }
+    }
+
+    /**
+     * Plans the turn of the current player of a state
+     * The state is not changed.
+     */
+    @Override
+    public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+        long start = System.nanoTime();
+        SimState root = observed.copy();
+        root.determinize(root.getCurrent(), random);
+        Node rootNode = search(root, budget.maxIterations, deadline(start, budget));
+
+        int[] path = new int[MAX_PATH];
+        int length = 0;
+        for (Node node = mostVisited(rootNode); node != null && length < path.length; node = mostVisited(node)) {
+            path[length++] = node.move;
+        }
+        Node first = mostVisited(rootNode);
+        double expected = first == null ? 0 : averageReward(first);
+        return completePlan(root, path, length, expected, rootNode.visits,
+                System.nanoTime() - start, rolloutPolicy, random);
+    }
+
+    /**
+     * Searches from a determinized state until the iteration count or the deadline is
+     * reached and returns the root of the tree (its visits are the iterations run)
+     */
+    Node search(SimState root, int maxIterations, long deadline) {
+        int seat = root.getCurrent();
+        SimState state = new SimState(root.getSeats());
+        Node rootNode = new Node(-1, null, false);
+        expand(rootNode, root);
+
+        int iterations = 0;
+        while (iterations < maxIterations) {
+            if ((iterations & 15) == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+            state.copyFrom(root);
+            Node node = select(rootNode, state);
+            double reward = rollout(state, seat);
+            backPropagate(node, reward);
+            iterations++;
+        }
+        return rootNode;
+    }
+
+    /**
+     * Gets the System.nanoTime() at which a search that started at start has to stop
+     */
+    static long deadline(long start, SearchBudget budget) {
+        return budget.maxNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + budget.maxNanos;
+    }
+
+    // ========== SEARCH ==========
+
+    /**
+     * Walks down by UCT, playing the moves on the state, and expands one new node
+     */
+    private Node select(Node node, SimState state) {
+        while (!node.leaf) {
+            if (node.untriedCount > 0) {
+                // Expand a random untried move
+                int index = random.nextInt(node.untriedCount);
+                int move = node.untried[index];
+                node.untried[index] = node.untried[--node.untriedCount];
+
+                boolean leaf = state.endsTurn(move);
+                state.apply(move);
+                Node child = new Node(move, node, leaf || state.isRoundOver());
+                child.visits = PRIOR_VISITS;
+                child.reward = PRIOR_VISITS * prior(move);
+                if (!child.leaf) {
+                    expand(child, state);
+                }
+                node.children[node.childCount++] = child;
+                return child;
+            }
+
+            node = bestChild(node, EXPLORATION);
+            state.apply(node.move);
+        }
+        return node;
+    }
+
+    /**
+     * Starting value of a move before it is searched: play the stock card, building is
+     * better than discarding, and ending the turn with cards in hand is worst
+     */
+    static double prior(int move) {
+        switch (Move.kind(move)) {
+            case Move.STOCK_TO_BUILDING:
+                return PRIOR_STOCK;
+            case Move.HAND_TO_BUILDING:
+            case Move.DISCARD_TO_BUILDING:
+                return PRIOR_BUILD;
+            case Move.HAND_TO_DISCARD:
+                return PRIOR_DISCARD;
+            default:
+                return PRIOR_END;
+        }
+    }
+
+    private void expand(Node node, SimState state) {
+        int n = state.legalMoves(moves);
+        node.untried = new int[n];
+        System.arraycopy(moves, 0, node.untried, 0, n);
+        node.untriedCount = n;
+        node.children = new Node[n];
+    }
+
+    private Node bestChild(Node node, double exploration) {
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(Math.max(1, node.visits));
+        for (int i = 0; i < node.childCount; i++) {
+            Node child = node.children[i];
+            double value = child.reward / child.visits
+                    + exploration * Math.sqrt(logVisits / child.visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Plays the round on and scores it for the seat
+     */
+    private double rollout(SimState state, int seat) {
+        rolloutPolicy.playOut(state, ROLLOUT_TURNS, random);
+        return evaluator == null ? reward(state, seat) : evaluator.evaluate(state, seat);
+    }
+
+    /**
+     * 1 for a round win, 0 for a loss, otherwise by the lead over the best opponent
+     */
+    static double reward(SimState state, int seat) {
+        int winner = state.getWinner();
+        if (winner != SimState.NONE) {
+            return winner == seat ? 1 : 0;
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (int p = 0; p < state.getSeats(); p++) {
+            if (p != seat) {
+                best = Math.max(best, progress(state, p));
+            }
+        }
+        double lead = (progress(state, seat) - best) / LEAD_SCALE;
+        return 1 / (1 + Math.exp(-lead));
+    }
+
+    /**
+     * How far a player is: minus the stock cards left, and a little less for every card
+     * the building piles still need before the stock card fits
+     */
+    private static double progress(SimState state, int seat) {
+        int top = state.getStockTop(seat);
+        int distance = 0;
+        if (top != SimState.SKIPBO) {
+            distance = BUILDING_PILE_FULL_SIZE;
+            for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+                int next = state.getBuildingNext(pile);
+                distance = Math.min(distance, (top - next + BUILDING_PILE_FULL_SIZE) % BUILDING_PILE_FULL_SIZE);
+            }
+        }
+        return -state.getStockSize(seat) - DISTANCE_WEIGHT * distance;
+    }
+
+    private void backPropagate(Node node, double reward) {
+        while (node != null) {
+            node.visits++;
+            node.reward += reward;
+            node = node.parent;
+        }
+    }
+
+    // ========== RESULT ==========
+
+    /**
+     * Turns the most visited line of a search into a plan
+     * The line is played on the state until the turn ends or new cards are drawn or
+     * turned up (the stock card below is only a guess). If it runs out first, the
+     * rollout policy finishes the turn.
+     *
+     * @param root The (determinized) state that was searched
+     * @param path The moves of the most visited line
+     * @param expected The average reward of the first move of the line
+     */
+    static TurnPlan completePlan(SimState root, int[] path, int pathLength, double expected,
+                                 int iterations, long nanos, RolloutPolicy policy, Random random) {
+        SimState state = root.copy();
+        int seat = state.getCurrent();
+        int[] plan = new int[16];
+        int length = 0;
+        boolean complete = false;
+
+        while (!complete) {
+            int move = length < pathLength ? path[length] : policy.choose(state, random);
+            if (length == plan.length) {
+                plan = Arrays.copyOf(plan, length * 2);
+            }
+            plan[length++] = move;
+
+            boolean draws = state.revealsCards(move);
+            complete = state.endsTurn(move);
+            state.apply(move);
+            complete |= state.getWinner() == seat || state.isRoundOver();
+            if (draws && !complete) {
+                break;  // The new cards are not known yet
+            }
+        }
+        return new TurnPlan(Arrays.copyOf(plan, length), complete, iterations, nanos, expected);
+    }
+
+    /**
+     * Gets the average reward of a node without its prior visits
+     */
+    static double averageReward(Node node) {
+        return (node.reward - PRIOR_VISITS * prior(node.move)) / (node.visits - PRIOR_VISITS);
+    }
+
+    static Node mostVisited(Node node) {
+        Node best = null;
+        for (int i = 0; i < node.childCount; i++) {
+            if (best == null || node.children[i].visits > best.visits) {
+                best = node.children[i];
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,89 @@
+package bot;
+
+/**
+ * A move of the bot engine packed in one int: kind << 8 | card-or-pile << 4 | pile
+ * The kinds use the same numbers as the card actions in the journal (see storage.JournalEvent).
+ */
+public class Move {
+    public static final int STOCK_TO_BUILDING = 0;
+    public static final int HAND_TO_BUILDING = 1;
+    public static final int HAND_TO_DISCARD = 2;
+    public static final int DISCARD_TO_BUILDING = 3;
+    public static final int END_TURN = 4;
+
+    /** Ends the turn without discarding */
+    public static final int END = END_TURN << 8;
+
+    /** Upper bound on the number of legal moves in one position */
+    public static final int MAX_MOVES = 64;
+
+    private Move() {
+        throw new AssertionError("Cannot instantiate Move");
+    }
+
+    public static int stockToBuilding(int building) {
+        return (STOCK_TO_BUILDING << 8) | building;
+    }
+
+    public static int handToBuilding(int card, int building) {
+        return (HAND_TO_BUILDING << 8) | (card << 4) | building;
+    }
+
+    public static int handToDiscard(int card, int discardPile) {
+        return (HAND_TO_DISCARD << 8) | (card << 4) | discardPile;
+    }
+
+    public static int discardToBuilding(int discardPile, int building) {
+        return (DISCARD_TO_BUILDING << 8) | (discardPile << 4) | building;
+    }
+
+    public static int kind(int move) {
+        return move >> 8;
+    }
+
+    /**
+     * Gets the card value of a hand move (0 = Skip-Bo)
+     */
+    public static int card(int move) {
+        return (move >> 4) & 0x0F;
+    }
+
+    /**
+     * Gets the target building pile of a building move
+     */
+    public static int building(int move) {
+        return move & 0x0F;
+    }
+
+    /**
+     * Gets the discard pile of a move: the source of DISCARD_TO_BUILDING, the target of HAND_TO_DISCARD
+     */
+    public static int discardPile(int move) {
+        return kind(move) == DISCARD_TO_BUILDING ? (move >> 4) & 0x0F : move & 0x0F;
+    }
+
+    /**
+     * Formats a move as the PLAY command of the protocol (or END)
+     */
+    public static String toProtocol(int move) {
+        switch (kind(move)) {
+            case STOCK_TO_BUILDING:
+                return "PLAY~S~B." + building(move);
+            case HAND_TO_BUILDING:
+                return "PLAY~H." + cardName(card(move)) + "~B." + building(move);
+            case HAND_TO_DISCARD:
+                return "PLAY~H." + cardName(card(move)) + "~D." + discardPile(move);
+            case DISCARD_TO_BUILDING:
+                return "PLAY~D." + discardPile(move) + "~B." + building(move);
+            default:
+                return "END";
+        }
+    }
+
+    /**
+     * Gets the protocol name of a card value ("SB" or "1"-"12")
+     */
+    public static String cardName(int card) {
+        return card == SimState.SKIPBO ? "SB" : String.valueOf(card);
+    }
+}
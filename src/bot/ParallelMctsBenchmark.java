@@ -0,0 +1,81 @@
+package bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how root parallel and tree parallel MCTS scale with the number of threads
+ *
+ * Builds a fixed corpus of positions (rounds played by the rollout policy, stopped
+ * at random turns), then plans every position with a time budget for 1 to N threads.
+ * Prints playouts (search iterations) per second and the speedup over one thread.
+ * Usage: ParallelMctsBenchmark [maxThreads] [millisPerDecision] [positions] [seed]
+ */
+public class ParallelMctsBenchmark {
+
+    public static void main(String[] args) {
+        int maxThreads = args.length >= 1 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long millis = args.length >= 2 ? Long.parseLong(args[1]) : 50;
+        int positionCount = args.length >= 3 ? Integer.parseInt(args[2]) : 40;
+        long seed = args.length >= 4 ? Long.parseLong(args[3]) : 42;
+
+        List<SimState> positions = buildCorpus(positionCount, seed);
+        SearchBudget budget = SearchBudget.millis(millis);
+        System.out.printf("%d positions, %s per decision, %d cores%n",
+                positions.size(), budget, Runtime.getRuntime().availableProcessors());
+
+        // Warm up the JIT on both searches
+        try (RootParallelMcts root = new RootParallelMcts(1, seed);
+             TreeParallelMcts tree = new TreeParallelMcts(1, seed)) {
+            measure(root, positions, budget);
+            measure(tree, positions, budget);
+        }
+
+        System.out.printf("%-8s %16s %8s %16s %8s%n", "Threads", "Root playouts/s", "Speedup",
+                "Tree playouts/s", "Speedup");
+        double rootBase = 0;
+        double treeBase = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            double rootRate;
+            double treeRate;
+            try (RootParallelMcts root = new RootParallelMcts(threads, seed);
+                 TreeParallelMcts tree = new TreeParallelMcts(threads, seed)) {
+                rootRate = measure(root, positions, budget);
+                treeRate = measure(tree, positions, budget);
+            }
+            if (threads == 1) {
+                rootBase = rootRate;
+                treeBase = treeRate;
+            }
+            System.out.printf("%-8d %16.0f %7.2fx %16.0f %7.2fx%n",
+                    threads, rootRate, rootRate / rootBase, treeRate, treeRate / treeBase);
+        }
+    }
+
+    /**
+     * Plans every position once and returns the iterations per second
+     */
+    private static double measure(TurnPlanner planner, List<SimState> positions, SearchBudget budget) {
+        long iterations = 0;
+        long start = System.nanoTime();
+        for (SimState position : positions) {
+            iterations += planner.planTurn(position, budget).getIterations();
+        }
+        return iterations / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static List<SimState> buildCorpus(int count, long seed) {
+        Random random = new Random(seed);
+        RolloutPolicy policy = new RolloutPolicy();
+        List<SimState> positions = new ArrayList<>();
+        while (positions.size() < count) {
+            SimState state = SimState.deal(2 + random.nextInt(3), random);
+            policy.playOut(state, random.nextInt(40), random);
+            if (!state.isRoundOver()) {
+                positions.add(state);
+            }
+        }
+        return positions;
+    }
+}
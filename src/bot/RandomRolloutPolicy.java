@@ -0,0 +1,52 @@
+package bot;
+
+import java.util.Random;
+
+/**
+ * The first rollout policy, kept as the baseline of RolloutBenchmark
+ * Always plays the stock card when it fits, otherwise mostly a random building
+ * play, otherwise a random discard (or END with an empty hand). Goes through
+ * SimState.legalMoves for every move.
+ */
+public class RandomRolloutPolicy {
+    private final int[] moves = new int[Move.MAX_MOVES];
+
+    /**
+     * Chooses a move for the current player
+     */
+    public int choose(SimState state, Random random) {
+        int n = state.legalMoves(moves);
+        int builds = 0;
+        int discards = 0;
+        for (int i = 0; i < n; i++) {
+            int kind = Move.kind(moves[i]);
+            if (kind == Move.STOCK_TO_BUILDING) {
+                return moves[i];
+            }
+            if (kind == Move.HAND_TO_DISCARD) {
+                discards++;
+            } else if (kind != Move.END_TURN) {
+                builds++;
+            }
+        }
+
+        // Moves are ordered: stock, hand and discard builds, hand discards, END
+        if (builds > 0 && (discards == 0 || random.nextInt(4) != 0)) {
+            return moves[random.nextInt(builds)];
+        }
+        if (discards > 0) {
+            return moves[builds + random.nextInt(discards)];
+        }
+        return Move.END;
+    }
+
+    /**
+     * Plays until the round is over or maxTurns more turns were ended
+     */
+    public void playOut(SimState state, int maxTurns, Random random) {
+        int lastTurn = state.getTurns() + maxTurns;
+        while (!state.isRoundOver() && state.getTurns() < lastTurn) {
+            state.apply(choose(state, random));
+        }
+    }
+}
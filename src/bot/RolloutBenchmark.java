@@ -0,0 +1,143 @@
+package bot;
+
+import java.util.Random;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * Measures the rollout policies: playout speed and strength against the AIClient strategy
+ *
+ * Speed: deals a corpus of rounds (2-4 seats) and plays every one out to the end with
+ * the policy for all seats, over and over, copying the dealt state into one scratch
+ * state (nothing is allocated while measuring). Prints whole rounds per second, ns per
+ * move and how many rounds stalled.
+ * Strength: one seat plays the policy move by move, the others play HeuristicPlayer
+ * (the strategy of AIClient); seats and first player are random per round and a
+ * stalled round goes to the fewest stock cards (a tie counts half), like BotMatch.
+ * Usage: RolloutBenchmark [rounds] [seed]
+ */
+public class RolloutBenchmark {
+    private static final int CORPUS = 512;
+    private static final long NANOS_PER_ROW = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        int rounds = args.length >= 1 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length >= 2 ? Long.parseLong(args[1]) : 42;
+
+        Random random = new Random(seed);
+        SimState[] corpus = new SimState[CORPUS];
+        for (int i = 0; i < CORPUS; i++) {
+            corpus[i] = SimState.deal(2 + random.nextInt(3), random);
+        }
+        RolloutPolicy greedy = new RolloutPolicy();
+        RandomRolloutPolicy baseline = new RandomRolloutPolicy();
+
+        // Warm up the JIT on both
+        for (int i = 0; i < 3; i++) {
+            measure(corpus, greedy::choose, seed, NANOS_PER_ROW / 5);
+            measure(corpus, baseline::choose, seed, NANOS_PER_ROW / 5);
+        }
+
+        System.out.printf("Full-round playouts, %d dealt rounds of 2-4 seats%n", CORPUS);
+        System.out.printf("%-24s %12s %10s %10s %10s%n", "Policy", "Playouts/s", "ns/move", "Moves", "Stalled");
+        System.out.println(measure(corpus, baseline::choose, seed, NANOS_PER_ROW).toRow("Random (previous)"));
+        System.out.println(measure(corpus, greedy::choose, seed, NANOS_PER_ROW).toRow("Greedy (RolloutPolicy)"));
+
+        System.out.printf("%nAgainst HeuristicPlayer, %d rounds per row%n", rounds);
+        System.out.printf("%-24s %6s %8s %13s %8s%n", "Policy", "Seats", "Win rate", "95% interval", "Stalled");
+        for (int seats : new int[]{2, 4}) {
+            headToHead("Random (previous)", baseline::choose, seats, rounds, seed);
+            headToHead("Greedy (RolloutPolicy)", greedy::choose, seats, rounds, seed);
+        }
+    }
+
+    // ========== SPEED ==========
+
+    private static final class Speed {
+        long playouts;
+        long moves;
+        long stalled;
+        long nanos;
+
+        String toRow(String name) {
+            return String.format("%-24s %12.0f %10.1f %10.1f %9.1f%%", name, playouts / (nanos / 1e9),
+                    (double) nanos / moves, (double) moves / playouts, 100.0 * stalled / playouts);
+        }
+    }
+
+    /**
+     * Plays the corpus out with the policy until the time is up
+     */
+    private static Speed measure(SimState[] corpus, ToIntBiFunction<SimState, Random> policy, long seed, long nanos) {
+        Random random = new Random(seed);
+        SimState[] scratch = new SimState[5];
+        for (int seats = 2; seats < scratch.length; seats++) {
+            scratch[seats] = new SimState(seats);
+        }
+        Speed speed = new Speed();
+        long start = System.nanoTime();
+        do {
+            for (SimState dealt : corpus) {
+                SimState state = scratch[dealt.getSeats()];
+                state.copyFrom(dealt);
+                while (!state.isRoundOver() && state.getTurns() < BotMatch.MAX_TURNS) {
+                    state.apply(policy.applyAsInt(state, random));
+                    speed.moves++;
+                }
+                speed.playouts++;
+                if (state.getWinner() == SimState.NONE) {
+                    speed.stalled++;
+                }
+            }
+            speed.nanos = System.nanoTime() - start;
+        } while (speed.nanos < nanos);
+        return speed;
+    }
+
+    // ========== STRENGTH ==========
+
+    private static void headToHead(String name, ToIntBiFunction<SimState, Random> policy, int seats, int rounds, long seed) {
+        Random random = new Random(seed);
+        HeuristicPlayer heuristic = new HeuristicPlayer(seed + 1);
+        double wins = 0;
+        int stalled = 0;
+        for (int r = 0; r < rounds; r++) {
+            SimState state = SimState.deal(seats, random);
+            int policySeat = random.nextInt(seats);
+            while (!state.isRoundOver() && state.getTurns() < BotMatch.MAX_TURNS) {
+                if (state.getCurrent() == policySeat) {
+                    state.apply(policy.applyAsInt(state, random));
+                } else {
+                    heuristic.playTurn(state);
+                }
+            }
+            if (state.getWinner() == SimState.NONE) {
+                stalled++;
+                wins += stalledShare(state, policySeat);
+            } else if (state.getWinner() == policySeat) {
+                wins++;
+            }
+        }
+        double rate = wins / rounds;
+        double margin = 1.96 * Math.sqrt(rate * (1 - rate) / rounds);
+        System.out.printf("%-24s %6d %7.1f%% %5.1f-%5.1f%% %8d%n", name, seats, rate * 100,
+                Math.max(0, rate - margin) * 100, Math.min(1, rate + margin) * 100, stalled);
+    }
+
+    /**
+     * Gets the share of a stalled round for a seat: the fewest stock cards win, ties split
+     */
+    private static double stalledShare(SimState state, int seat) {
+        int least = Integer.MAX_VALUE;
+        int tied = 0;
+        for (int p = 0; p < state.getSeats(); p++) {
+            int stock = state.getStockSize(p);
+            if (stock < least) {
+                least = stock;
+                tied = 1;
+            } else if (stock == least) {
+                tied++;
+            }
+        }
+        return state.getStockSize(seat) == least ? 1.0 / tied : 0;
+    }
+}
@@ -0,0 +1,149 @@
+package bot;
+
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * The quick policy that plays out the rest of a round during a search
+ *
+ * Greedy and stock-first, read straight from the state without listing the legal moves:
+ * 1. the stock card when it fits;
+ * 2. a number card (discard tops before the hand) on the building pile that is the
+ *    fewest steps away from the stock card, so the stock card comes closer;
+ * 3. Skip-Bo cards only to close that gap, when there are enough of them to close it;
+ * 4. a number card on any other building pile it fits;
+ * 5. otherwise discard by sequence: the hand card and discard pile where the card goes
+ *    on one higher (a run that plays off in order), then on the same value, then on an
+ *    empty pile; the highest card first. Skip-Bo cards are never discarded; a hand of
+ *    only Skip-Bo cards builds on the pile nearest to the stock card (ending the turn
+ *    instead would keep the seat from ever drawing, and a round of such seats from
+ *    ending).
+ *
+ * Cards are handled as bit masks of values, there are no move lists and nothing is
+ * allocated. The policy is deterministic: rollouts differ through the determinized
+ * hidden cards, the random is only there so policies can be swapped.
+ */
+public class RolloutPolicy {
+    private static final int NUMBER_CARDS = ~(1 << SimState.SKIPBO);
+
+    /**
+     * Chooses a move for the current player
+     */
+    public int choose(SimState state, Random random) {
+        int seat = state.getCurrent();
+        int stock = state.getStockTop(seat);
+
+        // Stock card first
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            if (state.fits(stock, pile)) {
+                return Move.stockToBuilding(pile);
+            }
+        }
+
+        // Values on the discard tops and in the hand
+        int discardMask = 0;
+        int discardSkipBo = -1;
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int top = state.getDiscardTop(seat, pile);
+            if (top >= 0) {
+                discardMask |= 1 << top;
+                if (top == SimState.SKIPBO) {
+                    discardSkipBo = pile;
+                }
+            }
+        }
+        int handMask = 0;
+        for (int value = 0; value < SimState.VALUES; value++) {
+            if (state.getHandCount(seat, value) > 0) {
+                handMask |= 1 << value;
+            }
+        }
+        int numbers = (discardMask | handMask) & NUMBER_CARDS;
+
+        // The pile nearest to the stock card, and the nearest one a number card fits on
+        int nearest = 0;
+        int nearestSteps = BUILDING_PILE_FULL_SIZE;
+        int playable = -1;
+        int playableSteps = BUILDING_PILE_FULL_SIZE;
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            int next = state.getBuildingNext(pile);
+            int steps = stock - next;
+            if (steps < 0) {
+                steps += BUILDING_PILE_FULL_SIZE;
+            }
+            if (steps < nearestSteps) {
+                nearest = pile;
+                nearestSteps = steps;
+            }
+            if ((numbers & (1 << next)) != 0 && steps < playableSteps) {
+                playable = pile;
+                playableSteps = steps;
+            }
+        }
+
+        // Close the gap to the stock card with Skip-Bo cards only when they suffice
+        if (playable != nearest) {
+            int skipBos = state.getHandCount(seat, SimState.SKIPBO) + (discardSkipBo >= 0 ? 1 : 0);
+            if (nearestSteps <= skipBos) {
+                return discardSkipBo >= 0 ? Move.discardToBuilding(discardSkipBo, nearest)
+                        : Move.handToBuilding(SimState.SKIPBO, nearest);
+            }
+        }
+        if (playable >= 0) {
+            int next = state.getBuildingNext(playable);
+            if ((discardMask & (1 << next)) != 0) {
+                return Move.discardToBuilding(discardPileWith(state, seat, next), playable);
+            }
+            return Move.handToBuilding(next, playable);
+        }
+        if ((handMask & NUMBER_CARDS) == 0 && handMask != 0) {
+            // Only Skip-Bo cards: holding on to them would stop this seat from drawing
+            return Move.handToBuilding(SimState.SKIPBO, nearest);
+        }
+        return discard(state, seat, handMask & NUMBER_CARDS);
+    }
+
+    /**
+     * Plays until the round is over or maxTurns more turns were ended
+     */
+    public void playOut(SimState state, int maxTurns, Random random) {
+        int lastTurn = state.getTurns() + maxTurns;
+        while (!state.isRoundOver() && state.getTurns() < lastTurn) {
+            state.apply(choose(state, random));
+        }
+    }
+
+    /**
+     * Picks the discard that best keeps the discard piles in sequence (END with an empty hand)
+     */
+    private static int discard(SimState state, int seat, int numbers) {
+        if (numbers == 0) {
+            return Move.END;
+        }
+        int best = -1;
+        int bestScore = -1;
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int top = state.getDiscardTop(seat, pile);
+            // One higher on top makes a run, the same value a pair, an empty pile is free
+            int card = top > 1 && (numbers & (1 << (top - 1))) != 0 ? top - 1
+                    : top > 0 && (numbers & (1 << top)) != 0 ? top
+                    : 31 - Integer.numberOfLeadingZeros(numbers);
+            int rank = card == top - 1 ? 3 : card == top ? 2 : top < 0 ? 1 : 0;
+            int score = rank << 4 | card;
+            if (score > bestScore) {
+                bestScore = score;
+                best = Move.handToDiscard(card, pile);
+            }
+        }
+        return best;
+    }
+
+    private static int discardPileWith(SimState state, int seat, int value) {
+        int pile = 0;
+        while (state.getDiscardTop(seat, pile) != value) {
+            pile++;
+        }
+        return pile;
+    }
+}
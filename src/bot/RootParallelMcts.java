@@ -0,0 +1,159 @@
+package bot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * MCTS with root parallelization: every worker searches its own tree on its own
+ * determinization, and the trees are merged at the end
+ *
+ * The workers share nothing while searching, so they scale without contention. The
+ * merged line follows the move with the most visits summed over all trees, one depth
+ * at a time. An iteration budget is split over the workers, a time budget applies to each.
+ */
+public class RootParallelMcts implements TurnPlanner, AutoCloseable {
+    private final int threads;
+    private final MctsBot[] workers;
+    private final SimState[] roots;
+    private final ExecutorService pool;
+    private final Random random;
+    private final RolloutPolicy rolloutPolicy = new RolloutPolicy();
+
+    public RootParallelMcts(int threads, long seed) {
+        this.threads = threads;
+        this.workers = new MctsBot[threads];
+        this.roots = new SimState[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new MctsBot(seed + i);
+        }
+        this.random = new Random(seed - 1);
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "mcts-root-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+        long start = System.nanoTime();
+        long deadline = MctsBot.deadline(start, budget);
+        int seat = observed.getCurrent();
+
+        List<Future<MctsBot.Node>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            // Split the iterations, the first workers take the remainder
+            int iterations = budget.maxIterations == Integer.MAX_VALUE ? Integer.MAX_VALUE
+                    : budget.maxIterations / threads + (i < budget.maxIterations % threads ? 1 : 0);
+            if (roots[i] == null || roots[i].getSeats() != observed.getSeats()) {
+                roots[i] = new SimState(observed.getSeats());
+            }
+            roots[i].copyFrom(observed);
+            roots[i].determinize(seat, random);
+            MctsBot worker = workers[i];
+            SimState root = roots[i];
+            futures.add(pool.submit(() -> worker.search(root, iterations, deadline)));
+        }
+
+        MctsBot.Node[] trees = new MctsBot.Node[threads];
+        int totalIterations = 0;
+        for (int i = 0; i < threads; i++) {
+            trees[i] = await(futures.get(i));
+            totalIterations += trees[i].visits;
+        }
+
+        // Follow the most visited move over all trees, one depth at a time
+        int[] path = new int[MctsBot.MAX_PATH];
+        int length = 0;
+        double expected = 0;
+        MctsBot.Node[] level = trees;
+        while (length < path.length) {
+            int move = mostVisitedMove(level);
+            if (move < 0) {
+                break;
+            }
+            MctsBot.Node[] next = new MctsBot.Node[level.length];
+            double reward = 0;
+            int visits = 0;
+            for (int t = 0; t < level.length; t++) {
+                next[t] = level[t] == null ? null : child(level[t], move);
+                if (next[t] != null) {
+                    reward += next[t].reward - MctsBot.PRIOR_VISITS * MctsBot.prior(move);
+                    visits += next[t].visits - MctsBot.PRIOR_VISITS;
+                }
+            }
+            if (length == 0) {
+                expected = reward / visits;
+            }
+            path[length++] = move;
+            level = next;
+        }
+
+        // Any determinization will do, the moves of this turn only use known cards
+        return MctsBot.completePlan(roots[0], path, length, expected, totalIterations,
+                System.nanoTime() - start, rolloutPolicy, random);
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    // ========== HELPER METHODS ==========
+
+    private static MctsBot.Node await(Future<MctsBot.Node> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+    }
+
+    /**
+     * Gets the move with the most visits summed over the children of the nodes (-1 if none)
+     */
+    private static int mostVisitedMove(MctsBot.Node[] nodes) {
+        int bestMove = -1;
+        long bestVisits = -1;
+        for (MctsBot.Node node : nodes) {
+            if (node == null) {
+                continue;
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                int move = node.children[i].move;
+                long visits = 0;
+                for (MctsBot.Node other : nodes) {
+                    MctsBot.Node child = other == null ? null : child(other, move);
+                    if (child != null) {
+                        visits += child.visits;
+                    }
+                }
+                if (visits > bestVisits) {
+                    bestVisits = visits;
+                    bestMove = move;
+                }
+            }
+        }
+        return bestMove;
+    }
+
+    private static MctsBot.Node child(MctsBot.Node node, int move) {
+        for (int i = 0; i < node.childCount; i++) {
+            if (node.children[i].move == move) {
+                return node.children[i];
+            }
+        }
+        return null;
+    }
+}
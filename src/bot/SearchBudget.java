@@ -0,0 +1,54 @@
+package bot;
+
+/**
+ * How much work a bot may spend on one decision: a number of iterations, a time, or both
+ * The search stops at whichever limit is reached first.
+ */
+public class SearchBudget {
+    public final int maxIterations;
+    public final long maxNanos;
+
+    public SearchBudget(int maxIterations, long maxNanos) {
+        this.maxIterations = maxIterations;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * A budget of a fixed number of search iterations (tree nodes)
+     */
+    public static SearchBudget iterations(int count) {
+        return new SearchBudget(count, Long.MAX_VALUE);
+    }
+
+    /**
+     * A budget of wall time per decision
+     */
+    public static SearchBudget millis(long millis) {
+        return new SearchBudget(Integer.MAX_VALUE, millis * 1_000_000L);
+    }
+
+    /**
+     * Gets a part of this budget (at least one iteration), for a bot that has to hurry
+     * @param factor The part, 1 is the whole budget
+     */
+    public SearchBudget scaled(double factor) {
+        if (factor >= 1) {
+            return this;
+        }
+        int iterations = maxIterations == Integer.MAX_VALUE
+                ? maxIterations : Math.max(1, (int) (maxIterations * factor));
+        long nanos = maxNanos == Long.MAX_VALUE ? maxNanos : Math.max(1, (long) (maxNanos * factor));
+        return new SearchBudget(iterations, nanos);
+    }
+
+    @Override
+    public String toString() {
+        if (maxNanos == Long.MAX_VALUE) {
+            return maxIterations + " iterations";
+        }
+        if (maxIterations == Integer.MAX_VALUE) {
+            return (maxNanos / 1_000_000) + " ms";
+        }
+        return maxIterations + " iterations / " + (maxNanos / 1_000_000) + " ms";
+    }
+}
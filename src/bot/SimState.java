@@ -0,0 +1,534 @@
+package bot;
+
+import model.GameSnapshot;
+
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * Compact copy of one Skip-Bo round for searching and simulating
+ *
+ * Same rules as model.Game (played through GameController): a card goes on a building
+ * pile when it is one higher than the top (Skip-Bo always fits), a pile of 12 is
+ * cleared, a hand that is emptied by building plays is refilled, a discard ends the
+ * turn, and the next player draws up to 5 cards. Emptying the stock pile wins the round.
+ *
+ * Cards are bytes: 0 is Skip-Bo, 1-12 are numbers. Hands only keep the count of each
+ * value (the order does not matter). All piles live in one byte array, so copying a
+ * state is a single arraycopy and playing a move never allocates.
+ */
+public class SimState {
+    public static final int SKIPBO = 0;
+    public static final int VALUES = 13;  // Skip-Bo and 1-12
+
+    // The deck of CardGenerator: 18 Skip-Bo cards and every number in 3 colors, 3 times
+    private static final int SKIPBO_CARDS = 18;
+    private static final int NUMBER_COPIES = 9;
+    public static final int DECK_SIZE = SKIPBO_CARDS + NUMBER_COPIES * BUILDING_PILE_FULL_SIZE;
+
+    // The draw pile and every discard pile can hold the whole deck
+    private static final int PILE_CAPACITY = DECK_SIZE;
+    private static final int STOCK_CAPACITY = STOCK_SIZE_SMALL_GAME;
+
+    // Layout of one seat in data
+    private static final int STOCK_SIZE = 0;
+    private static final int STOCK = 1;
+    private static final int HAND_SIZE_AT = STOCK + STOCK_CAPACITY;
+    private static final int HAND = HAND_SIZE_AT + 1;
+    private static final int DISCARD_SIZES = HAND + VALUES;
+    private static final int DISCARDS = DISCARD_SIZES + NUM_DISCARD_PILES;
+    private static final int SEAT_BYTES = DISCARDS + NUM_DISCARD_PILES * PILE_CAPACITY;
+
+    // Layout of data: building pile tops, draw pile, then the seats
+    private static final int BUILDING = 0;
+    private static final int DRAW = BUILDING + NUM_BUILDING_PILES;
+    private static final int SEATS = DRAW + DECK_SIZE;
+
+    /** No winner (yet) */
+    public static final int NONE = -1;
+
+    private final int seats;
+    private final byte[] data;
+    private int current;
+    private int drawPosition;
+    private int winner = NONE;
+    private int buildsThisTurn;
+    private int turnsWithoutBuild;
+    private int turns;
+
+    public SimState(int seats) {
+        this.seats = seats;
+        this.data = new byte[SEATS + seats * SEAT_BYTES];
+    }
+
+    /**
+     * Deals a new round like Game does: shuffled deck, stock piles from the top, first player draws
+     */
+    public static SimState deal(int seats, Random random) {
+        SimState state = new SimState(seats);
+        byte[] deck = new byte[DECK_SIZE];
+        int n = 0;
+        for (int i = 0; i < SKIPBO_CARDS; i++) {
+            deck[n++] = SKIPBO;
+        }
+        for (int copy = 0; copy < NUMBER_COPIES; copy++) {
+            for (int value = 1; value <= 12; value++) {
+                deck[n++] = (byte) value;
+            }
+        }
+        shuffle(deck, 0, DECK_SIZE, random);
+        System.arraycopy(deck, 0, state.data, DRAW, DECK_SIZE);
+
+        int stock = seats <= 4 ? STOCK_SIZE_SMALL_GAME : STOCK_SIZE_LARGE_GAME;
+        for (int p = 0; p < seats; p++) {
+            int base = state.seat(p);
+            System.arraycopy(state.data, DRAW + state.drawPosition, state.data, base + STOCK, stock);
+            state.data[base + STOCK_SIZE] = (byte) stock;
+            state.drawPosition += stock;
+        }
+        state.current = random.nextInt(seats);
+        state.fillHand(state.current);
+        return state;
+    }
+
+    /**
+     * Copies the round of a real game (see GameSnapshot)
+     * The copy is exact, hidden cards included: call determinize before handing it to
+     * a player, so it only knows what it could know by counting cards.
+     */
+    public static SimState fromSnapshot(GameSnapshot snapshot) {
+        SimState state = new SimState(snapshot.getPlayerNames().length);
+        state.copyFrom(snapshot);
+        return state;
+    }
+
+    /**
+     * Like fromSnapshot, but into this state (it needs the same number of seats)
+     */
+    public void copyFrom(GameSnapshot snapshot) {
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            data[BUILDING + b] = (byte) (snapshot.getBuildingPileSize(b) % BUILDING_PILE_FULL_SIZE);
+        }
+
+        // The draw pile lies at the end of its area, next card first
+        byte[] drawPile = snapshot.getDrawPileBytes();
+        drawPosition = DECK_SIZE - drawPile.length;
+        copyValues(drawPile, data, DRAW + drawPosition);
+
+        for (int p = 0; p < seats; p++) {
+            int base = seat(p);
+            byte[] stock = snapshot.getStockPileBytes(p);
+            data[base + STOCK_SIZE] = (byte) stock.length;
+            copyValues(stock, data, base + STOCK);
+            byte[] hand = snapshot.getHandBytes(p);
+            data[base + HAND_SIZE_AT] = (byte) hand.length;
+            for (int value = 0; value < VALUES; value++) {
+                data[base + HAND + value] = 0;
+            }
+            for (byte card : hand) {
+                data[base + HAND + GameSnapshot.valueOf(card)]++;
+            }
+            for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+                byte[] pile = snapshot.getDiscardPileBytes(p, d);
+                data[base + DISCARD_SIZES + d] = (byte) pile.length;
+                copyValues(pile, data, base + DISCARDS + d * PILE_CAPACITY);
+            }
+        }
+        current = snapshot.getCurrentPlayerIndex();
+        winner = NONE;
+        buildsThisTurn = 0;
+        turnsWithoutBuild = 0;
+        turns = 0;
+    }
+
+    /**
+     * Makes this state an exact copy of another state with the same number of seats
+     */
+    public void copyFrom(SimState other) {
+        System.arraycopy(other.data, 0, data, 0, data.length);
+        current = other.current;
+        drawPosition = other.drawPosition;
+        winner = other.winner;
+        buildsThisTurn = other.buildsThisTurn;
+        turnsWithoutBuild = other.turnsWithoutBuild;
+        turns = other.turns;
+    }
+
+    public SimState copy() {
+        SimState copy = new SimState(seats);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    // ========== QUERIES ==========
+
+    public int getSeats() {
+        return seats;
+    }
+
+    public int getCurrent() {
+        return current;
+    }
+
+    /**
+     * Gets the seat that emptied its stock pile, or NONE
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Checks if the round has a winner, or nobody can build anymore
+     * (the draw pile is empty and two full rounds of turns went by without a building play)
+     */
+    public boolean isRoundOver() {
+        return winner != NONE || (drawPosition == DECK_SIZE && turnsWithoutBuild >= 2 * seats);
+    }
+
+    /**
+     * Gets the number of turns that were ended in this round
+     */
+    public int getTurns() {
+        return turns;
+    }
+
+    /**
+     * Gets the value the next card on a building pile must have (1-12)
+     */
+    public int getBuildingNext(int pile) {
+        return data[BUILDING + pile] + 1;
+    }
+
+    public int getStockSize(int seat) {
+        return data[seat(seat) + STOCK_SIZE];
+    }
+
+    /**
+     * Gets the top card of a stock pile, or -1 if it is empty
+     */
+    public int getStockTop(int seat) {
+        int base = seat(seat);
+        int size = data[base + STOCK_SIZE];
+        return size == 0 ? -1 : data[base + STOCK + size - 1];
+    }
+
+    public int getHandSize(int seat) {
+        return data[seat(seat) + HAND_SIZE_AT];
+    }
+
+    /**
+     * Gets how many cards of a value (0 = Skip-Bo) a seat holds
+     */
+    public int getHandCount(int seat, int value) {
+        return data[seat(seat) + HAND + value];
+    }
+
+    public int getDiscardSize(int seat, int pile) {
+        return data[seat(seat) + DISCARD_SIZES + pile] & 0xFF;
+    }
+
+    /**
+     * Gets the top card of a discard pile, or -1 if it is empty
+     */
+    public int getDiscardTop(int seat, int pile) {
+        int base = seat(seat);
+        int size = data[base + DISCARD_SIZES + pile] & 0xFF;
+        return size == 0 ? -1 : data[base + DISCARDS + pile * PILE_CAPACITY + size - 1];
+    }
+
+    /**
+     * Gets a card of a discard pile, 0 is the bottom card
+     */
+    public int getDiscardCard(int seat, int pile, int index) {
+        return data[seat(seat) + DISCARDS + pile * PILE_CAPACITY + index];
+    }
+
+    public int getDrawPileSize() {
+        return DECK_SIZE - drawPosition;
+    }
+
+    /**
+     * Checks if a card fits on a building pile
+     */
+    public boolean fits(int card, int pile) {
+        return card == SKIPBO || card == data[BUILDING + pile] + 1;
+    }
+
+    // ========== MOVES ==========
+
+    /**
+     * Writes the legal moves of the current player into moves and returns how many there are
+     * Building piles with the same top and empty discard piles are equivalent, only the
+     * first of them is offered. END (ending the turn without discarding) is always legal.
+     *
+     * @param moves Room for at least Move.MAX_MOVES moves
+     */
+    public int legalMoves(int[] moves) {
+        int n = 0;
+        int base = seat(current);
+        int distinctPiles = distinctBuildingPiles();
+
+        // Stock to building pile
+        int stockSize = data[base + STOCK_SIZE];
+        if (stockSize > 0) {
+            int card = data[base + STOCK + stockSize - 1];
+            for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+                if ((distinctPiles & (1 << b)) != 0 && fits(card, b)) {
+                    moves[n++] = Move.stockToBuilding(b);
+                }
+            }
+        }
+
+        // Hand to building pile
+        int handSize = data[base + HAND_SIZE_AT];
+        for (int value = 0; value < VALUES && handSize > 0; value++) {
+            if (data[base + HAND + value] == 0) {
+                continue;
+            }
+            for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+                if ((distinctPiles & (1 << b)) != 0 && fits(value, b)) {
+                    moves[n++] = Move.handToBuilding(value, b);
+                }
+            }
+        }
+
+        // Discard pile to building pile
+        for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+            int top = getDiscardTop(current, d);
+            if (top < 0) {
+                continue;
+            }
+            for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+                if ((distinctPiles & (1 << b)) != 0 && fits(top, b)) {
+                    moves[n++] = Move.discardToBuilding(d, b);
+                }
+            }
+        }
+
+        // Hand to discard pile (ends the turn)
+        if (handSize > 0) {
+            boolean emptyOffered = false;
+            for (int d = 0; d < NUM_DISCARD_PILES; d++) {
+                if (getDiscardSize(current, d) == 0) {
+                    if (emptyOffered) {
+                        continue;
+                    }
+                    emptyOffered = true;
+                }
+                for (int value = 0; value < VALUES; value++) {
+                    if (data[base + HAND + value] > 0) {
+                        moves[n++] = Move.handToDiscard(value, d);
+                    }
+                }
+            }
+        }
+
+        moves[n++] = Move.END;
+        return n;
+    }
+
+    /**
+     * Plays a legal move of the current player
+     */
+    public void apply(int move) {
+        int base = seat(current);
+        switch (Move.kind(move)) {
+            case Move.STOCK_TO_BUILDING: {
+                int size = data[base + STOCK_SIZE] - 1;
+                data[base + STOCK_SIZE] = (byte) size;
+                build(Move.building(move));
+                if (size == 0) {
+                    winner = current;
+                }
+                refillEmptyHand();
+                break;
+            }
+            case Move.HAND_TO_BUILDING: {
+                data[base + HAND + Move.card(move)]--;
+                data[base + HAND_SIZE_AT]--;
+                build(Move.building(move));
+                refillEmptyHand();
+                break;
+            }
+            case Move.DISCARD_TO_BUILDING: {
+                int pile = Move.discardPile(move);
+                data[base + DISCARD_SIZES + pile]--;
+                build(Move.building(move));
+                refillEmptyHand();
+                break;
+            }
+            case Move.HAND_TO_DISCARD: {
+                int card = Move.card(move);
+                int pile = Move.discardPile(move);
+                data[base + HAND + card]--;
+                data[base + HAND_SIZE_AT]--;
+                int size = data[base + DISCARD_SIZES + pile] & 0xFF;
+                data[base + DISCARDS + pile * PILE_CAPACITY + size] = (byte) card;
+                data[base + DISCARD_SIZES + pile] = (byte) (size + 1);
+                endTurn();
+                break;
+            }
+            default:
+                endTurn();
+        }
+    }
+
+    /**
+     * Checks if a move ends the turn of the player who plays it
+     */
+    public boolean endsTurn(int move) {
+        int kind = Move.kind(move);
+        return kind == Move.HAND_TO_DISCARD || kind == Move.END_TURN;
+    }
+
+    /**
+     * Checks if a move makes the current player draw new cards
+     * (a building play that leaves the hand empty while the draw pile has cards)
+     */
+    public boolean drawsCards(int move) {
+        int kind = Move.kind(move);
+        if (endsTurn(move) || drawPosition == DECK_SIZE) {
+            return false;
+        }
+        int handSize = data[seat(current) + HAND_SIZE_AT];
+        return handSize == 0 || (kind == Move.HAND_TO_BUILDING && handSize == 1);
+    }
+
+    /**
+     * Checks if a move shows the current player cards it could not see before:
+     * it draws new cards, or it plays the stock card and turns up the one below
+     */
+    public boolean revealsCards(int move) {
+        return drawsCards(move)
+                || (Move.kind(move) == Move.STOCK_TO_BUILDING && getStockSize(current) > 1);
+    }
+
+    // ========== HIDDEN INFORMATION ==========
+
+    /**
+     * Shuffles everything the viewer cannot see: the hands of the other players,
+     * all stock piles below their top card and the draw pile
+     * The number of cards in every place stays the same, so the state stays legal.
+     */
+    public void determinize(int viewer, Random random) {
+        determinize(viewer, random, new byte[DECK_SIZE]);
+    }
+
+    /**
+     * Like determinize(viewer, random), but collects the hidden cards in pool
+     * instead of a new array, so it does not allocate
+     *
+     * @param pool Room for DECK_SIZE cards, its contents are overwritten
+     */
+    public void determinize(int viewer, Random random, byte[] pool) {
+        int n = 0;
+        for (int p = 0; p < seats; p++) {
+            int base = seat(p);
+            int stockSize = data[base + STOCK_SIZE];
+            for (int i = 0; i < stockSize - 1; i++) {
+                pool[n++] = data[base + STOCK + i];
+            }
+            if (p != viewer) {
+                for (int value = 0; value < VALUES; value++) {
+                    for (int c = 0; c < data[base + HAND + value]; c++) {
+                        pool[n++] = (byte) value;
+                    }
+                }
+            }
+        }
+        System.arraycopy(data, DRAW + drawPosition, pool, n, DECK_SIZE - drawPosition);
+        n += DECK_SIZE - drawPosition;
+        shuffle(pool, 0, n, random);
+
+        // Deal the pool back in the same places
+        int next = 0;
+        for (int p = 0; p < seats; p++) {
+            int base = seat(p);
+            int stockSize = data[base + STOCK_SIZE];
+            for (int i = 0; i < stockSize - 1; i++) {
+                data[base + STOCK + i] = pool[next++];
+            }
+            if (p != viewer) {
+                int handSize = data[base + HAND_SIZE_AT];
+                for (int value = 0; value < VALUES; value++) {
+                    data[base + HAND + value] = 0;
+                }
+                for (int c = 0; c < handSize; c++) {
+                    data[base + HAND + pool[next++]]++;
+                }
+            }
+        }
+        System.arraycopy(pool, next, data, DRAW + drawPosition, DECK_SIZE - drawPosition);
+    }
+
+    // ========== HELPER METHODS ==========
+
+    private int seat(int p) {
+        return SEATS + p * SEAT_BYTES;
+    }
+
+    private void build(int pile) {
+        int top = data[BUILDING + pile] + 1;
+        data[BUILDING + pile] = (byte) (top == BUILDING_PILE_FULL_SIZE ? 0 : top);
+        buildsThisTurn++;
+    }
+
+    /**
+     * Like Game.doMove: a building play that leaves the hand empty refills it
+     */
+    private void refillEmptyHand() {
+        if (data[seat(current) + HAND_SIZE_AT] == 0) {
+            fillHand(current);
+        }
+    }
+
+    private void endTurn() {
+        turnsWithoutBuild = buildsThisTurn == 0 ? turnsWithoutBuild + 1 : 0;
+        buildsThisTurn = 0;
+        turns++;
+        current = (current + 1) % seats;
+        fillHand(current);
+    }
+
+    private void fillHand(int p) {
+        int base = seat(p);
+        int handSize = data[base + HAND_SIZE_AT];
+        while (handSize < HAND_SIZE && drawPosition < DECK_SIZE) {
+            data[base + HAND + data[DRAW + drawPosition++]]++;
+            handSize++;
+        }
+        data[base + HAND_SIZE_AT] = (byte) handSize;
+    }
+
+    /**
+     * Gets a bit mask with the first building pile of every distinct top value
+     */
+    private int distinctBuildingPiles() {
+        int mask = 0;
+        int seen = 0;
+        for (int b = 0; b < NUM_BUILDING_PILES; b++) {
+            int bit = 1 << data[BUILDING + b];
+            if ((seen & bit) == 0) {
+                seen |= bit;
+                mask |= 1 << b;
+            }
+        }
+        return mask;
+    }
+
+    private static void copyValues(byte[] cards, byte[] to, int offset) {
+        for (int i = 0; i < cards.length; i++) {
+            to[offset + i] = (byte) GameSnapshot.valueOf(cards[i]);
+        }
+    }
+
+    private static void shuffle(byte[] cards, int from, int to, Random random) {
+        for (int i = to - 1; i > from; i--) {
+            int j = from + random.nextInt(i - from + 1);
+            byte swap = cards[i];
+            cards[i] = cards[j];
+            cards[j] = swap;
+        }
+    }
+}
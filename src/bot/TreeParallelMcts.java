@@ -0,0 +1,272 @@
+package bot;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * MCTS with tree parallelization: all workers search one shared tree
+ *
+ * Node statistics are updated with atomic adds, no locks are taken. The reward sum is
+ * kept in fixed point so it can be added atomically too. A worker counts its visit on
+ * the way down (a virtual loss: a visit without reward until its rollout is back), so
+ * the other workers spread over other branches instead of all following the same line.
+ * Every worker copies the shared determinized root into its own SimState per iteration.
+ */
+public class TreeParallelMcts implements TurnPlanner, AutoCloseable {
+    /** Reward 1.0 in the fixed point reward sums */
+    private static final long REWARD_ONE = 1L << 20;
+
+    private final Worker[] workers;
+    private final ExecutorService pool;
+    private final Random random;
+    private final RolloutPolicy rolloutPolicy = new RolloutPolicy();
+
+    public TreeParallelMcts(int threads, long seed) {
+        this.workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(seed + i);
+        }
+        this.random = new Random(seed - 1);
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "mcts-tree-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A node of the shared tree
+     * The untried moves are shuffled when the node is made and handed out in order
+     * through nextUntried, so each move is expanded by exactly one worker.
+     */
+    private static final class Node {
+        private static final VarHandle VISITS;
+        private static final VarHandle REWARD;
+        private static final VarHandle NEXT_UNTRIED;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                VISITS = lookup.findVarHandle(Node.class, "visits", int.class);
+                REWARD = lookup.findVarHandle(Node.class, "reward", long.class);
+                NEXT_UNTRIED = lookup.findVarHandle(Node.class, "nextUntried", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        final int move;
+        final Node parent;
+        final boolean leaf;
+        final int[] moves;
+        final AtomicReferenceArray<Node> children;
+        volatile int visits;
+        volatile long reward;
+        volatile int nextUntried;
+
+        Node(int move, Node parent, boolean leaf, int[] moves, int visits, long reward) {
+            this.move = move;
+            this.parent = parent;
+            this.leaf = leaf;
+            this.moves = moves;
+            this.children = leaf ? null : new AtomicReferenceArray<>(moves.length);
+            this.visits = visits;
+            this.reward = reward;
+        }
+
+        void addVisit() {
+            VISITS.getAndAdd(this, 1);
+        }
+
+        void addReward(long amount) {
+            REWARD.getAndAdd(this, amount);
+        }
+
+        /**
+         * Claims the next untried move, or returns -1 when all moves are taken
+         */
+        int claimUntried() {
+            if (nextUntried >= moves.length) {
+                return -1;
+            }
+            int index = (int) NEXT_UNTRIED.getAndAdd(this, 1);
+            return index < moves.length ? index : -1;
+        }
+    }
+
+    /**
+     * The per thread part of a search: a scratch state, the random source and move buffer
+     */
+    private static final class Worker {
+        private final Random random;
+        private final RolloutPolicy policy = new RolloutPolicy();
+        private final int[] buffer = new int[Move.MAX_MOVES];
+        private SimState state;
+
+        Worker(long seed) {
+            this.random = new Random(seed);
+        }
+
+        void search(SimState root, Node rootNode, AtomicInteger iterations, int maxIterations, long deadline) {
+            if (state == null || state.getSeats() != root.getSeats()) {
+                state = new SimState(root.getSeats());
+            }
+            int seat = root.getCurrent();
+            int done = 0;
+            while (iterations.getAndIncrement() < maxIterations) {
+                if ((done++ & 15) == 0 && System.nanoTime() >= deadline) {
+                    break;
+                }
+                state.copyFrom(root);
+                Node node = select(rootNode, state);
+                policy.playOut(state, MctsBot.ROLLOUT_TURNS, random);
+                long reward = Math.round(MctsBot.reward(state, seat) * REWARD_ONE);
+                for (; node != null; node = node.parent) {
+                    node.addReward(reward);
+                }
+            }
+        }
+
+        /**
+         * Walks down by UCT, adding a visit (virtual loss) to every node on the way,
+         * and expands one new node when it finds an untried move
+         */
+        private Node select(Node node, SimState state) {
+            node.addVisit();
+            while (!node.leaf) {
+                int index = node.claimUntried();
+                if (index >= 0) {
+                    int move = node.moves[index];
+                    boolean leaf = state.endsTurn(move);
+                    state.apply(move);
+                    leaf |= state.isRoundOver();
+                    Node child = new Node(move, node, leaf, leaf ? null : legalMoves(state),
+                            MctsBot.PRIOR_VISITS + 1,
+                            Math.round(MctsBot.PRIOR_VISITS * MctsBot.prior(move) * REWARD_ONE));
+                    node.children.set(index, child);
+                    return child;
+                }
+
+                Node best = bestChild(node);
+                if (best == null) {
+                    break;  // The other children are still being made, roll out from here
+                }
+                best.addVisit();
+                state.apply(best.move);
+                node = best;
+            }
+            return node;
+        }
+
+        private int[] legalMoves(SimState state) {
+            int n = state.legalMoves(buffer);
+            int[] moves = new int[n];
+            System.arraycopy(buffer, 0, moves, 0, n);
+            // Shuffle so the workers expand the moves in a random order
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = moves[i];
+                moves[i] = moves[j];
+                moves[j] = swap;
+            }
+            return moves;
+        }
+    }
+
+    @Override
+    public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+        long start = System.nanoTime();
+        long deadline = MctsBot.deadline(start, budget);
+        SimState root = observed.copy();
+        root.determinize(root.getCurrent(), random);
+        Node rootNode = new Node(-1, null, false, workers[0].legalMoves(root), 0, 0);
+
+        AtomicInteger iterations = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Worker worker : workers) {
+            futures.add(pool.submit(() -> worker.search(root, rootNode, iterations, budget.maxIterations, deadline)));
+        }
+        for (Future<?> future : futures) {
+            await(future);
+        }
+
+        int[] path = new int[MctsBot.MAX_PATH];
+        int length = 0;
+        for (Node node = mostVisited(rootNode); node != null && length < path.length; node = mostVisited(node)) {
+            path[length++] = node.move;
+        }
+        Node first = mostVisited(rootNode);
+        double expected = first == null ? 0 : averageReward(first);
+        return MctsBot.completePlan(root, path, length, expected, rootNode.visits,
+                System.nanoTime() - start, rolloutPolicy, random);
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    // ========== HELPER METHODS ==========
+
+    private static Node bestChild(Node node) {
+        Node best = null;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        double logVisits = Math.log(Math.max(1, node.visits));
+        for (int i = 0; i < node.moves.length; i++) {
+            Node child = node.children.get(i);
+            if (child == null) {
+                continue;
+            }
+            int visits = child.visits;
+            double value = child.reward / (double) REWARD_ONE / visits
+                    + MctsBot.EXPLORATION * Math.sqrt(logVisits / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private static Node mostVisited(Node node) {
+        if (node.leaf) {
+            return null;
+        }
+        Node best = null;
+        for (int i = 0; i < node.moves.length; i++) {
+            Node child = node.children.get(i);
+            if (child != null && (best == null || child.visits > best.visits)) {
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    private static double averageReward(Node node) {
+        double reward = node.reward / (double) REWARD_ONE - MctsBot.PRIOR_VISITS * MctsBot.prior(node.move);
+        return reward / (node.visits - MctsBot.PRIOR_VISITS);
+    }
+
+    private static void await(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while searching", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+    }
+}
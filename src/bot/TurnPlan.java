@@ -0,0 +1,76 @@
+package bot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The moves a bot wants to play this turn, in order
+ *
+ * A plan is complete when it ends the turn (discard or END) or wins the round.
+ * It is cut short after a move that makes the player draw new cards or turns up
+ * the next stock card: the bot cannot know those cards yet, so it has to plan
+ * again once it sees them.
+ */
+public class TurnPlan {
+    private final int[] moves;
+    private final boolean complete;
+    private final int iterations;
+    private final long nanos;
+    private final double expectedReward;
+
+    public TurnPlan(int[] moves, boolean complete, int iterations, long nanos, double expectedReward) {
+        this.moves = moves;
+        this.complete = complete;
+        this.iterations = iterations;
+        this.nanos = nanos;
+        this.expectedReward = expectedReward;
+    }
+
+    /**
+     * Gets the moves (see Move)
+     */
+    public int[] getMoves() {
+        return moves;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Gets the number of search iterations that were run for this plan
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Gets the time the plan took in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets the average rollout reward (0-1) of the first move
+     */
+    public double getExpectedReward() {
+        return expectedReward;
+    }
+
+    /**
+     * Gets the moves as protocol commands
+     */
+    public List<String> toProtocol() {
+        List<String> commands = new ArrayList<>();
+        for (int move : moves) {
+            commands.add(Move.toProtocol(move));
+        }
+        return commands;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", toProtocol()) + (complete ? "" : " (then plan again)");
+    }
+}
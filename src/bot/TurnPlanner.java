@@ -0,0 +1,18 @@
+package bot;
+
+/**
+ * Something that plans the turn of the current player of a SimState
+ */
+public interface TurnPlanner {
+
+    /**
+     * Plans the turn of the current player
+     * The state is not changed. The plan may stop early when the player draws new cards,
+     * then the caller plans again once the cards are known.
+     *
+     * The state may hold the real hidden cards (the server passes a copy of the real
+     * game): a planner only reads what the current player can see, or shuffles the rest
+     * first (SimState.determinize).
+     */
+    TurnPlan planTurn(SimState observed, SearchBudget budget);
+}
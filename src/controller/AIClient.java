@@ -1,6 +1,8 @@
 package controller;
 
+import protocol.client.Game;
 import protocol.client.Hello;
+import protocol.client.Pong;
 import protocol.common.Feature;
 
 import java.io.BufferedReader;
@@ -8,18 +10,44 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+import static model.GameConstants.*;
+
 /**
  * Smart AI client that only makes valid moves
- * The AI knows:
- * - What the building piles expect (1-12 or X if full)
- * - What its stock top card is
+ * The AI knows (kept up to date per message by a CardTracker):
+ * - What is on top of the building piles (from TABLE and PLAY, X = empty)
+ * - What its stock top card is and how many stock cards it has left
+ * - Its hand, and which cards of the deck it has not seen yet
  * - Which moves are valid
+ *
+ * The AI plans its turn from this state and sends the moves without waiting for the
+ * answers, as far as it can know the result: after a stock card the next one is only
+ * known when the server shows it, so that is where it waits. Every PLAY gets exactly
+ * one answer for us (our own PLAY from the server, or an ERROR), in order, so the
+ * moves in flight are matched against them; after an ERROR the AI asks for the table
+ * and hand again and plans the rest of the turn from that.
+ *
+ * The pace is configurable: a delay of 0 (turbo) plays as fast as the connection
+ * allows, the default looks like a person thinking.
+ *
+ * With a table size the AI announces LOBBY, asks the matchmaker for a table of that
+ * size and asks again after every game, so it keeps playing until it is stopped.
  */
 public class AIClient {
+    /** Milliseconds between two moves by default (a turn starts after twice this) */
+    public static final long DEFAULT_MOVE_DELAY_MILLIS = 500;
+
+    // A game is over when a player has this many points (like Game)
+    private static final int WINNING_SCORE = 500;
+
+    // A turn that keeps getting ERRORs is ended instead of trying again
+    private static final int MAX_ERRORS_PER_TURN = 3;
+
     private String host;
     private int port;
     private Socket socket;
@@ -28,41 +56,101 @@ public class AIClient {
     private String playerName;
     private boolean running;
     private Random random;
+    private long moveDelayMillis;
+    private int tableSize;  // 0: the open lobby, one game; else LOBBY games of this size
 
     // Game state tracking
-    private List<String> hand;
     private boolean myTurn;
+    private boolean inGame;
 
-    // NEW: Smart AI tracking
-    private String stockTopCard;           // What is my stock top card?
-    private String[] buildingPileNext;     // What does each building pile expect? (1-12 or X)
+    // Reconnect: the token from WELCOME gets our seat back after a lost connection
+    private String sessionToken;
+    private static final int RECONNECT_ATTEMPTS = 5;
+
+    // Smart AI tracking: table, hand, stock and the cards not seen yet
+    private CardTracker tracker;
+
+    // Pipelining: the moves sent this turn that the server did not answer yet
+    private ArrayDeque<String> inFlight;
+    private boolean awaitingHand;          // A move was played, its TABLE/HAND is still coming
+    private boolean turnSent;              // The discard or END that ends the turn was sent
+    private int stockPlaysLeft;            // Stock plays the strategy still wants this turn
+    private int errorsThisTurn;
 
     public AIClient(String host, int port, String playerName) {
+        this(host, port, playerName, DEFAULT_MOVE_DELAY_MILLIS);
+    }
+
+    /**
+     * Creates an AI client
+     * @param moveDelayMillis Milliseconds between two moves, 0 for turbo mode
+     */
+    public AIClient(String host, int port, String playerName, long moveDelayMillis) {
+        this(host, port, playerName, moveDelayMillis, 0);
+    }
+
+    /**
+     * Creates an AI client that plays LOBBY games one after another
+     * @param moveDelayMillis Milliseconds between two moves, 0 for turbo mode
+     * @param tableSize The players of the tables it asks for, 0 for one game in the open lobby
+     */
+    public AIClient(String host, int port, String playerName, long moveDelayMillis, int tableSize) {
         this.host = host;
         this.port = port;
         this.playerName = playerName;
+        this.moveDelayMillis = moveDelayMillis;
+        this.tableSize = tableSize;
         this.random = new Random();
-        this.hand = new ArrayList<>();
         this.myTurn = false;
-        this.buildingPileNext = new String[4];  // 4 building piles
+        this.tracker = new CardTracker(playerName);
+        this.inFlight = new ArrayDeque<>();
     }
 
+    /**
+     * Usage: AIClient [name] [move delay ms, 0 = turbo] [port] [table size, 0 = open lobby]
+     */
     public static void main(String[] args) {
         String host = "localhost";
         int port = 5555;
         String aiName = "AI_Bot";
+        long moveDelayMillis = DEFAULT_MOVE_DELAY_MILLIS;
 
         if (args.length >= 1) {
             aiName = args[0];
         }
+        if (args.length >= 2) {
+            moveDelayMillis = Long.parseLong(args[1]);
+        }
+        if (args.length >= 3) {
+            port = Integer.parseInt(args[2]);
+        }
+        int tableSize = args.length >= 4 ? Integer.parseInt(args[3]) : 0;
 
-        AIClient ai = new AIClient(host, port, aiName);
+        AIClient ai = new AIClient(host, port, aiName, moveDelayMillis, tableSize);
         ai.start();
     }
 
     public void start() {
-        if (connectToServer()) {
-            run();
+        if (!connectToServer()) {
+            return;
+        }
+        run();
+
+        // Connection lost during a game: try to get our seat back
+        int attempts = 0;
+        while (running && inGame && sessionToken != null && attempts < RECONNECT_ATTEMPTS) {
+            attempts++;
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            System.out.println("[AI " + playerName + "] Reconnecting (attempt " + attempts + ")");
+            if (connectToServer()) {
+                attempts = 0;
+                run();
+            }
         }
     }
 
@@ -75,8 +163,9 @@ public class AIClient {
 
             System.out.println("[AI " + playerName + "] Connected to server");
 
-            // Send HELLO
-            Hello hello = new Hello(playerName, new Feature[0]);
+            // Send HELLO (with our session token when reconnecting)
+            Feature[] features = tableSize > 0 ? new Feature[]{Feature.LOBBY} : new Feature[0];
+            Hello hello = new Hello(playerName, features, sessionToken);
             sendMessage(hello.transformToProtocolString());
 
             return true;
@@ -97,6 +186,11 @@ public class AIClient {
                 System.err.println("[AI " + playerName + "] Connection lost");
             }
         }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
     }
 
     /**
@@ -114,45 +208,98 @@ public class AIClient {
         }
 
         String command = parts[0];
+        tracker.update(parts);
 
-        if (command.equals("START")) {
+        if (command.equals("WELCOME")) {
+            // WELCOME~NAME~FEATURES~TOKEN
+            if (parts.length >= 4 && parts[1].equals(playerName)) {
+                sessionToken = parts[3];
+            }
+            if (!inGame) {
+                requestTable();  // A RESYNC follows instead when our seat was held
+            }
+
+        } else if (command.equals("START")) {
+            // START~PLAYER,PLAYER,...
             System.out.println("[AI " + playerName + "] Game starts!");
+            inGame = true;
+
+        } else if (command.equals("RESYNC")) {
+            // Reconnected: TABLE, HAND, STOCK and TURN lines follow
+            System.out.println("[AI " + playerName + "] Resynced, scores: " + (parts.length >= 2 ? parts[1] : ""));
+            inGame = true;
+            inFlight.clear();
+            awaitingHand = false;
 
         } else if (command.equals("HAND")) {
-            // Update hand
-            if (parts.length >= 2) {
-                updateHand(parts[1]);
-            }
+            // The hand is the last message after each of our moves
+            System.out.println("[AI " + playerName + "] Hand updated: " + tracker.getHandSize() + " cards");
+            awaitingHand = false;
+            playMoves();
 
         } else if (command.equals("STOCK")) {
             // STOCK~PLAYER~CARD
-            // If it's my stock, remember the top card
             if (parts.length >= 3 && parts[1].equals(playerName)) {
-                stockTopCard = parts[2];
-                System.out.println("[AI " + playerName + "] Stock top: " + stockTopCard);
+                System.out.println("[AI " + playerName + "] Stock top: " + parts[2]);
             }
 
         } else if (command.equals("TABLE")) {
-            // TABLE message contains building pile info
-            updateTableInfo(parts);
+            // TABLE~B0.B1.B2.B3~... (X = empty, a full pile is cleared right away)
+            if (parts.length >= 2) {
+                System.out.println("[AI " + playerName + "] Building piles: " + parts[1]);
+            }
+
+        } else if (command.equals("PLAY")) {
+            // PLAY~PLAYER~FROM~TO: our own move was played
+            if (parts.length >= 4 && parts[1].equals(playerName)) {
+                confirmMove("PLAY~" + parts[2] + "~" + parts[3]);
+            }
 
         } else if (command.equals("TURN")) {
             if (parts.length >= 2) {
                 if (parts[1].equals(playerName)) {
-                    myTurn = true;
                     System.out.println("[AI " + playerName + "] My turn!");
-                    playTurn();
+                    startTurn();
                 } else {
                     myTurn = false;
+                    inFlight.clear();
                 }
             }
 
         } else if (command.equals("WINNER")) {
-            System.out.println("[AI " + playerName + "] Game over!");
-            running = false;
+            // Sent after every round, the game is over when someone has enough points
+            myTurn = false;
+            inFlight.clear();
+            awaitingHand = false;
+            if (parts.length >= 2 && isGameOver(parts[1])) {
+                System.out.println("[AI " + playerName + "] Game over!");
+                inGame = false;
+                if (tableSize > 0) {
+                    requestTable();
+                } else {
+                    running = false;
+                }
+            } else {
+                System.out.println("[AI " + playerName + "] Round over: " + (parts.length >= 2 ? parts[1] : ""));
+            }
+
+        } else if (command.equals("ERROR")) {
+            // ERROR~103: the game ended because a player left
+            if (parts.length >= 2 && parts[1].equals("103")) {
+                inGame = false;
+                requestTable();
+            } else if (parts.length >= 2 && parts[1].equals("207")) {
+                requestTable();  // Nobody to play with in time, keep waiting
+            } else if (!inFlight.isEmpty()) {
+                rejectMove(parts.length >= 2 ? parts[1] : "");
+            }
+
+        } else if (command.equals("PING")) {
+            // The server checks the connection is still there
+            sendMessage(new Pong().transformToProtocolString());
 
         } else if (command.equals("ROUND")) {
-            // New round started
+            // New round started (TABLE, HAND, STOCK and TURN follow)
             if (parts.length >= 2) {
                 System.out.println("[AI " + playerName + "] New round: " + parts[1]);
             }
@@ -160,35 +307,57 @@ public class AIClient {
     }
 
     /**
-     * Updates AI's hand
+     * Checks the scores of a WINNER message (PLAYER.SCORE,...) for the end of the game
      */
-    private void updateHand(String handData) {
-        hand.clear();
-        String[] cards = handData.split(",");
-        for (String card : cards) {
-            hand.add(card);
+    private static boolean isGameOver(String scores) {
+        for (String score : scores.split(",")) {
+            String[] nameAndScore = score.split("\\.");
+            try {
+                if (nameAndScore.length >= 2 && Integer.parseInt(nameAndScore[1]) >= WINNING_SCORE) {
+                    return true;
+                }
+            } catch (NumberFormatException e) {
+                // Not a score, ignore it
+            }
         }
-        System.out.println("[AI " + playerName + "] Hand updated: " + hand.size() + " cards");
+        return false;
     }
 
+    // ========== TURN PIPELINE ==========
+
     /**
-     * NEW: Parse TABLE message to get building pile info
-     * TABLE protocol: TABLE~players~B.0~B.1~B.2~B.3~...
-     *
-     * Building pile values:
-     * - "1" to "12" = expects that card
-     * - "X" = full (12 cards) or empty
+     * Starts our turn: the HAND and STOCK of the turn came before TURN
+     */
+    private void startTurn() {
+        myTurn = true;
+        turnSent = false;
+        inFlight.clear();
+        awaitingHand = false;
+        errorsThisTurn = 0;
+        stockPlaysLeft = random.nextInt(3) + 1;  // Try stock pile moves (1-3 times)
+
+        pause(2 * moveDelayMillis);  // Wait a moment (for realism)
+        playMoves();
+    }
+
+    /**
+     * Plans the next moves of the turn and sends them all at once
+     * Waits while moves are in flight or the state after our last move did not arrive yet.
      */
-    private void updateTableInfo(String[] parts) {
-        // TABLE has at least: TABLE~players~B.0~B.1~B.2~B.3
-        if (parts.length >= 6) {
-            buildingPileNext[0] = parts[2];  // B.0
-            buildingPileNext[1] = parts[3];  // B.1
-            buildingPileNext[2] = parts[4];  // B.2
-            buildingPileNext[3] = parts[5];  // B.3
-
-            System.out.println("[AI " + playerName + "] Building piles: " +
-                              String.join(", ", buildingPileNext));
+    private void playMoves() {
+        if (!myTurn || turnSent || !inFlight.isEmpty() || awaitingHand) {
+            return;
+        }
+
+        List<String> moves = planMoves();
+        for (int i = 0; i < moves.size(); i++) {
+            if (i > 0) {
+                pause(moveDelayMillis);
+            }
+            String move = moves.get(i);
+            inFlight.add(move);
+            sendMessage(move);
+            System.out.println("[AI " + playerName + "] Move: " + move);
         }
     }
 
@@ -198,106 +367,136 @@ public class AIClient {
      * 2. Only to building piles that accept the card
      * 3. Stop if no valid moves
      * 4. Discard to end turn
+     *
+     * Plans from the tracked state as far as the results are known. A stock play shows
+     * a new stock card we do not know yet, so the plan stops after it when the strategy
+     * wants to play that card too, or when it may have been the last one (then the
+     * round is over and a discard sent behind it would land in the next round).
      */
-    private void playTurn() {
-        try {
-            Thread.sleep(1000);  // Wait a moment (for realism)
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
-        // Try stock pile moves (1-3 times)
-        int movesPlayed = 0;
-        int maxMoves = random.nextInt(3) + 1;
+    private List<String> planMoves() {
+        List<String> moves = new ArrayList<>();
 
-        for (int i = 0; i < maxMoves && stockTopCard != null; i++) {
+        int stockTop = tracker.getStockTop(playerName);
+        if (stockPlaysLeft > 0 && stockTop >= 0) {
             // Find a building pile that accepts our stock card
-            int validPile = findValidBuildingPile(stockTopCard);
-
+            int validPile = findValidBuildingPile(stockTop);
             if (validPile >= 0) {
-                // Valid move found!
-                String move = "PLAY~S~B." + validPile;
-                sendMessage(move);
-                System.out.println("[AI " + playerName + "] Smart stock move: " + move);
-                movesPlayed++;
-
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+                moves.add("PLAY~S~B." + validPile);
+                stockPlaysLeft--;
+                if (stockPlaysLeft > 0 || tracker.getStockLeft(playerName) <= 1) {
+                    return moves;
                 }
             } else {
                 // No valid pile for stock card, stop trying
-                System.out.println("[AI " + playerName + "] No valid move for stock card " +
-                                  stockTopCard);
-                break;
+                stockPlaysLeft = 0;
             }
         }
 
-        // Discard to end turn (mandatory)
-        if (!hand.isEmpty()) {
-            String card = hand.get(0);  // Take first card
-            int discardPile = random.nextInt(4);
+        // Discard to end turn (the server ends the turn after a discard)
+        if (tracker.getHandSize() > 0) {
+            String card = randomHandCard();
+            moves.add("PLAY~H." + card + "~D." + random.nextInt(NUM_DISCARD_PILES));
+        } else {
+            moves.add("END");
+        }
+        turnSent = true;
+        return moves;
+    }
 
-            String discardMove = "PLAY~H." + card + "~D." + discardPile;
-            sendMessage(discardMove);
-            System.out.println("[AI " + playerName + "] Discard: " + discardMove);
+    /**
+     * Our move came back from the server as played
+     */
+    private void confirmMove(String move) {
+        String expected = inFlight.poll();
+        if (expected != null && !expected.equals(move)) {
+            System.out.println("[AI " + playerName + "] Played " + move + ", expected " + expected);
+        }
+        awaitingHand = true;  // TABLE and HAND follow
+    }
 
-            try {
-                Thread.sleep(300);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    /**
+     * The server answered our oldest move in flight with an ERROR
+     * Our state was wrong: when all moves are answered, get the table and hand again
+     * and plan the rest of the turn from that (or end it after too many errors).
+     */
+    private void rejectMove(String errorCode) {
+        String move = inFlight.poll();
+        errorsThisTurn++;
+        System.out.println("[AI " + playerName + "] Move " + move + " rejected (ERROR " + errorCode + ")");
+
+        if (move.equals("END")) {
+            myTurn = false;  // Not our turn after all
+            return;
+        }
+        if (!move.startsWith("PLAY~S~")) {
+            turnSent = false;  // The discard did not end the turn
+        }
+        if (!inFlight.isEmpty() || !myTurn) {
+            return;
         }
 
-        // End turn
-        sendMessage("END");
-        System.out.println("[AI " + playerName + "] END command sent");
-        myTurn = false;
+        if (errorsThisTurn >= MAX_ERRORS_PER_TURN) {
+            turnSent = true;
+            inFlight.add("END");
+            sendMessage("END");
+            System.out.println("[AI " + playerName + "] END command sent");
+        } else {
+            awaitingHand = true;
+            sendMessage("TABLE");
+            sendMessage("HAND");
+        }
     }
 
     /**
-     * NEW: Finds a building pile that accepts the card
+     * Finds a building pile that accepts the card
      *
-     * @param cardStr The card ("1" to "12" or "SB" for Skip-Bo)
+     * @param card The card value (1 to 12, or 0 for Skip-Bo)
      * @return Index of valid pile (0-3), or -1 if no valid pile
      */
-    private int findValidBuildingPile(String cardStr) {
-        if (buildingPileNext == null || cardStr == null) {
-            return -1;
+    private int findValidBuildingPile(int card) {
+        for (int i = 0; i < NUM_BUILDING_PILES; i++) {
+            // Skip-Bo fits on every pile (full piles are cleared right away)
+            if (card == CardTracker.SKIPBO || tracker.getBuildingNext(i) == card) {
+                return i;
+            }
         }
+        return -1;  // No valid pile found
+    }
 
-        // Skip-Bo can go on any pile (except full piles)
-        if (cardStr.equals("SB")) {
-            for (int i = 0; i < 4; i++) {
-                if (buildingPileNext[i] != null && !buildingPileNext[i].equals("X")) {
-                    return i;  // First non-full pile
-                }
-            }
-            return -1;
+    /**
+     * Picks a random card from the hand ("1" to "12" or "SB")
+     */
+    private String randomHandCard() {
+        int index = random.nextInt(tracker.getHandSize());
+        int card = 0;
+        while (index >= tracker.getHandCount(card)) {
+            index -= tracker.getHandCount(card);
+            card++;
         }
+        return card == CardTracker.SKIPBO ? "SB" : String.valueOf(card);
+    }
 
-        // Normal card: find pile that expects this card
+    /**
+     * Waits a moment between moves (not at all in turbo mode)
+     */
+    private void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
         try {
-            int cardNum = Integer.parseInt(cardStr);
-
-            for (int i = 0; i < 4; i++) {
-                String expected = buildingPileNext[i];
-                if (expected == null || expected.equals("X")) {
-                    continue;  // Pile is full or empty
-                }
-
-                int expectedNum = Integer.parseInt(expected);
-                if (cardNum == expectedNum) {
-                    return i;  // Found!
-                }
-            }
-        } catch (NumberFormatException e) {
-            // Invalid card format
-            return -1;
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
-        return -1;  // No valid pile found
+    /**
+     * Asks the matchmaker for the next table (only with a table size)
+     */
+    private void requestTable() {
+        if (tableSize > 0) {
+            sendMessage(new Game(tableSize).transformToProtocolString());
+        }
     }
 
     /**
@@ -0,0 +1,174 @@
+package controller;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Shares a fixed amount of CPU between the bots of all games
+ *
+ * Bot turns run on their own work-stealing pool with one thread per core of the quota,
+ * so the rest of the machine stays free for the connections of human players. Waiting
+ * turns are kept in order of how long their game has been waiting; a free thread always
+ * takes the oldest one.
+ *
+ * When more turns wait than there are threads, every turn gets a smaller share of its
+ * search budget instead of making the tables wait longer: the budget is scaled by
+ * threads / (threads + turns still waiting), and scaled down again when the turn
+ * already waited longer than the target latency. It never drops below MIN_SCALE.
+ */
+public class BotScheduler {
+    /** The smallest part of its budget a turn gets, however busy the bots are */
+    public static final double MIN_SCALE = 1.0 / 16;
+
+    private final Executor executor;
+    private final int threads;
+    private final long targetLatencyNanos;
+    private final PriorityBlockingQueue<Turn> waiting;
+    private final AtomicLong submitted;
+    private volatile boolean degrade = true;
+
+    // Counters (see getStats)
+    private final AtomicLong turns;
+    private final AtomicLong degradedTurns;
+    private final AtomicLong waitNanos;
+    private final AtomicLong maxWaitNanos;
+    private final AtomicLong scaleMillionths;
+
+    /**
+     * Creates a scheduler with its own pool
+     * @param threads The CPU quota for bot search, in cores
+     * @param targetLatencyMillis How long a turn may wait before its budget is cut further
+     */
+    public BotScheduler(int threads, long targetLatencyMillis) {
+        this(new ForkJoinPool(threads, BotScheduler::newWorker, null, true), threads, targetLatencyMillis);
+    }
+
+    /**
+     * Creates a scheduler that runs the turns on an executor
+     * (benchmarks run them on their own thread)
+     */
+    BotScheduler(Executor executor, int threads, long targetLatencyMillis) {
+        this.executor = executor;
+        this.threads = threads;
+        this.targetLatencyNanos = targetLatencyMillis * 1_000_000L;
+        this.waiting = new PriorityBlockingQueue<>();
+        this.submitted = new AtomicLong();
+        this.turns = new AtomicLong();
+        this.degradedTurns = new AtomicLong();
+        this.waitNanos = new AtomicLong();
+        this.maxWaitNanos = new AtomicLong();
+        this.scaleMillionths = new AtomicLong();
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("bot-search-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Turns the smaller budgets under load on or off (off is only useful to measure what they save)
+     */
+    void setDegrade(boolean degrade) {
+        this.degrade = degrade;
+    }
+
+    /**
+     * Queues a bot turn
+     * @param turn Plays the turn, with the part (MIN_SCALE-1) of its search budget it may use
+     */
+    public void submit(DoubleConsumer turn) {
+        waiting.add(new Turn(turn, System.nanoTime(), submitted.getAndIncrement()));
+        executor.execute(this::runOldest);
+    }
+
+    /**
+     * Runs the turn that has waited longest (one runner is queued for every turn)
+     */
+    private void runOldest() {
+        Turn turn = waiting.poll();
+        if (turn == null) {
+            return;
+        }
+        long waited = System.nanoTime() - turn.since;
+        double scale = degrade ? scale(waiting.size(), waited) : 1;
+
+        turns.incrementAndGet();
+        if (scale < 1) {
+            degradedTurns.incrementAndGet();
+        }
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        scaleMillionths.addAndGet((long) (scale * 1_000_000));
+
+        try {
+            turn.play.accept(scale);
+        } catch (RuntimeException e) {
+            System.err.println("Bot turn failed: " + e);
+        }
+    }
+
+    /**
+     * Gets the part of its budget a turn gets
+     * @param backlog The turns still waiting after this one
+     * @param waited How long this turn waited in nanoseconds
+     */
+    double scale(int backlog, long waited) {
+        double scale = (double) threads / (threads + backlog);
+        if (waited > targetLatencyNanos && targetLatencyNanos > 0) {
+            scale *= (double) targetLatencyNanos / waited;
+        }
+        return Math.max(MIN_SCALE, Math.min(1, scale));
+    }
+
+    /**
+     * Gets the number of turns waiting for a thread
+     */
+    public int getBacklog() {
+        return waiting.size();
+    }
+
+    /**
+     * Gets the number of bot turns that were run
+     */
+    public long getTurns() {
+        return turns.get();
+    }
+
+    /**
+     * Gets the counters since the start as one line:
+     * turns run, turns with a cut budget, mean and longest wait, mean budget part
+     */
+    public String getStats() {
+        long count = Math.max(1, turns.get());
+        return String.format("%d turns, %d with a smaller budget, wait mean %.2f ms max %.2f ms, budget %.0f%%",
+                turns.get(), degradedTurns.get(), waitNanos.get() / 1e6 / count, maxWaitNanos.get() / 1e6,
+                scaleMillionths.get() / 1e4 / count);
+    }
+
+    /**
+     * A waiting turn, the one that waits longest comes first
+     */
+    private static final class Turn implements Comparable<Turn> {
+        final DoubleConsumer play;
+        final long since;
+        final long order;   // Keeps turns submitted in the same nanosecond in order
+
+        Turn(DoubleConsumer play, long since, long order) {
+            this.play = play;
+            this.since = since;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Turn other) {
+            int bySince = Long.compare(since, other.since);
+            return bySince != 0 ? bySince : Long.compare(order, other.order);
+        }
+    }
+}
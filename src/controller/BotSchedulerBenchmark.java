@@ -0,0 +1,74 @@
+package controller;
+
+import bot.MctsBot;
+import bot.SearchBudget;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the BotScheduler with many games of MCTS bots at the same time
+ *
+ * Starts the given numbers of games (two MCTS bots with a time budget each) on one
+ * scheduler, lets them play for a while and prints the turns played and how long turns
+ * waited for a thread, with and without the smaller budgets under load.
+ * Usage: BotSchedulerBenchmark [threads] [budget ms] [seconds per row]
+ */
+public class BotSchedulerBenchmark {
+    private static final int[] GAME_COUNTS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length >= 1 ? Integer.parseInt(args[0]) : 1;
+        long budgetMillis = args.length >= 2 ? Long.parseLong(args[1]) : 10;
+        int seconds = args.length >= 3 ? Integer.parseInt(args[2]) : 5;
+
+        System.out.printf("%d bot threads, %d ms per decision, %d s per row%n", threads, budgetMillis, seconds);
+        System.out.printf("%-6s %-9s %10s  %s%n", "Games", "Budgets", "Turns/s", "Scheduler");
+        for (int games : GAME_COUNTS) {
+            for (boolean degrade : new boolean[]{false, true}) {
+                BotScheduler scheduler = new BotScheduler(threads, 4 * budgetMillis);
+                scheduler.setDegrade(degrade);
+                long turns = run(scheduler, games, SearchBudget.millis(budgetMillis), seconds);
+                System.out.printf("%-6d %-9s %10.1f  %s%n", games, degrade ? "degrade" : "fixed",
+                        (double) turns / seconds, scheduler.getStats());
+            }
+        }
+    }
+
+    /**
+     * Plays games on the scheduler for some seconds and returns the turns played
+     */
+    private static long run(BotScheduler scheduler, int games, SearchBudget budget, int seconds)
+            throws InterruptedException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            List<GameManager> managers = new ArrayList<>();
+            for (int g = 0; g < games; g++) {
+                GameManager manager = new Server(0, false).getGameManager();
+                manager.setBotScheduler(scheduler);
+                manager.addBot("A", new BotSeat(new MctsBot(g * 2), budget));
+                manager.addBot("B", new BotSeat(new MctsBot(g * 2 + 1), budget));
+                managers.add(manager);
+            }
+            for (GameManager manager : managers) {
+                manager.setRequiredPlayers(2, null);
+            }
+
+            Thread.sleep(seconds * 1000L);
+
+            // Stop the games, the turns that still wait see that and return
+            for (GameManager manager : managers) {
+                manager.removePlayer("A");
+            }
+            while (scheduler.getBacklog() > 0) {
+                Thread.sleep(10);
+            }
+        } finally {
+            System.setOut(out);
+        }
+        return scheduler.getTurns();
+    }
+}
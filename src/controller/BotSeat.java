@@ -0,0 +1,167 @@
+package controller;
+
+import bot.ChainPlayer;
+import bot.Evaluator;
+import bot.HeuristicPlayer;
+import bot.IsmctsBot;
+import bot.MctsBot;
+import bot.Move;
+import bot.SearchBudget;
+import bot.SimState;
+import bot.TurnPlan;
+import bot.TurnPlanner;
+import model.*;
+
+import java.io.IOException;
+
+/**
+ * A seat that is played by a bot inside the server, without a connection
+ *
+ * The GameController asks the seat for a plan when it is its turn and plays the
+ * moves as CardActions, the same way it plays the PLAY commands of a client. The
+ * bot plans on a SimState copy of the table; like every TurnPlanner it only reads
+ * the cards its player can see, so it knows as much as a client that counts cards.
+ */
+public class BotSeat {
+    private static Evaluator evaluator;   // Shared weights of the -eval bots (see loadEvaluator)
+
+    private final TurnPlanner planner;
+    private final SearchBudget budget;
+    private String type;       // The name of create(), null if built directly
+    private SimState table;    // Reused for every plan (null until the first one)
+
+    /**
+     * Creates a bot seat
+     * @param planner The strategy that plans the turns
+     * @param budget How much work the planner may spend on one plan
+     */
+    public BotSeat(TurnPlanner planner, SearchBudget budget) {
+        this.planner = planner;
+        this.budget = budget;
+    }
+
+    /**
+     * Creates a bot from a name like "heuristic", "chain", "mcts" or "ismcts"
+     * An MCTS bot takes its iterations after a colon, e.g. "mcts:2048" (default 512).
+     * "mcts-eval" and "ismcts-eval" score their rollouts with the learned evaluator
+     * (the weights file of Evaluator.loadDefault, read once).
+     *
+     * @return The bot, or null if the name is not known or the weights cannot be read
+     */
+    public static BotSeat create(String type, long seed) {
+        BotSeat bot = build(type.split(":"), seed);
+        if (bot != null) {
+            bot.type = type;
+        }
+        return bot;
+    }
+
+    private static BotSeat build(String[] parts, long seed) {
+        int iterations = parts.length > 1 ? Integer.parseInt(parts[1]) : 512;
+        SearchBudget budget = SearchBudget.iterations(iterations);
+        switch (parts[0]) {
+            case "heuristic":
+                return new BotSeat(new HeuristicPlayer(seed), budget);
+            case "chain":
+                return new BotSeat(new ChainPlayer(), budget);
+            case "mcts":
+                return new BotSeat(new MctsBot(seed), budget);
+            case "ismcts":
+                return new BotSeat(new IsmctsBot(seed), budget);
+            case "mcts-eval": {
+                Evaluator evaluator = loadEvaluator();
+                return evaluator == null ? null : new BotSeat(new MctsBot(seed, evaluator), budget);
+            }
+            case "ismcts-eval": {
+                Evaluator evaluator = loadEvaluator();
+                return evaluator == null ? null
+                        : new BotSeat(new IsmctsBot(seed, IsmctsBot.DEFAULT_POOL_SIZE, evaluator), budget);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Gets the name the bot was created from, so it can be created again after a restart
+     * @return The name of create(), or null if the bot was built directly
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Reads the evaluator weights the first time a bot needs them
+     * @return The weights, or null if they cannot be read
+     */
+    private static synchronized Evaluator loadEvaluator() {
+        if (evaluator == null) {
+            try {
+                evaluator = Evaluator.loadDefault();
+            } catch (IOException e) {
+                System.err.println("Cannot load evaluator weights: " + e.getMessage());
+                return null;
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * Plans (the rest of) the turn of the current player of a game
+     * Does not need the game itself, so it can run without holding the controller lock.
+     *
+     * @param budgetScale The part of the search budget to use (see BotScheduler)
+     */
+    public TurnPlan plan(GameSnapshot snapshot, double budgetScale) {
+        if (table == null) {
+            table = SimState.fromSnapshot(snapshot);
+        } else {
+            table.copyFrom(snapshot);
+        }
+        return planner.planTurn(table, budget.scaled(budgetScale));
+    }
+
+    /**
+     * Converts a planned move to the action the game plays
+     *
+     * @return The action, or null if the move ends the turn (END) or the card is not in the hand
+     */
+    public static CardAction toAction(Game game, Player player, int move) {
+        switch (Move.kind(move)) {
+            case Move.STOCK_TO_BUILDING:
+                return new CardActionStockPileToBuildingPile(Move.building(move));
+            case Move.HAND_TO_BUILDING: {
+                Card card = findCard(game, player, Move.card(move));
+                return card == null ? null : new CardActionHandToBuildingPile(card, Move.building(move));
+            }
+            case Move.DISCARD_TO_BUILDING:
+                return new CardActionDiscardPileToBuildingPile(Move.discardPile(move), Move.building(move));
+            case Move.HAND_TO_DISCARD: {
+                Card card = findCard(game, player, Move.card(move));
+                return card == null ? null : new CardActionHandToDiscardPile(card, Move.discardPile(move));
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Finds a card of a value (0 = Skip-Bo) in the hand of a player
+     */
+    private static Card findCard(Game game, Player player, int value) {
+        if (value != SimState.SKIPBO) {
+            return game.findCardInHand(player, value);
+        }
+        for (Card card : game.getHand(player)) {
+            if (card.isSkipBo()) {
+                return card;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return planner.getClass().getSimpleName() + " (" + budget + ")";
+    }
+}
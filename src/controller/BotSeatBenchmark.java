@@ -0,0 +1,192 @@
+package controller;
+
+import bot.ChainPlayer;
+import bot.HeuristicPlayer;
+import bot.Move;
+import bot.SearchBudget;
+import bot.SimState;
+import bot.TurnPlan;
+import bot.TurnPlanner;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * Measures games of bot seats played through GameManager and GameController
+ *
+ * Every game runs on a server without persistence and without clients. The bot turns
+ * run on this thread, one after the other, so the numbers are the cost of the server
+ * code and the bots, without thread hand-offs. The same bots then play rounds on the
+ * bare SimState engine; the difference per turn is what a bot seat costs the server
+ * (copying the table for the bot and playing the moves on Game).
+ * Usage: BotSeatBenchmark [games] [seats] [seed]
+ */
+public class BotSeatBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length >= 1 ? Integer.parseInt(args[0]) : 200;
+        int seats = args.length >= 2 ? Integer.parseInt(args[1]) : 2;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 42;
+
+        String[] types = {"heuristic", "chain"};
+
+        // Warm up
+        for (int i = 0; i < 3; i++) {
+            for (String type : types) {
+                runServer(type, games, seats, seed + i);
+                runEngine(type, games, seats, seed + i);
+            }
+        }
+
+        System.out.printf("%d-player games, %d per row%n", seats, games);
+        System.out.printf("%-10s %-8s %10s %12s %12s %12s %12s%n", "Bot", "Where", "Games/s", "Turns/s",
+                "Moves/s", "us/turn", "Plan us/turn");
+        for (String type : types) {
+            System.out.println(runServer(type, games, seats, seed).toRow(type, "server"));
+            System.out.println(runEngine(type, games, seats, seed).toRow(type, "engine"));
+        }
+    }
+
+    /**
+     * Plays whole games (to 500 points) of bots through a GameManager
+     */
+    private static Result runServer(String type, int games, int seats, long seed) {
+        Result result = new Result();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            // Like the engine run, the bots are made once and play every game
+            BotSeat[] bots = new BotSeat[seats];
+            for (int s = 0; s < seats; s++) {
+                bots[s] = new BotSeat(new CountingPlanner(newPlanner(type, seed + s), result),
+                        SearchBudget.iterations(0));
+            }
+            ArrayDeque<Runnable> botTurns = new ArrayDeque<>();
+            BotScheduler scheduler = new BotScheduler(botTurns::add, 1, 0);
+            long start = System.nanoTime();
+            for (int g = 0; g < games; g++) {
+                GameManager manager = new Server(0, false).getGameManager();
+                manager.setBotScheduler(scheduler);
+                for (int s = 0; s < seats; s++) {
+                    manager.addBot("Bot" + s, bots[s]);
+                }
+                manager.setRequiredPlayers(seats, null);
+
+                Runnable turn;
+                while ((turn = botTurns.poll()) != null) {
+                    turn.run();
+                    result.turns++;
+                }
+                if (!manager.isGameOver()) {
+                    throw new IllegalStateException("Game " + g + " did not finish");
+                }
+                result.games++;
+            }
+            result.nanos = System.nanoTime() - start;
+        } finally {
+            System.setOut(out);
+        }
+        return result;
+    }
+
+    /**
+     * Plays whole games of the same bots on the bare engine, scored like Game does:
+     * the round winner gets 25 points plus 5 for every stock card the others have left
+     * (a stuck round goes to the player with the fewest stock cards, like GameController)
+     */
+    private static Result runEngine(String type, int games, int seats, long seed) {
+        Result result = new Result();
+        Random random = new Random(seed);
+        TurnPlanner[] planners = new TurnPlanner[seats];
+        for (int s = 0; s < seats; s++) {
+            planners[s] = new CountingPlanner(newPlanner(type, seed + s), result);
+        }
+        SearchBudget budget = SearchBudget.iterations(0);
+
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            int[] scores = new int[seats];
+            boolean over = false;
+            while (!over) {
+                SimState state = SimState.deal(seats, random);
+                int turnsWithoutPlay = 0;
+                boolean played = false;
+                while (!state.isRoundOver() && turnsWithoutPlay < 2 * seats) {
+                    int turn = state.getTurns();
+                    TurnPlan plan = planners[state.getCurrent()].planTurn(state, budget);
+                    for (int move : plan.getMoves()) {
+                        played |= move != Move.END;
+                        state.apply(move);
+                    }
+                    if (state.getTurns() != turn || state.isRoundOver()) {
+                        result.turns++;
+                        turnsWithoutPlay = played ? 0 : turnsWithoutPlay + 1;
+                        played = false;
+                    }
+                }
+                int winner = state.getWinner() != SimState.NONE ? state.getWinner() : leastStockLeft(state);
+                scores[winner] += 25;
+                for (int s = 0; s < seats; s++) {
+                    scores[winner] += s == winner ? 0 : 5 * state.getStockSize(s);
+                }
+                over = scores[winner] >= 500;
+            }
+            result.games++;
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static int leastStockLeft(SimState state) {
+        int best = 0;
+        for (int s = 1; s < state.getSeats(); s++) {
+            if (state.getStockSize(s) < state.getStockSize(best)) {
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    private static TurnPlanner newPlanner(String type, long seed) {
+        return type.equals("chain") ? new ChainPlayer() : new HeuristicPlayer(seed);
+    }
+
+    /**
+     * Counts the plans, moves and planning time of a planner
+     */
+    private static class CountingPlanner implements TurnPlanner {
+        private final TurnPlanner planner;
+        private final Result result;
+
+        CountingPlanner(TurnPlanner planner, Result result) {
+            this.planner = planner;
+            this.result = result;
+        }
+
+        @Override
+        public TurnPlan planTurn(SimState observed, SearchBudget budget) {
+            long start = System.nanoTime();
+            TurnPlan plan = planner.planTurn(observed, budget);
+            result.planNanos += System.nanoTime() - start;
+            result.moves += plan.getMoves().length;
+            return plan;
+        }
+    }
+
+    private static class Result {
+        int games;
+        long turns;
+        long moves;
+        long nanos;
+        long planNanos;
+
+        String toRow(String bot, String where) {
+            double seconds = nanos / 1e9;
+            return String.format("%-10s %-8s %10.1f %12.0f %12.0f %12.2f %12.2f", bot, where,
+                    games / seconds, turns / seconds, moves / seconds,
+                    nanos / 1e3 / turns, planNanos / 1e3 / turns);
+        }
+    }
+}
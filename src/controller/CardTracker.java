@@ -0,0 +1,354 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static model.GameConstants.*;
+
+/**
+ * Keeps count of the cards a client has not seen yet in this round
+ *
+ * The deck is known (CardGenerator: 18 Skip-Bo cards and 9 of every value 1-12), so
+ * every card that shows up face up can be taken off: STOCK shows a stock top card,
+ * PLAY shows a card from an opponent's hand, HAND shows the cards we drew. A card
+ * that moves between open places (stock to building pile, discard to building pile,
+ * our own hand to anywhere) is not counted twice. The cards left are the draw pile,
+ * the hands of the opponents and the stock cards below the tops, and seen from here
+ * every one of them is equally likely to be any of the unseen cards.
+ *
+ * Every message is handled in constant time (a HAND is at most HAND_SIZE cards, a
+ * TABLE four piles), without copying the counts. Cleared building piles do not come
+ * back into the draw pile, so the counts hold for the whole round.
+ *
+ * After a RESYNC the history of the round is missing: the building piles on the next
+ * TABLE are taken off (as cards 1 up to their top), the cleared ones are not, so the
+ * counts are an estimate until the next round (see isExact).
+ */
+public class CardTracker {
+    public static final int SKIPBO = 0;
+    public static final int VALUES = 13;  // Skip-Bo and 1-12
+
+    // The deck of CardGenerator
+    private static final int SKIPBO_CARDS = 18;
+    private static final int NUMBER_COPIES = 9;
+    public static final int DECK_SIZE = SKIPBO_CARDS + NUMBER_COPIES * BUILDING_PILE_FULL_SIZE;
+
+    // Until there is a history, assume one building play per turn
+    private static final double PRIOR_BUILDS = 1;
+    private static final double PRIOR_TURNS = 1;
+
+    private final String playerName;
+
+    private final int[] unseen = new int[VALUES];
+    private int unseenTotal;
+    private final int[] hand = new int[VALUES];
+    private final int[] shownHand = new int[VALUES];  // Scratch for a HAND message
+    private int handSize;
+    private final int[] buildingTop = new int[NUM_BUILDING_PILES];  // 0 = empty
+
+    // Per seat, by name: the shown stock top card (-1 = not shown) and stock cards left (-1 = unknown)
+    private final Map<String, Integer> seats = new HashMap<>();
+    private int[] stockTop = new int[0];
+    private int[] stockLeft = new int[0];
+
+    private int turns;
+    private int builds;
+    private boolean exact;
+    private boolean countNextTable;
+
+    public CardTracker(String playerName) {
+        this.playerName = playerName;
+        startRound(new String[0], -1);
+    }
+
+    /**
+     * Takes in one message from the server, already split on "~"
+     */
+    public void update(String[] parts) {
+        switch (parts[0]) {
+            case "START":
+                // START~PLAYER,PLAYER,...
+                if (parts.length >= 2) {
+                    String[] names = parts[1].split(",");
+                    startRound(names, stockSize(names.length));
+                }
+                break;
+            case "ROUND":
+                // ROUND~PLAYER.SCORE,...
+                if (parts.length >= 2) {
+                    String[] names = namesOf(parts[1]);
+                    startRound(names, stockSize(names.length));
+                }
+                break;
+            case "RESYNC":
+                // RESYNC~PLAYER.SCORE,... then TABLE, HAND, STOCK and TURN
+                startRound(parts.length >= 2 ? namesOf(parts[1]) : new String[0], -1);
+                exact = false;
+                countNextTable = true;
+                break;
+            case "STOCK":
+                // STOCK~PLAYER~CARD
+                if (parts.length >= 3) {
+                    stockShown(parts[1], valueOf(parts[2]));
+                }
+                break;
+            case "HAND":
+                // HAND~CARD,CARD,... (empty hand: "HAND~" or just "HAND")
+                handShown(parts.length >= 2 ? parts[1] : "");
+                break;
+            case "TABLE":
+                // TABLE~B0.B1.B2.B3~PLAYER.D0.D1.D2.D3,...
+                if (parts.length >= 2) {
+                    tableShown(parts[1]);
+                }
+                break;
+            case "PLAY":
+                // PLAY~PLAYER~FROM~TO
+                if (parts.length >= 4) {
+                    played(parts[1], parts[2], parts[3]);
+                }
+                break;
+            case "TURN":
+                turns++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    // ========== QUERIES ==========
+
+    /**
+     * Gets how many cards of a value (0 = Skip-Bo) were not seen in this round
+     */
+    public int getUnseen(int value) {
+        return unseen[value];
+    }
+
+    public int getUnseenTotal() {
+        return unseenTotal;
+    }
+
+    /**
+     * Gets the chance that the next card drawn has a value (0 = Skip-Bo)
+     */
+    public double probabilityNextDraw(int value) {
+        return unseenTotal == 0 ? 0 : unseen[value] / (double) unseenTotal;
+    }
+
+    /**
+     * Gets the chance that at least one of the next draws cards has a value
+     */
+    public double probabilityInDraws(int value, int draws) {
+        double none = 1;
+        for (int i = 0; i < draws && i < unseenTotal; i++) {
+            none *= (double) (unseenTotal - unseen[value] - i) / (unseenTotal - i);
+        }
+        return 1 - Math.max(0, none);
+    }
+
+    /**
+     * Gets the value the next card on a building pile must have (1-12)
+     */
+    public int getBuildingNext(int pile) {
+        return buildingTop[pile] + 1;
+    }
+
+    /**
+     * Gets the expected number of turns until a building pile is full and cleared,
+     * at the rate building plays were made this round (spread over the four piles)
+     */
+    public double expectedTurnsToClear(int pile) {
+        double perPilePerTurn = (builds + PRIOR_BUILDS) / (turns + PRIOR_TURNS) / NUM_BUILDING_PILES;
+        return (BUILDING_PILE_FULL_SIZE - buildingTop[pile]) / perPilePerTurn;
+    }
+
+    /**
+     * Gets how many cards of a value (0 = Skip-Bo) are in our hand
+     */
+    public int getHandCount(int value) {
+        return hand[value];
+    }
+
+    public int getHandSize() {
+        return handSize;
+    }
+
+    /**
+     * Gets the shown stock top card of a player (0 = Skip-Bo), or -1 if it is not known
+     */
+    public int getStockTop(String player) {
+        Integer seat = seats.get(player);
+        return seat == null ? -1 : stockTop[seat];
+    }
+
+    /**
+     * Gets the stock cards a player has left, or -1 if it is not known (after a RESYNC)
+     */
+    public int getStockLeft(String player) {
+        Integer seat = seats.get(player);
+        return seat == null ? -1 : stockLeft[seat];
+    }
+
+    /**
+     * Checks if the counts are exact (false from a RESYNC until the next round)
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    // ========== MESSAGES ==========
+
+    private void startRound(String[] names, int stockSize) {
+        unseen[SKIPBO] = SKIPBO_CARDS;
+        for (int value = 1; value < VALUES; value++) {
+            unseen[value] = NUMBER_COPIES;
+        }
+        unseenTotal = DECK_SIZE;
+        Arrays.fill(hand, 0);
+        handSize = 0;
+        Arrays.fill(buildingTop, 0);
+        seats.clear();
+        for (int i = 0; i < names.length; i++) {
+            seats.put(names[i], i);
+        }
+        stockTop = new int[names.length];
+        Arrays.fill(stockTop, -1);
+        stockLeft = new int[names.length];
+        Arrays.fill(stockLeft, stockSize);
+        turns = 0;
+        builds = 0;
+        exact = true;
+        countNextTable = false;
+    }
+
+    private void stockShown(String player, int card) {
+        Integer seat = seats.get(player);
+        if (seat == null || card < 0) {
+            return;
+        }
+        // The same top card is shown again at the start of every turn
+        if (stockTop[seat] < 0) {
+            seen(card, 1);
+        }
+        stockTop[seat] = card;
+    }
+
+    private void handShown(String cards) {
+        // Cards we hold more of than before were just drawn
+        int[] counts = shownHand;
+        Arrays.fill(counts, 0);
+        int size = 0;
+        for (String card : cards.split(",")) {
+            int value = card.isEmpty() ? -1 : valueOf(card);
+            if (value >= 0) {
+                counts[value]++;
+                size++;
+            }
+        }
+        for (int value = 0; value < VALUES; value++) {
+            if (counts[value] > hand[value]) {
+                seen(value, counts[value] - hand[value]);
+            }
+            hand[value] = counts[value];
+        }
+        handSize = size;
+    }
+
+    private void tableShown(String buildingPiles) {
+        String[] piles = buildingPiles.split("\\.");
+        for (int pile = 0; pile < NUM_BUILDING_PILES && pile < piles.length; pile++) {
+            int top = valueOf(piles[pile]);
+            buildingTop[pile] = Math.max(top, 0);
+            // After a RESYNC: the cards on the piles were played before we came back
+            for (int value = 1; countNextTable && value <= top; value++) {
+                seen(value, 1);
+            }
+        }
+        countNextTable = false;
+    }
+
+    private void played(String player, String from, String to) {
+        Integer seat = seats.get(player);
+        if (from.equals("S")) {
+            // The stock top card was seen when it was shown, the next one is not shown yet
+            if (seat != null) {
+                if (stockTop[seat] < 0 && to.startsWith("B.")) {
+                    seen(buildingTop[pileOf(to)] + 1, 1);
+                }
+                stockTop[seat] = -1;
+                if (stockLeft[seat] > 0) {
+                    stockLeft[seat]--;
+                }
+            }
+        } else if (from.startsWith("H.")) {
+            int card = valueOf(from.substring(2));
+            if (card >= 0 && player.equals(playerName)) {
+                if (hand[card] > 0) {
+                    hand[card]--;
+                    handSize--;
+                }
+            } else if (card >= 0) {
+                seen(card, 1);
+            }
+        }
+        // A card from a discard pile was seen when it was discarded
+
+        if (to.startsWith("B.")) {
+            int pile = pileOf(to);
+            if (pile >= 0 && pile < NUM_BUILDING_PILES) {
+                int top = buildingTop[pile] + 1;
+                buildingTop[pile] = top == BUILDING_PILE_FULL_SIZE ? 0 : top;
+                builds++;
+            }
+        }
+    }
+
+    private void seen(int value, int count) {
+        int taken = Math.min(count, unseen[value]);
+        unseen[value] -= taken;
+        unseenTotal -= taken;
+    }
+
+    // ========== HELPER METHODS ==========
+
+    /**
+     * Gets the value of a card in the protocol ("SB" = 0, "1"-"12"), -1 for anything else ("X")
+     */
+    private static int valueOf(String card) {
+        if (card.equals("SB")) {
+            return SKIPBO;
+        }
+        try {
+            int value = Integer.parseInt(card);
+            return value >= 1 && value <= BUILDING_PILE_FULL_SIZE ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int pileOf(String position) {
+        try {
+            return Integer.parseInt(position.substring(2));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String[] namesOf(String scores) {
+        String[] names = scores.split(",");
+        for (int i = 0; i < names.length; i++) {
+            int dot = names[i].lastIndexOf('.');
+            names[i] = dot < 0 ? names[i] : names[i].substring(0, dot);
+        }
+        return names;
+    }
+
+    /**
+     * Gets the number of stock cards every player starts a round with (like Game)
+     */
+    private static int stockSize(int players) {
+        return players <= 4 ? STOCK_SIZE_SMALL_GAME : STOCK_SIZE_LARGE_GAME;
+    }
+}
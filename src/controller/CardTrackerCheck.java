@@ -0,0 +1,121 @@
+package controller;
+
+import static model.GameConstants.*;
+
+/**
+ * Checks the counts of a CardTracker over a scripted round of two players
+ *
+ * Feeds the messages the server sends to "me" while "bob" plays and keeps the counts
+ * it expects next to the tracker: every card shown for the first time is taken off
+ * once, cards that move between open places (our own hand, shown stock tops, discard
+ * piles) are not taken off again. Checks every count, the draw chances and the stock
+ * and building piles after every message, and the reset on RESYNC and ROUND.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: CardTrackerCheck
+ */
+public class CardTrackerCheck {
+    private static final int[] unseen = new int[CardTracker.VALUES];
+    private static final CardTracker tracker = new CardTracker("me");
+
+    public static void main(String[] args) {
+        reset();
+        send("START~me,bob");
+        check(tracker.getStockLeft("bob") == STOCK_SIZE_SMALL_GAME, "Stock of bob not dealt");
+
+        // A stock top is taken off once, however often it is shown
+        send("STOCK~me~1", 1);
+        send("STOCK~me~1");
+        send("STOCK~bob~SB", CardTracker.SKIPBO);
+        send("HAND~1,1,SB,7,12", 1, 1, CardTracker.SKIPBO, 7, 12);
+        check(tracker.getHandSize() == 5 && tracker.getHandCount(1) == 2, "Hand not counted");
+
+        // Our own cards and shown stock tops were seen already, bob's hand cards were not
+        send("PLAY~me~H.1~B.0");
+        send("PLAY~me~S~B.1");
+        send("PLAY~bob~H.2~B.0", 2);
+        send("PLAY~bob~S~B.0");
+        check(tracker.getStockTop("bob") == -1 && tracker.getStockLeft("bob") == STOCK_SIZE_SMALL_GAME - 1,
+                "Stock of bob not moved on");
+        // A stock card that was played before it was shown: the pile tells its value
+        send("PLAY~bob~S~B.0", 4);
+        send("PLAY~bob~H.2~D.2", 2);
+        send("PLAY~bob~D.2~B.1");
+        check(tracker.getBuildingNext(0) == 5 && tracker.getBuildingNext(1) == 3, "Building piles not moved on");
+
+        // Drawn cards are the ones we hold more of than before
+        send("TURN");
+        send("HAND~1,SB,7,12,3,3", 3, 3);
+        send("PLAY~me~H.3~B.1");
+        send("PLAY~me~H.SB~B.1");
+        check(tracker.getHandSize() == 4 && tracker.getHandCount(3) == 1 && tracker.getHandCount(1) == 1,
+                "Played cards still in the hand");
+
+        // A full building pile is cleared, its cards do not come back
+        for (int value = 1; value <= BUILDING_PILE_FULL_SIZE; value++) {
+            send("PLAY~bob~H." + value + "~B.3", value);
+        }
+        check(tracker.getBuildingNext(3) == 1, "Full building pile not cleared");
+        checkChances();
+
+        // After a RESYNC only the cards on the building piles are taken off, once
+        reset();
+        send("RESYNC~me.0,bob.0");
+        send("TABLE~3.X.1.X~me.X.X.X.X,bob.X.X.X.X", 1, 2, 3, 1);
+        send("TABLE~3.X.1.X~me.X.X.X.X,bob.X.X.X.X");
+        check(!tracker.isExact() && tracker.getStockLeft("bob") == -1, "RESYNC counted as exact");
+
+        reset();
+        send("ROUND~me.5,bob.0");
+        check(tracker.isExact() && tracker.getBuildingNext(0) == 1, "ROUND did not start over");
+        System.out.println("OK");
+    }
+
+    /**
+     * Sends a message and takes the given cards off the expected counts
+     */
+    private static void send(String message, int... seen) {
+        tracker.update(message.split("~"));
+        for (int value : seen) {
+            unseen[value]--;
+        }
+        checkCounts();
+    }
+
+    private static void reset() {
+        unseen[CardTracker.SKIPBO] = 18;
+        for (int value = 1; value < CardTracker.VALUES; value++) {
+            unseen[value] = 9;
+        }
+    }
+
+    private static void checkCounts() {
+        int total = 0;
+        for (int value = 0; value < CardTracker.VALUES; value++) {
+            check(tracker.getUnseen(value) == unseen[value],
+                    "Unseen " + value + ": " + tracker.getUnseen(value) + ", expected " + unseen[value]);
+            total += unseen[value];
+        }
+        check(tracker.getUnseenTotal() == total, "Unseen total " + tracker.getUnseenTotal() + ", expected " + total);
+    }
+
+    private static void checkChances() {
+        double sum = 0;
+        for (int value = 0; value < CardTracker.VALUES; value++) {
+            double next = tracker.probabilityNextDraw(value);
+            check(Math.abs(tracker.probabilityInDraws(value, 1) - next) < 1e-12, "Chance of one draw differs");
+            check(tracker.probabilityInDraws(value, 3) >= next, "Three draws less likely than one");
+            sum += next;
+        }
+        check(Math.abs(sum - 1) < 1e-9, "Chances of the next draw add up to " + sum);
+        // Drawn without putting back: the chance that neither of two draws is a 3
+        int total = tracker.getUnseenTotal();
+        double none = (double) (total - unseen[3]) / total * (total - unseen[3] - 1) / (total - 1);
+        check(Math.abs(tracker.probabilityInDraws(3, 2) - (1 - none)) < 1e-12, "Chance of two draws is wrong");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package controller;
+
+import protocol.common.Feature;
+import protocol.server.Chat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends chat messages to a channel: the players at a table, or the lobby
+ *
+ * A message is encoded once and the same frame goes to every member of the channel
+ * with the CHAT feature, on their low-priority chat lane (see Outbound), so a room
+ * full of chat costs one encoding per message and never holds up a game message.
+ * Every sender has a token bucket: a burst of BURST messages, then RATE_PER_SECOND.
+ * Messages over the rate are dropped; the sender hears it once (ERROR~208) until it
+ * gets a message through again.
+ */
+public class ChatService {
+    /** Longest chat message */
+    public static final int MAX_LENGTH = 200;
+
+    /** Messages a sender can send at once, and on average per second after that */
+    public static final double BURST = 5;
+    public static final double RATE_PER_SECOND = 1;
+
+    /** What happened to a message */
+    public enum Result { SENT, LIMITED, DROPPED }
+
+    private final Map<String, Sender> senders = new ConcurrentHashMap<>();
+
+    // Counters (see getStats)
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+    private final AtomicLong laneDrops = new AtomicLong();
+
+    /**
+     * Sends a message of a player to the members of a channel (the sender included)
+     * @return SENT, LIMITED for the first message over the rate, DROPPED for the ones after it
+     */
+    public Result send(String player, String message, Iterable<ClientHandler> channel) {
+        Sender sender = senders.computeIfAbsent(player, name -> new Sender(System.nanoTime()));
+        if (!sender.bucket.tryTake(System.nanoTime())) {
+            limited.incrementAndGet();
+            synchronized (sender) {
+                if (sender.warned) {
+                    return Result.DROPPED;
+                }
+                sender.warned = true;
+                return Result.LIMITED;
+            }
+        }
+        synchronized (sender) {
+            sender.warned = false;
+        }
+
+        byte[] frame = Outbound.encode(new Chat(player, message).transformToProtocolString());
+        long count = 0;
+        for (ClientHandler member : channel) {
+            if (member != null && member.hasFeature(Feature.CHAT)) {
+                if (!member.sendChat(frame)) {
+                    laneDrops.incrementAndGet();
+                }
+                count++;
+            }
+        }
+        sent.incrementAndGet();
+        frames.addAndGet(count);
+        return Result.SENT;
+    }
+
+    /**
+     * Forgets the rate of a player that left
+     */
+    public void forget(String player) {
+        senders.remove(player);
+    }
+
+    /**
+     * Gets the counters: messages sent and the frames they fanned out to, messages over the rate,
+     * chat frames dropped for clients that were too far behind
+     */
+    public String getStats() {
+        return String.format("%d messages to %d clients, %d over the rate, %d dropped in full lanes",
+                sent.get(), frames.get(), limited.get(), laneDrops.get());
+    }
+
+    /**
+     * The rate of one sender
+     */
+    private static final class Sender {
+        final TokenBucket bucket;
+        boolean warned;
+
+        Sender(long nowNanos) {
+            this.bucket = new TokenBucket(BURST, RATE_PER_SECOND, nowNanos);
+        }
+    }
+}
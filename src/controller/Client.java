@@ -63,7 +63,7 @@ public class Client {
             System.out.println("Connected to server at " + host + ":" + port);
 
             // Send HELLO command
-            Hello hello = new Hello(playerName, new Feature[0]);
+            Hello hello = new Hello(playerName, new Feature[]{Feature.CHAT});
             sendMessage(hello.transformToProtocolString());
             System.out.println("Announced as: " + playerName);
 
@@ -1,22 +1,46 @@
 package controller;
 
 import protocol.Command;
+import protocol.common.ErrorCode;
+import protocol.common.Feature;
 import protocol.common.position.*;
 import protocol.common.Card;
 
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles communication with one connected client
+ *
+ * A connection that sends nothing for PING_AFTER_SECONDS gets a PING; when nothing
+ * comes back within PONG_WAIT_SECONDS it is closed, like the player left.
+ *
+ * Lines are at most MAX_LINE_BYTES long and every command class has a rate per
+ * connection (see ConnectionGuard): lines over it are dropped before they are parsed,
+ * a client that keeps it up is paused and then closed. A client that does not read
+ * what it is sent is closed once MAX_GAME_BACKLOG messages wait for it.
  */
 public class ClientHandler implements Runnable {
+    private static final long PING_AFTER_SECONDS = 120;
+    private static final long PONG_WAIT_SECONDS = 60;
+
+    /** The longest line a client can send (a CHAT of ChatService.MAX_LENGTH fits easily) */
+    private static final int MAX_LINE_BYTES = 1024;
+
+    /** Game messages waiting for a client before it counts as not reading */
+    private static final int MAX_GAME_BACKLOG = 10_000;
+
     private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private Outbound out;   // Written by its own thread (see Outbound)
+    private FrameReader in;
+    private ConnectionGuard guard;  // Only used by the thread that reads
     private Server server;
     private String clientName;
-    private boolean running;
+    private String features = "";  // The feature letters of HELLO
+    private volatile boolean running;
+    private volatile long lastHeard;  // When the last line came in (System.nanoTime)
+    private boolean pinged;           // Only used by the idle check on the timing wheel
 
     public ClientHandler(Socket socket, Server server){
         this.socket = socket;
@@ -27,12 +51,41 @@ public class ClientHandler implements Runnable {
     @Override
     public void run() {
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);
-
-            String message;
-            while (running && (message = in.readLine()) != null) {
-                handleClientMessage(message.trim());
+            in = new FrameReader(socket.getInputStream(), MAX_LINE_BYTES);
+            guard = new ConnectionGuard(server.getGameManager().getGuardCounters(), System.nanoTime());
+            out = new Outbound(new BufferedOutputStream(socket.getOutputStream()));
+            Thread writer = new Thread(out, "client-writer");
+            writer.setDaemon(true);
+            writer.start();
+            lastHeard = System.nanoTime();
+            watchIdle(TimeUnit.SECONDS.toNanos(PING_AFTER_SECONDS));
+
+            while (running) {
+                String message;
+                try {
+                    message = in.readLine();
+                } catch (FrameReader.FrameTooLongException e) {
+                    lastHeard = System.nanoTime();
+                    if (!penalize(guard.oversized(e.isContinued(), lastHeard), ErrorCode.INVALID_COMMAND)) {
+                        break;
+                    }
+                    continue;
+                }
+                if (message == null) {
+                    break;
+                }
+                lastHeard = System.nanoTime();
+                message = message.trim();
+
+                // The command decides the bucket, the line is only parsed when it gets a token
+                int end = message.indexOf(Command.SEPERATOR);
+                String command = end < 0 ? message : message.substring(0, end);
+                ConnectionGuard.Verdict verdict = guard.admit(command, lastHeard);
+                if (verdict == ConnectionGuard.Verdict.ACCEPT) {
+                    handleClientMessage(message);
+                } else if (!penalize(verdict, ErrorCode.RATE_LIMITED)) {
+                    break;
+                }
             }
         } catch (IOException e) {
             System.err.println("Client handler error: " + e.getMessage());
@@ -41,7 +94,10 @@ public class ClientHandler implements Runnable {
         }
     }
 
-    private void handleClientMessage(String message) {
+    /**
+     * Handles one line from the client (package-private: benchmarks feed connections without a socket)
+     */
+    void handleClientMessage(String message) {
         if (message.isEmpty()) {
             return;
         }
@@ -61,7 +117,7 @@ public class ClientHandler implements Runnable {
 
         // Handle each command type using switch (cleaner for protocol)
         if (command.equals("HELLO")) {
-            // Protocol: HELLO~NAME~FEATURES
+            // Protocol: HELLO~NAME~FEATURES[~TOKEN]
             if (parts.length >= 2) {
                 String playerName = parts[1];
 
@@ -83,8 +139,17 @@ public class ClientHandler implements Runnable {
                     }
                 }
 
-                this.clientName = playerName;
-                gameManager.addPlayer(playerName, features, this);
+                // Session token (optional): reconnect to a held seat
+                String sessionToken = null;
+                if (parts.length >= 4 && !parts[3].isEmpty()) {
+                    sessionToken = parts[3];
+                }
+
+                // The name is ours only once the manager took it (not on NAME_IN_USE)
+                this.features = features;
+                if (gameManager.addPlayer(playerName, features, sessionToken, this)) {
+                    this.clientName = playerName;
+                }
             }
         } else if (command.equals("GAME")) {
             // Protocol: GAME~AMOUNT
@@ -124,21 +189,50 @@ public class ClientHandler implements Runnable {
                     // Valid syntax, let GameManager handle the move
                     // GameManager will send ERROR~205 if not your turn
                     // GameManager will send ERROR~206 if invalid move
-                    gameManager.handleMove(clientName, from, to);
+                    gameManager.handleMove(clientName, from, to, this);
                 }
             }
         } else if (command.equals("END")) {
             // Protocol: END command ends the current player's turn
             if (clientName != null) {
-                gameManager.endTurn(clientName);
+                gameManager.endTurn(clientName, this);
             }
         } else if (command.equals("TABLE")) {
             if (clientName != null) {
-                gameManager.sendTableToPlayer(clientName);
+                gameManager.sendTableToPlayer(clientName, this);
             }
         } else if (command.equals("HAND")) {
             if (clientName != null) {
-                gameManager.sendHandToPlayer(clientName);
+                gameManager.sendHandToPlayer(clientName, this);
+            }
+        } else if (command.equals("PONG")) {
+            // Protocol: PONG, the answer to PING (reading it was enough)
+        } else if (command.equals("HINT")) {
+            // Protocol: HINT, answered with HINT~MOVE,MOVE,... (or ERROR~205 when it is not our turn)
+            if (clientName != null) {
+                gameManager.requestHint(clientName, this);
+            }
+        } else if (command.equals("WATCH")) {
+            // Protocol: WATCH~PLAYER, watch the game of a player (START and RESYNC, then its messages)
+            if (clientName == null) {
+                String errorMsg = new protocol.server.Error(protocol.common.ErrorCode.COMMAND_NOT_ALLOWED).transformToProtocolString();
+                sendMessage(errorMsg);
+            } else if (parts.length != 2) {
+                String errorMsg = new protocol.server.Error(protocol.common.ErrorCode.INVALID_COMMAND).transformToProtocolString();
+                sendMessage(errorMsg);
+            } else {
+                gameManager.watch(clientName, parts[1], this);
+            }
+        } else if (command.equals("CHAT")) {
+            // Protocol: CHAT~MESSAGE, to the table or the lobby (the message cannot contain "~")
+            if (clientName == null) {
+                String errorMsg = new protocol.server.Error(protocol.common.ErrorCode.COMMAND_NOT_ALLOWED).transformToProtocolString();
+                sendMessage(errorMsg);
+            } else if (parts.length != 2) {
+                String errorMsg = new protocol.server.Error(protocol.common.ErrorCode.INVALID_COMMAND).transformToProtocolString();
+                sendMessage(errorMsg);
+            } else {
+                gameManager.chat(clientName, parts[1], this);
             }
         } else {
             // Unknown command - send ERROR~204 (INVALID_COMMAND)
@@ -148,6 +242,33 @@ public class ClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Carries out what the guard decided about a line that is dropped
+     * The client hears about it at most once a second; a PAUSE then reads nothing for a while.
+     * @return false if the connection is to be closed
+     */
+    private boolean penalize(ConnectionGuard.Verdict verdict, ErrorCode error) {
+        String sender = (clientName != null) ? clientName : "unknown";
+        if (verdict != ConnectionGuard.Verdict.DISCONNECT && guard.shouldWarn(lastHeard)) {
+            sendMessage(new protocol.server.Error(error).transformToProtocolString());
+        }
+        switch (verdict) {
+            case PAUSE:
+                System.out.println("Flood from " + sender + ", not reading it for " + guard.getPauseMillis() + " ms");
+                try {
+                    Thread.sleep(guard.getPauseMillis());
+                } catch (InterruptedException e) {
+                    return false;
+                }
+                return true;
+            case DISCONNECT:
+                System.out.println("Flood from " + sender + ", closing");
+                return false;
+            default:
+                return true;
+        }
+    }
+
     private Position parsePosition(String posStr) {
         try {
             // Split position string by '.'
@@ -253,18 +374,82 @@ public class ClientHandler implements Runnable {
         return true;
     }
 
+    /**
+     * Gets the name from the HELLO of this client, or null before it
+     */
+    public String getClientName() {
+        return clientName;
+    }
+
+    /**
+     * Checks if the client announced a feature in its HELLO
+     */
+    public boolean hasFeature(Feature feature) {
+        return features.indexOf(feature.getLetter()) >= 0;
+    }
+
+    /**
+     * Sends a game message (everything but chat), it goes before any chat that waits
+     */
     public void sendMessage(String message) {
-        if (out != null) {
-            out.println(message);
+        if (out != null && out.sendGame(Outbound.encode(message)) > MAX_GAME_BACKLOG && running) {
+            System.out.println((clientName != null ? clientName : "unknown") + " does not read, closing");
+            server.getGameManager().getGuardCounters().slowConsumer();
+            disconnect();
         }
     }
 
+    /**
+     * Sends an encoded chat line, after the game messages that wait
+     * @return false if the client was so far behind that older chat was dropped
+     */
+    public boolean sendChat(byte[] frame) {
+        return out == null || out.sendChat(frame);
+    }
+
+    // ========== IDLE CONNECTIONS ==========
+
+    /**
+     * Checks the connection again after a delay
+     * The deadline moves with every line read, so the check is not rescheduled
+     * for every line: it looks when the last line came and waits the time left.
+     */
+    private void watchIdle(long delayNanos) {
+        server.getGameManager().getTimingWheel().schedule(this::checkIdle, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkIdle() {
+        if (!running) {
+            return;
+        }
+        long pingAfter = TimeUnit.SECONDS.toNanos(PING_AFTER_SECONDS);
+        long silent = System.nanoTime() - lastHeard;
+        if (silent < pingAfter) {
+            pinged = false;
+            watchIdle(pingAfter - silent);
+        } else if (!pinged) {
+            pinged = true;
+            sendMessage(new protocol.server.Ping().transformToProtocolString());
+            watchIdle(TimeUnit.SECONDS.toNanos(PONG_WAIT_SECONDS));
+        } else {
+            System.out.println("No answer from " + (clientName != null ? clientName : "unknown") + ", closing");
+            disconnect();
+        }
+    }
+
+    /**
+     * Gets the outbound lanes of this connection (spectator frames go straight in)
+     */
+    Outbound getOutbound() {
+        return out;
+    }
+
     private void cleanup() {
         running = false;
 
-        // Tell the game manager this player disconnected
+        // Tell the game manager this player disconnected (their seat may be held)
         if (clientName != null) {
-            server.getGameManager().removePlayer(clientName);
+            server.getGameManager().disconnectPlayer(clientName, this);
         }
 
         // Tell the server this client disconnected
@@ -283,4 +468,17 @@ public class ClientHandler implements Runnable {
     public void stop() {
         running = false;
     }
+
+    /**
+     * Closes the connection, the handler thread then cleans up
+     * Used when the player reconnected on a new connection
+     */
+    public void disconnect() {
+        running = false;
+        try {
+            if (socket != null && !socket.isClosed()) socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,196 @@
+package controller;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits what one connection can make the server do
+ *
+ * Every command class has its own token bucket per connection: moves (PLAY, END) get
+ * a big burst since a turn is many plays at once, questions (TABLE, HAND, HINT) are
+ * what costs the most to answer, so they get a small one, and the session commands
+ * (HELLO, GAME, WATCH) are rare. A line over its rate is dropped without being parsed.
+ *
+ * Every dropped line is a strike, a line over the length cap (see FrameReader) counts
+ * OVERSIZED_STRIKES and one more for every further cap's length of it. Strikes wear
+ * off, one per STRIKE_DECAY_MILLIS. At STRIKES_TO_PAUSE the connection is not read for
+ * a while (the first pause FIRST_PAUSE_MILLIS, every next one twice as long), so the
+ * client is held back by TCP without costing a thread anything but sleeping. The
+ * pause after MAX_PAUSES closes the connection. Pauses are forgotten after
+ * FORGIVE_PAUSES_SECONDS without one.
+ *
+ * A guard belongs to the thread that reads its connection, so it takes no locks.
+ */
+public class ConnectionGuard {
+    /** Strikes that pause the connection, and how fast they wear off */
+    public static final int STRIKES_TO_PAUSE = 10;
+    public static final long STRIKE_DECAY_MILLIS = 1000;
+
+    /** Strikes for a line over the length cap */
+    public static final int OVERSIZED_STRIKES = 3;
+
+    /** The first pause, doubled for every next one */
+    public static final long FIRST_PAUSE_MILLIS = 1000;
+
+    /** Pauses a connection gets before it is closed, and how long until they are forgotten */
+    public static final int MAX_PAUSES = 3;
+    public static final long FORGIVE_PAUSES_SECONDS = 300;
+
+    private static final long WARN_EVERY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /** What to do with a line */
+    public enum Verdict { ACCEPT, DROP, PAUSE, DISCONNECT }
+
+    /**
+     * The commands that share a bucket: a burst of lines, then a rate per second
+     */
+    enum CommandClass {
+        MOVE(40, 20),
+        QUERY(10, 5),
+        SESSION(5, 0.5),
+        OTHER(20, 5);
+
+        final double burst;
+        final double ratePerSecond;
+
+        CommandClass(double burst, double ratePerSecond) {
+            this.burst = burst;
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        static CommandClass of(String command) {
+            switch (command) {
+                case "PLAY":
+                case "END":
+                    return MOVE;
+                case "TABLE":
+                case "HAND":
+                case "HINT":
+                    return QUERY;
+                case "HELLO":
+                case "GAME":
+                case "WATCH":
+                    return SESSION;
+                default:
+                    return OTHER;  // CHAT (limited again per player), PONG, unknown commands
+            }
+        }
+    }
+
+    private final TokenBucket[] buckets = new TokenBucket[CommandClass.values().length];
+    private final Counters counters;
+    private double strikes;
+    private long lastStrike;
+    private int pauses;
+    private long lastPause;
+    private long pauseMillis;
+    private long lastWarning;
+    private boolean warned;
+
+    /**
+     * @param counters The counters of every connection on the server
+     * @param nowNanos The current System.nanoTime()
+     */
+    public ConnectionGuard(Counters counters, long nowNanos) {
+        this.counters = counters;
+        for (CommandClass commandClass : CommandClass.values()) {
+            buckets[commandClass.ordinal()] =
+                    new TokenBucket(commandClass.burst, commandClass.ratePerSecond, nowNanos);
+        }
+        this.lastStrike = nowNanos;
+    }
+
+    /**
+     * Decides about a line with a command
+     */
+    public Verdict admit(String command, long nowNanos) {
+        if (buckets[CommandClass.of(command).ordinal()].tryTake(nowNanos)) {
+            counters.accepted.incrementAndGet();
+            return Verdict.ACCEPT;
+        }
+        counters.dropped.incrementAndGet();
+        return strike(1, nowNanos);
+    }
+
+    /**
+     * Decides about a line that was over the length cap (it is dropped anyway)
+     * @param continued If this is a further piece of a line that was reported already
+     */
+    public Verdict oversized(boolean continued, long nowNanos) {
+        if (continued) {
+            return strike(1, nowNanos);
+        }
+        counters.oversized.incrementAndGet();
+        return strike(OVERSIZED_STRIKES, nowNanos);
+    }
+
+    private Verdict strike(int count, long nowNanos) {
+        long decay = TimeUnit.MILLISECONDS.toNanos(STRIKE_DECAY_MILLIS);
+        strikes = Math.max(0, strikes - (nowNanos - lastStrike) / (double) decay) + count;
+        lastStrike = nowNanos;
+        if (strikes < STRIKES_TO_PAUSE) {
+            return Verdict.DROP;
+        }
+
+        strikes = 0;
+        if (nowNanos - lastPause > TimeUnit.SECONDS.toNanos(FORGIVE_PAUSES_SECONDS)) {
+            pauses = 0;
+        }
+        pauses++;
+        lastPause = nowNanos;
+        if (pauses > MAX_PAUSES) {
+            counters.disconnected.incrementAndGet();
+            return Verdict.DISCONNECT;
+        }
+        pauseMillis = FIRST_PAUSE_MILLIS << (pauses - 1);
+        counters.paused.incrementAndGet();
+        return Verdict.PAUSE;
+    }
+
+    /**
+     * Gets how long the last PAUSE lasts
+     */
+    public long getPauseMillis() {
+        return pauseMillis;
+    }
+
+    /**
+     * Checks if the client should hear that it was limited (ERROR~208): at most once a second
+     */
+    public boolean shouldWarn(long nowNanos) {
+        if (warned && nowNanos - lastWarning < WARN_EVERY_NANOS) {
+            return false;
+        }
+        warned = true;
+        lastWarning = nowNanos;
+        return true;
+    }
+
+    /**
+     * What the guards of all connections did
+     */
+    public static final class Counters {
+        private final AtomicLong accepted = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong oversized = new AtomicLong();
+        private final AtomicLong paused = new AtomicLong();
+        private final AtomicLong disconnected = new AtomicLong();
+        private final AtomicLong slowConsumers = new AtomicLong();
+
+        /**
+         * Counts a connection closed because it did not read what it was sent
+         */
+        public void slowConsumer() {
+            slowConsumers.incrementAndGet();
+        }
+
+        /**
+         * Gets the counters: lines accepted, dropped over the rate, over the length cap, pauses, closed connections
+         */
+        public String getStats() {
+            return String.format("%d lines, %d over the rate, %d too long, %d pauses, %d closed (%d slow readers)",
+                    accepted.get(), dropped.get(), oversized.get(), paused.get(),
+                    disconnected.get() + slowConsumers.get(), slowConsumers.get());
+        }
+    }
+}
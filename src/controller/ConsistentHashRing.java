@@ -0,0 +1,125 @@
+package controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Places keys (player names) on nodes (game servers) by consistent hashing
+ *
+ * Every node has points on a ring of 64-bit hashes, as many as its weight, and a key
+ * goes to the node of the first point at or after the key's hash. A node that comes
+ * or goes only moves the keys of its own points: the other keys stay where they are.
+ *
+ * Placement can skip nodes that are full: the key then goes to the next node on the
+ * ring that has room (consistent hashing with bounded loads), so a full node sends its
+ * overflow to its neighbours and not all to one.
+ *
+ * The ring changes rarely and is read on every placement, so a change makes a new
+ * ring and placement reads the current one without a lock.
+ */
+public class ConsistentHashRing<T> {
+    private final Map<T, Integer> weights = new TreeMap<>((a, b) -> a.toString().compareTo(b.toString()));
+    private volatile TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * Adds a node, or replaces the node with the same name
+     * @param weight The number of points of the node (at least 1)
+     */
+    public synchronized void add(T node, int weight) {
+        weights.remove(node);  // put would keep the old node of the same name
+        weights.put(node, Math.max(1, weight));
+        rebuild();
+    }
+
+    /**
+     * Removes a node, if it is the one on the ring (not a newer one of the same name)
+     */
+    public synchronized void remove(T node) {
+        if (ring.containsValue(node) && weights.remove(node) != null) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Places the points of every node (the node's toString names its points)
+     */
+    private void rebuild() {
+        TreeMap<Long, T> points = new TreeMap<>();
+        for (Map.Entry<T, Integer> entry : weights.entrySet()) {
+            String name = entry.getKey().toString();
+            for (int i = 0; i < entry.getValue(); i++) {
+                points.putIfAbsent(hash(name + "#" + i), entry.getKey());
+            }
+        }
+        ring = points;
+    }
+
+    /**
+     * Gets the node a key belongs to
+     * @return The node, or null if there are none
+     */
+    public T get(String key) {
+        return get(key, node -> true);
+    }
+
+    /**
+     * Gets the first node from the key's place on the ring that has room
+     * @param hasRoom Tells if a node can take the key
+     * @return The node, the key's own node if none has room, or null if there are no nodes
+     */
+    public T get(String key, Predicate<T> hasRoom) {
+        TreeMap<Long, T> points = ring;
+        if (points.isEmpty()) {
+            return null;
+        }
+        long start = hash(key);
+        Map.Entry<Long, T> first = points.ceilingEntry(start);
+        if (first == null) {
+            first = points.firstEntry();
+        }
+        Map.Entry<Long, T> entry = first;
+        do {
+            if (hasRoom.test(entry.getValue())) {
+                return entry.getValue();
+            }
+            entry = points.higherEntry(entry.getKey());
+            if (entry == null) {
+                entry = points.firstEntry();
+            }
+        } while (entry != first);
+        return first.getValue();
+    }
+
+    public synchronized int size() {
+        return weights.size();
+    }
+
+    /**
+     * Gets the nodes on the ring now
+     */
+    public synchronized List<T> getNodes() {
+        return new ArrayList<>(weights.keySet());
+    }
+
+    /**
+     * Hashes a string to 64 bits: FNV-1a over its UTF-8, then the MurmurHash3 finalizer
+     * (String.hashCode is too weak for nodes with names like "host:5001#17")
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
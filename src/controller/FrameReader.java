@@ -0,0 +1,99 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the lines of a connection, none longer than a cap
+ *
+ * BufferedReader.readLine keeps a line in memory however long it gets. This reader
+ * keeps at most maxBytes of a line: readLine reports a longer line as too long as
+ * soon as it passes the cap, and the next calls throw the rest of it away up to the
+ * newline (reporting it again for every maxBytes more), so the caller can count
+ * every piece against the connection. A line ends at "\n" ("\r\n" works too, the
+ * "\r" is trimmed like any space).
+ */
+public class FrameReader {
+    private final InputStream in;
+    private final byte[] line;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+    private boolean skipping;  // In the rest of a line that was too long
+
+    /**
+     * @param maxBytes The longest line kept, in bytes of UTF-8
+     */
+    public FrameReader(InputStream in, int maxBytes) {
+        this.in = in;
+        this.line = new byte[maxBytes];
+    }
+
+    /**
+     * Reads the next line
+     * @return The line without its newline, or null at the end of the stream
+     * @throws FrameTooLongException for every maxBytes of a line longer than the cap
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    // The end of the stream ends the last line, if there was one
+                    return length == 0 || skipping ? null : decode(length);
+                }
+            }
+            byte b = buffer[position++];
+            if (b == '\n') {
+                if (skipping) {
+                    skipping = false;  // The end of the long line, the next one starts
+                    length = 0;
+                    continue;
+                }
+                return decode(length);
+            }
+            if (length == line.length) {
+                boolean continued = skipping;
+                skipping = true;
+                throw new FrameTooLongException(line.length, continued);
+            }
+            if (!skipping) {
+                line[length] = b;
+            }
+            length++;
+        }
+    }
+
+    private String decode(int length) {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * A line longer than the cap came in (and is skipped)
+     */
+    public static class FrameTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean continued;
+
+        public FrameTooLongException(int maxBytes, boolean continued) {
+            super("Line longer than " + maxBytes + " bytes");
+            this.continued = continued;
+        }
+
+        /**
+         * Checks if this is a further piece of a line that was reported already
+         */
+        public boolean isContinued() {
+            return continued;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks how FrameReader splits a stream into lines and reports lines over its cap
+ *
+ * Every stream is read twice: in one piece, and one byte per read (so lines cross
+ * the reader's buffer at every place). A line of exactly the cap comes through. A
+ * longer one is reported at the first byte past the cap, then again (continued) at
+ * every byte that follows another cap's length of it, and the next line comes through
+ * whole.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: FrameReaderCheck
+ */
+public class FrameReaderCheck {
+    private static final int CAP = 8;
+
+    public static void main(String[] args) throws IOException {
+        for (boolean trickle : new boolean[]{false, true}) {
+            expect(trickle, "short\n12345678\nnext\n", "short", "12345678", "next", null);
+            expect(trickle, "123456789\nnext\n", "!", "next", null);
+            expect(trickle, "1234567812345678\nnext\n", "!", "next", null);
+            expect(trickle, "12345678123456781\nnext\n", "!", "next", null);
+            expect(trickle, "123456781234567812\nnext\n", "!", "+", "next", null);
+            expect(trickle, "x".repeat(5 * CAP) + "\n\nnext", "!", "+", "+", "+", "", "next", null);
+            // Two bytes of UTF-8 per letter: four fit, five do not
+            expect(trickle, "\u00e9".repeat(4) + "\n" + "\u00e9".repeat(5) + "\nnext\n",
+                    "\u00e9".repeat(4), "!", "next", null);
+            expect(trickle, "play\r\nlast", "play\r", "last", null);
+            expect(trickle, "ok\n123456789", "ok", "!", null);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Reads a stream and checks every result: a line, "!" for a line over the cap,
+     * "+" for a further piece of it, null for the end of the stream
+     */
+    private static void expect(boolean trickle, String stream, String... results) throws IOException {
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        InputStream in = new ByteArrayInputStream(bytes);
+        if (trickle) {
+            in = new InputStream() {
+                private int next;
+
+                @Override
+                public int read() {
+                    return next < bytes.length ? bytes[next++] & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    int b = read();
+                    if (b < 0) {
+                        return -1;
+                    }
+                    buffer[offset] = (byte) b;
+                    return 1;
+                }
+            };
+        }
+        FrameReader reader = new FrameReader(in, CAP);
+        for (int i = 0; i < results.length; i++) {
+            String actual;
+            try {
+                actual = reader.readLine();
+            } catch (FrameReader.FrameTooLongException e) {
+                actual = e.isContinued() ? "+" : "!";
+            }
+            String expected = results[i];
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                throw new IllegalStateException("Result " + i + " of " + show(stream)
+                        + (trickle ? " (a byte per read)" : "") + " is " + show(actual) + ", expected " + show(expected));
+            }
+        }
+    }
+
+    private static String show(String text) {
+        return text == null ? "the end" : '"' + text.replace("\r", "\\r").replace("\n", "\\n") + '"';
+    }
+}
@@ -1,27 +1,59 @@
 package controller;
 
+import bot.TurnPlan;
 import model.*;
 import protocol.server.*;
 import protocol.common.ErrorCode;
 import protocol.common.position.*;
+import storage.GameJournal;
+import storage.GameRecord;
+import storage.SnapshotEntry;
+import storage.SnapshotSource;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static model.GameConstants.*;
 
 /**
  * GameController translates protocol messages to game actions
  * This makes the code simpler:
- * - GameManager = lobby management (add players, start game)
- * - GameController = game logic (handle moves, track scores)
+ * - GameManager = lobby management (add players, match them, start games)
+ * - GameController = game logic (handle moves, track scores), one per running game
+ *
+ * Messages of a game only go to its own players, and the public ones to its
+ * spectators through the SpectatorFeed.
+ *
+ * All public methods are synchronized on the controller, so the game
+ * only changes on one thread at a time.
+ *
+ * Seats can be played by a BotSeat instead of a client. When it is their turn the
+ * bot plays on the BotScheduler: it plans without holding the lock and its moves go
+ * through the same code as PLAY and END, so clients see the usual messages.
  */
-public class GameController {
+public class GameController implements SnapshotSource {
     private Game game;
     private Server server;
     private List<String> playerNames;      // Names of all players
-    private List<ClientHandler> playerClients;  // Connections to all players
+    private List<ClientHandler> playerClients;  // Connections to all players (null = seat held)
+    private List<String> sessionTokens;    // Session token of every seat
+    private GameJournal journal;           // Persists every change (null = not persisted)
+    private GameRecord record;             // History of the game for the archive and leaderboard
+    private boolean ended;                 // Game finished or aborted
+    private List<BotSeat> seatBots;        // The bot of every seat (null = played by a client)
+    private BotScheduler botScheduler;     // Where the bots play their turns
+    private WinEstimator winEstimator;     // Estimates the chances to win for the watchers (null = none)
+    private SpectatorFeed spectators;      // The public messages for the spectators
+    private TimingWheel timer;             // Runs the turn deadlines (null = no deadlines)
+    private long turnTimeoutSeconds;
+    private TimingWheel.Timer turnDeadline; // The deadline of the current turn
+    private long turnNumber;               // Counts every new turn, so a bot never plays a turn twice
+    private boolean builtThisTurn;
+    private boolean playedThisTurn;
+    private int turnsWithoutBuild;         // Ended turns without a building play (to end stuck rounds)
+    private int turnsWithoutPlay;          // Ended turns without any card played
 
     /**
      * Creates a new GameController
@@ -29,64 +61,137 @@ public class GameController {
      * @param server The server for broadcasting
      * @param playerNames The names of all players
      * @param playerClients The client handlers of all players
+     * @param sessionTokens The session tokens of all players
+     * @param journal The journal of this game, or null to keep the game in memory only
+     * @param record The history of this game so far
+     * @param seatBots The bot of every seat, null for seats played by a client
+     * @param botScheduler Runs the turns of the bots
+     * @param winEstimator Estimates the chances to win after every move, or null for no ODDS
+     * @param timer Runs the turn deadlines, or null for turns without a deadline
+     * @param turnTimeoutSeconds How long a turn may take before it is played for the player
      */
     public GameController(Game game, Server server,
                          List<String> playerNames,
-                         List<ClientHandler> playerClients) {
+                         List<ClientHandler> playerClients,
+                         List<String> sessionTokens,
+                         GameJournal journal,
+                         GameRecord record,
+                         List<BotSeat> seatBots,
+                         BotScheduler botScheduler,
+                         WinEstimator winEstimator,
+                         TimingWheel timer,
+                         long turnTimeoutSeconds) {
         this.game = game;
         this.server = server;
         this.playerNames = playerNames;
         this.playerClients = playerClients;
+        this.sessionTokens = sessionTokens;
+        this.journal = journal;
+        this.record = record;
+        this.seatBots = seatBots;
+        this.botScheduler = botScheduler;
+        this.winEstimator = winEstimator;
+        this.spectators = new SpectatorFeed(record.getGameId(), this::captureSpectatorSnapshot);
+        this.timer = timer;
+        this.turnTimeoutSeconds = turnTimeoutSeconds;
+    }
+
+    /**
+     * Starts the game: START, the state (TABLE, HAND, all STOCK top cards), then TURN
+     */
+    public synchronized void start() {
+        broadcast(new Start(playerNames.toArray(new String[0])).transformToProtocolString());
+        sendGameStateToAll();
+        for (Player player : game.getPlayers()) {
+            sendStockTopCard(player);
+        }
+        Player currentPlayer = game.getCurrentPlayer();
+        broadcast(new Turn(currentPlayer.getName()).transformToProtocolString());
+
+        System.out.println("Game " + record.getGameId() + " started! " + currentPlayer.getName() + " begins.");
+        estimateWinChances();
+        startTurnDeadline();
+        scheduleBotTurn();
     }
 
     /**
      * Processes a move from a player (PLAY command)
      * Checks if the move is valid and executes it
      */
-    public void handleMove(String playerName, Position from, Position to) {
+    public synchronized void handleMove(String playerName, Position from, Position to) {
         Player player = getPlayerByName(playerName);
         if (player == null) {
             return;
         }
 
-        try {
-            // Convert position to card action
-            CardAction action = positionToAction(player, from, to);
-
-            if (action != null) {
-                // Execute the move in the game
-                List<CardAction> actions = new ArrayList<>();
-                actions.add(action);
-                game.doMove(actions, player);
-
-                // Broadcast the move to all players
-                String playMsg = new protocol.server.Play(from, to, playerName).transformToProtocolString();
-                server.broadcast(playMsg);
-
-                // If played from stock pile: send new top card
-                if (from instanceof StockPilePosition) {
-                    sendStockTopCard(player);
-                }
+        // Convert position to card action
+        CardAction action = positionToAction(player, from, to);
 
-                // Send updated game state
-                sendGameStateToAll();
+        if (action == null || !executeAction(player, action, from, to)) {
+            sendErrorToPlayer(playerName, ErrorCode.INVALID_MOVE);
+        }
+    }
 
-                // Check if player won this ROUND
-                if (game.hasPlayerWon(player)) {
-                    handleRoundWin(player);
-                    return;  // Round ended, don't continue
-                }
+    /**
+     * Plays one action of a player and tells everyone
+     * Ends the turn after a discard and the round when the stock pile is empty.
+     *
+     * @param from Where the card comes from in the PLAY message (null = take it from the action)
+     * @param to Where the card goes in the PLAY message (null = take it from the action)
+     * @return false if the game did not accept the action
+     */
+    private boolean executeAction(Player player, CardAction action, Position from, Position to) {
+        try {
+            // Execute the move in the game
+            List<CardAction> actions = new ArrayList<>();
+            actions.add(action);
+            game.doMove(actions, player);
+        } catch (GameException e) {
+            return false;
+        }
 
-                // If this was a discard action, automatically end the turn
-                if (action instanceof CardActionHandToDiscardPile) {
-                    endTurn(playerName);
-                }
-            } else {
-                sendErrorToPlayer(playerName, ErrorCode.INVALID_MOVE);
+        // Persist the move before anyone gets to see it
+        int seat = game.getPlayers().indexOf(player);
+        if (journal != null) {
+            journal.cardAction(seat, action);
+        }
+        record.cardAction(seat, action);
+        playedThisTurn = true;
+        if (!(action instanceof CardActionHandToDiscardPile)) {
+            builtThisTurn = true;
+        }
+
+        // Broadcast the move to all players (nobody listens in an unwatched game of bots)
+        if (hasClients()) {
+            if (from == null) {
+                from = fromPosition(action);
+                to = toPosition(action);
             }
-        } catch (GameException e) {
-            sendErrorToPlayer(playerName, ErrorCode.INVALID_MOVE);
+            String playMsg = new protocol.server.Play(from, to, player.getName()).transformToProtocolString();
+            broadcast(playMsg);
+        }
+
+        // If played from stock pile: send new top card
+        if (action instanceof CardActionStockPileToBuildingPile) {
+            sendStockTopCard(player);
+        }
+
+        // Send updated game state
+        sendGameStateToAll();
+
+        // Check if player won this ROUND
+        if (game.hasPlayerWon(player)) {
+            handleRoundWin(player);
+            return true;  // Round ended, don't continue
+        }
+
+        // If this was a discard action, automatically end the turn
+        if (action instanceof CardActionHandToDiscardPile) {
+            endTurn(player.getName());
+        } else {
+            estimateWinChances();
         }
+        return true;
     }
 
     /**
@@ -96,16 +201,40 @@ public class GameController {
     private void handleRoundWin(Player player) {
         // Finish round and calculate scores
         RoundResult result = game.finishRound(player);
+        int seat = game.getPlayers().indexOf(player);
+        if (journal != null) {
+            journal.roundFinished(seat);
+        }
+        record.roundFinished(seat, result, System.currentTimeMillis());
 
         // Announce round winner
         announceRoundWinner(result);
 
         if (result.gameOver) {
             // Game is completely over! Overall winner has >= 500 points
+            ended = true;
+            if (journal != null) {
+                journal.gameFinished();
+            }
+            recordGameResult(result);
             announceOverallWinner(result.overallWinner);
+            if (winEstimator != null) {
+                winEstimator.gameEnded(record.getGameId());
+            }
+            spectators.close();
+            stopTurnDeadline();
         } else {
             // Start new round (scores are preserved)
             game.startNewRound();
+            turnNumber++;
+            builtThisTurn = false;
+            playedThisTurn = false;
+            turnsWithoutBuild = 0;
+            turnsWithoutPlay = 0;
+            if (journal != null) {
+                journal.roundStarted(game.getRoundSeed());
+            }
+            record.roundStarted(game.getRoundSeed(), System.currentTimeMillis());
             announceNewRound();
         }
     }
@@ -124,7 +253,7 @@ public class GameController {
 
         Winner.Score[] scoreArray = scores.toArray(new Winner.Score[0]);
         String msg = new Winner(scoreArray).transformToProtocolString();
-        server.broadcast(msg);
+        broadcast(msg);
 
         System.out.println("Round " + game.getRoundNumber() + " winner: " +
                            result.roundWinner.getName() +
@@ -145,6 +274,19 @@ public class GameController {
         // Here we only need to log
     }
 
+    /**
+     * Hands the history of the finished game to the archive and the leaderboard
+     */
+    private void recordGameResult(RoundResult result) {
+        List<Player> players = game.getPlayers();
+        int[] finalScores = new int[players.size()];
+        for (int i = 0; i < finalScores.length; i++) {
+            finalScores[i] = result.allScores.get(players.get(i));
+        }
+        record.gameFinished(players.indexOf(result.overallWinner), finalScores, System.currentTimeMillis());
+        server.getGameManager().gameFinished(record);
+    }
+
     /**
      * Announces a new round
      * Sends ROUND message and new game state
@@ -160,23 +302,29 @@ public class GameController {
 
         Round.Score[] scoreArray = scores.toArray(new Round.Score[0]);
         String msg = new Round(scoreArray).transformToProtocolString();
-        server.broadcast(msg);
+        broadcast(msg);
 
-        // Send new game state
+        // Send new game state, with the stock top cards of the new round
         sendGameStateToAll();
+        for (Player p : game.getPlayers()) {
+            sendStockTopCard(p);
+        }
 
         // Announce whose turn it is
         Player currentPlayer = game.getCurrentPlayer();
         String turnMsg = new Turn(currentPlayer.getName()).transformToProtocolString();
-        server.broadcast(turnMsg);
+        broadcast(turnMsg);
 
         System.out.println("New round started! Round " + game.getRoundNumber());
+        estimateWinChances();
+        startTurnDeadline();
+        scheduleBotTurn();
     }
 
     /**
      * Ends a player's turn (END command)
      */
-    public void endTurn(String playerName) {
+    public synchronized void endTurn(String playerName) {
         Player player = getPlayerByName(playerName);
         if (player == null) {
             return;
@@ -192,29 +340,354 @@ public class GameController {
         try {
             // End turn (goes to next player)
             game.endTurn();
+            if (journal != null) {
+                journal.turnEnded();
+            }
+            record.turnEnded(game.getPlayers().indexOf(player));
+            turnNumber++;
+            turnsWithoutBuild = builtThisTurn ? 0 : turnsWithoutBuild + 1;
+            turnsWithoutPlay = playedThisTurn ? 0 : turnsWithoutPlay + 1;
+            builtThisTurn = false;
+            playedThisTurn = false;
+            if (isStuck()) {
+                handleRoundWin(leastStockLeft());
+                return;
+            }
 
             // Get new current player
             Player nextPlayer = game.getCurrentPlayer();
 
-            // Broadcast TURN message
-            String turnMsg = new Turn(nextPlayer.getName()).transformToProtocolString();
-            server.broadcast(turnMsg);
-
-            // Send HAND to new player
+            // Send HAND and stock pile top card to the new player before its TURN,
+            // so a client can plan its whole turn as soon as TURN arrives
             sendHandToPlayer(nextPlayer.getName());
-
-            // Send stock pile top card for new player
             sendStockTopCard(nextPlayer);
 
+            // Broadcast TURN message
+            String turnMsg = new Turn(nextPlayer.getName()).transformToProtocolString();
+            broadcast(turnMsg);
+
+            estimateWinChances();
+            startTurnDeadline();
+            scheduleBotTurn();
         } catch (GameException e) {
             sendErrorToPlayer(playerName, ErrorCode.INVALID_MOVE);
         }
     }
 
+    /**
+     * Answers a HINT: copies the game for the player whose turn it is and lets the
+     * hint service solve it on its own threads (ERROR~205 when it is not their turn)
+     */
+    public void requestHint(String playerName, HintService hints) {
+        GameSnapshot snapshot;
+        long turn;
+        int seat;
+        ClientHandler client;
+        synchronized (this) {
+            Player player = getPlayerByName(playerName);
+            client = getClientByName(playerName);
+            if (player == null || client == null) {
+                return;
+            }
+            if (ended || game.getCurrentPlayer() != player) {
+                sendErrorToPlayer(playerName, ErrorCode.COMMAND_NOT_ALLOWED);
+                return;
+            }
+            snapshot = GameSnapshot.capture(game);
+            turn = turnNumber;
+            seat = game.getPlayers().indexOf(player);
+        }
+        hints.request(record.getGameId(), turn, snapshot, seat, client);
+    }
+
+    // ========== BOT SEATS ==========
+
+    /**
+     * Gets the bot name of every seat for the journal (see BotSeat.create), null for a person
+     */
+    public List<String> getBotTypes() {
+        List<String> types = new ArrayList<>();
+        for (int seat = 0; seat < playerNames.size(); seat++) {
+            BotSeat bot = seatBots == null ? null : seatBots.get(seat);
+            types.add(bot == null ? null : bot.getType());
+        }
+        return types;
+    }
+
+    /**
+     * Queues the turn of the bot of the current seat on the scheduler (if the seat has a bot)
+     * Called when a game starts and after every turn change.
+     */
+    public synchronized void scheduleBotTurn() {
+        if (ended || seatBots == null) {
+            return;
+        }
+        int seat = game.getPlayers().indexOf(game.getCurrentPlayer());
+        BotSeat bot = seatBots.get(seat);
+        if (bot != null) {
+            long turn = turnNumber;
+            botScheduler.submit(budgetScale -> playBotTurn(bot, turn, budgetScale));
+        }
+    }
+
+    /**
+     * Plays one turn of a bot: plan, play the plan, and plan again after drawing new cards
+     * The lock is only held to copy the table and to play the moves.
+     *
+     * @param budgetScale The part of its search budget the bot may use
+     */
+    private void playBotTurn(BotSeat bot, long turn, double budgetScale) {
+        while (true) {
+            GameSnapshot snapshot;
+            synchronized (this) {
+                if (ended || turnNumber != turn) {
+                    return;
+                }
+                snapshot = GameSnapshot.capture(game);
+            }
+
+            TurnPlan plan = bot.plan(snapshot, budgetScale);
+
+            synchronized (this) {
+                if (ended || turnNumber != turn) {
+                    return;
+                }
+                Player player = game.getCurrentPlayer();
+                for (int move : plan.getMoves()) {
+                    CardAction action = BotSeat.toAction(game, player, move);
+                    if (action == null || !executeAction(player, action, null, null)) {
+                        // END, or a move the game does not take: the turn is over either way
+                        endTurn(player.getName());
+                        return;
+                    }
+                    if (ended || turnNumber != turn) {
+                        return;
+                    }
+                }
+                if (plan.isComplete() || plan.getMoves().length == 0) {
+                    endTurn(player.getName());
+                    return;
+                }
+            }
+        }
+    }
+
+    // ========== TURN DEADLINES ==========
+
+    /**
+     * Starts the deadline of the turn that just began, instead of the one before
+     */
+    private void startTurnDeadline() {
+        stopTurnDeadline();
+        if (timer != null && !ended) {
+            long turn = turnNumber;
+            turnDeadline = timer.schedule(() -> handOffTimeout(turn), turnTimeoutSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void stopTurnDeadline() {
+        if (turnDeadline != null) {
+            turnDeadline.cancel();
+            turnDeadline = null;
+        }
+    }
+
+    /**
+     * Hands a turn that ran out of time to the bot scheduler, which plays it like a bot turn
+     * Runs on the timing wheel, which must not wait for the lock, the journal or the table.
+     */
+    private void handOffTimeout(long turn) {
+        botScheduler.submit(budgetScale -> turnTimedOut(turn));
+    }
+
+    /**
+     * Plays the turn of a player that ran out of time: the first card of its hand on
+     * its first discard pile, which ends the turn (END with an empty hand)
+     * A turn that ended in time is left alone.
+     */
+    private synchronized void turnTimedOut(long turn) {
+        if (ended || turnNumber != turn) {
+            return;
+        }
+        Player player = game.getCurrentPlayer();
+        List<Card> hand = game.getHand(player);
+        if (hand.isEmpty()
+                || !executeAction(player, new CardActionHandToDiscardPile(hand.get(0), 0), null, null)) {
+            endTurn(player.getName());
+        }
+    }
+
+    /**
+     * Checks if a game of only bots cannot go on: two full rounds of turns went by
+     * without a building play while the draw pile is empty, or without any card played
+     * at all (every bot only says END, so nothing will ever change)
+     * Clients can always leave a stuck game, bots would play it forever.
+     */
+    private boolean isStuck() {
+        if (seatBots == null || seatBots.contains(null)) {
+            return false;
+        }
+        int fullRounds = 2 * seatBots.size();
+        return turnsWithoutPlay >= fullRounds
+                || (game.getDrawPileSize() == 0 && turnsWithoutBuild >= fullRounds);
+    }
+
+    /**
+     * Lets the win estimator start on the position after a move (nobody listens in an unwatched game of bots)
+     * The copy is made here, under the lock; the playouts run on the estimator's threads.
+     */
+    private void estimateWinChances() {
+        if (winEstimator == null || ended || !hasClients()) {
+            return;
+        }
+        winEstimator.positionChanged(record.getGameId(), GameSnapshot.capture(game), this::broadcast);
+    }
+
+    /**
+     * Gets the player with the fewest stock cards (the first one on a tie),
+     * who wins a stuck round
+     */
+    private Player leastStockLeft() {
+        Player best = null;
+        for (Player player : game.getPlayers()) {
+            if (best == null || game.getStockPile(player).size() < game.getStockPile(best).size()) {
+                best = player;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Checks if the game is over (finished or aborted)
+     */
+    public synchronized boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Marks the game as thrown away in the journal, so it is not recovered
+     */
+    public synchronized void abortGame() {
+        if (ended) {
+            return;  // Finished games stay finished
+        }
+        ended = true;
+        if (journal != null) {
+            journal.gameAborted();
+        }
+        if (winEstimator != null) {
+            winEstimator.gameEnded(record.getGameId());
+        }
+        spectators.close();
+        stopTurnDeadline();
+    }
+
+    /**
+     * Copies the game for a checkpoint (see Snapshotter)
+     * Runs under the controller lock, so no move is half applied
+     */
+    @Override
+    public synchronized SnapshotEntry captureSnapshot() {
+        if (ended || journal == null) {
+            return null;
+        }
+        return new SnapshotEntry(journal.getGameId(), journal.getSequence(), GameSnapshot.capture(game),
+                sessionTokens.toArray(new String[0]), getBotTypes().toArray(new String[0]));
+    }
+
+    /**
+     * Sends a reconnected player everything it needs in one write:
+     * RESYNC with the scores, then TABLE, HAND, all STOCK top cards and TURN
+     */
+    public synchronized void sendResyncToPlayer(String playerName) {
+        Player player = getPlayerByName(playerName);
+        ClientHandler client = getClientByName(playerName);
+        if (player == null || client == null) {
+            return;
+        }
+
+        client.sendMessage(createResync(player).transformToProtocolString());
+    }
+
+    /**
+     * Creates a RESYNC: the scores, then TABLE, the HAND of a player (none for null),
+     * all STOCK top cards and TURN
+     */
+    private Resync createResync(Player handOf) {
+        List<protocol.Command> state = new ArrayList<>();
+        state.add(createTable());
+        if (handOf != null) {
+            state.add(new protocol.server.Hand(cardsToStrings(game.getHand(handOf))));
+        }
+        for (Player p : game.getPlayers()) {
+            StockPile stockPile = game.getStockPile(p);
+            if (!stockPile.isEmpty()) {
+                state.add(new Stock(p.getName(), cardToString(stockPile.topCard())));
+            }
+        }
+        state.add(new Turn(game.getCurrentPlayer().getName()));
+
+        List<Round.Score> scores = new ArrayList<>();
+        for (Player p : game.getPlayers()) {
+            scores.add(new Round.Score(p.getName(), game.getScore(p)));
+        }
+        return new Resync(scores.toArray(new Round.Score[0]), state.toArray(new protocol.Command[0]));
+    }
+
+    // ========== SEATS ==========
+
+    /**
+     * Connects a seat to a client, or holds it for a reconnect (null)
+     * The seat list is read under the controller lock, so it only changes under it too.
+     */
+    public synchronized void setClient(int seat, ClientHandler client) {
+        playerClients.set(seat, client);
+    }
+
+    public synchronized ClientHandler getClient(int seat) {
+        return playerClients.get(seat);
+    }
+
+    /**
+     * Gets a copy of the connections of the seats (null = held or a bot)
+     */
+    public synchronized List<ClientHandler> getClients() {
+        return new ArrayList<>(playerClients);
+    }
+
+    // ========== SPECTATORS ==========
+
+    public SpectatorFeed getSpectatorFeed() {
+        return spectators;
+    }
+
+    /**
+     * Lets a spectator in: START and the latest snapshot, then the feed from there on
+     * @return false if the game is over
+     */
+    public synchronized boolean addSpectator(SpectatorFeed.Watcher watcher) {
+        if (ended) {
+            return false;
+        }
+        SpectatorFeed.Snapshot snapshot = spectators.getLatestSnapshot();
+        watcher.out.sendGame(Outbound.encode(new Start(playerNames.toArray(new String[0])).transformToProtocolString()));
+        watcher.out.sendGame(snapshot.frame);
+        spectators.add(watcher, snapshot.sequence);
+        return true;
+    }
+
+    /**
+     * Copies what the spectators see (a RESYNC without a HAND) at the current point of the feed
+     */
+    private synchronized SpectatorFeed.Snapshot captureSpectatorSnapshot() {
+        return new SpectatorFeed.Snapshot(spectators.getPublished(),
+                Outbound.encode(createResync(null).transformToProtocolString()));
+    }
+
     /**
      * Sends TABLE message to a specific player
      */
-    public void sendTableToPlayer(String playerName) {
+    public synchronized void sendTableToPlayer(String playerName) {
         ClientHandler client = getClientByName(playerName);
         if (client != null) {
             String tableMsg = createTableMessage();
@@ -225,7 +698,7 @@ public class GameController {
     /**
      * Sends HAND message to a specific player
      */
-    public void sendHandToPlayer(String playerName) {
+    public synchronized void sendHandToPlayer(String playerName) {
         Player player = getPlayerByName(playerName);
         ClientHandler client = getClientByName(playerName);
 
@@ -242,10 +715,14 @@ public class GameController {
      * - TABLE to everyone
      * - HAND to each player individually
      */
-    public void sendGameStateToAll() {
+    public synchronized void sendGameStateToAll() {
+        if (!hasClients()) {
+            return;  // Nobody to tell (a game of bots)
+        }
+
         // Send table to everyone
         String tableMsg = createTableMessage();
-        server.broadcast(tableMsg);
+        broadcast(tableMsg);
 
         // Send each player their hand
         List<Player> players = game.getPlayers();
@@ -262,17 +739,42 @@ public class GameController {
         }
     }
 
+    /**
+     * Sends a message to every player of this game that is connected, and to the spectators
+     */
+    private void broadcast(String message) {
+        for (ClientHandler client : playerClients) {
+            if (client != null) {
+                client.sendMessage(message);
+            }
+        }
+        spectators.publish(message);
+    }
+
+    /**
+     * Checks if any player of this game is connected or anyone watches it
+     * (if not, there is nobody to send messages to)
+     */
+    private boolean hasClients() {
+        for (ClientHandler client : playerClients) {
+            if (client != null) {
+                return true;
+            }
+        }
+        return spectators.hasWatchers();
+    }
+
     /**
      * Sends STOCK message (top card of stock pile)
      * This is sent to ALL players (because everyone can see it)
      */
-    public void sendStockTopCard(Player player) {
+    public synchronized void sendStockTopCard(Player player) {
         StockPile stockPile = game.getStockPile(player);
-        if (!stockPile.isEmpty()) {
+        if (!stockPile.isEmpty() && hasClients()) {
             Card topCard = stockPile.topCard();
             String cardStr = cardToString(topCard);
             String stockMsg = new Stock(player.getName(), cardStr).transformToProtocolString();
-            server.broadcast(stockMsg);
+            broadcast(stockMsg);
         }
     }
 
@@ -283,6 +785,13 @@ public class GameController {
      * Contains: building piles + discard piles of all players
      */
     private String createTableMessage() {
+        return createTable().transformToProtocolString();
+    }
+
+    /**
+     * Creates the TABLE command for the current game state
+     */
+    private protocol.server.Table createTable() {
         // Building piles info
         String[] buildingPileValues = new String[NUM_BUILDING_PILES];
         for (int i = 0; i < NUM_BUILDING_PILES; i++) {
@@ -332,14 +841,13 @@ public class GameController {
             new protocol.server.Table.PlayerTable[0]
         );
 
-        protocol.server.Table table = new protocol.server.Table(
+        return new protocol.server.Table(
             ptArray,
             buildingPileValues[0],
             buildingPileValues[1],
             buildingPileValues[2],
             buildingPileValues[3]
         );
-        return table.transformToProtocolString();
     }
 
     /**
@@ -404,6 +912,56 @@ public class GameController {
         return null;
     }
 
+    /**
+     * Gets where the card of an action comes from, for the PLAY message of a bot move
+     */
+    private Position fromPosition(CardAction action) {
+        if (action instanceof CardActionHandToBuildingPile) {
+            return new HandPosition(toProtocolCard(((CardActionHandToBuildingPile) action).getCard()));
+        }
+        if (action instanceof CardActionHandToDiscardPile) {
+            return new HandPosition(toProtocolCard(((CardActionHandToDiscardPile) action).getCard()));
+        }
+        if (action instanceof CardActionDiscardPileToBuildingPile) {
+            return new NumberedPilePosition(NumberedPilePosition.Pile.DISCARD_PILE,
+                    ((CardActionDiscardPileToBuildingPile) action).getDiscardPileIndex());
+        }
+        return new StockPilePosition();
+    }
+
+    /**
+     * Gets where the card of an action goes, for the PLAY message of a bot move
+     */
+    private Position toPosition(CardAction action) {
+        if (action instanceof CardActionHandToDiscardPile) {
+            return new NumberedPilePosition(NumberedPilePosition.Pile.DISCARD_PILE,
+                    ((CardActionHandToDiscardPile) action).getDiscardPile());
+        }
+        int building;
+        if (action instanceof CardActionHandToBuildingPile) {
+            building = ((CardActionHandToBuildingPile) action).getBuildingPileIndex();
+        } else if (action instanceof CardActionDiscardPileToBuildingPile) {
+            building = ((CardActionDiscardPileToBuildingPile) action).getBuildingPileIndex();
+        } else {
+            building = ((CardActionStockPileToBuildingPile) action).getBuildingPileIndex();
+        }
+        return new NumberedPilePosition(NumberedPilePosition.Pile.BUILDING_PILE, building);
+    }
+
+    /**
+     * Converts a model Card to the Card of the protocol
+     */
+    private protocol.common.Card toProtocolCard(Card card) {
+        if (card.isSkipBo()) {
+            return new protocol.common.Card();
+        }
+        try {
+            return new protocol.common.Card(card.getNumber());
+        } catch (java.net.ProtocolException e) {
+            throw new IllegalStateException("Card out of range: " + card, e);
+        }
+    }
+
     /**
      * Converts a Card to String (for protocol)
      */
@@ -5,64 +5,319 @@ import protocol.server.*;
 import protocol.common.ErrorCode;
 import protocol.common.Feature;
 import protocol.common.position.*;
-
+import ranking.EloRating;
+import ranking.Leaderboard;
+import ranking.Standing;
+import storage.GameArchive;
+import storage.GameJournal;
+import storage.GameRecord;
+import storage.GameRecovery;
+import storage.Journal;
+import storage.Snapshotter;
+
+import java.io.IOException;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static model.GameConstants.*;
 
 /**
  * GameManager manages the lobby and game lifecycle
- * SIMPLE: Only adds players, starts game, ends game
+ * SIMPLE: Only adds players, starts games, ends games
  * GAME LOGIC is in GameController!
+ *
+ * Clients that announce the LOBBY feature are matched by the Matchmaker: GAME~AMOUNT
+ * puts them in the queue of that table size (QUEUE), START comes when a table of
+ * players close in rating is formed. Other clients (and the bots of the command line)
+ * share the open lobby: the first GAME~AMOUNT sets the size and the lobby plays
+ * together. Every started game is a GameTable on the GameShard of its game id, and
+ * any number of games run at the same time.
+ *
+ * Locks: the open lobby is guarded by the manager, the seats of running games by
+ * their shard, a game by its controller, always taken in that order. Matchmaking
+ * does not take the manager's lock.
  */
 public class GameManager {
-    private Game game;
     private Server server;
-    private GameController gameController;  // New: handles the game logic
 
-    // Lobby tracking
+    // Persistence (journal is null when the server runs without one)
+    private Journal journal;
+    private Snapshotter snapshotter;
+    private GameArchive archive;
+    private Leaderboard leaderboard;
+    private AtomicLong nextGameId;
+
+    // Everyone that said HELLO and is still connected, and the session token from their WELCOME
+    private Map<String, ClientHandler> connected;
+    private Map<String, String> welcomeTokens;
+
+    // Running games, spread over shards by game id like the journal, and the table of every seat
+    private static final int GAME_SHARDS = 4;
+    private GameShard[] shards;
+    private Map<String, GameTable> seated;
+    private volatile GameTable lastStarted;
+
+    // Matchmaking of LOBBY clients: rating bands that widen while a player waits, and a timeout
+    private static final double MATCH_INITIAL_BAND = 100;
+    private static final double MATCH_BAND_GROWTH_PER_SECOND = 20;
+    private static final long MATCH_TIMEOUT_MILLIS = 120_000;
+    private static final long MATCH_TICK_MILLIS = 500;
+    private Matchmaker matchmaker;
+
+    // Open lobby (a null client means the seat is played by a bot)
     private List<String> playerNames;
     private List<ClientHandler> playerClients;
+    private List<String> sessionTokens;
+    private List<BotSeat> playerBots;       // null for seats of clients
     private int requiredPlayers;
 
-    public GameManager(Server server) {
+    // Bots play their turns here, on BOT_CPU_SHARE of the cores
+    private static final double BOT_CPU_SHARE = 0.5;
+    private static final long BOT_TARGET_LATENCY_MILLIS = 2000;
+    private BotScheduler botScheduler;
+
+    // HINT answers are solved on their own threads and never take longer than the cap
+    private static final int HINT_THREADS = 1;
+    private static final long HINT_LATENCY_CAP_MILLIS = 250;
+    private HintService hintService;
+
+    // Chances to win for the watchers, refined on their own thread, ESTIMATE_GAME_CPU_SHARE of it per game
+    private static final int ESTIMATE_THREADS = 1;
+    private static final double ESTIMATE_GAME_CPU_SHARE = 0.1;
+    private static final long ESTIMATE_PUBLISH_INTERVAL_MILLIS = 500;
+    private WinEstimator winEstimator;
+
+    // Table and lobby chat, rate limited per sender
+    private ChatService chatService;
+
+    // Spectators of running games, fed from every game's shared ring
+    private SpectatorService spectatorService;
+
+    // What the connections' rate limits and length caps did (see ConnectionGuard)
+    private ConnectionGuard.Counters guardCounters;
+
+    // Every timer of the server (held seats, matchmaking, turn deadlines, idle connections)
+    // runs on one timing wheel with ticks of TIMER_TICK_MILLIS
+    private static final long TIMER_TICK_MILLIS = 100;
+    private TimingWheel timer;
+
+    // Runs what the wheel's timers of the lobby start (matchmaking, aborting tables):
+    // that takes locks and waits for the journal, and the wheel must keep ticking
+    private ExecutorService maintenance;
+
+    // How often the counters of the services above are printed
+    private static final long STATS_INTERVAL_SECONDS = 60;
+
+    // How long a disconnected player keeps their seat in a running game
+    private static final long RECONNECT_WINDOW_SECONDS = 60;
+
+    // How long a player has for a turn before it is played for them (a discard, which ends it)
+    private static final long TURN_TIMEOUT_SECONDS = 60;
+    private SecureRandom tokenGenerator;
+
+    public GameManager(Server server, Journal journal, Snapshotter snapshotter, GameArchive archive,
+                       Leaderboard leaderboard) {
         this.server = server;
+        this.journal = journal;
+        this.snapshotter = snapshotter;
+        this.archive = archive;
+        this.leaderboard = leaderboard;
+        this.nextGameId = new AtomicLong(1);
+        this.connected = new ConcurrentHashMap<>();
+        this.welcomeTokens = new ConcurrentHashMap<>();
+        this.shards = new GameShard[GAME_SHARDS];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new GameShard(i);
+        }
+        this.seated = new ConcurrentHashMap<>();
+        this.matchmaker = new Matchmaker(MATCH_INITIAL_BAND, MATCH_BAND_GROWTH_PER_SECOND, MATCH_TIMEOUT_MILLIS);
         this.playerNames = new ArrayList<>();
         this.playerClients = new ArrayList<>();
+        this.sessionTokens = new ArrayList<>();
+        this.playerBots = new ArrayList<>();
         this.requiredPlayers = -1;  // Not yet set
+        this.tokenGenerator = new SecureRandom();
+        this.timer = new TimingWheel(TIMER_TICK_MILLIS);
+        this.maintenance = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "lobby-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int botThreads = Math.max(1, (int) (Runtime.getRuntime().availableProcessors() * BOT_CPU_SHARE));
+        this.botScheduler = new BotScheduler(botThreads, BOT_TARGET_LATENCY_MILLIS);
+        this.hintService = new HintService(HINT_THREADS, HINT_LATENCY_CAP_MILLIS);
+        this.winEstimator = new WinEstimator(ESTIMATE_THREADS, ESTIMATE_GAME_CPU_SHARE,
+                ESTIMATE_PUBLISH_INTERVAL_MILLIS);
+        this.chatService = new ChatService();
+        this.spectatorService = new SpectatorService();
+        this.guardCounters = new ConnectionGuard.Counters();
     }
 
     /**
-     * Adds a player to the lobby
-     * Protocol: HELLO~NAME~FEATURES -> WELCOME~NAME~FEATURES
+     * Lets the bots play on another scheduler (benchmarks run them on their own thread)
      */
-    public void addPlayer(String playerName, String featuresStr, ClientHandler client) {
-        // Check: game already started?
-        if (game != null) {
-            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
+    void setBotScheduler(BotScheduler botScheduler) {
+        this.botScheduler = botScheduler;
+    }
+
+    /**
+     * Prints the counters of the services every STATS_INTERVAL_SECONDS (on its own thread:
+     * printing may block, and a game thread must not wait for it)
+     */
+    public void startStatsDump() {
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(STATS_INTERVAL_SECONDS * 1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                printStats();
+            }
+        }, "server-stats");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void printStats() {
+        System.out.println("Bots: " + botScheduler.getStats());
+        System.out.println("Hints: " + hintService.getStats());
+        System.out.println("Odds: " + winEstimator.getStats());
+        System.out.println("Matchmaking: " + matchmaker.getStats());
+        System.out.println("Chat: " + chatService.getStats());
+        System.out.println("Spectators: " + spectatorService.getStats());
+        System.out.println("Timers: " + timer.getStats());
+        System.out.println("Connections: " + guardCounters.getStats());
+    }
+
+    /**
+     * Starts the matchmaking timer: timeouts, and tables that widened bands allow
+     */
+    public void startMatchmaking() {
+        scheduleMatchmakingTick();
+    }
+
+    private void scheduleMatchmakingTick() {
+        timer.schedule(() -> maintenance.execute(this::matchmakingTick), MATCH_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Rebuilds the games that were running when the server stopped
+     * Their bots are created again from the journal; the seats of the players are held
+     * until they reconnect with their session token
+     */
+    public void recoverGames() {
+        if (journal == null) {
             return;
         }
 
-        // Check: name already in use?
-        for (String existingName : playerNames) {
-            if (existingName.equals(playerName)) {
+        GameRecovery recovery = new GameRecovery(journal);
+        try {
+            recovery.run();
+        } catch (IOException e) {
+            System.err.println("Could not read journal: " + e.getMessage());
+            return;
+        }
+        nextGameId.set(recovery.getHighestGameId() + 1);
+
+        for (GameRecovery.RecoveredGame recovered : recovery.getLiveGames()) {
+            List<String> names = new ArrayList<>(recovered.playerNames);
+            List<ClientHandler> clients = new ArrayList<>();
+            List<BotSeat> bots = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) {
+                clients.add(null);  // Nobody connected yet
+                String botType = recovered.botTypes.get(i);
+                BotSeat bot = botType.isEmpty() ? null : BotSeat.create(botType, System.nanoTime());
+                if (!botType.isEmpty() && bot == null) {
+                    System.err.println("Cannot create bot " + botType + " of " + names.get(i) +
+                                       ", holding its seat");
+                }
+                bots.add(bot);
+            }
+            List<String> tokens = new ArrayList<>(recovered.sessionTokens);
+            List<String> waitingFor = new ArrayList<>();
+
+            GameJournal gameJournal = journal.resume(recovered.gameId, recovered.getSequence());
+            // Rounds before the restart are not in the journal anymore, the record starts at the current one
+            GameRecord record = new GameRecord(recovered.gameId, names, recovered.game.getRoundSeed(),
+                    System.currentTimeMillis(), true);
+            GameController controller = new GameController(recovered.game, server, names, clients, tokens,
+                    gameJournal, record, bots, botScheduler, winEstimator, timer, TURN_TIMEOUT_SECONDS);
+            GameTable table = new GameTable(recovered.gameId, shardFor(recovered.gameId), controller,
+                    names, tokens);
+            synchronized (table.getShard()) {
+                table.getShard().add(table);
+                for (int seat = 0; seat < names.size(); seat++) {
+                    seated.put(names.get(seat), table);
+                    if (bots.get(seat) == null) {
+                        holdSeat(table, names.get(seat));
+                        waitingFor.add(names.get(seat));
+                    }
+                }
+            }
+            if (snapshotter != null) {
+                snapshotter.register(recovered.gameId, controller);
+            }
+            controller.scheduleBotTurn();
+
+            System.out.println("Recovered game " + recovered.gameId + " (round " + recovered.game.getRoundNumber() +
+                              ")" + (waitingFor.isEmpty() ? "" : ", waiting for " + String.join(", ", waitingFor)));
+        }
+        System.out.println("Recovered " + recovery.getLiveGames().size() + " games (" +
+                          recovery.getEventsReplayed() + " events)");
+    }
+
+    /**
+     * Adds a player, or gives a reconnecting player their seat back
+     * Protocol: HELLO~NAME~FEATURES[~TOKEN] -> WELCOME~NAME~FEATURES~TOKEN
+     * LOBBY clients wait for their GAME~AMOUNT, the others join the open lobby.
+     * @return false if the name is in use (ERROR~NAME_IN_USE was sent)
+     */
+    public synchronized boolean addPlayer(String playerName, String featuresStr, String sessionToken,
+                                          ClientHandler client) {
+        // Players of a running game get their seat back with their session token
+        GameTable table = seated.get(playerName);
+        if (table != null) {
+            if (sessionToken == null || !reconnectPlayer(table, playerName, sessionToken, featuresStr, client)) {
                 sendErrorToClient(client, ErrorCode.NAME_IN_USE);
-                return;
+                return false;
             }
+            return true;
         }
 
-        // Add player to lobby
-        playerNames.add(playerName);
-        playerClients.add(client);
+        // Check: name already in use?
+        if (connected.containsKey(playerName) || playerNames.contains(playerName)) {
+            sendErrorToClient(client, ErrorCode.NAME_IN_USE);
+            return false;
+        }
 
-        // Parse features
-        Feature[] features = parseFeatures(featuresStr);
+        String token = newSessionToken();
+        connected.put(playerName, client);
+        welcomeTokens.put(playerName, token);
 
         // Send WELCOME (only to this client)
-        String welcomeMsg = new Welcome(playerName, features).transformToProtocolString();
+        Feature[] features = parseFeatures(featuresStr);
+        String welcomeMsg = new Welcome(playerName, features, token).transformToProtocolString();
         client.sendMessage(welcomeMsg);
 
+        if (client.hasFeature(Feature.LOBBY)) {
+            System.out.println("Player added: " + playerName + " (matchmaking)");
+            return true;
+        }
+
+        // Add player to the open lobby
+        playerNames.add(playerName);
+        playerClients.add(client);
+        sessionTokens.add(token);
+        playerBots.add(null);
+
         System.out.println("Player added: " + playerName +
                           " (" + playerNames.size() + "/" + requiredPlayers + ")");
 
@@ -76,19 +331,175 @@ public class GameManager {
         } else {
             System.out.println("Waiting for GAME~AMOUNT command");
         }
+        return true;
+    }
+
+    /**
+     * Adds a bot to the open lobby, it plays inside the server without a connection
+     * @return false if the name is in use
+     */
+    public synchronized boolean addBot(String botName, BotSeat bot) {
+        if (playerNames.contains(botName) || connected.containsKey(botName) || seated.containsKey(botName)) {
+            return false;
+        }
+
+        playerNames.add(botName);
+        playerClients.add(null);
+        sessionTokens.add(newSessionToken());
+        playerBots.add(bot);
+
+        System.out.println("Bot added: " + botName + ", " + bot +
+                          " (" + playerNames.size() + "/" + requiredPlayers + ")");
+
+        if (requiredPlayers > 0 && playerNames.size() >= requiredPlayers) {
+            startGame();
+        }
+        return true;
+    }
+
+    /**
+     * Gives a reconnecting player their seat back and sends one RESYNC bundle
+     * If the old connection still looks alive (it did not time out yet), it is closed.
+     * @return false if the session token is not the one of the seat
+     */
+    private boolean reconnectPlayer(GameTable table, String playerName, String sessionToken, String featuresStr,
+                                    ClientHandler client) {
+        synchronized (table.getShard()) {
+            int seat = table.seatOf(playerName);
+            if (seat < 0 || seated.get(playerName) != table || !sessionToken.equals(table.getSessionToken(seat))) {
+                return false;
+            }
+            ClientHandler oldClient = table.getClient(seat);
+            table.setClient(seat, client);
+            connected.put(playerName, client);
+            welcomeTokens.put(playerName, sessionToken);
+            if (oldClient != null && oldClient != client) {
+                oldClient.disconnect();
+            }
+
+            String welcomeMsg = new Welcome(playerName, parseFeatures(featuresStr), sessionToken)
+                    .transformToProtocolString();
+            client.sendMessage(welcomeMsg);
+            table.getController().sendResyncToPlayer(playerName);
+        }
+
+        System.out.println("Player reconnected: " + playerName);
+        return true;
+    }
+
+    /**
+     * Handles a lost connection
+     * In the lobby or a matchmaking queue the player is removed. In a running game the
+     * seat is held for RECONNECT_WINDOW_SECONDS; the game only ends if nobody comes back.
+     */
+    public void disconnectPlayer(String playerName, ClientHandler client) {
+        if (!connected.remove(playerName, client)) {
+            return;  // This connection does not (or no longer) own the name
+        }
+        welcomeTokens.remove(playerName);
+        matchmaker.remove(playerName);
+        chatService.forget(playerName);
+        spectatorService.unwatch(client);
+
+        GameTable table = seated.get(playerName);
+        if (table != null) {
+            synchronized (table.getShard()) {
+                int seat = table.seatOf(playerName);
+                if (seated.get(playerName) == table && table.getClient(seat) == client) {
+                    table.setClient(seat, null);
+                    holdSeat(table, playerName);
+                    System.out.println("Holding seat of " + playerName + " for " + RECONNECT_WINDOW_SECONDS + " seconds");
+                }
+            }
+            return;
+        }
+
+        synchronized (this) {
+            int index = playerNames.indexOf(playerName);
+            if (index >= 0 && playerClients.get(index) == client) {
+                removeFromLobby(index);
+            }
+        }
+    }
+
+    /**
+     * Ends the game if the player did not reconnect within the window
+     */
+    private void holdSeat(GameTable table, String playerName) {
+        timer.schedule(() -> maintenance.execute(() -> seatHoldExpired(table, playerName)),
+                RECONNECT_WINDOW_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Aborts the table of a held seat if its player did not come back in time
+     */
+    private void seatHoldExpired(GameTable table, String playerName) {
+        synchronized (table.getShard()) {
+            int seat = table.seatOf(playerName);
+            if (seated.get(playerName) == table && seat >= 0 && table.getClient(seat) == null) {
+                System.out.println(playerName + " did not reconnect");
+                abortTable(table, playerName);
+            }
+        }
+    }
+
+    /**
+     * Creates a random session token (128 bits, hex)
+     */
+    private String newSessionToken() {
+        byte[] bytes = new byte[16];
+        tokenGenerator.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
     }
 
     /**
      * Sets the required number of players
      * Protocol: GAME~AMOUNT -> QUEUE or START
+     * A LOBBY client asks the matchmaker for a table of that size, the others set the
+     * size of the open lobby.
      */
     public void setRequiredPlayers(int count, ClientHandler requestingClient) {
-        // Check: game already started?
-        if (game != null) {
-            sendErrorToClient(requestingClient, ErrorCode.COMMAND_NOT_ALLOWED);
+        if (requestingClient != null && requestingClient.hasFeature(Feature.LOBBY)) {
+            requestTable(count, requestingClient);
+        } else {
+            setLobbySize(count, requestingClient);
+        }
+    }
+
+    /**
+     * Puts a LOBBY client in the queue of a table size and starts the table it completes
+     * Asking again (for another size) moves it to that queue.
+     */
+    private void requestTable(int count, ClientHandler client) {
+        String playerName = client.getClientName();
+
+        // Validate: 2-6 players
+        if (count < MIN_PLAYERS || count > MAX_PLAYERS) {
+            sendErrorToClient(client, ErrorCode.INVALID_COMMAND);
+            return;
+        }
+        // Check: said HELLO on this connection, and not playing already?
+        if (playerName == null || connected.get(playerName) != client || seated.containsKey(playerName)) {
+            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
             return;
         }
 
+        List<Matchmaker.Ticket> table = matchmaker.enqueue(playerName, count, ratingOf(playerName), client,
+                System.currentTimeMillis());
+        client.sendMessage(new Queue().transformToProtocolString());
+        if (table != null) {
+            startTable(table);
+        }
+    }
+
+    /**
+     * Sets the size of the open lobby (the first GAME~AMOUNT does)
+     */
+    private synchronized void setLobbySize(int count, ClientHandler requestingClient) {
         // Check: already set?
         if (requiredPlayers != -1) {
             System.out.println("Required players already set: " + requiredPlayers);
@@ -109,133 +520,383 @@ public class GameManager {
         if (playerNames.size() >= requiredPlayers) {
             startGame();
         } else {
-            // Send QUEUE message (not enough players yet)
+            // Send QUEUE message (not enough players yet) to everyone in the lobby
             String queueMsg = new Queue().transformToProtocolString();
-            server.broadcast(queueMsg);
+            for (ClientHandler client : playerClients) {
+                if (client != null) {
+                    client.sendMessage(queueMsg);
+                }
+            }
             System.out.println("Waiting for more players: " + playerNames.size() +
                               "/" + requiredPlayers);
         }
     }
 
     /**
-     * Starts the game!
-     * Creates Game object and GameController
+     * Times out the tickets that waited too long and starts the tables that widened bands allow
+     * Runs on the maintenance thread, the wheel only hands it over.
      */
-    private void startGame() {
-        if (game != null) {
-            return;  // Already started
+    private void matchmakingTick() {
+        try {
+            List<List<Matchmaker.Ticket>> formed = new ArrayList<>();
+            List<Matchmaker.Ticket> expired = new ArrayList<>();
+            matchmaker.tick(System.currentTimeMillis(), formed, expired);
+            for (Matchmaker.Ticket ticket : expired) {
+                sendErrorToClient(ticket.client, ErrorCode.QUEUE_TIMEOUT);
+            }
+            for (List<Matchmaker.Ticket> table : formed) {
+                startTable(table);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Matchmaking failed: " + e);
         }
+        scheduleMatchmakingTick();
+    }
 
+    /**
+     * Starts the open lobby as a game, the next players get a new lobby
+     */
+    private void startGame() {
         System.out.println("Game starts with " + playerNames.size() + " players");
+        startTable(playerNames, playerClients, sessionTokens, playerBots);
+
+        playerNames = new ArrayList<>();
+        playerClients = new ArrayList<>();
+        sessionTokens = new ArrayList<>();
+        playerBots = new ArrayList<>();
+        requiredPlayers = -1;  // Reset for the next game
+    }
+
+    /**
+     * Starts a table the matchmaker formed
+     */
+    private void startTable(List<Matchmaker.Ticket> tickets) {
+        List<String> names = new ArrayList<>();
+        List<ClientHandler> clients = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        List<BotSeat> bots = new ArrayList<>();
+        for (Matchmaker.Ticket ticket : tickets) {
+            names.add(ticket.name);
+            clients.add(ticket.client);
+            String token = welcomeTokens.get(ticket.name);
+            tokens.add(token == null ? newSessionToken() : token);
+            bots.add(null);
+        }
+        startTable(names, clients, tokens, bots);
+    }
 
+    /**
+     * Deals a new game for the seats and hands it to the shard of its game id
+     * The lists become the seat lists of the table.
+     */
+    private GameTable startTable(List<String> names, List<ClientHandler> clients, List<String> tokens,
+                                 List<BotSeat> bots) {
         // Create Player objects
         List<Player> players = new ArrayList<>();
-        for (String name : playerNames) {
+        for (String name : names) {
             players.add(new Player(name));
         }
 
-        // Create Game
-        game = new Game(players);
-
-        // Create GameController (handles all game logic!)
-        gameController = new GameController(game, server, playerNames, playerClients);
+        // Create Game and its GameController (handles all game logic!)
+        Game game = new Game(players);
+        long gameId = nextGameId.getAndIncrement();
+        GameJournal gameJournal = journal == null ? null : journal.forGame(gameId);
+        GameRecord record = new GameRecord(gameId, names, game.getRoundSeed(), System.currentTimeMillis(), false);
+        GameController controller = new GameController(game, server, names, clients, tokens,
+                gameJournal, record, bots, botScheduler, winEstimator, timer, TURN_TIMEOUT_SECONDS);
+        GameTable table = new GameTable(gameId, shardFor(gameId), controller, names, tokens);
+
+        synchronized (table.getShard()) {
+            table.getShard().add(table);
+            for (String name : names) {
+                seated.put(name, table);
+            }
 
-        // Send START message
-        String[] names = playerNames.toArray(new String[0]);
-        String startMsg = new Start(names).transformToProtocolString();
-        server.broadcast(startMsg);
+            // Journal the deal first, every later event is replayed on top of it
+            if (gameJournal != null) {
+                if (snapshotter != null) {
+                    snapshotter.register(gameId, controller);
+                }
+                gameJournal.gameCreated(names, tokens, controller.getBotTypes(), game.getRoundSeed());
+            }
 
-        // Send initial game state (via GameController)
-        gameController.sendGameStateToAll();
+            // Players that left while their table was formed get their seat held like any other
+            for (int seat = 0; seat < names.size(); seat++) {
+                ClientHandler client = table.getClient(seat);
+                if (client != null) {
+                    spectatorService.unwatch(client);  // Plays now, stops watching
+                }
+                if (client != null && connected.get(names.get(seat)) != client) {
+                    table.setClient(seat, null);
+                    holdSeat(table, names.get(seat));
+                }
+            }
 
-        // Send all stock pile top cards
-        for (Player player : players) {
-            gameController.sendStockTopCard(player);
+            // START, the state and the first TURN
+            controller.start();
         }
+        lastStarted = table;
+        return table;
+    }
 
-        // Announce who starts
-        Player currentPlayer = game.getCurrentPlayer();
-        String turnMsg = new Turn(currentPlayer.getName()).transformToProtocolString();
-        server.broadcast(turnMsg);
+    private GameShard shardFor(long gameId) {
+        return shards[(int) Math.floorMod(gameId, (long) shards.length)];
+    }
 
-        System.out.println("Game started! " + currentPlayer.getName() + " begins.");
+    /**
+     * Gets the rating the matchmaker uses for a player (the start rating without a leaderboard)
+     */
+    private double ratingOf(String playerName) {
+        Standing standing = leaderboard == null ? null : leaderboard.getStanding(playerName);
+        return standing == null ? EloRating.START_RATING : standing.rating;
+    }
+
+    /**
+     * Checks if the game started last has been played to the end
+     */
+    public boolean isGameOver() {
+        GameTable table = lastStarted;
+        return table != null && table.getController().isEnded();
+    }
+
+    /**
+     * Archives a finished game, updates the ratings of its players and frees their seats
+     * Called by the GameController (under its lock), so this does not lock the lobby or the shard.
+     */
+    public void gameFinished(GameRecord record) {
+        if (archive != null) {
+            archive.append(record);
+        }
+        if (leaderboard != null) {
+            List<String> names = record.getPlayerNames();
+            double[] changes = leaderboard.recordGame(names, record.getFinalScores(), record.getWinnerSeat());
+            for (int i = 0; i < names.size(); i++) {
+                System.out.println(leaderboard.getStanding(names.get(i)) +
+                                  String.format(" (%+.0f)", changes[i]));
+            }
+        }
+
+        GameShard shard = shardFor(record.getGameId());
+        GameTable table = shard.getTable(record.getGameId());
+        if (table != null && shard.remove(table, true)) {
+            unseat(table);
+        }
     }
 
     /**
      * Processes a move (PLAY command)
-     * Delegates to GameController
+     * Delegates to the GameController of the player's game
      */
-    public void handleMove(String playerName, Position from, Position to) {
-        if (game == null || gameController == null) {
-            sendErrorToPlayer(playerName, ErrorCode.COMMAND_NOT_ALLOWED);
+    public void handleMove(String playerName, Position from, Position to, ClientHandler client) {
+        GameTable table = seated.get(playerName);
+        if (table == null || connected.get(playerName) != client) {
+            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
             return;
         }
 
-        gameController.handleMove(playerName, from, to);
+        table.getController().handleMove(playerName, from, to);
     }
 
     /**
      * Ends a turn (END command)
-     * Delegates to GameController
+     * Delegates to the GameController of the player's game
      */
-    public void endTurn(String playerName) {
-        if (game == null || gameController == null) {
-            sendErrorToPlayer(playerName, ErrorCode.COMMAND_NOT_ALLOWED);
+    public void endTurn(String playerName, ClientHandler client) {
+        GameTable table = seated.get(playerName);
+        if (table == null || connected.get(playerName) != client) {
+            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
             return;
         }
 
-        gameController.endTurn(playerName);
+        table.getController().endTurn(playerName);
     }
 
     /**
      * Sends TABLE to a player (TABLE command)
-     * Delegates to GameController
+     * Delegates to the GameController of the player's game
      */
-    public void sendTableToPlayer(String playerName) {
-        if (game == null || gameController == null) {
+    public void sendTableToPlayer(String playerName, ClientHandler client) {
+        GameTable table = seated.get(playerName);
+        if (table == null || connected.get(playerName) != client) {
             return;
         }
 
-        gameController.sendTableToPlayer(playerName);
+        table.getController().sendTableToPlayer(playerName);
     }
 
     /**
      * Sends HAND to a player (HAND command)
-     * Delegates to GameController
+     * Delegates to the GameController of the player's game
+     */
+    public void sendHandToPlayer(String playerName, ClientHandler client) {
+        GameTable table = seated.get(playerName);
+        if (table == null || connected.get(playerName) != client) {
+            return;
+        }
+
+        table.getController().sendHandToPlayer(playerName);
+    }
+
+    /**
+     * Sends a player the best moves for the rest of their turn (HINT command)
+     * Delegates to GameController, the hint service does the work
+     */
+    public void requestHint(String playerName, ClientHandler client) {
+        GameTable table = seated.get(playerName);
+        if (table == null || connected.get(playerName) != client) {
+            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
+            return;
+        }
+
+        table.getController().requestHint(playerName, hintService);
+    }
+
+    /**
+     * Sends a chat message to the player's table, or to the lobby when not playing (CHAT command)
+     * Protocol: CHAT~MESSAGE -> CHAT~PLAYER~MESSAGE to every CHAT client of the channel,
+     * ERROR~208 when the player sends faster than the chat rate
      */
-    public void sendHandToPlayer(String playerName) {
-        if (game == null || gameController == null) {
+    public void chat(String playerName, String message, ClientHandler client) {
+        // Check: announced CHAT, on the connection that owns the name?
+        if (!client.hasFeature(Feature.CHAT) || connected.get(playerName) != client) {
+            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
+            return;
+        }
+        if (message.isEmpty() || message.length() > ChatService.MAX_LENGTH) {
+            sendErrorToClient(client, ErrorCode.INVALID_COMMAND);
             return;
         }
 
-        gameController.sendHandToPlayer(playerName);
+        GameTable table = seated.get(playerName);
+        Iterable<ClientHandler> channel = table != null ? table.getClients() : lobbyChannel();
+        if (chatService.send(playerName, message, channel) == ChatService.Result.LIMITED) {
+            sendErrorToClient(client, ErrorCode.RATE_LIMITED);
+        }
     }
 
     /**
-     * Removes a player (disconnect)
-     * Protocol: Broadcast ERROR~103 and end game
+     * Lets a player that does not play watch the game of another player (WATCH command)
+     * Protocol: WATCH~PLAYER -> START and RESYNC (without HAND), then the messages of the game
+     */
+    public void watch(String playerName, String watchedPlayer, ClientHandler client) {
+        if (connected.get(playerName) != client || seated.containsKey(playerName)) {
+            sendErrorToClient(client, ErrorCode.COMMAND_NOT_ALLOWED);
+            return;
+        }
+        GameTable table = seated.get(watchedPlayer);
+        if (table == null || !spectatorService.watch(client, table.getController())) {
+            sendErrorToClient(client, ErrorCode.INVALID_COMMAND);  // Not in a running game
+        }
+    }
+
+    /**
+     * Gets the connections of everyone that is not playing
+     */
+    private List<ClientHandler> lobbyChannel() {
+        List<ClientHandler> members = new ArrayList<>();
+        for (Map.Entry<String, ClientHandler> entry : connected.entrySet()) {
+            if (!seated.containsKey(entry.getKey())) {
+                members.add(entry.getValue());
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Gets the number of players that said HELLO and are still connected
+     */
+    public int getConnectedCount() {
+        return connected.size();
+    }
+
+    /**
+     * Gets the number of games running on all shards
+     */
+    public int getRunningGames() {
+        int running = 0;
+        for (GameShard shard : shards) {
+            running += shard.getTables().size();
+        }
+        return running;
+    }
+
+    public TimingWheel getTimingWheel() {
+        return timer;
+    }
+
+    public ConnectionGuard.Counters getGuardCounters() {
+        return guardCounters;
+    }
+
+    public ChatService getChatService() {
+        return chatService;
+    }
+
+    public HintService getHintService() {
+        return hintService;
+    }
+
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    /**
+     * Removes a player
+     * Protocol: in a running game, ERROR~103 to the table and the game ends
      */
     public void removePlayer(String playerName) {
-        // Remove from lists
-        for (int i = 0; i < playerNames.size(); i++) {
-            if (playerNames.get(i).equals(playerName)) {
-                playerNames.remove(i);
-                playerClients.remove(i);
-                break;
+        GameTable table = seated.get(playerName);
+        if (table != null) {
+            synchronized (table.getShard()) {
+                abortTable(table, playerName);
             }
+            return;
         }
 
-        // If game in progress: end game (prevents bugs)
-        if (game != null) {
-            String errorMsg = new protocol.server.Error(ErrorCode.PLAYER_DISCONNECTED)
-                                .transformToProtocolString();
-            server.broadcast(errorMsg);
+        matchmaker.remove(playerName);
+        synchronized (this) {
+            int index = playerNames.indexOf(playerName);
+            if (index >= 0) {
+                removeFromLobby(index);
+            }
+        }
+    }
 
-            System.out.println("Game ended due to disconnect: " + playerName);
-            game = null;
-            gameController = null;
-            requiredPlayers = -1;  // Reset for new game
+    /**
+     * Ends a running game because a player left (call with the lock of the table's shard)
+     */
+    private void abortTable(GameTable table, String playerName) {
+        if (!table.getShard().remove(table, false)) {
+            return;  // Already over
         }
+
+        // Stop the game first: the controller (and its bots) share the seat lists
+        table.getController().abortGame();
+        unseat(table);
+
+        String errorMsg = new protocol.server.Error(ErrorCode.PLAYER_DISCONNECTED)
+                            .transformToProtocolString();
+        table.broadcast(errorMsg);
+        System.out.println("Game " + table.getGameId() + " ended due to disconnect: " + playerName);
+    }
+
+    /**
+     * Frees the seats of a game that is over, its players can join another one
+     */
+    private void unseat(GameTable table) {
+        for (String name : table.getPlayerNames()) {
+            seated.remove(name, table);
+        }
+        if (snapshotter != null) {
+            snapshotter.unregister(table.getGameId());
+        }
+    }
+
+    private void removeFromLobby(int index) {
+        playerNames.remove(index);
+        playerClients.remove(index);
+        sessionTokens.remove(index);
+        playerBots.remove(index);
     }
 
     // ========== HELPER METHODS ==========
@@ -263,30 +924,6 @@ public class GameManager {
         return result;
     }
 
-    /**
-     * Finds a ClientHandler by name
-     */
-    private ClientHandler getClientByName(String name) {
-        for (int i = 0; i < playerNames.size(); i++) {
-            if (playerNames.get(i).equals(name)) {
-                return playerClients.get(i);
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Sends error to a player
-     */
-    private void sendErrorToPlayer(String playerName, ErrorCode errorCode) {
-        ClientHandler client = getClientByName(playerName);
-        if (client != null) {
-            String errorMsg = new protocol.server.Error(errorCode)
-                                .transformToProtocolString();
-            client.sendMessage(errorMsg);
-        }
-    }
-
     /**
      * Sends error to a client directly
      */
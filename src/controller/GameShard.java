@@ -0,0 +1,70 @@
+package controller;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A part of the running games: the ones whose id falls on it, like the journal shards
+ *
+ * GameManager hands every formed table to the shard of its game id. The seats of the
+ * shard's games change under the shard's lock (see GameManager), so players joining,
+ * leaving and reconnecting in one shard never wait for another shard or the lobby.
+ * Tables come and go without the lock: a GameController that finishes its game holds
+ * its own lock, and the shard lock is always taken before a controller's.
+ */
+public class GameShard {
+    private final int index;
+    private final Map<Long, GameTable> tables = new ConcurrentHashMap<>();
+
+    // Counters (see getStats)
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong aborted = new AtomicLong();
+
+    public GameShard(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Adds a table that starts on this shard
+     */
+    public void add(GameTable table) {
+        tables.put(table.getGameId(), table);
+        started.incrementAndGet();
+    }
+
+    /**
+     * Removes a table whose game is over
+     * @param completed true if the game was played to the end, false if it was aborted
+     * @return false if the table was already removed
+     */
+    public boolean remove(GameTable table, boolean completed) {
+        if (!tables.remove(table.getGameId(), table)) {
+            return false;
+        }
+        (completed ? finished : aborted).incrementAndGet();
+        return true;
+    }
+
+    public GameTable getTable(long gameId) {
+        return tables.get(gameId);
+    }
+
+    public Collection<GameTable> getTables() {
+        return tables.values();
+    }
+
+    /**
+     * Gets the counters: games started, running, finished and aborted
+     */
+    public String getStats() {
+        return String.format("shard %d: %d started, %d running, %d finished, %d aborted",
+                index, started.get(), tables.size(), finished.get(), aborted.get());
+    }
+}
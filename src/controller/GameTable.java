@@ -0,0 +1,81 @@
+package controller;
+
+import java.util.List;
+
+/**
+ * One running game: its controller and its seats
+ *
+ * The names and tokens of the seats are shared with the GameController and never change.
+ * The connections of the seats (a null client means the seat is held for a reconnect,
+ * or played by a bot) belong to the controller, under its lock; the table changes them
+ * through the controller, holding the lock of the GameShard it runs on.
+ */
+public class GameTable {
+    private final long gameId;
+    private final GameShard shard;
+    private final GameController controller;
+    private final List<String> playerNames;
+    private final List<String> sessionTokens;
+
+    public GameTable(long gameId, GameShard shard, GameController controller, List<String> playerNames,
+                     List<String> sessionTokens) {
+        this.gameId = gameId;
+        this.shard = shard;
+        this.controller = controller;
+        this.playerNames = playerNames;
+        this.sessionTokens = sessionTokens;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    public GameShard getShard() {
+        return shard;
+    }
+
+    public GameController getController() {
+        return controller;
+    }
+
+    public List<String> getPlayerNames() {
+        return playerNames;
+    }
+
+    /**
+     * Gets the seat of a player, or -1 if it does not play here
+     */
+    public int seatOf(String playerName) {
+        return playerNames.indexOf(playerName);
+    }
+
+    public ClientHandler getClient(int seat) {
+        return controller.getClient(seat);
+    }
+
+    public void setClient(int seat, ClientHandler client) {
+        controller.setClient(seat, client);
+    }
+
+    /**
+     * Gets a copy of the connections of the seats (null = held or a bot)
+     */
+    public List<ClientHandler> getClients() {
+        return controller.getClients();
+    }
+
+    public String getSessionToken(int seat) {
+        return sessionTokens.get(seat);
+    }
+
+    /**
+     * Sends a message to every player of the table that is connected
+     */
+    public void broadcast(String message) {
+        for (ClientHandler client : controller.getClients()) {
+            if (client != null) {
+                client.sendMessage(message);
+            }
+        }
+    }
+}
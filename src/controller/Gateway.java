@@ -0,0 +1,450 @@
+package controller;
+
+import protocol.Command;
+import protocol.common.ErrorCode;
+import protocol.gateway.Announce;
+import protocol.gateway.Load;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads the players over several game servers (backends) behind one address
+ *
+ * Clients connect to the gateway as if it were a Server. The first line must be the
+ * HELLO; its player name picks the backend on a ConsistentHashRing, the gateway
+ * connects to that backend, passes the HELLO on and from then on copies the lines
+ * both ways. The gateway remembers the backend of a player while it is connected and
+ * for AFFINITY_SECONDS after it left, and sends every HELLO with that name there: a
+ * player that reconnects with its session token finds its held seat, even when the
+ * ring changed in between or the player was passed on to another backend. Without
+ * that, a name goes to the backend it hashes to, which changes for some names when
+ * backends join or leave. WATCH finds the games of the players on the same backend,
+ * and games are only formed among the players of one backend (every backend matches
+ * its own lobby).
+ *
+ * Backends announce themselves on the backend port (see GatewayLink): ANNOUNCE with
+ * their client port and capacity (players), then LOAD every few seconds. A backend
+ * gets points on the ring in proportion to its capacity, and a full backend (by its
+ * LOAD or the connections the gateway has open to it) passes new players on to the
+ * next backend on the ring. When every backend is full, players go to their own one
+ * anyway: the capacity places players, it does not turn them away. A HELLO with a
+ * session token is never passed on: its seat is not on another backend. A backend that
+ * closes its link or stays silent for LOAD_TIMEOUT_SECONDS is taken off the ring, new
+ * players go to the others.
+ *
+ * The gateway does not parse the game: it only looks at the HELLO, caps the line
+ * length like a Server and counts the moves it passes on (PLAY and END). Rate limits
+ * stay with the backends, which still see one connection per client.
+ */
+public class Gateway {
+    /** The longest line a client can send, longer lines close the connection */
+    public static final int MAX_LINE_BYTES = 1024;
+
+    /** Capacity (players) per point on the ring */
+    public static final int PLAYERS_PER_POINT = 4;
+
+    /** A backend that sends no LOAD for this long is taken off the ring */
+    public static final long LOAD_TIMEOUT_SECONDS = 10;
+
+    /** How long the backend of a player that left is remembered (a backend holds a seat for 60 s) */
+    public static final long AFFINITY_SECONDS = 90;
+
+    // How often the affinities of players that left are checked
+    private static final long AFFINITY_CHECK_MILLIS = 5000;
+
+    // How often main prints the stats
+    private static final long STATS_INTERVAL_SECONDS = 60;
+
+    private final int clientPort;
+    private final int backendPort;
+    private final ConsistentHashRing<Backend> ring = new ConsistentHashRing<>();
+    private final Map<String, Affinity> affinities = new ConcurrentHashMap<>();
+    private ServerSocket clientSocket;
+    private ServerSocket backendSocket;
+    private volatile boolean running;
+
+    // Counters (see getStats)
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong moves = new AtomicLong();
+
+    /**
+     * Creates a gateway
+     * @param clientPort The port the clients connect to (0 for any)
+     * @param backendPort The port the backends announce themselves on (0 for any)
+     */
+    public Gateway(int clientPort, int backendPort) {
+        this.clientPort = clientPort;
+        this.backendPort = backendPort;
+    }
+
+    /**
+     * Usage: java controller.Gateway [client port] [backend port]
+     * Start the backends with: java controller.Server [port] gateway=HOST:BACKEND_PORT
+     */
+    public static void main(String[] args) {
+        int clientPort = args.length > 0 ? Integer.parseInt(args[0]) : 5555;
+        int backendPort = args.length > 1 ? Integer.parseInt(args[1]) : 5550;
+        Gateway gateway = new Gateway(clientPort, backendPort);
+        try {
+            gateway.start();
+        } catch (IOException e) {
+            System.err.println("Could not start gateway: " + e.getMessage());
+            return;
+        }
+        System.out.println("Gateway started on port " + gateway.getClientPort() +
+                          ", backends announce on port " + gateway.getBackendPort());
+        while (true) {
+            try {
+                Thread.sleep(STATS_INTERVAL_SECONDS * 1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            System.out.println("Gateway: " + gateway.getStats());
+        }
+    }
+
+    /**
+     * Opens both ports and accepts on them (on daemon threads)
+     */
+    public void start() throws IOException {
+        clientSocket = new ServerSocket(clientPort);
+        backendSocket = new ServerSocket(backendPort);
+        running = true;
+        startThread(() -> accept(backendSocket, this::serveBackend), "gateway-backends");
+        startThread(() -> accept(clientSocket, this::serveClient), "gateway-clients");
+        startThread(this::forgetAffinities, "gateway-affinities");
+    }
+
+    /**
+     * Stops accepting (open connections stay until either side closes them)
+     */
+    public void close() {
+        running = false;
+        try {
+            if (clientSocket != null) clientSocket.close();
+            if (backendSocket != null) backendSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing gateway: " + e.getMessage());
+        }
+    }
+
+    private void accept(ServerSocket serverSocket, SocketHandler handler) {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                startThread(() -> handler.serve(socket), "gateway-connection");
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void startThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // ========== BACKENDS ==========
+
+    /**
+     * Reads the ANNOUNCE and LOADs of a backend, it is on the ring until its link closes
+     */
+    private void serveBackend(Socket socket) {
+        Backend backend = null;
+        try (Socket link = socket) {
+            link.setSoTimeout((int) (LOAD_TIMEOUT_SECONDS * 1000));
+            FrameReader in = new FrameReader(link.getInputStream(), MAX_LINE_BYTES);
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split(Command.SEPERATOR);
+                if (parts[0].equals(Announce.COMMAND) && parts.length == 3 && backend == null) {
+                    // ANNOUNCE~PORT~CAPACITY
+                    backend = new Backend(link.getInetAddress().getHostAddress(),
+                            Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    ring.add(backend, (backend.capacity + PLAYERS_PER_POINT - 1) / PLAYERS_PER_POINT);
+                    System.out.println("Backend " + backend + " joined, capacity " + backend.capacity +
+                                      " (" + ring.size() + " backends)");
+                } else if (parts[0].equals(Load.COMMAND) && parts.length == 3 && backend != null) {
+                    // LOAD~PLAYERS~GAMES
+                    backend.players = Integer.parseInt(parts[1]);
+                    backend.games = Integer.parseInt(parts[2]);
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            System.err.println("Backend " + backend + " sent no LOAD for " + LOAD_TIMEOUT_SECONDS + " seconds");
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Backend link error: " + e.getMessage());
+        } finally {
+            if (backend != null) {
+                ring.remove(backend);
+                System.out.println("Backend " + backend + " left (" + ring.size() + " backends)");
+            }
+        }
+    }
+
+    // ========== CLIENTS ==========
+
+    /**
+     * Routes a client by the name in its HELLO, then copies its lines to the backend
+     * (the backend's lines go back on another thread)
+     */
+    private void serveClient(Socket socket) {
+        connections.incrementAndGet();
+        open.incrementAndGet();
+        String playerName = null;
+        Backend backend = null;
+        Socket server = null;
+        try (Socket client = socket) {
+            FrameReader in = new FrameReader(client.getInputStream(), MAX_LINE_BYTES);
+            String hello = readHello(in, client.getOutputStream());
+            if (hello == null) {
+                return;
+            }
+            String[] parts = hello.split(Command.SEPERATOR);
+            playerName = parts[1];
+            boolean reconnect = parts.length >= 4 && !parts[3].isEmpty();
+            backend = route(playerName, reconnect);
+            if (backend == null) {
+                refuse(client.getOutputStream());
+                return;
+            }
+            try {
+                server = new Socket(backend.host, backend.port);
+            } catch (IOException e) {
+                System.err.println("Backend " + backend + " not reachable: " + e.getMessage());
+                backend = null;
+                refuse(client.getOutputStream());
+                return;
+            }
+            backend.connections.incrementAndGet();
+            connected(playerName, backend);
+
+            Socket from = server;
+            startThread(() -> copy(from, client), "gateway-copy");
+            OutputStream toServer = new BufferedOutputStream(server.getOutputStream());
+            String line = hello;
+            do {
+                if (line.startsWith("PLAY") || line.startsWith("END")) {
+                    moves.incrementAndGet();
+                }
+                toServer.write(Outbound.encode(line));
+                toServer.flush();
+            } while ((line = in.readLine()) != null);
+        } catch (IOException e) {
+            // The client, or the backend, is gone (or the line was too long)
+        } finally {
+            open.decrementAndGet();
+            if (backend != null) {
+                backend.connections.decrementAndGet();
+                disconnected(playerName, backend);
+            }
+            try {
+                if (server != null) server.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    /**
+     * Picks the backend of a HELLO: the one the player is (or was just) connected to,
+     * else the first one with room from the name's place on the ring
+     * @param reconnect true if the HELLO has a session token (its own backend, full or not)
+     * @return The backend, or null if there are none
+     */
+    private Backend route(String playerName, boolean reconnect) {
+        Affinity affinity = affinities.get(playerName);
+        if (affinity != null && ring.getNodes().contains(affinity.backend)) {
+            return affinity.backend;
+        }
+        return reconnect ? ring.get(playerName) : ring.get(playerName, Backend::hasRoom);
+    }
+
+    private void connected(String playerName, Backend backend) {
+        affinities.compute(playerName, (name, affinity) -> {
+            if (affinity == null || affinity.backend != backend) {
+                affinity = new Affinity(backend);
+            }
+            affinity.open++;
+            return affinity;
+        });
+    }
+
+    private void disconnected(String playerName, Backend backend) {
+        affinities.computeIfPresent(playerName, (name, affinity) -> {
+            if (affinity.backend == backend) {  // Not if the player moved on to another backend
+                affinity.open--;
+                affinity.leftAt = System.nanoTime();
+            }
+            return affinity;
+        });
+    }
+
+    /**
+     * Forgets the backends of the players that left more than AFFINITY_SECONDS ago
+     * (checked every few seconds, an affinity may live up to that much longer)
+     */
+    private void forgetAffinities() {
+        long timeout = TimeUnit.SECONDS.toNanos(AFFINITY_SECONDS);
+        while (running) {
+            try {
+                Thread.sleep(AFFINITY_CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (String playerName : affinities.keySet()) {
+                affinities.computeIfPresent(playerName, (name, affinity) ->
+                        affinity.open <= 0 && now - affinity.leftAt > timeout ? null : affinity);
+            }
+        }
+    }
+
+    /**
+     * Waits for the HELLO, with a name: nothing else can go anywhere before it
+     * @return The HELLO line, or null if the client left
+     */
+    private String readHello(FrameReader in, OutputStream toClient) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.startsWith("HELLO" + Command.SEPERATOR) && line.split(Command.SEPERATOR).length >= 2) {
+                return line;
+            }
+            if (!line.isEmpty()) {
+                toClient.write(Outbound.encode(
+                        new protocol.server.Error(ErrorCode.COMMAND_NOT_ALLOWED).transformToProtocolString()));
+                toClient.flush();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells a client there is no backend for it (ERROR~209), the connection then closes
+     */
+    private void refuse(OutputStream toClient) throws IOException {
+        refused.incrementAndGet();
+        toClient.write(Outbound.encode(
+                new protocol.server.Error(ErrorCode.SERVER_UNAVAILABLE).transformToProtocolString()));
+        toClient.flush();
+    }
+
+    /**
+     * Copies what the backend sends to the client, as it comes in
+     * Closes the client when the backend goes, so the other side stops too.
+     */
+    private static void copy(Socket server, Socket client) {
+        byte[] buffer = new byte[8192];
+        try {
+            InputStream in = server.getInputStream();
+            OutputStream out = client.getOutputStream();
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            // One of the two is gone
+        }
+        try {
+            client.close();
+            server.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    // ========== STATS ==========
+
+    public int getClientPort() {
+        return clientSocket.getLocalPort();
+    }
+
+    public int getBackendPort() {
+        return backendSocket.getLocalPort();
+    }
+
+    public int getBackendCount() {
+        return ring.size();
+    }
+
+    /**
+     * Gets the number of moves (PLAY and END lines) passed on to the backends
+     */
+    public long getMoves() {
+        return moves.get();
+    }
+
+    /**
+     * Gets the counters: backends (with their last LOAD), connections (open), refused, moves
+     */
+    public String getStats() {
+        StringBuilder backends = new StringBuilder();
+        for (Backend backend : ring.getNodes()) {
+            backends.append(String.format(" %s %d/%d players %d games,", backend, backend.players,
+                    backend.capacity, backend.games));
+        }
+        return String.format("%d backends,%s %d connections (%d open), %d refused, %d moves",
+                ring.size(), backends, connections.get(), open.get(), refused.get(), moves.get());
+    }
+
+    /**
+     * The backend a player's connections went to (only changed inside the map's compute)
+     */
+    private static final class Affinity {
+        final Backend backend;
+        int open;     // Connections of the player to the backend, still open
+        long leftAt;  // System.nanoTime() when the last one closed
+
+        Affinity(Backend backend) {
+            this.backend = backend;
+        }
+    }
+
+    private interface SocketHandler {
+        void serve(Socket socket);
+    }
+
+    /**
+     * A game server on the ring: where its clients connect, and how full it is
+     */
+    private static final class Backend {
+        final String host;
+        final int port;
+        final int capacity;
+        final AtomicInteger connections = new AtomicInteger();  // Opened by the gateway, still open
+        volatile int players;  // From the last LOAD
+        volatile int games;
+
+        Backend(String host, int port, int capacity) {
+            this.host = host;
+            this.port = port;
+            this.capacity = capacity;
+        }
+
+        boolean hasRoom() {
+            return Math.max(players, connections.get()) < capacity;
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures how the moves per second of all games grow with the number of game servers
+ *
+ * For 1 up to the given number of backends: starts a Gateway in this JVM and the
+ * backends as JVMs of their own (java controller.Server PORT gateway=..., each in its
+ * own directory, so their journals, archives and leaderboards do not mix), then
+ * connects the players through the gateway as turbo AIClients that play 2-player
+ * LOBBY games one after another. After WARM_UP_SECONDS it counts the moves (PLAY and
+ * END) the gateway passes on for the given time and prints the moves per second.
+ * The players, the gateway and the backends share the machine: the backends can only
+ * add throughput when there are processors to spare.
+ * Usage: GatewayBenchmark [max backends] [players] [seconds]
+ */
+public class GatewayBenchmark {
+    private static final long WARM_UP_SECONDS = 5;
+    private static final long STARTUP_TIMEOUT_SECONDS = 30;
+
+    public static void main(String[] args) throws Exception {
+        int maxBackends = args.length >= 1 ? Integer.parseInt(args[0]) : 3;
+        int players = args.length >= 2 ? Integer.parseInt(args[1]) : 40;
+        long seconds = args.length >= 3 ? Long.parseLong(args[2]) : 20;
+
+        // The players (and the gateway) print every move, nobody reads that here
+        PrintStream results = System.out;
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(nowhere);
+        System.setErr(nowhere);
+
+        results.printf("%d players in 2-player games, %d s per run, %d processors%n", players, seconds,
+                Runtime.getRuntime().availableProcessors());
+        results.printf("%-10s %12s %12s%n", "backends", "moves/s", "per backend");
+        for (int backends = 1; backends <= maxBackends; backends++) {
+            double movesPerSecond = run(backends, players, seconds, results);
+            results.printf("%-10d %12.0f %12.0f%n", backends, movesPerSecond, movesPerSecond / backends);
+        }
+        System.exit(0);  // The players' threads are still trying to reconnect
+    }
+
+    private static double run(int backends, int players, long seconds, PrintStream results) throws Exception {
+        Gateway gateway = new Gateway(0, 0);
+        gateway.start();
+        List<Process> processes = new ArrayList<>();
+        List<Path> directories = new ArrayList<>();
+        try {
+            for (int i = 0; i < backends; i++) {
+                Path directory = Files.createTempDirectory("backend");
+                directories.add(directory);
+                processes.add(startBackend(directory, gateway.getBackendPort()));
+            }
+            long deadline = System.nanoTime() + STARTUP_TIMEOUT_SECONDS * 1_000_000_000L;
+            while (gateway.getBackendCount() < backends) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Only " + gateway.getBackendCount() + " backends announced");
+                }
+                Thread.sleep(100);
+            }
+
+            for (int i = 0; i < players; i++) {
+                AIClient player = new AIClient("localhost", gateway.getClientPort(), "B" + backends + "P" + i, 0, 2);
+                Thread thread = new Thread(player::start, "player-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            Thread.sleep(WARM_UP_SECONDS * 1000);
+            long before = gateway.getMoves();
+            Thread.sleep(seconds * 1000);
+            long moves = gateway.getMoves() - before;
+            results.println("        " + gateway.getStats());
+            return moves / (double) seconds;
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+            for (Process process : processes) {
+                process.waitFor();
+            }
+            gateway.close();
+            for (Path directory : directories) {
+                delete(directory);
+            }
+        }
+    }
+
+    /**
+     * Starts a backend JVM on a free port, announcing itself to the gateway
+     */
+    private static Process startBackend(Path directory, int gatewayPort) throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        String java = ProcessHandle.current().info().command().orElse("java");
+        StringBuilder classPath = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparator);
+            }
+            classPath.append(new File(entry).getAbsolutePath());
+        }
+        return new ProcessBuilder(java, "-cp", classPath.toString(), "controller.Server",
+                String.valueOf(port), "gateway=localhost:" + gatewayPort)
+                .directory(directory.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package controller;
+
+import protocol.gateway.Announce;
+import protocol.gateway.Load;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * Announces a game server to a Gateway and keeps it informed
+ *
+ * Sends ANNOUNCE (the port the clients connect to and the capacity) and then LOAD
+ * (players connected, games running) every LOAD_INTERVAL_SECONDS, which also tells the
+ * gateway the server is still there. When the gateway cannot be reached or the link
+ * breaks, it tries again every RETRY_SECONDS; the server keeps running meanwhile, for
+ * the clients that connect to it directly.
+ */
+public class GatewayLink implements Runnable {
+    /** Players a server takes per processor, when no capacity is given */
+    public static final int PLAYERS_PER_PROCESSOR = 400;
+
+    /** How often the load is sent (well within Gateway.LOAD_TIMEOUT_SECONDS) */
+    public static final long LOAD_INTERVAL_SECONDS = 2;
+
+    private static final long RETRY_SECONDS = 5;
+
+    private final String host;
+    private final int port;
+    private final int serverPort;
+    private final int capacity;
+    private final GameManager gameManager;
+
+    /**
+     * @param host The gateway
+     * @param port The gateway's backend port
+     * @param serverPort The port of this server, where the gateway sends the clients
+     * @param capacity The players this server takes
+     */
+    public GatewayLink(String host, int port, int serverPort, int capacity, GameManager gameManager) {
+        this.host = host;
+        this.port = port;
+        this.serverPort = serverPort;
+        this.capacity = capacity;
+        this.gameManager = gameManager;
+    }
+
+    /**
+     * Gets the capacity of this machine: PLAYERS_PER_PROCESSOR for every processor
+     */
+    public static int defaultCapacity() {
+        return PLAYERS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Starts the link on its own (daemon) thread
+     */
+    public void start() {
+        Thread thread = new Thread(this, "gateway-link");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try (Socket socket = new Socket(host, port)) {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                send(out, new Announce(serverPort, capacity).transformToProtocolString());
+                System.out.println("Announced to gateway " + host + ":" + port + ", capacity " + capacity);
+                while (true) {
+                    send(out, new Load(gameManager.getConnectedCount(), gameManager.getRunningGames())
+                            .transformToProtocolString());
+                    Thread.sleep(LOAD_INTERVAL_SECONDS * 1000);
+                }
+            } catch (IOException e) {
+                System.err.println("Gateway " + host + ":" + port + " not reachable: " + e.getMessage());
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                Thread.sleep(RETRY_SECONDS * 1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void send(OutputStream out, String line) throws IOException {
+        out.write(Outbound.encode(line));
+        out.flush();
+    }
+}
@@ -0,0 +1,233 @@
+package controller;
+
+import bot.ChainSolution;
+import bot.ChainSolver;
+import bot.Move;
+import model.Game;
+import model.GameSnapshot;
+import protocol.server.Hint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static model.GameConstants.*;
+
+/**
+ * Answers HINT commands: the best chain of moves for the rest of a player's turn
+ *
+ * The controller copies the game under its lock (a GameSnapshot, like the bots get);
+ * the ChainSolver runs on a copy of the real Game rebuilt from it, on this service's
+ * own threads, so a hint never holds up a move. Every request gets its answer within
+ * the latency cap: when the solver is not done by then, the player gets an empty HINT
+ * (the solution is still cached for the next request).
+ *
+ * Answers are cached by game, turn and a hash of what the player sees and holds, so
+ * asking again in the same position (or after a TABLE refresh that changed nothing)
+ * is answered from the cache without solving; requests that come in while the same
+ * position is being solved wait for that one solution. The cache keeps the
+ * CACHE_SIZE positions used last.
+ */
+public class HintService {
+    /** Positions kept in the cache */
+    public static final int CACHE_SIZE = 1024;
+
+    /** Positions waiting to be solved before new ones get an empty HINT right away */
+    public static final int QUEUE_SIZE = 64;
+
+    private static final String NO_HINT = new Hint(new String[0]).transformToProtocolString();
+
+    private final ThreadPoolExecutor pool;
+    private final long latencyCapMillis;
+    private final ThreadLocal<ChainSolver> solvers = ThreadLocal.withInitial(ChainSolver::new);
+    private final Map<Key, CompletableFuture<String>> cache;
+
+    // Counters (see getStats)
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong overCap = new AtomicLong();
+    private final AtomicLong solveNanos = new AtomicLong();
+    private final AtomicLong maxSolveNanos = new AtomicLong();
+
+    /**
+     * Creates a service with its own threads
+     * @param threads Threads that solve hints
+     * @param latencyCapMillis The longest a player waits for the answer to a HINT
+     */
+    public HintService(int threads, long latencyCapMillis) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_SIZE), r -> {
+                    Thread thread = new Thread(r, "hint-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.latencyCapMillis = latencyCapMillis;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<String>> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Sends a player the hint for its position, from the cache or once it is solved
+     * @param gameId The game
+     * @param turn The turn of the game (changes with every turn)
+     * @param snapshot The game, copied while it was the player's turn
+     * @param seat The seat of the player
+     */
+    public void request(long gameId, long turn, GameSnapshot snapshot, int seat, ClientHandler client) {
+        requests.incrementAndGet();
+        Key key = new Key(gameId, turn, stateHash(snapshot, seat));
+
+        CompletableFuture<String> answer;
+        boolean solve = false;
+        synchronized (cache) {
+            answer = cache.get(key);
+            if (answer == null) {
+                answer = new CompletableFuture<>();
+                cache.put(key, answer);
+                solve = true;
+            }
+        }
+
+        if (solve) {
+            CompletableFuture<String> result = answer;
+            try {
+                pool.execute(() -> solve(snapshot, seat, result));
+            } catch (RejectedExecutionException e) {
+                // Too many positions waiting: no hint this time, and nothing cached
+                synchronized (cache) {
+                    cache.remove(key);
+                }
+                result.complete(NO_HINT);
+            }
+        } else {
+            cacheHits.incrementAndGet();
+        }
+
+        if (answer.isDone()) {
+            client.sendMessage(answer.join());
+            return;
+        }
+        answer.copy().completeOnTimeout(null, latencyCapMillis, TimeUnit.MILLISECONDS).thenAccept(message -> {
+            if (message == null) {
+                overCap.incrementAndGet();
+                client.sendMessage(NO_HINT);
+            } else {
+                client.sendMessage(message);
+            }
+        });
+    }
+
+    private void solve(GameSnapshot snapshot, int seat, CompletableFuture<String> answer) {
+        long start = System.nanoTime();
+        try {
+            Game game = snapshot.restore();
+            ChainSolution solution = solvers.get().solve(game, game.getPlayers().get(seat));
+            int[] moves = solution.getMoves();
+            String[] hint = new String[moves.length];
+            for (int i = 0; i < moves.length; i++) {
+                hint[i] = toHintMove(moves[i]);
+            }
+            answer.complete(new Hint(hint).transformToProtocolString());
+        } catch (RuntimeException e) {
+            System.err.println("Could not solve a hint: " + e);
+            answer.complete(NO_HINT);
+        }
+        long nanos = System.nanoTime() - start;
+        solved.incrementAndGet();
+        solveNanos.addAndGet(nanos);
+        maxSolveNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Formats a move for a HINT: "FROM.TO" in protocol positions, or END
+     */
+    static String toHintMove(int move) {
+        String play = Move.toProtocol(move);
+        return play.startsWith("PLAY~") ? play.substring("PLAY~".length()).replace('~', '.') : play;
+    }
+
+    /**
+     * Hashes everything the solver looks at for a seat: the building piles, its stock
+     * top and size, its hand and discard piles and whether there are cards to draw
+     */
+    static long stateHash(GameSnapshot snapshot, int seat) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, seat);
+        for (int pile = 0; pile < NUM_BUILDING_PILES; pile++) {
+            hash = mix(hash, snapshot.getBuildingPileSize(pile));
+        }
+        byte[] stock = snapshot.getStockPileBytes(seat);
+        hash = mix(hash, stock.length);
+        hash = mix(hash, stock.length == 0 ? -1 : stock[stock.length - 1]);
+        hash = mix(hash, bytes(snapshot.getHandBytes(seat)));
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            hash = mix(hash, bytes(snapshot.getDiscardPileBytes(seat, pile)));
+        }
+        return mix(hash, snapshot.getDrawPileBytes().length == 0 ? 0 : 1);
+    }
+
+    private static long bytes(byte[] cards) {
+        long hash = cards.length;
+        for (byte card : cards) {
+            hash = hash * 31 + card;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        hash *= 0x100000001b3L;
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Gets the counters: requests, cache hits, solves, answers over the cap, solve times
+     */
+    public String getStats() {
+        long count = Math.max(1, solved.get());
+        return String.format("%d hints, %d from the cache, %d solved, %d over the cap, solve mean %.2f ms max %.2f ms",
+                requests.get(), cacheHits.get(), solved.get(), overCap.get(),
+                solveNanos.get() / 1e6 / count, maxSolveNanos.get() / 1e6);
+    }
+
+    /**
+     * A position: game, turn and state hash
+     */
+    private static final class Key {
+        final long gameId;
+        final long turn;
+        final long hash;
+
+        Key(long gameId, long turn, long hash) {
+            this.gameId = gameId;
+            this.turn = turn;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return gameId == key.gameId && turn == key.turn && hash == key.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(gameId * 31 + turn) ^ Long.hashCode(hash);
+        }
+    }
+}
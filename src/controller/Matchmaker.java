@@ -0,0 +1,264 @@
+package controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static model.GameConstants.*;
+
+/**
+ * Matches players that asked for a game (GAME~AMOUNT with the LOBBY feature) into tables
+ *
+ * Every table size has its own queue, sorted by rating (ties: who came first), so a
+ * ticket goes in and out in O(log n). A table is formed around the ticket that just
+ * came in: of the tickets next to it in rating, the run of AMOUNT tickets with the
+ * smallest rating spread. With rating bands the spread must fit in the band of every
+ * ticket in the run; a band starts at initialBand and grows while the ticket waits,
+ * so nobody waits forever for an exact match. Without bands (initialBand 0) the first
+ * AMOUNT players of a size play together, the closest in rating when more are waiting.
+ *
+ * The queues keep the tickets oldest first too: tick() gives up on tickets that
+ * waited longer than the timeout and tries the ones whose band grew. Forming a table
+ * takes the tickets out under the matchmaker's lock, so a player is never in two
+ * tables; the caller starts the table after the lock is released.
+ */
+public class Matchmaker {
+    private final double initialBand;
+    private final double bandGrowthPerSecond;
+    private final long timeoutMillis;
+
+    // Per table size (index = size): waiting tickets by rating, and oldest first
+    private final List<TreeSet<Ticket>> queues = new ArrayList<>();
+    private final List<ArrayDeque<Ticket>> arrivals = new ArrayList<>();
+    private final Map<String, Ticket> byName = new HashMap<>();
+    private final Ticket[] window = new Ticket[2 * MAX_PLAYERS - 1];  // Scratch for forming a table
+    private long nextSequence;
+
+    // Counters (see getStats)
+    private long enqueued;
+    private long tables;
+    private long timedOut;
+    private double spreadSum;
+
+    /**
+     * Creates a matchmaker
+     * @param initialBand The largest rating spread a new ticket accepts, 0 for no bands
+     * @param bandGrowthPerSecond How much the band of a ticket grows per second of waiting
+     * @param timeoutMillis How long a ticket waits at most, 0 to wait forever
+     */
+    public Matchmaker(double initialBand, double bandGrowthPerSecond, long timeoutMillis) {
+        this.initialBand = initialBand;
+        this.bandGrowthPerSecond = bandGrowthPerSecond;
+        this.timeoutMillis = timeoutMillis;
+        for (int size = 0; size <= MAX_PLAYERS; size++) {
+            queues.add(new TreeSet<>());
+            arrivals.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Puts a player in the queue of a table size, instead of the queue it was in
+     * @param now The current time in milliseconds
+     * @return The tickets of the table formed with this player, or null if it waits
+     */
+    public synchronized List<Ticket> enqueue(String name, int size, double rating, ClientHandler client, long now) {
+        if (size < MIN_PLAYERS || size > MAX_PLAYERS) {
+            throw new IllegalArgumentException("No tables of " + size + " players");
+        }
+        remove(name);
+        Ticket ticket = new Ticket(name, size, rating, client, now, nextSequence++);
+        queues.get(size).add(ticket);
+        arrivals.get(size).add(ticket);
+        byName.put(name, ticket);
+        enqueued++;
+        return formTable(ticket, now);
+    }
+
+    /**
+     * Takes a player out of its queue (it left, or got a seat elsewhere)
+     * @return false if it was not waiting
+     */
+    public synchronized boolean remove(String name) {
+        Ticket ticket = byName.remove(name);
+        if (ticket == null) {
+            return false;
+        }
+        queues.get(ticket.size).remove(ticket);
+        ticket.waiting = false;  // Left in arrivals, skipped there
+        compact(ticket.size);
+        return true;
+    }
+
+    /**
+     * Gives up on the tickets that waited too long and forms the tables their grown bands allow
+     * @param now The current time in milliseconds
+     * @param formed Gets the tickets of every table formed
+     * @param expired Gets the tickets that timed out
+     */
+    public synchronized void tick(long now, List<List<Ticket>> formed, List<Ticket> expired) {
+        for (int size = MIN_PLAYERS; size <= MAX_PLAYERS; size++) {
+            ArrayDeque<Ticket> oldest = arrivals.get(size);
+            while (!oldest.isEmpty() && (!oldest.peekFirst().waiting
+                    || (timeoutMillis > 0 && now - oldest.peekFirst().enqueuedAt >= timeoutMillis))) {
+                Ticket ticket = oldest.pollFirst();
+                if (ticket.waiting) {
+                    byName.remove(ticket.name);
+                    queues.get(size).remove(ticket);
+                    ticket.waiting = false;
+                    timedOut++;
+                    expired.add(ticket);
+                }
+            }
+            // Without bands every table is formed as soon as its last player comes in
+            if (initialBand <= 0 || queues.get(size).size() < size) {
+                continue;
+            }
+            for (Ticket ticket : oldest) {
+                if (ticket.waiting) {
+                    List<Ticket> table = formTable(ticket, now);
+                    if (table != null) {
+                        formed.add(table);
+                    }
+                }
+            }
+            compact(size);
+        }
+    }
+
+    /**
+     * Forms the table with the smallest rating spread around a ticket, if the bands allow one
+     */
+    private List<Ticket> formTable(Ticket ticket, long now) {
+        TreeSet<Ticket> queue = queues.get(ticket.size);
+        int size = ticket.size;
+        if (queue.size() < size) {
+            return null;
+        }
+
+        // The ticket with up to size - 1 neighbors on both sides, by rating
+        int below = 0;
+        for (Ticket t = queue.lower(ticket); t != null && below < size - 1; t = queue.lower(t)) {
+            below++;
+        }
+        int count = 0;
+        Ticket first = ticket;
+        for (int i = 0; i < below; i++) {
+            first = queue.lower(first);
+        }
+        for (Ticket t = first; t != null && count < below + size; t = queue.higher(t)) {
+            window[count++] = t;
+        }
+
+        // The run of size tickets with the smallest spread that fits every band
+        int best = -1;
+        double bestSpread = Double.MAX_VALUE;
+        for (int start = 0; start + size <= count; start++) {
+            if (start > below || start + size - 1 < below) {
+                continue;  // Every run holds the new ticket
+            }
+            double spread = window[start + size - 1].rating - window[start].rating;
+            if (spread < bestSpread && fitsBands(start, size, spread, now)) {
+                best = start;
+                bestSpread = spread;
+            }
+        }
+        if (best < 0) {
+            return null;
+        }
+
+        List<Ticket> table = new ArrayList<>(size);
+        for (int i = best; i < best + size; i++) {
+            Ticket t = window[i];
+            queue.remove(t);
+            byName.remove(t.name);
+            t.waiting = false;
+            table.add(t);
+        }
+        tables++;
+        spreadSum += bestSpread;
+        return table;
+    }
+
+    private boolean fitsBands(int start, int size, double spread, long now) {
+        if (initialBand <= 0) {
+            return true;
+        }
+        for (int i = start; i < start + size; i++) {
+            double waited = (now - window[i].enqueuedAt) / 1000.0;
+            if (spread > initialBand + bandGrowthPerSecond * waited) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops the tickets that left from the oldest-first list once they make up most of it
+     */
+    private void compact(int size) {
+        ArrayDeque<Ticket> oldest = arrivals.get(size);
+        if (oldest.size() > 2 * queues.get(size).size() + 16) {
+            oldest.removeIf(t -> !t.waiting);
+        }
+    }
+
+    /**
+     * Checks if a player is waiting for a table
+     */
+    public synchronized boolean isWaiting(String name) {
+        return byName.containsKey(name);
+    }
+
+    /**
+     * Gets the number of players waiting for a table of a size
+     */
+    public synchronized int getWaiting(int size) {
+        return queues.get(size).size();
+    }
+
+    /**
+     * Gets the number of tables formed so far
+     */
+    public synchronized long getTablesFormed() {
+        return tables;
+    }
+
+    /**
+     * Gets the counters: tickets, tables formed and their mean rating spread, timeouts, waiting
+     */
+    public synchronized String getStats() {
+        return String.format("%d tickets, %d tables (mean spread %.0f), %d timed out, %d waiting",
+                enqueued, tables, tables == 0 ? 0 : spreadSum / tables, timedOut, byName.size());
+    }
+
+    /**
+     * A player waiting for a table
+     */
+    public static final class Ticket implements Comparable<Ticket> {
+        public final String name;
+        public final int size;
+        public final double rating;
+        public final ClientHandler client;
+        public final long enqueuedAt;
+        private final long sequence;
+        private boolean waiting = true;
+
+        Ticket(String name, int size, double rating, ClientHandler client, long enqueuedAt, long sequence) {
+            this.name = name;
+            this.size = size;
+            this.rating = rating;
+            this.client = client;
+            this.enqueuedAt = enqueuedAt;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            int byRating = Double.compare(rating, other.rating);
+            return byRating != 0 ? byRating : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package controller;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static model.GameConstants.*;
+
+/**
+ * Measures matchmaking: the Matchmaker alone, and whole tables started through GameManager
+ *
+ * Matchmaker: players arrive at a steady rate on a simulated clock (ratings around
+ * 1500, table sizes 2-6 at random, one in ten leaves before it gets a table) with the
+ * timer ticking every 500 ms, without and with rating bands. Prints the real time per
+ * arrival, tables formed per second of real time, the rating spread and simulated wait
+ * of the tables and the tickets that timed out.
+ * GameManager: LOBBY connections without a socket say HELLO and GAME~AMOUNT, every
+ * formed table is dealt, put on its shard and announced (START, TABLE, HAND, STOCK,
+ * TURN; the messages are built but go nowhere). Prints tables started per second.
+ * Usage: MatchmakerBenchmark [players] [arrivals per simulated second] [seed]
+ */
+public class MatchmakerBenchmark {
+    private static final double[] BANDS = {0, 100};
+    private static final long TICK_MILLIS = 500;
+    private static final long TIMEOUT_MILLIS = 120_000;
+
+    public static void main(String[] args) {
+        int players = args.length >= 1 ? Integer.parseInt(args[0]) : 200_000;
+        int arrivalsPerSecond = args.length >= 2 ? Integer.parseInt(args[1]) : 2000;
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 42;
+
+        // Warm up the JIT
+        runMatchmaker(players / 4, arrivalsPerSecond, 100, seed);
+        runManager(players / 20, seed);
+
+        System.out.printf("%d players, %d arrivals per simulated second%n", players, arrivalsPerSecond);
+        System.out.printf("%-24s %10s %12s %10s %10s %10s%n", "Matchmaker", "ns/arrival", "Tables/s",
+                "Spread", "Wait ms", "Timed out");
+        for (double band : BANDS) {
+            System.out.println(runMatchmaker(players, arrivalsPerSecond, band, seed));
+        }
+        int connections = Math.min(players, 20_000);
+        System.out.printf("%nGameManager, %d LOBBY connections: %.0f tables started/s%n", connections,
+                runManager(connections, seed));
+    }
+
+    private static String runMatchmaker(int players, int arrivalsPerSecond, double band, long seed) {
+        Random random = new Random(seed);
+        Matchmaker matchmaker = new Matchmaker(band, band / 5, TIMEOUT_MILLIS);
+        List<List<Matchmaker.Ticket>> formed = new ArrayList<>();
+        List<Matchmaker.Ticket> expired = new ArrayList<>();
+        long tables = 0;
+        double spread = 0;
+        double waited = 0;
+        long seats = 0;
+        long timedOut = 0;
+        long nextTick = TICK_MILLIS;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < players; i++) {
+            long now = (long) i * 1000 / arrivalsPerSecond;
+            while (now >= nextTick) {
+                matchmaker.tick(nextTick, formed, expired);
+                for (List<Matchmaker.Ticket> table : formed) {
+                    tables++;
+                    spread += spreadOf(table);
+                    for (Matchmaker.Ticket ticket : table) {
+                        waited += nextTick - ticket.enqueuedAt;
+                        seats++;
+                    }
+                }
+                timedOut += expired.size();
+                formed.clear();
+                expired.clear();
+                nextTick += TICK_MILLIS;
+            }
+            double rating = 1500 + random.nextGaussian() * 250;
+            int size = MIN_PLAYERS + random.nextInt(MAX_PLAYERS - MIN_PLAYERS + 1);
+            List<Matchmaker.Ticket> table = matchmaker.enqueue("P" + i, size, rating, null, now);
+            if (table != null) {
+                tables++;
+                spread += spreadOf(table);
+                for (Matchmaker.Ticket ticket : table) {
+                    waited += now - ticket.enqueuedAt;
+                    seats++;
+                }
+            }
+            if (random.nextInt(10) == 0) {
+                matchmaker.remove("P" + random.nextInt(i + 1));
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        return String.format("%-24s %10.0f %12.0f %10.1f %10.0f %10d", band <= 0 ? "no bands" : "bands " + (int) band,
+                (double) nanos / players, tables / (nanos / 1e9), spread / Math.max(tables, 1),
+                waited / Math.max(seats, 1), timedOut);
+    }
+
+    private static double spreadOf(List<Matchmaker.Ticket> table) {
+        return table.get(table.size() - 1).rating - table.get(0).rating;
+    }
+
+    /**
+     * Connects players to a fresh in-memory server and returns the tables started per second
+     */
+    private static double runManager(int connections, long seed) {
+        Random random = new Random(seed);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            Server server = new Server(0, false);
+            int[] sizes = new int[connections];
+            ClientHandler[] clients = new ClientHandler[connections];
+            for (int i = 0; i < connections; i++) {
+                sizes[i] = MIN_PLAYERS + random.nextInt(MAX_PLAYERS - MIN_PLAYERS + 1);
+                clients[i] = new ClientHandler(null, server);
+                clients[i].handleClientMessage("HELLO~P" + i + "~L");
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                clients[i].handleClientMessage("GAME~" + sizes[i]);
+            }
+            long nanos = System.nanoTime() - start;
+
+            return server.getGameManager().getMatchmaker().getTablesFormed() / (nanos / 1e9);
+        } finally {
+            System.setOut(out);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks which tables the Matchmaker forms, on a made-up clock
+ *
+ * Without bands the first players of a size play together. With bands a table is the
+ * run with the smallest rating spread around the newest ticket, only when the spread
+ * fits the band of every player in it, and bands grow while players wait. Tickets that
+ * leave or wait too long never get a seat.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: MatchmakerCheck
+ */
+public class MatchmakerCheck {
+
+    public static void main(String[] args) {
+        withoutBands();
+        smallestSpread();
+        growingBands();
+        leavingAndTimeouts();
+        System.out.println("OK");
+    }
+
+    private static void withoutBands() {
+        Matchmaker matchmaker = new Matchmaker(0, 0, 0);
+        check(matchmaker.enqueue("a", 3, 1000, null, 0) == null, "Table of 3 formed with one player");
+        check(matchmaker.enqueue("b", 3, 2400, null, 0) == null, "Table of 3 formed with two players");
+        check(matchmaker.enqueue("c", 2, 1000, null, 0) == null, "Table of 2 formed from the queue of 3");
+        checkTable(matchmaker.enqueue("d", 3, 1700, null, 0), "a", "d", "b");
+        check(!matchmaker.isWaiting("a") && matchmaker.isWaiting("c"), "Seated players still waiting");
+        check(matchmaker.getWaiting(3) == 0 && matchmaker.getWaiting(2) == 1, "Wrong queue lengths");
+    }
+
+    private static void smallestSpread() {
+        Matchmaker matchmaker = new Matchmaker(100, 0, 0);
+        check(matchmaker.enqueue("a", 2, 1000, null, 0) == null, "Table formed with one player");
+        check(matchmaker.enqueue("b", 2, 1300, null, 0) == null, "Table formed over the band (spread 300)");
+        // Spread 250 with a, 50 with b
+        checkTable(matchmaker.enqueue("c", 2, 1250, null, 0), "c", "b");
+        check(matchmaker.isWaiting("a"), "a left the queue without a table");
+
+        // Of the runs of three around the new ticket that fit, the closest one
+        check(matchmaker.enqueue("d", 3, 1000, null, 0) == null, "Table formed with one player");
+        check(matchmaker.enqueue("e", 3, 1090, null, 0) == null, "Table formed with two players");
+        check(matchmaker.enqueue("f", 3, 1110, null, 0) == null, "Table formed over the band (spread 110)");
+        // Spread 95 with d and e, 20 with e and f
+        checkTable(matchmaker.enqueue("g", 3, 1095, null, 0), "e", "g", "f");
+        check(matchmaker.isWaiting("d") && matchmaker.getWaiting(3) == 1, "Table of 3 took more than three players");
+    }
+
+    private static void growingBands() {
+        // Band 100 growing by 10 per second: a spread of 300 fits after 20 s of waiting
+        Matchmaker matchmaker = new Matchmaker(100, 10, 0);
+        List<List<Matchmaker.Ticket>> formed = new ArrayList<>();
+        List<Matchmaker.Ticket> expired = new ArrayList<>();
+        matchmaker.enqueue("a", 2, 1000, null, 0);
+        matchmaker.enqueue("b", 2, 1300, null, 15_000);
+        matchmaker.tick(20_000, formed, expired);
+        check(formed.isEmpty(), "Table formed before the band of the newer player fits");
+        matchmaker.tick(34_999, formed, expired);
+        check(formed.isEmpty(), "Table formed before 20 s of waiting");
+        matchmaker.tick(35_000, formed, expired);
+        check(formed.size() == 1, formed.size() + " tables formed once every band fits");
+        checkTable(formed.get(0), "a", "b");
+        check(expired.isEmpty(), "Tickets timed out without a timeout");
+    }
+
+    private static void leavingAndTimeouts() {
+        Matchmaker matchmaker = new Matchmaker(0, 0, 60_000);
+        List<List<Matchmaker.Ticket>> formed = new ArrayList<>();
+        List<Matchmaker.Ticket> expired = new ArrayList<>();
+        matchmaker.enqueue("a", 2, 1500, null, 0);
+        check(matchmaker.remove("a") && !matchmaker.remove("a"), "Removed ticket still waiting");
+        matchmaker.enqueue("b", 2, 1500, null, 10_000);
+        matchmaker.tick(69_999, formed, expired);
+        check(expired.isEmpty(), "Ticket timed out early");
+        matchmaker.tick(70_000, formed, expired);
+        check(expired.size() == 1 && expired.get(0).name.equals("b"), "Ticket did not time out");
+        check(!matchmaker.isWaiting("b"), "Timed out ticket still waiting");
+        check(matchmaker.enqueue("c", 2, 1500, null, 70_000) == null, "Table formed with a ticket that timed out");
+        check(matchmaker.getTablesFormed() == 0 && formed.isEmpty(), "Tables formed without two players");
+    }
+
+    /**
+     * Checks the players of a table, in rating order
+     */
+    private static void checkTable(List<Matchmaker.Ticket> table, String... names) {
+        check(table != null, "No table formed");
+        check(table.size() == names.length, "Table of " + table.size() + ", expected " + names.length);
+        for (int i = 0; i < names.length; i++) {
+            check(table.get(i).name.equals(names[i]),
+                    "Seat " + i + " is " + table.get(i).name + ", expected " + names[i]);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
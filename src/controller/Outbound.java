@@ -0,0 +1,138 @@
+package controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * The lines waiting to be written to one client, in two lanes
+ *
+ * Game messages (TURN, PLAY, HAND, ...) are written first and in order, and are never
+ * dropped. Chat is only written when no game message waits, so a flood of chat can
+ * not hold up a turn. The chat lane holds CHAT_LANE_SIZE frames; when a client reads
+ * slower than chat comes in, its oldest chat is dropped.
+ *
+ * Frames are encoded lines (UTF-8 with the newline), a chat frame is shared by every
+ * client it goes to. One writer thread per connection writes them and flushes when
+ * both lanes are empty, so a burst of messages goes out in one write, and nobody
+ * waits for a slow client but that client's writer.
+ */
+public class Outbound implements Runnable {
+    /** Chat frames a client can be behind before the oldest are dropped */
+    public static final int CHAT_LANE_SIZE = 64;
+
+    private final OutputStream out;
+    private final ArrayDeque<byte[]> gameLane = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> chatLane = new ArrayDeque<>();
+    private boolean closed;
+    private long chatDropped;
+
+    /**
+     * @param out The (buffered) stream of the connection
+     */
+    public Outbound(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Encodes a line as a frame
+     */
+    public static byte[] encode(String line) {
+        return (line + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Queues a game message
+     * @return The number of game messages waiting now
+     */
+    public synchronized int sendGame(byte[] frame) {
+        if (closed) {
+            return 0;
+        }
+        gameLane.add(frame);
+        notify();
+        return gameLane.size();
+    }
+
+    /**
+     * Queues game messages that are encoded already (frames shared with other clients)
+     */
+    public synchronized void sendGame(byte[][] frames, int count) {
+        if (closed) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            gameLane.add(frames[i]);
+        }
+        notify();
+    }
+
+    /**
+     * Queues a chat frame, behind every game message
+     * @return false if an older chat frame was dropped to make room
+     */
+    public synchronized boolean sendChat(byte[] frame) {
+        if (closed) {
+            return true;
+        }
+        boolean room = chatLane.size() < CHAT_LANE_SIZE;
+        if (!room) {
+            chatLane.pollFirst();
+            chatDropped++;
+        }
+        chatLane.add(frame);
+        notify();
+        return room;
+    }
+
+    /**
+     * Writes the frames until the lanes are closed (runs on the writer thread)
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                byte[] frame;
+                boolean more;
+                synchronized (this) {
+                    while (gameLane.isEmpty() && chatLane.isEmpty() && !closed) {
+                        wait();
+                    }
+                    if (gameLane.isEmpty() && chatLane.isEmpty()) {
+                        break;  // Closed and written
+                    }
+                    frame = !gameLane.isEmpty() ? gameLane.pollFirst() : chatLane.pollFirst();
+                    more = !gameLane.isEmpty() || !chatLane.isEmpty();
+                }
+                out.write(frame);
+                if (!more) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException | InterruptedException e) {
+            // The connection is gone, the reader side cleans up
+            close();
+        }
+    }
+
+    /**
+     * Stops taking frames, the writer writes the ones that wait and stops
+     */
+    public synchronized void close() {
+        closed = true;
+        notify();
+    }
+
+    /**
+     * Gets the number of game messages waiting to be written
+     */
+    public synchronized int getGameBacklog() {
+        return gameLane.size();
+    }
+
+    public synchronized long getChatDropped() {
+        return chatDropped;
+    }
+}
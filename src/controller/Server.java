@@ -1,5 +1,11 @@
 package controller;
 
+import ranking.Leaderboard;
+import storage.GameArchive;
+import storage.Journal;
+import storage.Snapshotter;
+
+import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -12,28 +18,156 @@ public class Server {
     private boolean running;
     private List<ClientHandler> clients;
     private GameManager gameManager;
+    private Journal journal;
+    private Snapshotter snapshotter;
+    private GameArchive archive;
+    private Leaderboard leaderboard;
+    private GatewayLink gatewayLink;  // null when no gateway sends clients here
+
+    // Where the journal of running games is kept
+    private static final String JOURNAL_DIRECTORY = "journal";
+    private static final int JOURNAL_SHARDS = 4;
+
+    // How often all running games are snapshotted (and the journal truncated)
+    private static final long SNAPSHOT_INTERVAL_SECONDS = 60;
+
+    // Where finished games are kept
+    private static final String ARCHIVE_DIRECTORY = "archive";
+
+    // Where the ratings of all players are kept, and how often they are checkpointed
+    private static final String LEADERBOARD_DIRECTORY = "leaderboard";
+    private static final long LEADERBOARD_CHECKPOINT_SECONDS = 300;
 
     public Server(int port){
+        this(port, true);
+    }
+
+    /**
+     * Creates a server
+     * @param port The port to listen on
+     * @param persistent false to keep everything in memory: no journal, archive or leaderboard
+     *                   (for games of bots that nobody needs to keep)
+     */
+    public Server(int port, boolean persistent) {
         this.port = port;
         this.running = false;
         this.clients = new ArrayList<>();
-        this.gameManager = new GameManager(this);
+        this.journal = persistent ? openJournal() : null;
+        this.snapshotter = journal == null ? null : new Snapshotter(journal);
+        this.archive = persistent ? openArchive() : null;
+        this.leaderboard = persistent ? openLeaderboard() : null;
+        this.gameManager = new GameManager(this, journal, snapshotter, archive, leaderboard);
+    }
+
+    /**
+     * Opens the journal, the server still runs (without persistence) if that fails
+     */
+    private Journal openJournal() {
+        try {
+            return new Journal(new File(JOURNAL_DIRECTORY), JOURNAL_SHARDS);
+        } catch (IOException e) {
+            System.err.println("Could not open journal, games are not persisted: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens the archive of finished games, the server still runs (without it) if that fails
+     * Games waiting for their block are written when the JVM shuts down.
+     */
+    private GameArchive openArchive() {
+        try {
+            GameArchive opened = new GameArchive(new File(ARCHIVE_DIRECTORY));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    opened.close();
+                } catch (IOException e) {
+                    System.err.println("Could not write archive: " + e.getMessage());
+                }
+            }, "archive-shutdown"));
+            return opened;
+        } catch (IOException e) {
+            System.err.println("Could not open archive, finished games are not kept: " + e.getMessage());
+            return null;
+        }
     }
 
+    /**
+     * Opens the leaderboard, the server still runs (without ratings) if that fails
+     */
+    private Leaderboard openLeaderboard() {
+        try {
+            Leaderboard opened = Leaderboard.open(new File(LEADERBOARD_DIRECTORY));
+            System.out.println("Leaderboard: " + opened.size() + " rated players");
+            return opened;
+        } catch (IOException e) {
+            System.err.println("Could not open leaderboard, games are not rated: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Usage: java controller.Server [port] [gateway=HOST:PORT[:CAPACITY]] [bot...]
+     * With a gateway, the server announces itself to it as a backend (see Gateway),
+     * taking CAPACITY players (by default GatewayLink.defaultCapacity()).
+     * Every bot (heuristic, chain, mcts[:iterations] or ismcts[:iterations]) takes a
+     * seat in the lobby, the clients fill the other seats.
+     */
     public static void main(String[] args) {
         // Default port
-        int port = 5555;
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 5555;
         // Create and start server
         Server server = new Server(port);
+        int firstBot = 1;
+        if (args.length > 1 && args[1].startsWith("gateway=")) {
+            String[] address = args[1].substring("gateway=".length()).split(":");
+            if (address.length < 2) {
+                System.err.println("Gateway must be HOST:PORT[:CAPACITY]: " + args[1]);
+                return;
+            }
+            int capacity = address.length >= 3 ? Integer.parseInt(address[2]) : GatewayLink.defaultCapacity();
+            server.announceTo(address[0], Integer.parseInt(address[1]), capacity);
+            firstBot = 2;
+        }
+        for (int i = firstBot; i < args.length; i++) {
+            BotSeat bot = BotSeat.create(args[i], System.nanoTime());
+            if (bot == null) {
+                System.err.println("Unknown bot: " + args[i]);
+                return;
+            }
+            server.getGameManager().addBot("Bot" + i, bot);
+        }
         server.start();
     }
 
+    /**
+     * Announces this server to a gateway once it listens
+     * @param capacity The players this server takes
+     */
+    public void announceTo(String host, int gatewayPort, int capacity) {
+        this.gatewayLink = new GatewayLink(host, gatewayPort, port, capacity, gameManager);
+    }
+
     public void start() {
+        // Resume the games that were running before a crash
+        gameManager.recoverGames();
+        gameManager.startMatchmaking();
+        gameManager.startStatsDump();
+        if (snapshotter != null) {
+            snapshotter.start(SNAPSHOT_INTERVAL_SECONDS);
+        }
+        if (leaderboard != null) {
+            leaderboard.start(LEADERBOARD_CHECKPOINT_SECONDS);
+        }
+
         try{
             serverSocket = new ServerSocket(port);
             running = true;
             System.out.println("Server started on port " + port);
             System.out.println("Waiting for clients to connect.");
+            if (gatewayLink != null) {
+                gatewayLink.start();
+            }
 
             while (running) {
                 try {
@@ -63,13 +197,6 @@ public class Server {
     }
 
 
-    public void broadcast(String message) {
-        for (ClientHandler client : clients) {
-            client.sendMessage(message);
-        }
-    }
-
-
     public void removeClient(ClientHandler handler) {
         clients.remove(handler);
         System.out.println("Client disconnected. Total clients: " + clients.size());
@@ -1,6 +1,7 @@
 package controller;
 
 import protocol.Command;
+import protocol.client.Pong;
 import view.GameView;
 
 import java.io.BufferedReader;
@@ -71,6 +72,12 @@ public class ServerHandler implements Runnable {
             if (parts.length >= 3) {
                 view.showStockTopCard(parts[1], parts[2]);
             }
+        } else if (command.equals("CHAT")) {
+            if (parts.length >= 3) {
+                view.showChat(parts[1], parts[2]);
+            }
+        } else if (command.equals("PING")) {
+            client.sendMessage(new Pong().transformToProtocolString());
         } else if (command.equals("ERROR")) {
             if (parts.length >= 2) {
                 view.showError(parts[1]);
@@ -0,0 +1,175 @@
+package controller;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures spectators: what publishing costs the game's thread, and how the pump keeps up
+ *
+ * Publishing: a game publishes TABLE-sized messages as fast as it can, to a feed with
+ * no, one and the given number of spectators (nobody copies them). Prints the time
+ * per message on the game's thread.
+ * Watching: the game publishes in turns (a burst of BURST messages, then a pause) to
+ * the spectators through the pump. Every tenth spectator reads slowly
+ * (SLOW_WRITE_MILLIS per frame) and falls behind. Every spectator has its own Outbound
+ * and writer thread, writing to nowhere. Prints the CPU time per publish on the game's
+ * thread (with waking the pump and cold caches after every pause), the frames the
+ * fast spectators got, how often the slow ones skipped to a snapshot, and the most
+ * frames any writer had waiting.
+ * Usage: SpectatorBenchmark [spectators] [messages] [messages per second]
+ */
+public class SpectatorBenchmark {
+    private static final int BURST = 20;
+    private static final long SLOW_WRITE_MILLIS = 20;
+    private static final String MESSAGE =
+            "TABLE~3.X.7.12~Alice.5.X.X.9,Bob.11.2.X.X,Carol.X.X.X.X,Dave.4.4.8.X,Eve.X.1.X.10,Frank.6.X.X.X";
+
+    public static void main(String[] args) throws InterruptedException {
+        int spectators = args.length >= 1 ? Integer.parseInt(args[0]) : 1000;
+        int messages = args.length >= 2 ? Integer.parseInt(args[1]) : 1000;
+        int perSecond = args.length >= 3 ? Integer.parseInt(args[2]) : 200;
+
+        // Warm up the JIT
+        publish(spectators, 1_000_000);
+        run(spectators / 10, messages, 10 * perSecond, false);
+
+        System.out.println("Publishing:");
+        for (int watchers : new int[]{0, 1, spectators}) {
+            System.out.printf("%6d spectators: %.0f ns/message%n", watchers, publish(watchers, 1_000_000));
+        }
+        System.out.printf("%nWatching, %d messages at %d/s in bursts of %d:%n", messages, perSecond, BURST);
+        run(spectators, messages, perSecond, true);
+    }
+
+    private static double publish(int spectators, int messages) {
+        SpectatorFeed feed = new SpectatorFeed(1, () -> new SpectatorFeed.Snapshot(0, new byte[0]));
+        for (int i = 0; i < spectators; i++) {
+            feed.add(new SpectatorFeed.Watcher(null, null, feed), 0);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            feed.publish(MESSAGE);
+        }
+        return (System.nanoTime() - start) / (double) messages;
+    }
+
+    private static void run(int spectators, int messages, int perSecond, boolean print) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        SpectatorService service = new SpectatorService();
+        SpectatorFeed[] holder = new SpectatorFeed[1];
+        SpectatorFeed feed = new SpectatorFeed(1, () -> new SpectatorFeed.Snapshot(holder[0].getPublished(),
+                Outbound.encode("RESYNC~Alice.0,Bob.0\n" + MESSAGE)));
+        holder[0] = feed;
+        service.attach(feed);
+
+        List<Counter> counters = new ArrayList<>();
+        List<Outbound> lanes = new ArrayList<>();
+        for (int i = 0; i < spectators; i++) {
+            Counter counter = new Counter(i % 10 == 0 ? SLOW_WRITE_MILLIS : 0);
+            Outbound out = new Outbound(counter);
+            Thread writer = new Thread(null, out, "writer-" + i, 128 * 1024);
+            writer.setDaemon(true);
+            writer.start();
+            SpectatorFeed.Watcher watcher = new SpectatorFeed.Watcher(counter, out, feed);
+            feed.add(watcher, feed.getLatestSnapshot().sequence);
+            counters.add(counter);
+            lanes.add(out);
+        }
+
+        // What reading the clock costs, taken off every burst
+        long clockNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long before = threads.getCurrentThreadCpuTime();
+            clockNanos = Math.min(clockNanos, threads.getCurrentThreadCpuTime() - before);
+        }
+
+        // The game: bursts of messages, paced to the rate
+        long publishNanos = 0;
+        long maxBacklog = 0;
+        long start = System.nanoTime();
+        for (int sent = 0; sent < messages; sent += BURST) {
+            long burstStart = threads.getCurrentThreadCpuTime();
+            for (int i = 0; i < BURST; i++) {
+                feed.publish(MESSAGE);
+            }
+            publishNanos += threads.getCurrentThreadCpuTime() - burstStart - clockNanos;
+            for (Outbound out : lanes) {
+                maxBacklog = Math.max(maxBacklog, out.getGameBacklog());
+            }
+            long next = start + (sent + BURST) * 1_000_000_000L / perSecond;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            }
+        }
+        feed.close();
+
+        // Wait for the fast spectators to get everything
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        long published = feed.getPublished();
+        while (System.nanoTime() < deadline && !caughtUp(counters, published)) {
+            Thread.sleep(10);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long fastFrames = 0;
+        long fast = 0;
+        for (Counter counter : counters) {
+            if (counter.slowMillis == 0) {
+                fastFrames += counter.frames.get();
+                fast++;
+            }
+        }
+        for (Outbound out : lanes) {
+            out.close();
+        }
+        if (!print) {
+            return;
+        }
+        System.out.printf("%6d spectators: publish %.0f ns/message, fast spectators got %.1f%% of the frames in %.1f s, "
+                        + "max writer backlog %d%n", spectators, (double) publishNanos / messages,
+                fast == 0 ? 100.0 : 100.0 * fastFrames / (fast * (double) messages), seconds, maxBacklog);
+        System.out.println("        " + service.getStats());
+    }
+
+    private static boolean caughtUp(List<Counter> counters, long published) {
+        for (Counter counter : counters) {
+            if (counter.slowMillis == 0 && counter.frames.get() < published) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A spectator's connection: counts the frames, and takes its time if it is slow
+     */
+    private static final class Counter extends OutputStream {
+        final long slowMillis;
+        final AtomicLong frames = new AtomicLong();
+
+        Counter(long slowMillis) {
+            this.slowMillis = slowMillis;
+        }
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            frames.incrementAndGet();
+            if (slowMillis > 0) {
+                try {
+                    Thread.sleep(slowMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package controller;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * The public messages of one game for its spectators (WATCH)
+ *
+ * The controller publishes every message it broadcasts (PLAY, TABLE, STOCK, TURN,
+ * ROUND, WINNER, ODDS) here, encoded once, into a ring of the last RING_SIZE frames.
+ * That is all the game's thread does: the same for one spectator or ten thousand.
+ * SpectatorService copies the frames to every spectator at the spectator's own pace.
+ *
+ * A new spectator starts from a snapshot: a RESYNC with everything public, made at a
+ * point in the ring, after which the frames from that point bring it up to date. A
+ * spectator that falls more than the ring behind skips forward to the latest snapshot
+ * instead of being buffered. The snapshot is shared: it is only made again when the
+ * ring moved on half its size since the last one.
+ *
+ * Without spectators nothing is encoded or kept.
+ */
+public class SpectatorFeed {
+    /** Frames kept for spectators that are behind (a power of two) */
+    public static final int RING_SIZE = 256;
+    private static final int MASK = RING_SIZE - 1;
+
+    private final long gameId;
+    private final Supplier<Snapshot> snapshotSource;
+    private final Set<Watcher> watchers = ConcurrentHashMap.newKeySet();
+    private Frame[] ring;  // Made for the first spectator
+
+    private volatile long published;    // Frames published so far (the sequence of the next one)
+    private volatile Snapshot snapshot; // Latest snapshot, null when there are no spectators
+    private volatile Runnable listener; // Wakes up whoever copies the frames
+    private volatile boolean closed;
+    long pumped;                        // The sequence the pump looked at last (pump thread only)
+
+    /**
+     * @param snapshotSource Makes a snapshot of the game under the game's lock, at getPublished()
+     */
+    public SpectatorFeed(long gameId, Supplier<Snapshot> snapshotSource) {
+        this.gameId = gameId;
+        this.snapshotSource = snapshotSource;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Publishes a broadcast message (nothing happens when nobody watches)
+     */
+    public synchronized void publish(String message) {
+        if (watchers.isEmpty()) {
+            if (snapshot != null) {
+                snapshot = null;  // Taken before the messages nobody kept
+            }
+            return;
+        }
+        long sequence = published;
+        ring[(int) (sequence & MASK)] = new Frame(sequence, Outbound.encode(message));
+        published = sequence + 1;
+
+        Runnable wake = listener;
+        if (wake != null) {
+            wake.run();
+        }
+    }
+
+    /**
+     * Gets a published frame, or null if the ring moved past it
+     */
+    public byte[] getFrame(long sequence) {
+        Frame frame = ring[(int) (sequence & MASK)];
+        return frame != null && frame.sequence == sequence ? frame.bytes : null;
+    }
+
+    /**
+     * Gets the sequence of the next frame
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * Gets the snapshot to start from: the last one, or a new one when the ring moved on too far
+     */
+    public Snapshot getLatestSnapshot() {
+        Snapshot latest = snapshot;
+        if (latest == null || published - latest.sequence > RING_SIZE / 2) {
+            latest = snapshotSource.get();
+            snapshot = latest;
+        }
+        return latest;
+    }
+
+    /**
+     * Adds a spectator that got the snapshot up to a sequence
+     * Called under the game's lock, so no message goes out between the snapshot and this.
+     */
+    public synchronized void add(Watcher watcher, long sequence) {
+        if (ring == null) {
+            ring = new Frame[RING_SIZE];
+        }
+        watcher.cursor = sequence;
+        watchers.add(watcher);
+    }
+
+    public void remove(Watcher watcher) {
+        watchers.remove(watcher);
+    }
+
+    public Set<Watcher> getWatchers() {
+        return watchers;
+    }
+
+    public boolean hasWatchers() {
+        return !watchers.isEmpty();
+    }
+
+    void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Marks the game as over: no more frames come, the spectators leave once they have them all
+     */
+    public void close() {
+        closed = true;
+        Runnable wake = listener;
+        if (wake != null) {
+            wake.run();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * The public state of a game at a point in the ring, as a RESYNC frame
+     */
+    public static final class Snapshot {
+        final long sequence;
+        final byte[] frame;
+
+        public Snapshot(long sequence, byte[] frame) {
+            this.sequence = sequence;
+            this.frame = frame;
+        }
+    }
+
+    /**
+     * One spectator: its outbound lanes and the next frame it gets
+     * The cursor is only moved by SpectatorService.
+     */
+    public static final class Watcher {
+        final Object owner;
+        final Outbound out;
+        final SpectatorFeed feed;
+        long cursor;
+
+        public Watcher(Object owner, Outbound out, SpectatorFeed feed) {
+            this.owner = owner;
+            this.out = out;
+            this.feed = feed;
+        }
+    }
+
+    /**
+     * A frame with its sequence, so a reader sees when the ring wrote over it
+     */
+    private static final class Frame {
+        final long sequence;
+        final byte[] bytes;
+
+        Frame(long sequence, byte[] bytes) {
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package controller;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Copies the frames of the watched games to their spectators (WATCH command)
+ *
+ * One pump thread walks the feeds of the watched games and hands every spectator the
+ * frames it has not got yet, the same byte arrays for everyone. A spectator gets no
+ * more than WINDOW frames ahead of its writer (see Outbound), so a slow spectator
+ * stays behind in the ring instead of in memory; once it is more than the ring
+ * behind, it gets the latest snapshot and goes on from there.
+ *
+ * Publishing a frame only wakes the pump up when it sleeps, so the game's thread does
+ * the same work for any number of spectators. When the pump has nothing to copy it
+ * sleeps until a frame comes in, or POLL_MILLIS to try the spectators whose window
+ * was full.
+ */
+public class SpectatorService implements Runnable {
+    /** Frames a spectator's writer may have waiting */
+    public static final int WINDOW = 64;
+
+    /** How long the pump sleeps at most when no frame comes in */
+    public static final long POLL_MILLIS = 10;
+
+    private final Set<SpectatorFeed> feeds = ConcurrentHashMap.newKeySet();
+    private final Map<Object, SpectatorFeed.Watcher> watching = new ConcurrentHashMap<>();
+    private final Thread pump;
+    private final byte[][] batch = new byte[WINDOW][];  // Frames for one spectator (pump thread only)
+    private volatile boolean sleeping;
+
+    // Counters (see getStats)
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong skips = new AtomicLong();
+
+    public SpectatorService() {
+        this.pump = new Thread(this, "spectator-pump");
+        pump.setDaemon(true);
+        pump.start();
+    }
+
+    /**
+     * Lets a client watch a game, instead of the game it watched before
+     * @return false if the game is over
+     */
+    public boolean watch(ClientHandler client, GameController controller) {
+        unwatch(client);
+        SpectatorFeed feed = controller.getSpectatorFeed();
+        SpectatorFeed.Watcher watcher = new SpectatorFeed.Watcher(client, client.getOutbound(), feed);
+        attach(feed);
+        watching.put(client, watcher);
+        if (!controller.addSpectator(watcher)) {
+            watching.remove(client, watcher);
+            return false;
+        }
+        joined.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stops a client watching (it left, or got a seat)
+     * @return false if it did not watch a game
+     */
+    public boolean unwatch(Object client) {
+        SpectatorFeed.Watcher watcher = watching.remove(client);
+        if (watcher == null) {
+            return false;
+        }
+        watcher.feed.remove(watcher);
+        return true;
+    }
+
+    /**
+     * Lets the pump copy the frames of a feed
+     */
+    void attach(SpectatorFeed feed) {
+        if (feeds.add(feed)) {
+            feed.setListener(this::wake);
+        }
+    }
+
+    /**
+     * Wakes the pump up if it sleeps (called for every published frame)
+     */
+    private void wake() {
+        if (sleeping) {
+            sleeping = false;
+            LockSupport.unpark(pump);
+        }
+    }
+
+    /**
+     * Copies frames until the service stops (runs on the pump thread)
+     */
+    @Override
+    public void run() {
+        while (true) {
+            boolean copied = false;
+            for (SpectatorFeed feed : feeds) {
+                copied |= pump(feed);
+            }
+            if (!copied) {
+                // Say we sleep before the last look, so a frame published now wakes us up
+                sleeping = true;
+                if (!hasNewFrames()) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS));
+                }
+                sleeping = false;
+            }
+        }
+    }
+
+    private boolean hasNewFrames() {
+        for (SpectatorFeed feed : feeds) {
+            if (feed.getPublished() != feed.pumped) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies the new frames of a feed to its spectators
+     * @return true if any frame was copied
+     */
+    private boolean pump(SpectatorFeed feed) {
+        long end = feed.getPublished();
+        feed.pumped = end;
+        boolean copied = false;
+        boolean caughtUp = true;
+        for (SpectatorFeed.Watcher watcher : feed.getWatchers()) {
+            copied |= copy(feed, watcher, end);
+            caughtUp &= watcher.cursor >= end;
+        }
+
+        // A finished game lets its spectators go once they have every frame
+        if (feed.isClosed() && caughtUp && feed.getPublished() == end) {
+            feeds.remove(feed);
+            for (SpectatorFeed.Watcher watcher : feed.getWatchers()) {
+                watching.remove(watcher.owner, watcher);
+                feed.remove(watcher);
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Copies a spectator the frames it fits in its window, or skips it forward when the ring moved past it
+     */
+    private boolean copy(SpectatorFeed feed, SpectatorFeed.Watcher watcher, long end) {
+        if (watcher.cursor >= end) {
+            return false;
+        }
+        if (end - watcher.cursor > SpectatorFeed.RING_SIZE) {
+            skipForward(feed, watcher);
+            return true;
+        }
+        int room = WINDOW - watcher.out.getGameBacklog();
+        int count = 0;
+        while (count < room && watcher.cursor + count < end) {
+            byte[] frame = feed.getFrame(watcher.cursor + count);
+            if (frame == null) {
+                skipForward(feed, watcher);
+                return true;
+            }
+            batch[count++] = frame;
+        }
+        if (count > 0) {
+            watcher.out.sendGame(batch, count);
+            watcher.cursor += count;
+            frames.addAndGet(count);
+        }
+        return count > 0;
+    }
+
+    private void skipForward(SpectatorFeed feed, SpectatorFeed.Watcher watcher) {
+        SpectatorFeed.Snapshot snapshot = feed.getLatestSnapshot();
+        watcher.out.sendGame(snapshot.frame);
+        watcher.cursor = snapshot.sequence;
+        skips.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of clients watching a game
+     */
+    public int getWatching() {
+        return watching.size();
+    }
+
+    /**
+     * Gets the counters: spectators joined and watching, frames copied, skips to a snapshot
+     */
+    public String getStats() {
+        return String.format("%d spectators joined, %d watching %d games, %d frames copied, %d skipped to a snapshot",
+                joined.get(), watching.size(), feeds.size(), frames.get(), skips.get());
+    }
+}
@@ -0,0 +1,242 @@
+package controller;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks after a delay: turn deadlines, idle connections, held seats, matchmaking
+ *
+ * A hashed timing wheel: a ring of SLOTS buckets, one per tick of tickMillis. A timer
+ * goes in the bucket of the tick it is due, with the number of turns of the wheel
+ * still to wait, so scheduling and cancelling are O(1) however many timers wait, and
+ * one thread runs them all. Every tick the thread runs the due timers of one bucket
+ * and counts down the others in it.
+ *
+ * Any thread can schedule and cancel: a new timer is handed to the wheel's thread in
+ * a queue, a cancelled one is only marked and taken out of its bucket on that thread.
+ * Timers fire up to one tick late, never early. The tasks run on the wheel's thread,
+ * so they must be short (take a lock, send a message, hand work elsewhere).
+ *
+ * Timers that move all the time (a connection's idle deadline moves with every line
+ * it sends) do not need to be rescheduled: the task can check the real deadline when
+ * it fires and schedule itself again for the time left.
+ */
+public class TimingWheel implements Runnable {
+    /** Buckets in the wheel (a power of two) */
+    public static final int SLOTS = 512;
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Bucket[] wheel = new Bucket[SLOTS];
+    private final Queue<Timer> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timer> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private long tick;  // The next tick to run (wheel thread only)
+
+    // Counters (see getStats)
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong cancels = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong late = new AtomicLong();
+
+    /**
+     * Creates a wheel and starts its thread
+     * @param tickMillis The length of one tick: how late a timer may fire
+     */
+    public TimingWheel(long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.startNanos = System.nanoTime();
+        for (int i = 0; i < SLOTS; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.thread = new Thread(this, "timing-wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs a task after a delay
+     * @return The timer, to cancel it
+     */
+    public Timer schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay));
+        Timer timer = new Timer(this, task, deadline);
+        added.add(timer);
+        scheduled.incrementAndGet();
+        return timer;
+    }
+
+    /**
+     * Runs the ticks until the JVM stops (runs on the wheel's thread)
+     */
+    @Override
+    public void run() {
+        while (true) {
+            long tickEnd = (tick + 1) * tickNanos;
+            long sleep = tickEnd - (System.nanoTime() - startNanos);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            transferAdded();
+            removeCancelled();
+            expire(wheel[(int) (tick & MASK)], tickEnd);
+            tick++;
+        }
+    }
+
+    /**
+     * Puts the new timers in the buckets of their ticks
+     */
+    private void transferAdded() {
+        for (Timer timer; (timer = added.poll()) != null; ) {
+            if (timer.state != Timer.WAITING) {
+                continue;  // Cancelled before it got in
+            }
+            long due = Math.max(tick, (timer.deadline + tickNanos - 1) / tickNanos - 1);
+            timer.rounds = (due - tick) / SLOTS;
+            wheel[(int) (due & MASK)].add(timer);
+        }
+    }
+
+    private void removeCancelled() {
+        for (Timer timer; (timer = cancelled.poll()) != null; ) {
+            if (timer.bucket != null) {
+                timer.bucket.remove(timer);
+            }
+        }
+    }
+
+    /**
+     * Runs the due timers of a bucket, the others wait another turn of the wheel
+     */
+    private void expire(Bucket bucket, long tickEnd) {
+        Timer timer = bucket.head;
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.rounds <= 0) {
+                bucket.remove(timer);
+                if (Timer.STATE.compareAndSet(timer, Timer.WAITING, Timer.EXPIRED)) {
+                    expired.incrementAndGet();
+                    if (tickEnd - timer.deadline > 2 * tickNanos) {
+                        late.incrementAndGet();  // The wheel's thread fell behind
+                    }
+                    try {
+                        timer.task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Timer failed: " + e);
+                    }
+                }
+            } else {
+                timer.rounds--;
+            }
+            timer = next;
+        }
+    }
+
+    /**
+     * Gets the number of timers that have not fired or been cancelled yet
+     */
+    public long getPending() {
+        return scheduled.get() - cancels.get() - expired.get();
+    }
+
+    /**
+     * Gets the counters: timers scheduled, cancelled, fired (and fired late), waiting
+     */
+    public String getStats() {
+        return String.format("%d timers, %d cancelled, %d fired (%d late), %d waiting",
+                scheduled.get(), cancels.get(), expired.get(), late.get(), getPending());
+    }
+
+    /**
+     * A scheduled task
+     */
+    public static final class Timer {
+        static final int WAITING = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timer> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timer.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;  // Nanoseconds after the wheel started
+        private volatile int state = WAITING;
+
+        // Wheel thread only
+        private long rounds;
+        private Bucket bucket;
+        private Timer prev;
+        private Timer next;
+
+        Timer(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Stops the task from running
+         * @return false if it ran (or runs right now) or was cancelled already
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, WAITING, CANCELLED)) {
+                return false;
+            }
+            wheel.cancels.incrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+    }
+
+    /**
+     * The timers of one slot, in a doubly linked list so one comes out in O(1)
+     */
+    private static final class Bucket {
+        Timer head;
+        Timer tail;
+
+        void add(Timer timer) {
+            timer.bucket = this;
+            timer.prev = tail;
+            timer.next = null;
+            if (tail == null) {
+                head = timer;
+            } else {
+                tail.next = timer;
+            }
+            tail = timer;
+        }
+
+        void remove(Timer timer) {
+            if (timer.bucket != this) {
+                return;
+            }
+            if (timer.prev == null) {
+                head = timer.next;
+            } else {
+                timer.prev.next = timer.next;
+            }
+            if (timer.next == null) {
+                tail = timer.prev;
+            } else {
+                timer.next.prev = timer.prev;
+            }
+            timer.bucket = null;
+            timer.prev = null;
+            timer.next = null;
+        }
+    }
+}
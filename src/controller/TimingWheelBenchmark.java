@@ -0,0 +1,127 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the timing wheel against a ScheduledThreadPoolExecutor (a heap of timers)
+ *
+ * Cost: with the given number of timers waiting (delays of 1-120 s, like turn
+ * deadlines and idle checks), schedules and cancels another batch of them, and moves
+ * a deadline (cancel and schedule again). Prints the time per operation.
+ * Accuracy: schedules timers due in the next two seconds and prints how late they
+ * fired (median, 99th percentile, max).
+ * Usage: TimingWheelBenchmark [timers waiting] [tick millis]
+ */
+public class TimingWheelBenchmark {
+    private static final int BATCH = 100_000;
+    private static final int ACCURACY_TIMERS = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int waiting = args.length >= 1 ? Integer.parseInt(args[0]) : 100_000;
+        long tickMillis = args.length >= 2 ? Long.parseLong(args[1]) : 100;
+
+        // Warm up the JIT
+        measureWheel(waiting / 10, tickMillis);
+        measureHeap(waiting / 10);
+
+        System.out.printf("%d timers waiting, batches of %d%n", waiting, BATCH);
+        System.out.printf("%-24s %12s %12s %12s%n", "", "schedule ns", "cancel ns", "move ns");
+        System.out.println(measureWheel(waiting, tickMillis));
+        System.out.println(measureHeap(waiting));
+
+        System.out.printf("%nLateness of %d timers due within 2 s (tick %d ms)%n", ACCURACY_TIMERS, tickMillis);
+        accuracy(tickMillis);
+    }
+
+    private static String measureWheel(int waiting, long tickMillis) {
+        TimingWheel wheel = new TimingWheel(tickMillis);
+        Random random = new Random(42);
+        for (int i = 0; i < waiting; i++) {
+            wheel.schedule(TimingWheelBenchmark::nothing, delayMillis(random), TimeUnit.MILLISECONDS);
+        }
+
+        TimingWheel.Timer[] timers = new TimingWheel.Timer[BATCH];
+        long start = System.nanoTime();
+        for (int i = 0; i < BATCH; i++) {
+            timers[i] = wheel.schedule(TimingWheelBenchmark::nothing, delayMillis(random), TimeUnit.MILLISECONDS);
+        }
+        long scheduled = System.nanoTime();
+        for (int i = 0; i < BATCH / 2; i++) {
+            timers[i].cancel();
+        }
+        long cancelled = System.nanoTime();
+        for (int i = BATCH / 2; i < BATCH; i++) {
+            timers[i].cancel();
+            timers[i] = wheel.schedule(TimingWheelBenchmark::nothing, delayMillis(random), TimeUnit.MILLISECONDS);
+        }
+        long moved = System.nanoTime();
+        return String.format("%-24s %12.0f %12.0f %12.0f", "TimingWheel", (scheduled - start) / (double) BATCH,
+                (cancelled - scheduled) / (BATCH / 2.0), (moved - cancelled) / (BATCH / 2.0));
+    }
+
+    private static String measureHeap(int waiting) {
+        ScheduledThreadPoolExecutor heap = new ScheduledThreadPoolExecutor(1);
+        heap.setRemoveOnCancelPolicy(true);
+        Random random = new Random(42);
+        for (int i = 0; i < waiting; i++) {
+            heap.schedule(TimingWheelBenchmark::nothing, delayMillis(random), TimeUnit.MILLISECONDS);
+        }
+
+        List<ScheduledFuture<?>> timers = new ArrayList<>(BATCH);
+        long start = System.nanoTime();
+        for (int i = 0; i < BATCH; i++) {
+            timers.add(heap.schedule(TimingWheelBenchmark::nothing, delayMillis(random), TimeUnit.MILLISECONDS));
+        }
+        long scheduled = System.nanoTime();
+        for (int i = 0; i < BATCH / 2; i++) {
+            timers.get(i).cancel(false);
+        }
+        long cancelled = System.nanoTime();
+        for (int i = BATCH / 2; i < BATCH; i++) {
+            timers.get(i).cancel(false);
+            timers.set(i, heap.schedule(TimingWheelBenchmark::nothing, delayMillis(random), TimeUnit.MILLISECONDS));
+        }
+        long moved = System.nanoTime();
+        heap.shutdownNow();
+        return String.format("%-24s %12.0f %12.0f %12.0f", "ScheduledThreadPool", (scheduled - start) / (double) BATCH,
+                (cancelled - scheduled) / (BATCH / 2.0), (moved - cancelled) / (BATCH / 2.0));
+    }
+
+    private static void accuracy(long tickMillis) throws InterruptedException {
+        TimingWheel wheel = new TimingWheel(tickMillis);
+        Random random = new Random(7);
+        long[] lateness = new long[ACCURACY_TIMERS];
+        AtomicInteger fired = new AtomicInteger();
+        for (int i = 0; i < ACCURACY_TIMERS; i++) {
+            int index = i;
+            long delay = random.nextInt(2000);
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            wheel.schedule(() -> {
+                lateness[index] = System.nanoTime() - due;
+                fired.incrementAndGet();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        while (fired.get() < ACCURACY_TIMERS) {
+            Thread.sleep(50);
+        }
+        Arrays.sort(lateness);
+        System.out.printf("early %d, median %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                Arrays.stream(lateness).filter(l -> l < 0).count(), lateness[ACCURACY_TIMERS / 2] / 1e6,
+                lateness[ACCURACY_TIMERS * 99 / 100] / 1e6, lateness[ACCURACY_TIMERS - 1] / 1e6);
+        System.out.println(wheel.getStats());
+    }
+
+    private static long delayMillis(Random random) {
+        return 1000 + random.nextInt(119_000);
+    }
+
+    private static void nothing() {
+    }
+}
@@ -0,0 +1,69 @@
+package controller;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Checks that TimingWheel fires every timer on its own turn of the wheel, never early
+ *
+ * With 2 ms ticks a turn of the wheel is SLOTS * 2 ms. Some timers share a bucket but
+ * are due zero, one and two turns later, so the wheel must count the turns they wait.
+ * Every timer must fire at or after its delay and at most a tick (plus SLACK_MILLIS for
+ * a busy machine) later. Cancelled timers must not fire, cancelling a timer that fired
+ * must fail, and no timer may be left waiting.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: TimingWheelCheck
+ */
+public class TimingWheelCheck {
+    private static final long TICK_MILLIS = 2;
+    private static final long TURN_MILLIS = TimingWheel.SLOTS * TICK_MILLIS;
+    private static final long SLACK_MILLIS = 100;
+
+    public static void main(String[] args) throws InterruptedException {
+        long[] delays = {0, 50, 100, 100 + TURN_MILLIS, 100 + 2 * TURN_MILLIS, TURN_MILLIS - 1,
+                TURN_MILLIS + 1, 2 * TURN_MILLIS + 300};
+        TimingWheel wheel = new TimingWheel(TICK_MILLIS);
+        AtomicLongArray fired = new AtomicLongArray(delays.length);
+        CountDownLatch done = new CountDownLatch(delays.length);
+
+        long[] scheduled = new long[delays.length];
+        TimingWheel.Timer[] timers = new TimingWheel.Timer[delays.length];
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            scheduled[i] = System.nanoTime();
+            timers[i] = wheel.schedule(() -> {
+                fired.set(index, System.nanoTime());
+                done.countDown();
+            }, delays[i], TimeUnit.MILLISECONDS);
+        }
+        AtomicInteger ranCancelled = new AtomicInteger();
+        TimingWheel.Timer cancelled = wheel.schedule(ranCancelled::incrementAndGet, 200, TimeUnit.MILLISECONDS);
+        TimingWheel.Timer cancelledLate = wheel.schedule(ranCancelled::incrementAndGet, 100 + TURN_MILLIS,
+                TimeUnit.MILLISECONDS);
+        check(cancelled.cancel() && !cancelled.cancel(), "Cancelling twice did not fail once");
+
+        Thread.sleep(150 + TURN_MILLIS / 2);
+        check(cancelledLate.cancel(), "Timer of the next turn could not be cancelled");
+        check(!timers[2].cancel(), "Cancelled a timer that fired");
+
+        check(done.await(2 * TURN_MILLIS + 300 + 5 * SLACK_MILLIS, TimeUnit.MILLISECONDS), "Timers did not fire");
+        for (int i = 0; i < delays.length; i++) {
+            long after = fired.get(i) - scheduled[i];
+            long earliest = TimeUnit.MILLISECONDS.toNanos(delays[i]);
+            long latest = TimeUnit.MILLISECONDS.toNanos(delays[i] + TICK_MILLIS + SLACK_MILLIS);
+            check(after >= earliest && after <= latest,
+                    String.format("Timer of %d ms fired after %.3f ms", delays[i], after / 1e6));
+        }
+        check(ranCancelled.get() == 0, "A cancelled timer fired");
+        check(wheel.getPending() == 0, wheel.getPending() + " timers still waiting");
+        System.out.println("OK");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
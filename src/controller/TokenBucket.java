@@ -0,0 +1,36 @@
+package controller;
+
+/**
+ * A token bucket: allows a burst of up to capacity actions, then ratePerSecond on average
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long last;
+
+    /**
+     * Creates a full bucket
+     * @param nowNanos The current System.nanoTime()
+     */
+    public TokenBucket(double capacity, double ratePerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.tokens = capacity;
+        this.last = nowNanos;
+    }
+
+    /**
+     * Takes a token if there is one
+     * @return false if the bucket is empty (the action is over the rate)
+     */
+    public synchronized boolean tryTake(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - last) * tokensPerNano);
+        last = nowNanos;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
@@ -0,0 +1,278 @@
+package controller;
+
+import bot.BotMatch;
+import bot.RolloutPolicy;
+import bot.SimState;
+import model.GameSnapshot;
+import protocol.server.Odds;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Estimates the chance of every player to win the round, for the people watching (ODDS)
+ *
+ * After every move the controller hands over a copy of the game. The estimator plays
+ * the round out from there with RolloutPolicy, many times: every playout starts from
+ * what is public (building piles, discard piles, stock top cards, the numbers of
+ * cards) with the hidden cards shuffled (every hand, the stock cards below the tops
+ * and the draw pile), like nobody at the table can see them. A seat's chance is the
+ * part of the playouts it won; a round that gets stuck goes to the first seat with
+ * the fewest stock cards, like GameController decides it.
+ *
+ * The playouts run in slices of SLICE_MILLIS on this service's own threads. After a
+ * slice a game waits until its slices took no more than its CPU share, so a busy game
+ * never starves the others, and the estimate keeps getting better while the players
+ * think, up to MAX_PLAYOUTS. A new move throws away the playouts of the old position:
+ * the running slice stops at its next playout. Estimates go out after MIN_PLAYOUTS,
+ * then at most every publishInterval and only when a percent changed.
+ */
+public class WinEstimator {
+    /** Length of one slice of playouts */
+    public static final long SLICE_MILLIS = 2;
+
+    /** Playouts before the first estimate of a position goes out */
+    public static final int MIN_PLAYOUTS = 500;
+
+    /** Playouts after which an estimate is good enough and the game waits for the next move */
+    public static final int MAX_PLAYOUTS = 20000;
+
+    private final ScheduledThreadPoolExecutor pool;
+    private final double gameCpuShare;
+    private final long publishIntervalNanos;
+    private final Map<Long, Table> tables = new ConcurrentHashMap<>();
+
+    // Counters (see getStats)
+    private final AtomicLong positions = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong playouts = new AtomicLong();
+    private final AtomicLong playoutNanos = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+
+    /**
+     * Creates an estimator with its own threads
+     * @param threads Threads that run the playouts of all games
+     * @param gameCpuShare The part of one thread a game gets at most (0-1)
+     * @param publishIntervalMillis The shortest time between two estimates of a game
+     */
+    public WinEstimator(int threads, double gameCpuShare, long publishIntervalMillis) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread thread = new Thread(r, "win-estimator-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.gameCpuShare = gameCpuShare;
+        this.publishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(publishIntervalMillis);
+    }
+
+    /**
+     * Starts estimating a new position of a game, instead of the one before
+     * @param gameId The game
+     * @param snapshot The game, copied right after the move
+     * @param publisher Sends an ODDS message to everyone watching the game
+     */
+    public void positionChanged(long gameId, GameSnapshot snapshot, Consumer<String> publisher) {
+        positions.incrementAndGet();
+        Table table = tables.computeIfAbsent(gameId, id -> new Table(id, publisher));
+        synchronized (table) {
+            if (table.pending != null) {
+                dropped.incrementAndGet();  // Never started on
+            }
+            table.pending = snapshot;
+            if (!table.scheduled) {
+                table.scheduled = true;
+                pool.execute(() -> runSlice(table));
+            }
+        }
+    }
+
+    /**
+     * Stops estimating a game that finished or was aborted
+     */
+    public void gameEnded(long gameId) {
+        Table table = tables.remove(gameId);
+        if (table != null) {
+            table.ended = true;
+        }
+    }
+
+    /**
+     * Runs one slice of playouts for a game and plans its next slice
+     */
+    private void runSlice(Table table) {
+        long start = System.nanoTime();
+        GameSnapshot snapshot;
+        synchronized (table) {
+            snapshot = table.pending;
+            table.pending = null;
+            if (table.ended || (snapshot == null && table.playouts >= MAX_PLAYOUTS)) {
+                // Nothing left to refine until the next move
+                table.scheduled = false;
+                return;
+            }
+        }
+        if (snapshot != null) {
+            if (table.playouts > 0 && table.playouts < MIN_PLAYOUTS) {
+                dropped.incrementAndGet();  // Stale before it was ever published
+            }
+            table.startPosition(snapshot);
+        }
+
+        // Play until the slice is over or a newer position comes in
+        long sliceEnd = start + TimeUnit.MILLISECONDS.toNanos(SLICE_MILLIS);
+        int count = 0;
+        do {
+            table.playOut();
+            count++;
+        } while (table.pending == null && !table.ended && table.playouts < MAX_PLAYOUTS
+                && System.nanoTime() < sliceEnd);
+
+        long now = System.nanoTime();
+        playouts.addAndGet(count);
+        playoutNanos.addAndGet(now - start);
+        if (table.pending == null && table.playouts >= MIN_PLAYOUTS
+                && (now - table.lastPublished >= publishIntervalNanos || table.playouts >= MAX_PLAYOUTS)) {
+            publish(table, now);
+        }
+
+        // Wait so the slices of this game use no more than its CPU share
+        long pause = (long) ((now - start) * (1 / gameCpuShare - 1));
+        pool.schedule(() -> runSlice(table), pause, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends the estimate of a game, if a percent changed since the last one
+     */
+    private void publish(Table table, long now) {
+        int[] percents = table.percents();
+        table.lastPublished = now;
+        if (Arrays.equals(percents, table.publishedPercents)) {
+            return;
+        }
+        table.publishedPercents = percents;
+        Odds.Chance[] chances = new Odds.Chance[percents.length];
+        for (int seat = 0; seat < percents.length; seat++) {
+            chances[seat] = new Odds.Chance(table.names[seat], percents[seat]);
+        }
+        published.incrementAndGet();
+        try {
+            table.publisher.accept(new Odds(chances).transformToProtocolString());
+        } catch (RuntimeException e) {
+            System.err.println("Could not send the odds of game " + table.gameId + ": " + e);
+        }
+    }
+
+    /**
+     * Gets the counters: positions, dropped positions, playouts and their speed, estimates sent
+     */
+    public String getStats() {
+        long count = Math.max(1, playouts.get());
+        return String.format("%d positions (%d dropped before an estimate), %d playouts at %.1f us, %d estimates sent",
+                positions.get(), dropped.get(), playouts.get(), playoutNanos.get() / 1e3 / count, published.get());
+    }
+
+    /**
+     * The estimate of one game
+     * Only the running slice touches the playout fields; slices of a game never overlap.
+     */
+    private static final class Table {
+        final long gameId;
+        final Consumer<String> publisher;
+        final Random random;
+        final RolloutPolicy policy = new RolloutPolicy();
+        final byte[] pool = new byte[SimState.DECK_SIZE];
+
+        // Set by positionChanged and gameEnded
+        volatile GameSnapshot pending;
+        volatile boolean ended;
+        boolean scheduled;
+
+        // The position being estimated
+        String[] names;
+        SimState root;
+        SimState scratch;
+        int[] wins;
+        int playouts;
+        long lastPublished;
+        int[] publishedPercents;
+
+        Table(long gameId, Consumer<String> publisher) {
+            this.gameId = gameId;
+            this.publisher = publisher;
+            this.random = new Random(gameId ^ System.nanoTime());
+        }
+
+        void startPosition(GameSnapshot snapshot) {
+            int seats = snapshot.getPlayerNames().length;
+            if (root == null || root.getSeats() != seats) {
+                root = new SimState(seats);
+                scratch = new SimState(seats);
+                wins = new int[seats];
+            }
+            names = snapshot.getPlayerNames();
+            root.copyFrom(snapshot);
+            Arrays.fill(wins, 0);
+            playouts = 0;
+        }
+
+        void playOut() {
+            scratch.copyFrom(root);
+            scratch.determinize(-1, random, pool);  // Seen by nobody: every hand is hidden
+            policy.playOut(scratch, BotMatch.MAX_TURNS, random);
+            wins[winnerOf(scratch)]++;
+            playouts++;
+        }
+
+        /**
+         * Gets the chances in whole percents that add up to 100 (largest remainders round up)
+         */
+        int[] percents() {
+            int seats = wins.length;
+            int[] percents = new int[seats];
+            int left = 100;
+            for (int seat = 0; seat < seats; seat++) {
+                percents[seat] = (int) (100L * wins[seat] / playouts);
+                left -= percents[seat];
+            }
+            for (; left > 0; left--) {
+                int best = 0;
+                long bestRest = -1;
+                for (int seat = 0; seat < seats; seat++) {
+                    long rest = 100L * wins[seat] - (long) percents[seat] * playouts;
+                    if (rest > bestRest) {
+                        best = seat;
+                        bestRest = rest;
+                    }
+                }
+                percents[best]++;
+            }
+            return percents;
+        }
+
+        /**
+         * Gets the winner of a played out round, or for a stuck round the first seat
+         * with the fewest stock cards
+         */
+        private static int winnerOf(SimState state) {
+            if (state.getWinner() != SimState.NONE) {
+                return state.getWinner();
+            }
+            int best = 0;
+            for (int seat = 1; seat < state.getSeats(); seat++) {
+                if (state.getStockSize(seat) < state.getStockSize(best)) {
+                    best = seat;
+                }
+            }
+            return best;
+        }
+    }
+}
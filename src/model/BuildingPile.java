@@ -70,4 +70,9 @@ public class BuildingPile {
     public int size() {
         return cards.size();
     }
+
+    // All cards of the pile, bottom first (for snapshots)
+    List<Card> getCards() {
+        return cards;
+    }
 }
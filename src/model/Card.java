@@ -30,4 +30,19 @@ public class Card {
         return cardColor == CardColor.SKIPBO;
     }
 
+    // Encodes the card as one byte: color in the high bits, number (0 for SkipBo) in the low bits
+    public byte toByte() {
+        int value = isSkipBo() ? 0 : number;
+        return (byte) ((cardColor.ordinal() << 4) | value);
+    }
+
+    // Creates a card from the byte made by toByte()
+    public static Card fromByte(byte value) {
+        CardColor color = CardColor.values()[(value >> 4) & 0x0F];
+        if (color == CardColor.SKIPBO) {
+            return new Card(color);
+        }
+        return new Card(color, value & 0x0F);
+    }
+
 }
@@ -11,6 +11,14 @@ public class CardActionDiscardPileToBuildingPile implements CardAction {
         this.buildingPileIndex = buildingPileIndex;
     }
 
+    public int getDiscardPileIndex() {
+        return discardPileIndex;
+    }
+
+    public int getBuildingPileIndex() {
+        return buildingPileIndex;
+    }
+
         @Override
     public void execute(Game game, Player player) {
         DiscardPile discardPile = game.getDiscardPile(player, discardPileIndex);
@@ -11,6 +11,10 @@ public class CardActionHandToBuildingPile implements CardAction {
         this.buildingPileIndex = buildingPileIndex;
     }
 
+    public model.Card getCard() {
+        return card;
+    }
+
     public int getBuildingPileIndex() {
         return buildingPileIndex;
     }
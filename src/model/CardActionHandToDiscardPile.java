@@ -12,6 +12,14 @@ public class CardActionHandToDiscardPile implements CardAction {
         this.discardPile = discardPile;
     }
 
+    public model.Card getCard() {
+        return card;
+    }
+
+    public int getDiscardPile() {
+        return discardPile;
+    }
+
     @Override
     public void execute(Game game, Player player) {
         game.getHand(player).remove(card);
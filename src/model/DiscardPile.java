@@ -35,4 +35,19 @@ public class DiscardPile {
     public void clear() {
         cards.clear();
     }
+
+    // Gets the amount of cards in the pile
+    public int size() {
+        return cards.size();
+    }
+
+    // Gets a card of the pile, 0 is the bottom card (the cards below the top are visible too)
+    public model.Card getCard(int index) {
+        return cards.get(index);
+    }
+
+    // All cards of the pile, bottom first (for snapshots)
+    List<Card> getCards() {
+        return cards;
+    }
 }
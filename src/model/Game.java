@@ -27,10 +27,26 @@ public class Game {
     private Map<Player, Integer> totalScores;
     private int roundNumber;
 
+    // Seed used to shuffle the current round, so a round can be dealt again exactly
+    private long roundSeed;
+
     public Game(List<Player> players){
+        this(players, new Random().nextLong());
+    }
+
+    /**
+     * Creates a game whose first round is dealt from the given seed
+     * The same players and seed always give the same deck, stock piles and first player
+     *
+     * @param players The players in seat order
+     * @param seed The shuffle seed for the first round
+     */
+    public Game(List<Player> players, long seed){
         // Generate and Shuffle cards
+        this.roundSeed = seed;
+        Random r = new Random(seed);
         drawPile = CardGenerator.generateCards();
-        Collections.shuffle(drawPile);
+        Collections.shuffle(drawPile, r);
 
         // Assign Players
         this.players = players;
@@ -60,7 +76,7 @@ public class Game {
             List<Card> handOut = new ArrayList<>(drawPile.subList(0, cardsToHandout));
             stockPiles.put(player, new StockPile(handOut));
             hand.put(player, new ArrayList<>());
-            drawPile.removeAll(handOut);
+            drawPile.subList(0, handOut.size()).clear();
 
             // Initialize 4 discard piles per player
             List<DiscardPile> playerDiscardPiles = new ArrayList<>();
@@ -71,11 +87,54 @@ public class Game {
         }
 
         // determine FirstPlayer
-        Random r = new Random();
         currentPlayerIndex = r.nextInt(players.size());
         handCards(players.get(currentPlayerIndex));
     }
 
+    /**
+     * Creates a game in the exact state of a snapshot (see GameSnapshot.restore())
+     */
+    Game(GameSnapshot snapshot) {
+        String[] names = snapshot.getPlayerNames();
+        this.players = new ArrayList<>();
+        this.stockPiles = new HashMap<>();
+        this.hand = new HashMap<>();
+        this.discardPiles = new HashMap<>();
+        this.totalScores = new HashMap<>();
+
+        for (int i = 0; i < names.length; i++) {
+            Player player = new Player(names[i]);
+            players.add(player);
+            totalScores.put(player, snapshot.getScore(i));
+            stockPiles.put(player, new StockPile(snapshot.getStockPile(i)));
+            hand.put(player, snapshot.getHand(i));
+
+            List<DiscardPile> playerDiscardPiles = new ArrayList<>();
+            for (int j = 0; j < NUM_DISCARD_PILES; j++) {
+                DiscardPile pile = new DiscardPile();
+                for (Card card : snapshot.getDiscardPile(i, j)) {
+                    pile.addCard(card);
+                }
+                playerDiscardPiles.add(pile);
+            }
+            discardPiles.put(player, playerDiscardPiles);
+        }
+
+        this.buildingPiles = new ArrayList<>();
+        for (int i = 0; i < NUM_BUILDING_PILES; i++) {
+            BuildingPile pile = new BuildingPile();
+            for (Card card : snapshot.getBuildingPile(i)) {
+                pile.addCard(card);
+            }
+            buildingPiles.add(pile);
+        }
+
+        this.drawPile = snapshot.getDrawPile();
+        this.roundNumber = snapshot.getRoundNumber();
+        this.currentPlayerIndex = snapshot.getCurrentPlayerIndex();
+        this.roundSeed = snapshot.getRoundSeed();
+    }
+
     public void handCards(Player player) {
         // Calculate how many cards to draw
         int cardsToDraw = HAND_SIZE - hand.get(player).size();
@@ -89,7 +148,7 @@ public class Game {
         if (cardsToDraw > 0 && !drawPile.isEmpty()) {
             List<Card> handOut = new ArrayList<>(drawPile.subList(0, cardsToDraw));
             hand.get(player).addAll(handOut);
-            drawPile.removeAll(handOut);
+            drawPile.subList(0, handOut.size()).clear();
         }
     }
 
@@ -156,6 +215,10 @@ public class Game {
         return buildingPiles.get(index);
     }
 
+    public int getDrawPileSize() {
+        return drawPile.size();
+    }
+
     public Player getCurrentPlayer() {
         return players.get(currentPlayerIndex);
     }
@@ -164,6 +227,20 @@ public class Game {
         return players;
     }
 
+    // The cards that are still to be drawn, next card first (for snapshots)
+    List<Card> getDrawPile() {
+        return drawPile;
+    }
+
+    /**
+     * Gets the seed the current round was shuffled with
+     *
+     * @return The shuffle seed of the current round
+     */
+    public long getRoundSeed() {
+        return roundSeed;
+    }
+
     // Game logic methods
 
     public boolean hasPlayerWon(Player player) {
@@ -293,12 +370,23 @@ public class Game {
      * - Choose random new first player
      */
     public void startNewRound() {
+        startNewRound(new Random().nextLong());
+    }
+
+    /**
+     * Starts a new round dealt from the given seed (see startNewRound())
+     *
+     * @param seed The shuffle seed for the new round
+     */
+    public void startNewRound(long seed) {
         // Increment round number
         roundNumber++;
 
         // Generate and shuffle new cards
+        roundSeed = seed;
+        Random r = new Random(seed);
         drawPile = CardGenerator.generateCards();
-        Collections.shuffle(drawPile);
+        Collections.shuffle(drawPile, r);
 
         // Reset building piles
         buildingPiles.clear();
@@ -312,7 +400,7 @@ public class Game {
             // New stock pile with fresh cards
             List<Card> handOut = new ArrayList<>(drawPile.subList(0, cardsToHandout));
             stockPiles.put(player, new StockPile(handOut));
-            drawPile.removeAll(handOut);
+            drawPile.subList(0, handOut.size()).clear();
 
             // Empty hand
             hand.get(player).clear();
@@ -325,7 +413,6 @@ public class Game {
         }
 
         // Choose random new first player
-        Random r = new Random();
         currentPlayerIndex = r.nextInt(players.size());
         handCards(players.get(currentPlayerIndex));
 
@@ -0,0 +1,235 @@
+package model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static model.GameConstants.*;
+
+/**
+ * Compact copy of the complete state of a Game
+ * Seats, scores, round number, current player and the contents of all piles and hands.
+ * Cards are stored as single bytes (see Card.toByte()), so capturing a game is cheap.
+ */
+public class GameSnapshot {
+    private final String[] playerNames;
+    private final int[] scores;
+    private final int roundNumber;
+    private final int currentPlayerIndex;
+    private final long roundSeed;
+    private final byte[] drawPile;
+    private final byte[][] buildingPiles;
+    private final byte[][] stockPiles;     // Per seat, bottom first
+    private final byte[][] hands;          // Per seat
+    private final byte[][][] discardPiles; // Per seat, per pile, bottom first
+
+    private GameSnapshot(String[] playerNames, int[] scores, int roundNumber, int currentPlayerIndex,
+                         long roundSeed, byte[] drawPile, byte[][] buildingPiles,
+                         byte[][] stockPiles, byte[][] hands, byte[][][] discardPiles) {
+        this.playerNames = playerNames;
+        this.scores = scores;
+        this.roundNumber = roundNumber;
+        this.currentPlayerIndex = currentPlayerIndex;
+        this.roundSeed = roundSeed;
+        this.drawPile = drawPile;
+        this.buildingPiles = buildingPiles;
+        this.stockPiles = stockPiles;
+        this.hands = hands;
+        this.discardPiles = discardPiles;
+    }
+
+    /**
+     * Copies the state of a game
+     * The caller must make sure the game is not changed while this runs
+     */
+    public static GameSnapshot capture(Game game) {
+        List<Player> players = game.getPlayers();
+        int seats = players.size();
+
+        String[] names = new String[seats];
+        int[] scores = new int[seats];
+        byte[][] stocks = new byte[seats][];
+        byte[][] hands = new byte[seats][];
+        byte[][][] discards = new byte[seats][NUM_DISCARD_PILES][];
+        for (int i = 0; i < seats; i++) {
+            Player player = players.get(i);
+            names[i] = player.getName();
+            scores[i] = game.getScore(player);
+            stocks[i] = toBytes(game.getStockPile(player).getCards());
+            hands[i] = toBytes(game.getHand(player));
+            for (int j = 0; j < NUM_DISCARD_PILES; j++) {
+                discards[i][j] = toBytes(game.getDiscardPile(player, j).getCards());
+            }
+        }
+
+        byte[][] building = new byte[NUM_BUILDING_PILES][];
+        for (int i = 0; i < NUM_BUILDING_PILES; i++) {
+            building[i] = toBytes(game.getBuildingPile(i).getCards());
+        }
+
+        int current = players.indexOf(game.getCurrentPlayer());
+        return new GameSnapshot(names, scores, game.getRoundNumber(), current, game.getRoundSeed(),
+                toBytes(game.getDrawPile()), building, stocks, hands, discards);
+    }
+
+    /**
+     * Creates a new Game in exactly the captured state
+     */
+    public Game restore() {
+        return new Game(this);
+    }
+
+    // ========== SERIALIZATION ==========
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(playerNames.length);
+        for (int i = 0; i < playerNames.length; i++) {
+            out.writeUTF(playerNames[i]);
+            out.writeInt(scores[i]);
+        }
+        out.writeInt(roundNumber);
+        out.writeByte(currentPlayerIndex);
+        out.writeLong(roundSeed);
+        writeCards(out, drawPile);
+        for (byte[] pile : buildingPiles) {
+            writeCards(out, pile);
+        }
+        for (int i = 0; i < playerNames.length; i++) {
+            writeCards(out, stockPiles[i]);
+            writeCards(out, hands[i]);
+            for (byte[] pile : discardPiles[i]) {
+                writeCards(out, pile);
+            }
+        }
+    }
+
+    public static GameSnapshot readFrom(DataInputStream in) throws IOException {
+        int seats = in.readByte();
+        String[] names = new String[seats];
+        int[] scores = new int[seats];
+        for (int i = 0; i < seats; i++) {
+            names[i] = in.readUTF();
+            scores[i] = in.readInt();
+        }
+        int roundNumber = in.readInt();
+        int current = in.readByte();
+        long seed = in.readLong();
+        byte[] drawPile = readCards(in);
+        byte[][] building = new byte[NUM_BUILDING_PILES][];
+        for (int i = 0; i < NUM_BUILDING_PILES; i++) {
+            building[i] = readCards(in);
+        }
+        byte[][] stocks = new byte[seats][];
+        byte[][] hands = new byte[seats][];
+        byte[][][] discards = new byte[seats][NUM_DISCARD_PILES][];
+        for (int i = 0; i < seats; i++) {
+            stocks[i] = readCards(in);
+            hands[i] = readCards(in);
+            for (int j = 0; j < NUM_DISCARD_PILES; j++) {
+                discards[i][j] = readCards(in);
+            }
+        }
+        return new GameSnapshot(names, scores, roundNumber, current, seed, drawPile, building, stocks, hands, discards);
+    }
+
+    private static void writeCards(DataOutputStream out, byte[] cards) throws IOException {
+        out.writeShort(cards.length);
+        out.write(cards);
+    }
+
+    private static byte[] readCards(DataInputStream in) throws IOException {
+        byte[] cards = new byte[in.readUnsignedShort()];
+        in.readFully(cards);
+        return cards;
+    }
+
+    // ========== GETTERS (used by Game to restore) ==========
+
+    public String[] getPlayerNames() {
+        return playerNames;
+    }
+
+    int getScore(int seat) {
+        return scores[seat];
+    }
+
+    int getRoundNumber() {
+        return roundNumber;
+    }
+
+    public int getCurrentPlayerIndex() {
+        return currentPlayerIndex;
+    }
+
+    long getRoundSeed() {
+        return roundSeed;
+    }
+
+    List<Card> getDrawPile() {
+        return toCards(drawPile);
+    }
+
+    List<Card> getBuildingPile(int index) {
+        return toCards(buildingPiles[index]);
+    }
+
+    List<Card> getStockPile(int seat) {
+        return toCards(stockPiles[seat]);
+    }
+
+    List<Card> getHand(int seat) {
+        return toCards(hands[seat]);
+    }
+
+    List<Card> getDiscardPile(int seat, int index) {
+        return toCards(discardPiles[seat][index]);
+    }
+
+    // ========== CARD VALUES (for bots, no Card objects are made) ==========
+    // Values are 0 for SkipBo and 1-12 for numbers. The arrays are the snapshot's own, do not change them.
+
+    /**
+     * Gets the value of a card byte (see Card.toByte())
+     */
+    public static int valueOf(byte card) {
+        return card & 0x0F;
+    }
+
+    public byte[] getDrawPileBytes() {
+        return drawPile;
+    }
+
+    public int getBuildingPileSize(int index) {
+        return buildingPiles[index].length;
+    }
+
+    public byte[] getStockPileBytes(int seat) {
+        return stockPiles[seat];
+    }
+
+    public byte[] getHandBytes(int seat) {
+        return hands[seat];
+    }
+
+    public byte[] getDiscardPileBytes(int seat, int index) {
+        return discardPiles[seat][index];
+    }
+
+    private static byte[] toBytes(List<Card> cards) {
+        byte[] result = new byte[cards.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = cards.get(i).toByte();
+        }
+        return result;
+    }
+
+    private static List<Card> toCards(byte[] bytes) {
+        List<Card> cards = new ArrayList<>(bytes.length);
+        for (byte b : bytes) {
+            cards.add(Card.fromByte(b));
+        }
+        return cards;
+    }
+}
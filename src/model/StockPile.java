@@ -31,4 +31,9 @@ public class StockPile {
     public int size() {
         return cards.size();
     }
+
+    // All cards of the pile, bottom first (for snapshots)
+    List<Card> getCards() {
+        return cards;
+    }
 }
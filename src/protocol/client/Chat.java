@@ -0,0 +1,23 @@
+package protocol.client;
+
+import protocol.Command;
+
+/**
+ * Client Command
+ * Sends a chat message to the players at the same table, or to the lobby when not
+ * playing. Needs the CHAT feature; the message cannot contain "~".
+ */
+public class Chat implements Command {
+
+    public static final String COMMAND = "CHAT";
+    public String message;
+
+    public Chat(String message){
+        this.message = message;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + SEPERATOR + message;
+    }
+}
@@ -9,17 +9,24 @@ import java.util.stream.Stream;
 /**
  * Client Command
  * Used to announce yourself with a name to the server
+ * Send the session token from WELCOME to get your seat back after a disconnect.
  */
 public class Hello implements Command {
 
     public static final String COMMAND = "HELLO";
     public String playerName;
     public Feature[] supportedFeatures;
+    public String sessionToken;
 
 
     public Hello(String name, Feature[] supportedFeatures){
+        this(name, supportedFeatures, null);
+    }
+
+    public Hello(String name, Feature[] supportedFeatures, String sessionToken){
         this.playerName = name;
         this.supportedFeatures = supportedFeatures;
+        this.sessionToken = sessionToken;
     }
 
     @Override
@@ -32,6 +39,7 @@ public class Hello implements Command {
                     .sorted()
                     .map(Feature::getLetter)
                     .map(Object::toString)
-                    .collect(Collectors.joining());
+                    .collect(Collectors.joining())
+                + (sessionToken == null ? "" : SEPERATOR + sessionToken);
     }
 }
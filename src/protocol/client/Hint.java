@@ -0,0 +1,17 @@
+package protocol.client;
+
+import protocol.Command;
+
+/**
+ * Client Command
+ * Asks the server for the best moves of the rest of the current turn
+ */
+public class Hint implements Command {
+
+    public static final String COMMAND = "HINT";
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND;
+    }
+}
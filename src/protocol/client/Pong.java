@@ -0,0 +1,17 @@
+package protocol.client;
+
+import protocol.Command;
+
+/**
+ * Client Command
+ * Answers a PING of the server: the connection is still there.
+ */
+public class Pong implements Command {
+
+    public static final String COMMAND = "PONG";
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND;
+    }
+}
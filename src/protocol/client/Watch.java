@@ -0,0 +1,23 @@
+package protocol.client;
+
+import protocol.Command;
+
+/**
+ * Client Command
+ * Watches the game a player plays in, without a seat. The server answers with START
+ * and a RESYNC without HAND, then sends the public messages of the game.
+ */
+public class Watch implements Command {
+
+    public static final String COMMAND = "WATCH";
+    public String player;
+
+    public Watch(String player){
+        this.player = player;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + SEPERATOR + player;
+    }
+}
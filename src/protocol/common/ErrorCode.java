@@ -7,7 +7,10 @@ public enum ErrorCode {
     PLAYER_DISCONNECTED("103"),
     INVALID_COMMAND("204"),
     COMMAND_NOT_ALLOWED("205"),
-    INVALID_MOVE("206");
+    INVALID_MOVE("206"),
+    QUEUE_TIMEOUT("207"),
+    RATE_LIMITED("208"),
+    SERVER_UNAVAILABLE("209");
 
     private String code;
 
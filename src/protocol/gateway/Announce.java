@@ -0,0 +1,25 @@
+package protocol.gateway;
+
+import protocol.Command;
+
+/**
+ * Backend Command
+ * The first line a game server sends to the gateway: the port its clients connect to
+ * and how many players it takes. The gateway routes players to it from then on.
+ */
+public class Announce implements Command {
+
+    public static final String COMMAND = "ANNOUNCE";
+    public int port;
+    public int capacity;
+
+    public Announce(int port, int capacity) {
+        this.port = port;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + Command.SEPERATOR + port + Command.SEPERATOR + capacity;
+    }
+}
@@ -0,0 +1,25 @@
+package protocol.gateway;
+
+import protocol.Command;
+
+/**
+ * Backend Command
+ * Sent by a game server to the gateway every few seconds: the players connected to it
+ * and the games it runs. It also tells the gateway the server is still there.
+ */
+public class Load implements Command {
+
+    public static final String COMMAND = "LOAD";
+    public int players;
+    public int games;
+
+    public Load(int players, int games) {
+        this.players = players;
+        this.games = games;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + Command.SEPERATOR + players + Command.SEPERATOR + games;
+    }
+}
@@ -0,0 +1,25 @@
+package protocol.server;
+
+import protocol.Command;
+
+/**
+ * Server Command
+ * A chat message of a player, sent to the clients with the CHAT feature at the same
+ * table (or in the lobby)
+ */
+public class Chat implements Command {
+
+    public static final String COMMAND = "CHAT";
+    public String player;
+    public String message;
+
+    public Chat(String player, String message){
+        this.player = player;
+        this.message = message;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + SEPERATOR + player + SEPERATOR + message;
+    }
+}
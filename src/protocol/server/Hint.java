@@ -0,0 +1,24 @@
+package protocol.server;
+
+import protocol.Command;
+
+/**
+ * Server Command
+ * Answers a HINT with the best moves of the rest of the turn, in order.
+ * A move is its from and to position joined by a dot ("S.B.0", "H.5.B.2", "D.1.B.3",
+ * "H.7.D.0") or "END". No moves means no hint could be found in time.
+ */
+public class Hint implements Command {
+
+    public static final String COMMAND = "HINT";
+    public String[] moves;
+
+    public Hint(String[] moves){
+        this.moves = moves;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + SEPERATOR + String.join(LIST_SEPERATOR, moves);
+    }
+}
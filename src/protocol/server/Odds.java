@@ -0,0 +1,39 @@
+package protocol.server;
+
+import protocol.Command;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Server Command
+ * Tells everyone watching a game the estimated chance of every player to win the
+ * round being played, in whole percents. Sent again whenever the estimate changes,
+ * at most a few times per second.
+ */
+public class Odds implements Command {
+
+    public static final String COMMAND = "ODDS";
+    public Chance[] chances;
+
+    public Odds(Chance[] chances){
+        this.chances = chances;
+    }
+
+    public static class Chance {
+        private String player;
+        private Integer percent;
+
+        public Chance(String player, Integer percent){
+            this.player = player;
+            this.percent = percent;
+        }
+        public String toString(){
+            return player + VALUE_SEPERATOR + percent;
+        }
+    }
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND + SEPERATOR + Stream.of(chances).map(Chance::toString).collect(Collectors.joining(LIST_SEPERATOR));
+    }
+}
@@ -0,0 +1,19 @@
+package protocol.server;
+
+import protocol.Command;
+
+/**
+ * Server Command
+ * Asks a connection that was silent for a while if it is still there.
+ * Any line back counts as an answer (PONG is the one to send); a connection
+ * that stays silent is closed.
+ */
+public class Ping implements Command {
+
+    public static final String COMMAND = "PING";
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND;
+    }
+}
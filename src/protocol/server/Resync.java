@@ -0,0 +1,31 @@
+package protocol.server;
+
+import protocol.Command;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Server Command
+ * Brings a reconnected player up to date in one write.
+ * A RESYNC line with the scores, followed by the TABLE, HAND, STOCK and TURN lines.
+ */
+public class Resync implements Command {
+
+    public static final String COMMAND = "RESYNC";
+    public Round.Score[] scores;
+    public Command[] state;
+
+    public Resync(Round.Score[] scores, Command[] state){
+        this.scores = scores;
+        this.state = state;
+    }
+
+    @Override
+    public String transformToProtocolString() {
+        return COMMAND
+                + SEPERATOR
+                + Stream.of(scores).map(Round.Score::toString).collect(Collectors.joining(LIST_SEPERATOR))
+                + Stream.of(state).map(c -> "\n" + c.transformToProtocolString()).collect(Collectors.joining());
+    }
+}
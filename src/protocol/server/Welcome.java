@@ -9,17 +9,24 @@ import java.util.stream.Stream;
 /**
  * Server Command
  * Used to inform all connected clients, that a new player connected.
+ * The optional session token lets the player reconnect to its seat (see client Hello).
  */
 public class Welcome implements Command {
 
     public static final String COMMAND = "WELCOME";
     public String playerName;
     public Feature[] supportedFeatures;
+    public String sessionToken;
 
 
     public Welcome(String name, Feature[] supportedFeatures){
+        this(name, supportedFeatures, null);
+    }
+
+    public Welcome(String name, Feature[] supportedFeatures, String sessionToken){
         this.playerName = name;
         this.supportedFeatures = supportedFeatures;
+        this.sessionToken = sessionToken;
     }
 
     @Override
@@ -32,6 +39,7 @@ public class Welcome implements Command {
                     .sorted()
                     .map(Feature::getLetter)
                     .map(Object::toString)
-                    .collect(Collectors.joining());
+                    .collect(Collectors.joining())
+                + (sessionToken == null ? "" : SEPERATOR + sessionToken);
     }
 }
@@ -0,0 +1,75 @@
+package ranking;
+
+import java.util.Arrays;
+
+/**
+ * Fits Elo ratings to a whole set of results at once (Bradley-Terry maximum likelihood)
+ *
+ * EloRating moves ratings one game at a time, so the result depends on the order of the
+ * games and the K factor. For a tournament where all games are known, the ratings that
+ * make the results most likely are better: the chance that i beats j is
+ * expectedScore(rating i, rating j), the same curve as EloRating.
+ *
+ * Solved with the MM iteration of Hunter (2004). Every pair gets one virtual draw, so a
+ * player that never won still gets a finite rating. The mean rating is START_RATING.
+ */
+public class EloFit {
+    /** Virtual draws added to every pair (keeps the ratings finite) */
+    public static final double PRIOR_DRAWS = 1;
+
+    private static final int MAX_ITERATIONS = 10000;
+    private static final double TOLERANCE = 1e-9;
+
+    private EloFit() {
+        throw new AssertionError("Cannot instantiate EloFit");
+    }
+
+    /**
+     * Fits the ratings
+     *
+     * @param wins wins[i][j] is the number of times i beat j (a draw counts half for both)
+     * @return The rating of every player
+     */
+    public static double[] fit(double[][] wins) {
+        int players = wins.length;
+        double[] strength = new double[players];
+        Arrays.fill(strength, 1);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double[] next = new double[players];
+            double logSum = 0;
+            for (int i = 0; i < players; i++) {
+                double won = 0;
+                double sum = 0;
+                for (int j = 0; j < players; j++) {
+                    if (i == j) {
+                        continue;
+                    }
+                    double games = wins[i][j] + wins[j][i] + PRIOR_DRAWS;
+                    won += wins[i][j] + PRIOR_DRAWS / 2;
+                    sum += games / (strength[i] + strength[j]);
+                }
+                next[i] = won / sum;
+                logSum += Math.log(next[i]);
+            }
+
+            // Keep the geometric mean at 1 (the mean rating at START_RATING)
+            double scale = Math.exp(logSum / players);
+            double change = 0;
+            for (int i = 0; i < players; i++) {
+                next[i] /= scale;
+                change = Math.max(change, Math.abs(next[i] - strength[i]) / strength[i]);
+            }
+            strength = next;
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+
+        double[] ratings = new double[players];
+        for (int i = 0; i < players; i++) {
+            ratings[i] = EloRating.START_RATING + 400 * Math.log10(strength[i]);
+        }
+        return ratings;
+    }
+}
@@ -0,0 +1,59 @@
+package ranking;
+
+/**
+ * Elo rating updates for games with 2 to 6 players
+ *
+ * A game counts as a match between every pair of players: the one with the
+ * higher final score won it, equal scores are a draw. All pair results are
+ * added up with the ratings from before the game, and K is divided by the
+ * number of opponents, so a game moves a rating about as much as one duel.
+ */
+public class EloRating {
+    /** Rating of a player that has not played yet */
+    public static final double START_RATING = 1500;
+
+    /** K factor for players with few games (ratings still move fast) */
+    public static final double K_NEW = 40;
+
+    /** K factor after PROVISIONAL_GAMES games */
+    public static final double K_ESTABLISHED = 20;
+
+    public static final int PROVISIONAL_GAMES = 30;
+
+    private EloRating() {
+        throw new AssertionError("Cannot instantiate EloRating");
+    }
+
+    /**
+     * Gets the chance that a player with rating a beats a player with rating b
+     */
+    public static double expectedScore(double a, double b) {
+        return 1.0 / (1.0 + Math.pow(10, (b - a) / 400.0));
+    }
+
+    /**
+     * Calculates the rating change of every seat
+     *
+     * @param ratings Rating of every seat before the game
+     * @param games Games played by every seat before this one
+     * @param finalScores Final score of every seat
+     * @return The change to add to the rating of every seat
+     */
+    public static double[] changes(double[] ratings, int[] games, int[] finalScores) {
+        int seats = ratings.length;
+        double[] changes = new double[seats];
+        for (int i = 0; i < seats; i++) {
+            double k = (games[i] < PROVISIONAL_GAMES ? K_NEW : K_ESTABLISHED) / (seats - 1);
+            double sum = 0;
+            for (int j = 0; j < seats; j++) {
+                if (i == j) {
+                    continue;
+                }
+                double actual = finalScores[i] > finalScores[j] ? 1 : finalScores[i] == finalScores[j] ? 0.5 : 0;
+                sum += actual - expectedScore(ratings[i], ratings[j]);
+            }
+            changes[i] = k * sum;
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,359 @@
+package ranking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-wide leaderboard of all players that finished a game
+ *
+ * Every finished game updates the Elo ratings of its players (see EloRating) and
+ * moves them in an order-statistic tree, so top-N and rank queries never sort.
+ * Results are appended to results-NNNNNNNN.log as they come in. A checkpoint
+ * writes all ratings to ratings-NNNNNNNN.bin, NNNNNNNN being the log that was
+ * started at that moment, and deletes the older files. On open the newest
+ * checkpoint is loaded and the logs after it are replayed.
+ */
+public class Leaderboard implements Closeable {
+    private static final int MAGIC = 0x534B424C;  // "SKBL"
+    private static final int VERSION = 1;
+
+    private final File directory;
+
+    // Player number -> name and statistics, the tree orders the numbers by rating
+    private final List<String> names;
+    private final Map<String, Integer> numbers;
+    private int[] games;
+    private int[] wins;
+    private final RatingTree tree;
+
+    private int logNumber;
+    private DataOutputStream log;
+    private ScheduledExecutorService scheduler;
+
+    private Leaderboard(File directory) {
+        this.directory = directory;
+        this.names = new ArrayList<>();
+        this.numbers = new HashMap<>();
+        this.games = new int[1024];
+        this.wins = new int[1024];
+        this.tree = new RatingTree();
+    }
+
+    /**
+     * Opens (or creates) the leaderboard in a directory
+     */
+    public static Leaderboard open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create leaderboard directory " + directory);
+        }
+        Leaderboard leaderboard = new Leaderboard(directory);
+
+        List<Integer> checkpoints = listFiles(directory, "ratings-", ".bin");
+        int firstLog = 0;
+        if (!checkpoints.isEmpty()) {
+            firstLog = checkpoints.get(checkpoints.size() - 1);
+            leaderboard.load(ratingsFile(directory, firstLog));
+        }
+        int lastLog = firstLog;
+        for (int number : listFiles(directory, "results-", ".log")) {
+            if (number >= firstLog) {
+                leaderboard.replay(resultsFile(directory, number));
+                lastLog = Math.max(lastLog, number);
+            }
+        }
+
+        // New results go to a fresh log, a torn end of the old one is never appended to
+        leaderboard.openLog(lastLog + 1);
+        return leaderboard;
+    }
+
+    /**
+     * Rates a finished game
+     *
+     * @param playerNames The players in seat order
+     * @param finalScores The final score of every seat
+     * @param winnerSeat The seat of the overall winner
+     * @return The rating change of every seat
+     */
+    public synchronized double[] recordGame(List<String> playerNames, int[] finalScores, int winnerSeat) {
+        try {
+            log.writeByte(playerNames.size());
+            for (int i = 0; i < playerNames.size(); i++) {
+                log.writeUTF(playerNames.get(i));
+                log.writeInt(finalScores[i]);
+            }
+            log.writeByte(winnerSeat);
+            log.flush();
+        } catch (IOException e) {
+            System.err.println("Could not log game result: " + e.getMessage());
+        }
+        return apply(playerNames, finalScores, winnerSeat);
+    }
+
+    /**
+     * Gets the standing of a player, or null if the player has no rating yet
+     */
+    public synchronized Standing getStanding(String playerName) {
+        Integer number = numbers.get(playerName);
+        if (number == null) {
+            return null;
+        }
+        return standing(number, tree.rankOf(number));
+    }
+
+    /**
+     * Gets the best players, best first
+     */
+    public List<Standing> getTop(int count) {
+        return getRange(1, count);
+    }
+
+    /**
+     * Gets up to count players starting at a rank (1 = best)
+     */
+    public synchronized List<Standing> getRange(int fromRank, int count) {
+        int[] players = tree.range(Math.max(0, fromRank - 1), count);
+        List<Standing> standings = new ArrayList<>(players.length);
+        for (int i = 0; i < players.length; i++) {
+            standings.add(standing(players[i], fromRank - 1 + i));
+        }
+        return standings;
+    }
+
+    /**
+     * Gets the number of rated players
+     */
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    /**
+     * Starts writing a checkpoint every interval on a background thread
+     */
+    public void start(long intervalSeconds) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "leaderboard-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                System.err.println("Leaderboard checkpoint failed: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes all ratings to a new checkpoint file and deletes the logs it covers
+     * Only the copy of the ratings holds up games that finish at the same time.
+     */
+    public void checkpoint() throws IOException {
+        String[] copyNames;
+        double[] copyRatings;
+        int[] copyGames;
+        int[] copyWins;
+        int covered;
+        synchronized (this) {
+            int count = names.size();
+            copyNames = names.toArray(new String[0]);
+            copyRatings = new double[count];
+            for (int i = 0; i < count; i++) {
+                copyRatings[i] = tree.getRating(i);
+            }
+            copyGames = Arrays.copyOf(games, count);
+            copyWins = Arrays.copyOf(wins, count);
+            covered = logNumber + 1;
+            openLog(covered);
+        }
+
+        File target = ratingsFile(directory, covered);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(copyNames.length);
+            for (int i = 0; i < copyNames.length; i++) {
+                out.writeUTF(copyNames[i]);
+                out.writeDouble(copyRatings[i]);
+                out.writeInt(copyGames[i]);
+                out.writeInt(copyWins[i]);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        for (int old : listFiles(directory, "results-", ".log")) {
+            if (old < covered) {
+                resultsFile(directory, old).delete();
+            }
+        }
+        for (int old : listFiles(directory, "ratings-", ".bin")) {
+            if (old < covered) {
+                ratingsFile(directory, old).delete();
+            }
+        }
+    }
+
+    /**
+     * Stops the checkpoints and closes the results log (which keeps everything since the last one)
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        log.close();
+    }
+
+    // ========== HELPER METHODS ==========
+
+    private double[] apply(List<String> playerNames, int[] finalScores, int winnerSeat) {
+        int seats = playerNames.size();
+        int[] players = new int[seats];
+        double[] ratings = new double[seats];
+        int[] played = new int[seats];
+        for (int i = 0; i < seats; i++) {
+            players[i] = numberOf(playerNames.get(i));
+            ratings[i] = tree.getRating(players[i]);
+            played[i] = games[players[i]];
+        }
+
+        double[] changes = EloRating.changes(ratings, played, finalScores);
+        for (int i = 0; i < seats; i++) {
+            tree.update(players[i], ratings[i] + changes[i]);
+            games[players[i]]++;
+            if (i == winnerSeat) {
+                wins[players[i]]++;
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Gets the number of a player, a new player starts at the start rating
+     */
+    private int numberOf(String playerName) {
+        Integer number = numbers.get(playerName);
+        if (number == null) {
+            number = names.size();
+            names.add(playerName);
+            numbers.put(playerName, number);
+            addPlayer(number, EloRating.START_RATING, 0, 0);
+        }
+        return number;
+    }
+
+    private void addPlayer(int number, double rating, int playerGames, int playerWins) {
+        if (number >= games.length) {
+            games = Arrays.copyOf(games, Math.max(number + 1, games.length * 2));
+            wins = Arrays.copyOf(wins, games.length);
+        }
+        games[number] = playerGames;
+        wins[number] = playerWins;
+        tree.insert(number, rating);
+    }
+
+    private Standing standing(int number, int rank) {
+        return new Standing(names.get(number), rank + 1, tree.getRating(number), games[number], wins[number]);
+    }
+
+    private void openLog(int number) throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        logNumber = number;
+        log = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(resultsFile(directory, number), true)));
+    }
+
+    private void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a leaderboard checkpoint: " + file);
+            }
+            int count = in.readInt();
+            tree.ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                double rating = in.readDouble();
+                int playerGames = in.readInt();
+                int playerWins = in.readInt();
+                names.add(name);
+                numbers.put(name, i);
+                addPlayer(i, rating, playerGames, playerWins);
+            }
+        }
+    }
+
+    /**
+     * Applies the results of a log again, a torn last result is skipped
+     */
+    private void replay(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int seats = in.readByte();
+                List<String> playerNames = new ArrayList<>(seats);
+                int[] scores = new int[seats];
+                for (int i = 0; i < seats; i++) {
+                    playerNames.add(in.readUTF());
+                    scores[i] = in.readInt();
+                }
+                int winnerSeat = in.readByte();
+                apply(playerNames, scores, winnerSeat);
+            }
+        } catch (EOFException e) {
+            // End of the log
+        }
+    }
+
+    static File ratingsFile(File directory, int number) {
+        return new File(directory, String.format("ratings-%08d.bin", number));
+    }
+
+    static File resultsFile(File directory, int number) {
+        return new File(directory, String.format("results-%08d.log", number));
+    }
+
+    /**
+     * Lists the numbers of the files with a prefix and suffix, lowest first
+     */
+    private static List<Integer> listFiles(File directory, String prefix, String suffix) {
+        List<Integer> numbers = new ArrayList<>();
+        String[] fileNames = directory.list();
+        if (fileNames != null) {
+            for (String name : fileNames) {
+                if (name.startsWith(prefix) && name.endsWith(suffix)) {
+                    try {
+                        numbers.add(Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())));
+                    } catch (NumberFormatException e) {
+                        // Not one of our files
+                    }
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+}
@@ -0,0 +1,98 @@
+package ranking;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the leaderboard with a million rated players
+ *
+ * Rates random games between random players (the first player of a game is a bit
+ * more likely to win, so the ratings spread out), then times rating updates,
+ * top-N, rank-of-player and page queries, a checkpoint and a reload.
+ * Usage: LeaderboardBenchmark [players] [games] [queries] [directory]
+ */
+public class LeaderboardBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        int games = args.length >= 2 ? Integer.parseInt(args[1]) : 2000000;
+        int queries = args.length >= 3 ? Integer.parseInt(args[2]) : 100000;
+        File directory = args.length >= 4 ? new File(args[3])
+                : Files.createTempDirectory("leaderboard-bench").toFile();
+
+        Leaderboard leaderboard = Leaderboard.open(directory);
+        Random random = new Random(7);
+
+        // Everybody plays at least once, then random games
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            int seats = 2 + random.nextInt(5);
+            List<String> names = new ArrayList<>(seats);
+            int[] scores = new int[seats];
+            for (int s = 0; s < seats; s++) {
+                int player = g * 6L + s < players ? (int) (g * 6L + s) : random.nextInt(players);
+                String name = "player" + player;
+                if (names.contains(name)) {
+                    name = "player" + ((player + 1) % players);
+                }
+                names.add(name);
+                scores[s] = random.nextInt(300) + (s == 0 ? 100 : 0);
+            }
+            int winner = 0;
+            for (int s = 1; s < seats; s++) {
+                if (scores[s] > scores[winner]) {
+                    winner = s;
+                }
+            }
+            scores[winner] = Math.max(scores[winner], 500);
+            leaderboard.recordGame(names, scores, winner);
+        }
+        double updateSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Rated %d games (%d players) in %.1f s: %.2f us per game (logged)%n",
+                games, leaderboard.size(), updateSeconds, updateSeconds * 1e6 / games);
+
+        System.out.println("Top 3: " + leaderboard.getTop(3));
+        measure("Top 10", queries, () -> leaderboard.getTop(10));
+        measure("Top 100", queries, () -> leaderboard.getTop(100));
+        measure("Rank of player", queries, () -> leaderboard.getStanding("player" + random.nextInt(players)));
+        measure("Page of 20 at random rank", queries,
+                () -> leaderboard.getRange(1 + random.nextInt(players), 20));
+
+        start = System.nanoTime();
+        leaderboard.checkpoint();
+        System.out.printf("Checkpoint: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+        leaderboard.close();
+
+        start = System.nanoTime();
+        Leaderboard reloaded = Leaderboard.open(directory);
+        System.out.printf("Reload: %.0f ms, same top 3: %b%n", (System.nanoTime() - start) / 1e6,
+                reloaded.getTop(3).toString().equals(leaderboard.getTop(3).toString()));
+        reloaded.close();
+    }
+
+    /**
+     * Runs a query many times and prints the average and 99th percentile in microseconds
+     */
+    private static void measure(String label, int count, Runnable query) {
+        for (int i = 0; i < count / 10; i++) {
+            query.run();  // Warm up
+        }
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            query.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        long total = 0;
+        for (long time : times) {
+            total += time;
+        }
+        System.out.printf("%-26s avg %6.2f us, p99 %6.2f us%n", label + ":",
+                total / 1e3 / count, times[count * 99 / 100] / 1e3);
+    }
+}
@@ -0,0 +1,238 @@
+package ranking;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Order-statistic tree over all rated players (a treap with subtree sizes)
+ *
+ * Players are numbered 0, 1, 2, ... and ordered by rating, highest first;
+ * equal ratings are ordered by number. Every node is a player number and the
+ * tree lives in plain int arrays, so a million players cost a few tens of MB
+ * and no objects. Insert, remove and rank are O(log n), the top N is O(log n + N).
+ */
+class RatingTree {
+    private static final int NONE = -1;
+
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] priority = new int[0];
+    private int[] size = new int[0];
+    private double[] rating = new double[0];
+    private final Random random = new Random();
+    private int root = NONE;
+
+    /**
+     * Makes room for players up to (not including) the given number
+     */
+    void ensureCapacity(int players) {
+        if (players <= left.length) {
+            return;
+        }
+        int capacity = Math.max(players, left.length * 2);
+        left = Arrays.copyOf(left, capacity);
+        right = Arrays.copyOf(right, capacity);
+        priority = Arrays.copyOf(priority, capacity);
+        size = Arrays.copyOf(size, capacity);
+        rating = Arrays.copyOf(rating, capacity);
+    }
+
+    /**
+     * Adds a player that is not in the tree yet
+     */
+    void insert(int player, double playerRating) {
+        ensureCapacity(player + 1);
+        left[player] = NONE;
+        right[player] = NONE;
+        priority[player] = random.nextInt();
+        size[player] = 1;
+        rating[player] = playerRating;
+
+        int[] parts = split(root, player);
+        root = merge(merge(parts[0], player), parts[1]);
+    }
+
+    /**
+     * Removes a player that is in the tree
+     */
+    void remove(int player) {
+        int[] parts = split(root, player);
+        // parts[1] starts with the player itself: drop that first node
+        root = merge(parts[0], removeFirst(parts[1]));
+    }
+
+    /**
+     * Moves a player to a new rating
+     */
+    void update(int player, double playerRating) {
+        remove(player);
+        insert(player, playerRating);
+    }
+
+    double getRating(int player) {
+        return rating[player];
+    }
+
+    int size() {
+        return root == NONE ? 0 : size[root];
+    }
+
+    /**
+     * Gets the number of players ranked above this player (0 for the best player)
+     */
+    int rankOf(int player) {
+        int before = 0;
+        int node = root;
+        while (node != NONE) {
+            if (node == player) {
+                return before + sizeOf(left[node]);
+            }
+            if (comesBefore(player, node)) {
+                node = left[node];
+            } else {
+                before += sizeOf(left[node]) + 1;
+                node = right[node];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Gets the player at a rank (0 = best)
+     */
+    int atRank(int rank) {
+        int node = root;
+        while (node != NONE) {
+            int leftSize = sizeOf(left[node]);
+            if (rank < leftSize) {
+                node = left[node];
+            } else if (rank == leftSize) {
+                return node;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Gets up to count players starting at a rank, best first
+     */
+    int[] range(int fromRank, int count) {
+        count = Math.max(0, Math.min(count, size() - fromRank));
+        int[] result = new int[count];
+        if (count == 0) {
+            return result;
+        }
+
+        // Walk down to the first player, remembering the path, then go in order
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        int rank = fromRank;
+        while (node != NONE) {
+            int leftSize = sizeOf(left[node]);
+            if (rank < leftSize) {
+                stack = push(stack, depth++, node);
+                node = left[node];
+            } else if (rank == leftSize) {
+                stack = push(stack, depth++, node);
+                break;
+            } else {
+                rank -= leftSize + 1;
+                node = right[node];
+            }
+        }
+
+        int found = 0;
+        while (found < count && depth > 0) {
+            node = stack[--depth];
+            result[found++] = node;
+            node = right[node];
+            while (node != NONE) {
+                stack = push(stack, depth++, node);
+                node = left[node];
+            }
+        }
+        return result;
+    }
+
+    // ========== HELPER METHODS ==========
+
+    /**
+     * Checks if player a is ranked above player b
+     */
+    private boolean comesBefore(int a, int b) {
+        if (rating[a] != rating[b]) {
+            return rating[a] > rating[b];
+        }
+        return a < b;
+    }
+
+    /**
+     * Splits a subtree in the players ranked above the given player and the rest
+     */
+    private int[] split(int node, int player) {
+        if (node == NONE) {
+            return new int[]{NONE, NONE};
+        }
+        if (comesBefore(node, player)) {
+            int[] parts = split(right[node], player);
+            right[node] = parts[0];
+            resize(node);
+            return new int[]{node, parts[1]};
+        } else {
+            int[] parts = split(left[node], player);
+            left[node] = parts[1];
+            resize(node);
+            return new int[]{parts[0], node};
+        }
+    }
+
+    /**
+     * Joins two subtrees where every player in a is ranked above every player in b
+     */
+    private int merge(int a, int b) {
+        if (a == NONE) {
+            return b;
+        }
+        if (b == NONE) {
+            return a;
+        }
+        if (priority[a] > priority[b]) {
+            right[a] = merge(right[a], b);
+            resize(a);
+            return a;
+        } else {
+            left[b] = merge(a, left[b]);
+            resize(b);
+            return b;
+        }
+    }
+
+    private int removeFirst(int node) {
+        if (left[node] == NONE) {
+            return right[node];
+        }
+        left[node] = removeFirst(left[node]);
+        resize(node);
+        return node;
+    }
+
+    private void resize(int node) {
+        size[node] = 1 + sizeOf(left[node]) + sizeOf(right[node]);
+    }
+
+    private int sizeOf(int node) {
+        return node == NONE ? 0 : size[node];
+    }
+
+    private static int[] push(int[] stack, int depth, int node) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[depth] = node;
+        return stack;
+    }
+}
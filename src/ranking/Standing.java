@@ -0,0 +1,25 @@
+package ranking;
+
+/**
+ * The place of one player on the leaderboard
+ */
+public class Standing {
+    public final String name;
+    public final int rank;         // 1 = best
+    public final double rating;
+    public final int games;
+    public final int wins;
+
+    public Standing(String name, int rank, double rating, int games, int wins) {
+        this.name = name;
+        this.rank = rank;
+        this.rating = rating;
+        this.games = games;
+        this.wins = wins;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d. %s %.0f (%d/%d)", rank, name, rating, wins, games);
+    }
+}
@@ -0,0 +1,124 @@
+package storage;
+
+import model.GameException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures how compact the game archive is and how fast it can be queried
+ *
+ * Plays a sample of games with the simple benchmark policy, then archives
+ * many games built from that sample (new ids, players and start times, one game
+ * every few seconds). Prints the write speed, bytes per game, and the time of
+ * some queries over all of them.
+ * Usage: ArchiveBenchmark [games] [sampleGames] [players] [directory]
+ */
+public class ArchiveBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+        int sampleGames = args.length >= 2 ? Integer.parseInt(args[1]) : 4096;
+        int playerCount = args.length >= 3 ? Integer.parseInt(args[2]) : 10000;
+        File directory = args.length >= 4 ? new File(args[3])
+                : Files.createTempDirectory("archive-bench").toFile();
+
+        long start = System.nanoTime();
+        List<GameRecord> sample = playSample(sampleGames);
+        long moves = 0;
+        for (GameRecord record : sample) {
+            for (int[] round : record.roundMoves) {
+                moves += round.length;
+            }
+        }
+        System.out.printf("Played %d sample games in %.1f s (%.0f moves per game)%n",
+                sample.size(), (System.nanoTime() - start) / 1e9, moves / (double) sample.size());
+
+        // Write
+        Random random = new Random(42);
+        long firstStart = 1700000000000L;
+        GameArchive archive = new GameArchive(directory, GameArchive.DEFAULT_BLOCK_GAMES, Long.MAX_VALUE / 4);
+        start = System.nanoTime();
+        long time = firstStart;
+        for (int i = 0; i < games; i++) {
+            GameRecord template = sample.get(i % sample.size());
+            String[] names = new String[template.playerNames.length];
+            for (int s = 0; s < names.length; s++) {
+                names[s] = "player" + random.nextInt(playerCount);
+            }
+            time += random.nextInt(60000);
+            archive.append(template.copyAs(i + 1, names, time));
+        }
+        archive.close();
+        double writeSeconds = (System.nanoTime() - start) / 1e9;
+        long lastStart = time;
+
+        File blocks = new File(directory, "blocks.dat");
+        File index = new File(directory, "index.dat");
+        System.out.printf("Archived %d games in %.1f s (%.0f games/s)%n", games, writeSeconds, games / writeSeconds);
+        System.out.printf("Blocks: %.1f MB (%.0f bytes per game), index: %.1f KB%n",
+                blocks.length() / 1e6, blocks.length() / (double) games, index.length() / 1e3);
+
+        // Query (reopened, so only the index is in memory)
+        archive = new GameArchive(directory);
+        long[] sizes = archive.blocks().parallel()
+                .map(ArchiveBlock::getSizes)
+                .reduce(new long[2], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+        System.out.printf("Compression: %.1f MB raw columns -> %.1f MB (%.1fx)%n",
+                sizes[1] / 1e6, sizes[0] / 1e6, sizes[1] / (double) sizes[0]);
+
+        start = System.nanoTime();
+        double roundMillis = ArchiveQueries.averageRoundMillis(archive);
+        report("Average round length", start, String.format("%.1f s", roundMillis / 1000));
+
+        start = System.nanoTime();
+        double movesPerRound = ArchiveQueries.averageMovesPerRound(archive);
+        report("Average moves per round", start, String.format("%.1f", movesPerRound));
+
+        start = System.nanoTime();
+        Map<String, ArchiveQueries.WinRate> rates = ArchiveQueries.winRates(archive);
+        report("Win rate of every player", start, rates.size() + " players");
+
+        start = System.nanoTime();
+        ArchiveQueries.WinRate rate = ArchiveQueries.winRate(archive, "player7");
+        report("Win rate of player7", start,
+                String.format("%d/%d (%.1f%%)", rate.wins, rate.games, rate.getRate() * 100));
+
+        long monthStart = firstStart + (lastStart - firstStart) / 2;
+        long monthEnd = monthStart + 30L * 24 * 3600 * 1000;
+        start = System.nanoTime();
+        long inMonth = ArchiveQueries.countGamesBetween(archive, monthStart, monthEnd);
+        report("Games in one month", start, String.valueOf(inMonth));
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("Heap in use: %.0f MB%n", (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+        archive.close();
+    }
+
+    private static void report(String label, long startNanos, String result) {
+        System.out.printf("%-26s %8.1f ms  %s%n", label + ":", (System.nanoTime() - startNanos) / 1e6, result);
+    }
+
+    /**
+     * Plays games of a few won rounds each (see SimulatedGame.finishRecord)
+     */
+    private static List<GameRecord> playSample(int count) throws GameException {
+        List<GameRecord> sample = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            SimulatedGame game = new SimulatedGame(i, 2 + i % 5, null);
+            game.startRecord(i, 0);
+            int rounds = 1 + i % 4;
+            while (game.getRoundsWon() < rounds && !game.isGameOver()) {
+                game.step();
+            }
+            game.finishRecord();
+            sample.add(game.getRecord());
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,357 @@
+package storage;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * One block of the game archive: up to a few thousand finished games stored column by column
+ *
+ * Only the header is read when a block is opened. A column is only inflated when one
+ * of its getters is called, so a query that only needs the winners never touches
+ * the move streams. Per-round values are stored game after game, use getRoundCounts()
+ * to find the rounds of a game (and getRoundMoveCounts() for the moves of a round).
+ */
+public class ArchiveBlock {
+    static final int MAGIC = 0x534B4241;  // "SKBA"
+
+    private final ByteBuffer data;
+    private final int gameCount;
+    private final int[] rawLengths = new int[ArchiveColumns.COLUMN_COUNT];
+    private final int[] offsets = new int[ArchiveColumns.COLUMN_COUNT];
+    private final int[] compressedLengths = new int[ArchiveColumns.COLUMN_COUNT];
+
+    /**
+     * Opens a block from its bytes (usually a memory-mapped part of the archive file)
+     */
+    ArchiveBlock(ByteBuffer data) {
+        this.data = data;
+        if (data.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not an archive block");
+        }
+        this.gameCount = data.getInt(4);
+        int columns = data.getInt(8);
+        int position = 12 + columns * 9;
+        for (int i = 0; i < columns; i++) {
+            int entry = 12 + i * 9;
+            int id = data.get(entry);
+            rawLengths[id] = data.getInt(entry + 1);
+            compressedLengths[id] = data.getInt(entry + 5);
+            offsets[id] = position;
+            position += compressedLengths[id];
+        }
+    }
+
+    /**
+     * Gets the number of games in this block
+     */
+    public int size() {
+        return gameCount;
+    }
+
+    public long[] getGameIds() {
+        return readDeltas(ArchiveColumns.GAME_ID, gameCount);
+    }
+
+    /**
+     * Gets the start time of every game (epoch millis)
+     */
+    public long[] getStartMillis() {
+        return readDeltas(ArchiveColumns.START, gameCount);
+    }
+
+    /**
+     * Gets how long every game took in milliseconds
+     */
+    public long[] getDurations() {
+        return readVarLongs(ArchiveColumns.DURATION, gameCount);
+    }
+
+    /**
+     * Checks per game whether it was recovered after a restart (its first rounds are missing)
+     */
+    public boolean[] getPartial() {
+        ArchiveColumns.Reader in = column(ArchiveColumns.FLAGS);
+        boolean[] partial = new boolean[gameCount];
+        for (int i = 0; i < gameCount; i++) {
+            partial[i] = (in.readByte() & ArchiveColumns.FLAG_PARTIAL) != 0;
+        }
+        return partial;
+    }
+
+    public int[] getSeatCounts() {
+        return readBytes(ArchiveColumns.SEATS, gameCount);
+    }
+
+    /**
+     * Gets the player names of every game, in seat order
+     */
+    public String[][] getPlayers() {
+        ArchiveColumns.Reader dictionaryColumn = column(ArchiveColumns.DICTIONARY);
+        String[] dictionary = new String[dictionaryColumn.readVarInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = dictionaryColumn.readString();
+        }
+
+        int[] seats = getSeatCounts();
+        ArchiveColumns.Reader in = column(ArchiveColumns.PLAYERS);
+        String[][] players = new String[gameCount][];
+        for (int i = 0; i < gameCount; i++) {
+            players[i] = new String[seats[i]];
+            for (int s = 0; s < seats[i]; s++) {
+                players[i][s] = dictionary[in.readVarInt()];
+            }
+        }
+        return players;
+    }
+
+    /**
+     * Gets the seat of the overall winner of every game
+     */
+    public int[] getWinners() {
+        return readBytes(ArchiveColumns.WINNER, gameCount);
+    }
+
+    /**
+     * Gets the total score of every seat, per game
+     */
+    public int[][] getFinalScores() {
+        int[] seats = getSeatCounts();
+        ArchiveColumns.Reader in = column(ArchiveColumns.FINAL_SCORES);
+        int[][] scores = new int[gameCount][];
+        for (int i = 0; i < gameCount; i++) {
+            scores[i] = new int[seats[i]];
+            for (int s = 0; s < seats[i]; s++) {
+                scores[i][s] = in.readVarInt();
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Gets the number of rounds of every game
+     */
+    public int[] getRoundCounts() {
+        ArchiveColumns.Reader in = column(ArchiveColumns.ROUNDS);
+        int[] counts = new int[gameCount];
+        for (int i = 0; i < gameCount; i++) {
+            counts[i] = in.readVarInt();
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the total number of rounds in this block
+     */
+    public int getRoundTotal() {
+        int total = 0;
+        for (int count : getRoundCounts()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the seat that won each round
+     */
+    public int[] getRoundWinners() {
+        return readBytes(ArchiveColumns.ROUND_WINNER, getRoundTotal());
+    }
+
+    /**
+     * Gets the points scored by the winner of each round (the RoundResult score)
+     */
+    public int[] getRoundPoints() {
+        long[] points = readVarLongs(ArchiveColumns.ROUND_POINTS, getRoundTotal());
+        int[] result = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            result[i] = (int) points[i];
+        }
+        return result;
+    }
+
+    /**
+     * Gets how long each round took in milliseconds
+     */
+    public long[] getRoundDurations() {
+        return readVarLongs(ArchiveColumns.ROUND_DURATION, getRoundTotal());
+    }
+
+    /**
+     * Gets the seed each round was dealt from (see Game.startNewRound(long))
+     */
+    public long[] getRoundSeeds() {
+        int rounds = getRoundTotal();
+        ArchiveColumns.Reader in = column(ArchiveColumns.ROUND_SEED);
+        long[] seeds = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            seeds[i] = in.readLong();
+        }
+        return seeds;
+    }
+
+    /**
+     * Gets the number of moves of each round
+     */
+    public int[] getRoundMoveCounts() {
+        long[] counts = readVarLongs(ArchiveColumns.ROUND_MOVES, getRoundTotal());
+        int[] result = new int[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            result[i] = (int) counts[i];
+        }
+        return result;
+    }
+
+    /**
+     * Gets the moves of all rounds one after the other
+     * Each move is packed like JournalEvent.packAction, or GameRecord.TURN_END for the end of a turn.
+     */
+    public int[] getMoves() {
+        int count = rawLengths[ArchiveColumns.MOVES] / 4;
+        ArchiveColumns.Reader in = column(ArchiveColumns.MOVES);
+        int[] moves = new int[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = in.readInt();
+        }
+        return moves;
+    }
+
+    /**
+     * Gets the stored (compressed) and raw size of this block in bytes
+     */
+    public long[] getSizes() {
+        long raw = 0;
+        for (int length : rawLengths) {
+            raw += length;
+        }
+        return new long[]{data.limit(), raw};
+    }
+
+    // ========== ENCODING ==========
+
+    /**
+     * Writes a list of finished games as one block
+     */
+    static byte[] encode(List<GameRecord> records) {
+        ArchiveColumns.Writer[] columns = new ArchiveColumns.Writer[ArchiveColumns.COLUMN_COUNT];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new ArchiveColumns.Writer();
+        }
+
+        // Player names are stored once per block
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        long previousId = 0;
+        long previousStart = 0;
+        for (GameRecord record : records) {
+            columns[ArchiveColumns.GAME_ID].writeVarLong(zigZag(record.gameId - previousId));
+            columns[ArchiveColumns.START].writeVarLong(zigZag(record.startMillis - previousStart));
+            previousId = record.gameId;
+            previousStart = record.startMillis;
+            columns[ArchiveColumns.DURATION].writeVarLong(Math.max(0, record.endMillis - record.startMillis));
+            columns[ArchiveColumns.FLAGS].writeByte(record.partial ? ArchiveColumns.FLAG_PARTIAL : 0);
+            columns[ArchiveColumns.SEATS].writeByte(record.playerNames.length);
+            for (String name : record.playerNames) {
+                Integer id = dictionary.get(name);
+                if (id == null) {
+                    id = dictionary.size();
+                    dictionary.put(name, id);
+                }
+                columns[ArchiveColumns.PLAYERS].writeVarLong(id);
+            }
+            columns[ArchiveColumns.WINNER].writeByte(record.winnerSeat);
+            for (int score : record.finalScores) {
+                columns[ArchiveColumns.FINAL_SCORES].writeVarLong(score);
+            }
+
+            // Only rounds that were won are complete
+            int rounds = record.roundMoves.size();
+            columns[ArchiveColumns.ROUNDS].writeVarLong(rounds);
+            for (int r = 0; r < rounds; r++) {
+                long[] round = record.rounds.get(r);
+                int[] moves = record.roundMoves.get(r);
+                columns[ArchiveColumns.ROUND_SEED].writeLong(round[0]);
+                columns[ArchiveColumns.ROUND_DURATION].writeVarLong(Math.max(0, round[2] - round[1]));
+                columns[ArchiveColumns.ROUND_WINNER].writeByte((int) round[3]);
+                columns[ArchiveColumns.ROUND_POINTS].writeVarLong(round[4]);
+                columns[ArchiveColumns.ROUND_MOVES].writeVarLong(moves.length);
+                for (int move : moves) {
+                    columns[ArchiveColumns.MOVES].writeInt(move);
+                }
+            }
+        }
+        columns[ArchiveColumns.DICTIONARY].writeVarLong(dictionary.size());
+        for (String name : dictionary.keySet()) {
+            columns[ArchiveColumns.DICTIONARY].writeString(name);
+        }
+
+        // Header, column directory, then the deflated columns
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[][] compressed = new byte[columns.length][];
+        int total = 12 + columns.length * 9;
+        for (int i = 0; i < columns.length; i++) {
+            compressed[i] = columns[i].compress(deflater);
+            total += compressed[i].length;
+        }
+        deflater.end();
+
+        ByteBuffer block = ByteBuffer.allocate(total);
+        block.putInt(MAGIC);
+        block.putInt(records.size());
+        block.putInt(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            block.put((byte) i);
+            block.putInt(columns[i].size());
+            block.putInt(compressed[i].length);
+        }
+        for (byte[] column : compressed) {
+            block.put(column);
+        }
+        return block.array();
+    }
+
+    // ========== HELPER METHODS ==========
+
+    private ArchiveColumns.Reader column(int id) {
+        byte[] compressed = new byte[compressedLengths[id]];
+        ByteBuffer source = data.duplicate();
+        source.position(offsets[id]);
+        source.get(compressed);
+        return new ArchiveColumns.Reader(ArchiveColumns.inflate(compressed, rawLengths[id]));
+    }
+
+    private int[] readBytes(int id, int count) {
+        ArchiveColumns.Reader in = column(id);
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readByte();
+        }
+        return values;
+    }
+
+    private long[] readVarLongs(int id, int count) {
+        ArchiveColumns.Reader in = column(id);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readVarLong();
+        }
+        return values;
+    }
+
+    private long[] readDeltas(int id, int count) {
+        ArchiveColumns.Reader in = column(id);
+        long[] values = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long raw = in.readVarLong();
+            previous += (raw >>> 1) ^ -(raw & 1);
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
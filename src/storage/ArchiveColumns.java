@@ -0,0 +1,184 @@
+package storage;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columns of an archive block and the encoding used inside them
+ * Numbers are variable-length (7 bits per byte), every column is deflated on its own.
+ */
+class ArchiveColumns {
+    // Per game
+    static final byte GAME_ID = 0;         // varlong, delta to the previous game
+    static final byte START = 1;           // varlong millis, delta to the previous game
+    static final byte DURATION = 2;        // varlong millis
+    static final byte FLAGS = 3;           // byte, FLAG_PARTIAL
+    static final byte SEATS = 4;           // byte seat count
+    static final byte PLAYERS = 5;         // varint per seat, index in DICTIONARY
+    static final byte DICTIONARY = 6;      // varint count, then the player names
+    static final byte WINNER = 7;          // byte seat of the overall winner
+    static final byte FINAL_SCORES = 8;    // varint per seat
+    static final byte ROUNDS = 9;          // varint round count
+    // Per round
+    static final byte ROUND_WINNER = 10;   // byte seat
+    static final byte ROUND_POINTS = 11;   // varint
+    static final byte ROUND_DURATION = 12; // varlong millis
+    static final byte ROUND_SEED = 13;     // 8 bytes
+    static final byte ROUND_MOVES = 14;    // varint move count
+    // Per move
+    static final byte MOVES = 15;          // 4 bytes: seat, kind, a, b (see GameRecord)
+
+    static final int COLUMN_COUNT = 16;
+
+    static final int FLAG_PARTIAL = 1;
+
+    private ArchiveColumns() {
+        throw new AssertionError("Cannot instantiate ArchiveColumns");
+    }
+
+    /**
+     * Growable byte buffer a column is written into
+     */
+    static class Writer {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Deflates the column
+         */
+        byte[] compress(Deflater deflater) {
+            deflater.reset();
+            deflater.setInput(bytes, 0, size);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, size / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    /**
+     * Reads the values of one inflated column in order
+     */
+    static class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            return bytes[position++];
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        int readInt() {
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+
+    static byte[] inflate(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int done = 0;
+            while (done < rawLength && !inflater.finished()) {
+                done += inflater.inflate(raw, done, rawLength - done);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archive column", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package storage;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Analytics over the game archive
+ *
+ * Every query scans blocks with a parallel stream and only inflates the columns
+ * it needs. Each block is reduced to a small partial result first, so the heap
+ * never holds more than a few blocks at a time.
+ */
+public class ArchiveQueries {
+
+    private ArchiveQueries() {
+        throw new AssertionError("Cannot instantiate ArchiveQueries");
+    }
+
+    /**
+     * Games played and won by one player
+     */
+    public static class WinRate {
+        public long games;
+        public long wins;
+
+        public double getRate() {
+            return games == 0 ? 0 : wins / (double) games;
+        }
+
+        WinRate add(WinRate other) {
+            games += other.games;
+            wins += other.wins;
+            return this;
+        }
+    }
+
+    /**
+     * Gets the average length of a round in milliseconds over all archived games
+     */
+    public static double averageRoundMillis(GameArchive archive) {
+        long[] total = archive.blocks().parallel()
+                .map(block -> {
+                    long[] sum = new long[2];
+                    for (long duration : block.getRoundDurations()) {
+                        sum[0] += duration;
+                        sum[1]++;
+                    }
+                    return sum;
+                })
+                .reduce(new long[2], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+        return total[1] == 0 ? 0 : total[0] / (double) total[1];
+    }
+
+    /**
+     * Gets the average number of moves (card plays and turn ends) in a round
+     */
+    public static double averageMovesPerRound(GameArchive archive) {
+        long[] total = archive.blocks().parallel()
+                .map(block -> {
+                    long[] sum = new long[2];
+                    for (int moves : block.getRoundMoveCounts()) {
+                        sum[0] += moves;
+                        sum[1]++;
+                    }
+                    return sum;
+                })
+                .reduce(new long[2], (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]});
+        return total[1] == 0 ? 0 : total[0] / (double) total[1];
+    }
+
+    /**
+     * Gets the win rate of every player in the archive
+     */
+    public static Map<String, WinRate> winRates(GameArchive archive) {
+        return archive.blocks().parallel()
+                .collect(HashMap::new,
+                        (rates, block) -> mergeInto(rates, blockWinRates(block)),
+                        ArchiveQueries::mergeInto);
+    }
+
+    /**
+     * Gets the win rate of one player, only the blocks the player is in are read
+     */
+    public static WinRate winRate(GameArchive archive, String playerName) {
+        return archive.blocksOfPlayer(playerName).parallel()
+                .map(block -> {
+                    WinRate rate = new WinRate();
+                    String[][] players = block.getPlayers();
+                    int[] winners = block.getWinners();
+                    for (int i = 0; i < players.length; i++) {
+                        for (int seat = 0; seat < players[i].length; seat++) {
+                            if (players[i][seat].equals(playerName)) {
+                                rate.games++;
+                                if (winners[i] == seat) {
+                                    rate.wins++;
+                                }
+                            }
+                        }
+                    }
+                    return rate;
+                })
+                .reduce(new WinRate(), (a, b) -> new WinRate().add(a).add(b));
+    }
+
+    /**
+     * Counts the games that started in [fromMillis, toMillis)
+     */
+    public static long countGamesBetween(GameArchive archive, long fromMillis, long toMillis) {
+        return archive.blocksBetween(fromMillis, toMillis).parallel()
+                .mapToLong(block -> {
+                    long count = 0;
+                    for (long start : block.getStartMillis()) {
+                        if (start >= fromMillis && start < toMillis) {
+                            count++;
+                        }
+                    }
+                    return count;
+                })
+                .sum();
+    }
+
+    private static Map<String, WinRate> blockWinRates(ArchiveBlock block) {
+        Map<String, WinRate> rates = new HashMap<>();
+        String[][] players = block.getPlayers();
+        int[] winners = block.getWinners();
+        for (int i = 0; i < players.length; i++) {
+            for (int seat = 0; seat < players[i].length; seat++) {
+                WinRate rate = rates.computeIfAbsent(players[i][seat], name -> new WinRate());
+                rate.games++;
+                if (winners[i] == seat) {
+                    rate.wins++;
+                }
+            }
+        }
+        return rates;
+    }
+
+    /**
+     * Adds the partial result of other blocks to a result
+     */
+    private static void mergeInto(Map<String, WinRate> rates, Map<String, WinRate> other) {
+        for (Map.Entry<String, WinRate> entry : other.entrySet()) {
+            rates.computeIfAbsent(entry.getKey(), name -> new WinRate()).add(entry.getValue());
+        }
+    }
+}
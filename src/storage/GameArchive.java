@@ -0,0 +1,374 @@
+package storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only archive of finished games
+ *
+ * Finished games are collected in memory and written as one compressed columnar
+ * block (see ArchiveBlock) to blocks.dat when enough games are waiting, when the
+ * oldest waiting game is too old, or on close. After every block a small entry is
+ * added to index.dat: where the block is, its first and last start time and the
+ * names of the players in it. The index is kept in memory, the blocks are not:
+ * queries map only the blocks they need, so the archive can hold millions of games.
+ *
+ * Queries get a Stream of blocks; call parallel() on it to scan blocks on all cores.
+ */
+public class GameArchive implements Closeable {
+    /** Default number of games in one block */
+    public static final int DEFAULT_BLOCK_GAMES = 4096;
+
+    /** Default time a finished game may wait in memory before its block is written */
+    public static final long DEFAULT_MAX_DELAY_SECONDS = 60;
+
+    // Blocks that may wait for the archive thread before append() writes itself
+    private static final int MAX_PENDING_BLOCKS = 4;
+
+    private static final String BLOCKS_FILE = "blocks.dat";
+    private static final String INDEX_FILE = "index.dat";
+
+    private final File directory;
+    private final int blockGames;
+    private final long maxDelayMillis;
+    private final FileChannel blocks;
+    private final DataOutputStream index;
+    private final ScheduledExecutorService writer;
+
+    // Written blocks (copy-on-write, so queries never see a half updated index)
+    private volatile List<BlockInfo> blockInfos;
+    private final Map<String, List<BlockInfo>> blocksByPlayer;
+
+    // Finished games that are not in a block yet
+    private List<GameRecord> pending;
+    private long oldestPendingMillis;
+    private final Object writeLock = new Object();
+
+    /**
+     * Where a block is and what is in it
+     */
+    public static class BlockInfo {
+        public final long offset;
+        public final int length;
+        public final int games;
+        public final long minStartMillis;
+        public final long maxStartMillis;
+        public final Set<String> players;
+
+        BlockInfo(long offset, int length, int games, long minStartMillis, long maxStartMillis, Set<String> players) {
+            this.offset = offset;
+            this.length = length;
+            this.games = games;
+            this.minStartMillis = minStartMillis;
+            this.maxStartMillis = maxStartMillis;
+            this.players = players;
+        }
+    }
+
+    public GameArchive(File directory) throws IOException {
+        this(directory, DEFAULT_BLOCK_GAMES, DEFAULT_MAX_DELAY_SECONDS * 1000);
+    }
+
+    /**
+     * Opens (or creates) an archive directory
+     * A block that was written but never got its index entry (crash) is cut off.
+     *
+     * @param directory Directory that holds blocks.dat and index.dat
+     * @param blockGames Number of finished games per block
+     * @param maxDelayMillis How long a finished game may wait before its block is written anyway
+     */
+    public GameArchive(File directory, int blockGames, long maxDelayMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create archive directory " + directory);
+        }
+        this.directory = directory;
+        this.blockGames = blockGames;
+        this.maxDelayMillis = maxDelayMillis;
+        this.blocksByPlayer = new HashMap<>();
+        this.pending = new ArrayList<>();
+
+        List<BlockInfo> infos = readIndex(new File(directory, INDEX_FILE));
+        this.blockInfos = Collections.unmodifiableList(infos);
+        for (BlockInfo info : infos) {
+            addToPlayerIndex(info);
+        }
+
+        this.blocks = FileChannel.open(new File(directory, BLOCKS_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = infos.isEmpty() ? 0 : infos.get(infos.size() - 1).offset + infos.get(infos.size() - 1).length;
+        if (blocks.size() > end) {
+            System.err.println("Archive: dropping " + (blocks.size() - end) + " bytes of an unindexed block");
+            blocks.truncate(end);
+        }
+        this.index = new DataOutputStream(new FileOutputStream(new File(directory, INDEX_FILE), true));
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "archive-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMillis = Math.max(1, maxDelayMillis / 4);
+        writer.scheduleWithFixedDelay(this::flushIfOld, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds a finished game, the block itself is written on the archive thread
+     * If the archive thread falls far behind, the caller writes the blocks itself.
+     */
+    public void append(GameRecord record) {
+        int waiting;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                oldestPendingMillis = System.currentTimeMillis();
+            }
+            pending.add(record);
+            waiting = pending.size();
+        }
+        if (waiting >= MAX_PENDING_BLOCKS * blockGames) {
+            flushQuietly();
+        } else if (waiting == blockGames && !writer.isShutdown()) {
+            writer.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Writes all waiting games as blocks now
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            List<GameRecord> batch;
+            synchronized (this) {
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            for (int from = 0; from < batch.size(); from += blockGames) {
+                writeBlock(batch.subList(from, Math.min(batch.size(), from + blockGames)));
+            }
+        }
+    }
+
+    /**
+     * Gets all blocks, oldest first
+     */
+    public Stream<ArchiveBlock> blocks() {
+        return blockInfos.stream().map(this::openBlock);
+    }
+
+    /**
+     * Gets the blocks that have at least one game of the player
+     * (the games in them still have to be filtered by name)
+     */
+    public Stream<ArchiveBlock> blocksOfPlayer(String playerName) {
+        List<BlockInfo> infos;
+        synchronized (blocksByPlayer) {
+            List<BlockInfo> found = blocksByPlayer.get(playerName);
+            infos = found == null ? Collections.emptyList() : new ArrayList<>(found);
+        }
+        return infos.stream().map(this::openBlock);
+    }
+
+    /**
+     * Gets the blocks that may have games started in [fromMillis, toMillis)
+     * (the games in them still have to be filtered by start time)
+     */
+    public Stream<ArchiveBlock> blocksBetween(long fromMillis, long toMillis) {
+        return blockInfos.stream()
+                .filter(info -> info.maxStartMillis >= fromMillis && info.minStartMillis < toMillis)
+                .map(this::openBlock);
+    }
+
+    /**
+     * Gets the index entries of all written blocks
+     */
+    public List<BlockInfo> getBlockInfos() {
+        return blockInfos;
+    }
+
+    /**
+     * Gets the number of games in written blocks
+     */
+    public long getGameCount() {
+        long total = 0;
+        for (BlockInfo info : blockInfos) {
+            total += info.games;
+        }
+        return total;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Writes the waiting games and closes the files
+     */
+    @Override
+    public void close() throws IOException {
+        // Let the archive thread finish the blocks it was asked to write
+        writer.shutdown();
+        try {
+            while (!writer.awaitTermination(1, TimeUnit.SECONDS)) {
+                System.out.println("Archive: waiting for blocks to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        index.close();
+        blocks.close();
+    }
+
+    // ========== HELPER METHODS ==========
+
+    private void writeBlock(List<GameRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        byte[] block = ArchiveBlock.encode(records);
+
+        long minStart = Long.MAX_VALUE;
+        long maxStart = Long.MIN_VALUE;
+        Set<String> players = new LinkedHashSet<>();
+        for (GameRecord record : records) {
+            minStart = Math.min(minStart, record.startMillis);
+            maxStart = Math.max(maxStart, record.startMillis);
+            Collections.addAll(players, record.playerNames);
+        }
+
+        // The block must be on disk before the index points to it
+        long offset = blocks.size();
+        ByteBuffer buffer = ByteBuffer.wrap(block);
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += blocks.write(buffer, position);
+        }
+        blocks.force(false);
+
+        BlockInfo info = new BlockInfo(offset, block.length, records.size(), minStart, maxStart,
+                Collections.unmodifiableSet(players));
+        writeIndexEntry(index, info);
+        index.flush();
+
+        List<BlockInfo> infos = new ArrayList<>(blockInfos);
+        infos.add(info);
+        blockInfos = Collections.unmodifiableList(infos);
+        addToPlayerIndex(info);
+    }
+
+    private void flushIfOld() {
+        boolean old;
+        synchronized (this) {
+            old = !pending.isEmpty() && System.currentTimeMillis() - oldestPendingMillis >= maxDelayMillis;
+        }
+        if (old) {
+            flushQuietly();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Could not write archive block: " + e.getMessage());
+        }
+    }
+
+    private ArchiveBlock openBlock(BlockInfo info) {
+        try {
+            return new ArchiveBlock(blocks.map(FileChannel.MapMode.READ_ONLY, info.offset, info.length));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addToPlayerIndex(BlockInfo info) {
+        synchronized (blocksByPlayer) {
+            for (String player : info.players) {
+                blocksByPlayer.computeIfAbsent(player, name -> new ArrayList<>()).add(info);
+            }
+        }
+    }
+
+    /**
+     * Writes one index entry: its length, then the block position, times and players
+     */
+    private static void writeIndexEntry(DataOutputStream out, BlockInfo info) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream entry = new DataOutputStream(body);
+        entry.writeLong(info.offset);
+        entry.writeInt(info.length);
+        entry.writeInt(info.games);
+        entry.writeLong(info.minStartMillis);
+        entry.writeLong(info.maxStartMillis);
+        entry.writeInt(info.players.size());
+        for (String player : info.players) {
+            entry.writeUTF(player);
+        }
+        out.writeInt(body.size());
+        body.writeTo(out);
+    }
+
+    /**
+     * Reads all complete index entries (a torn last entry is cut off)
+     */
+    private static List<BlockInfo> readIndex(File file) throws IOException {
+        List<BlockInfo> infos = new ArrayList<>();
+        if (!file.exists()) {
+            return infos;
+        }
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                DataInputStream entry = new DataInputStream(new ByteArrayInputStream(body));
+                long offset = entry.readLong();
+                int length = entry.readInt();
+                int games = entry.readInt();
+                long minStart = entry.readLong();
+                long maxStart = entry.readLong();
+                Set<String> players = new LinkedHashSet<>();
+                int count = entry.readInt();
+                for (int i = 0; i < count; i++) {
+                    players.add(entry.readUTF());
+                }
+                infos.add(new BlockInfo(offset, length, games, minStart, maxStart, Collections.unmodifiableSet(players)));
+                validLength += 4 + body.length;
+            }
+        } catch (EOFException e) {
+            // End of the index
+        }
+
+        // So the next entry is appended right after the last good one
+        if (file.length() > validLength) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return infos;
+    }
+}
@@ -0,0 +1,134 @@
+package storage;
+
+import model.CardAction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Journal handle of one game
+ *
+ * Every method appends one event and returns once the event is on disk
+ * (group commit: events of other games on the same shard share the fsync).
+ * A failing journal is reported but never stops the game itself.
+ */
+public class GameJournal {
+    private final long gameId;
+    private final JournalShard shard;
+    private int sequence;
+
+    GameJournal(long gameId, JournalShard shard, int sequence) {
+        this.gameId = gameId;
+        this.shard = shard;
+        this.sequence = sequence;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Gets the sequence number of the last event written for this game
+     */
+    public synchronized int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * A new game was dealt
+     *
+     * @param playerNames The seats in order
+     * @param sessionTokens The session token of every seat, so players can reconnect after a restart
+     * @param botTypes The bot name of every seat, null for a person, so bots play on after a restart
+     * @param seed The shuffle seed of the first round
+     */
+    public void gameCreated(List<String> playerNames, List<String> sessionTokens, List<String> botTypes,
+                            long seed) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(seed);
+            out.writeByte(playerNames.size());
+            for (int i = 0; i < playerNames.size(); i++) {
+                out.writeUTF(playerNames.get(i));
+                String token = sessionTokens == null ? null : sessionTokens.get(i);
+                out.writeUTF(token == null ? "" : token);
+            }
+            for (int i = 0; i < playerNames.size(); i++) {
+                String botType = botTypes == null ? null : botTypes.get(i);
+                out.writeUTF(botType == null ? "" : botType);
+            }
+            byte[] payload = bytes.toByteArray();
+            write(payload.length, JournalEvent.GAME_CREATED, payload, 0, null);
+        } catch (IOException e) {
+            System.err.println("Journal write failed for game " + gameId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A card action was applied for the player in the given seat
+     */
+    public void cardAction(int seat, CardAction action) {
+        write(4, JournalEvent.CARD_ACTION, null, seat, action);
+    }
+
+    /**
+     * The current player ended their turn
+     */
+    public void turnEnded() {
+        write(0, JournalEvent.TURN_ENDED, null, 0, null);
+    }
+
+    /**
+     * The player in the given seat won the round
+     */
+    public void roundFinished(int winnerSeat) {
+        write(1, JournalEvent.ROUND_FINISHED, new byte[]{(byte) winnerSeat}, 0, null);
+    }
+
+    /**
+     * A new round was dealt from the given seed
+     */
+    public void roundStarted(long seed) {
+        byte[] payload = ByteBuffer.allocate(8).putLong(seed).array();
+        write(8, JournalEvent.ROUND_STARTED, payload, 0, null);
+    }
+
+    /**
+     * The game has an overall winner, it will not be recovered
+     */
+    public void gameFinished() {
+        write(0, JournalEvent.GAME_FINISHED, null, 0, null);
+    }
+
+    /**
+     * The game was thrown away, it will not be recovered
+     */
+    public void gameAborted() {
+        write(0, JournalEvent.GAME_ABORTED, null, 0, null);
+    }
+
+    private void write(int payloadSize, byte type, byte[] payload, int seat, CardAction action) {
+        try {
+            long position;
+            synchronized (this) {
+                sequence++;
+                ByteBuffer record = JournalEvent.begin(payloadSize, gameId, sequence, type);
+                if (action != null) {
+                    JournalEvent.putAction(record, seat, action);
+                } else if (payload != null) {
+                    record.put(payload);
+                }
+                position = shard.append(JournalEvent.finish(record));
+            }
+            if (shard.isDurableAppends()) {
+                shard.awaitFlushed(position);
+            }
+        } catch (IOException e) {
+            System.err.println("Journal write failed for game " + gameId + ": " + e.getMessage());
+        }
+    }
+}
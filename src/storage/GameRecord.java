@@ -0,0 +1,125 @@
+package storage;
+
+import model.CardAction;
+import model.RoundResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * History of one game, collected while it runs and written to the GameArchive when it ends
+ * Holds the seats, every round (seed, duration, winner, points, moves) and the final scores.
+ */
+public class GameRecord {
+    /** Move marker for the end of a turn (kind byte 0x0F, see JournalEvent for card actions) */
+    public static final int TURN_END = 0x000F0000;
+
+    final long gameId;
+    final long startMillis;
+    final String[] playerNames;
+    final boolean partial;  // Recovered after a restart: rounds before the crash are missing
+
+    final List<long[]> rounds = new ArrayList<>();   // {seed, startMillis, endMillis, winnerSeat, points}
+    final List<int[]> roundMoves = new ArrayList<>();
+    private int[] moves = new int[256];
+    private int moveCount;
+
+    long endMillis;
+    int[] finalScores;
+    int winnerSeat = -1;
+
+    /**
+     * Starts recording a game whose first round was dealt from the given seed
+     */
+    public GameRecord(long gameId, List<String> playerNames, long seed, long startMillis, boolean partial) {
+        this.gameId = gameId;
+        this.startMillis = startMillis;
+        this.playerNames = playerNames.toArray(new String[0]);
+        this.partial = partial;
+        rounds.add(new long[]{seed, startMillis, 0, -1, 0});
+    }
+
+    public void cardAction(int seat, CardAction action) {
+        addMove(JournalEvent.packAction(seat, action));
+    }
+
+    public void turnEnded(int seat) {
+        addMove((seat << 24) | TURN_END);
+    }
+
+    /**
+     * The current round was won
+     */
+    public void roundFinished(int winnerSeat, RoundResult result, long nowMillis) {
+        roundFinished(winnerSeat, result.pointsScored, nowMillis);
+    }
+
+    void roundFinished(int winnerSeat, int points, long nowMillis) {
+        long[] round = rounds.get(rounds.size() - 1);
+        round[2] = nowMillis;
+        round[3] = winnerSeat;
+        round[4] = points;
+        roundMoves.add(Arrays.copyOf(moves, moveCount));
+        moveCount = 0;
+    }
+
+    public void roundStarted(long seed, long nowMillis) {
+        rounds.add(new long[]{seed, nowMillis, 0, -1, 0});
+    }
+
+    /**
+     * The game has an overall winner
+     *
+     * @param finalScores Total score per seat
+     */
+    public void gameFinished(int winnerSeat, int[] finalScores, long nowMillis) {
+        this.winnerSeat = winnerSeat;
+        this.finalScores = finalScores;
+        this.endMillis = nowMillis;
+    }
+
+    public long getGameId() {
+        return gameId;
+    }
+
+    public List<String> getPlayerNames() {
+        return Arrays.asList(playerNames);
+    }
+
+    /**
+     * Gets the total score of every seat (null while the game runs)
+     */
+    public int[] getFinalScores() {
+        return finalScores;
+    }
+
+    /**
+     * Gets the seat of the overall winner (-1 while the game runs)
+     */
+    public int getWinnerSeat() {
+        return winnerSeat;
+    }
+
+    /**
+     * Copies a finished game under another id, seats and start time (for benchmarks)
+     * The rounds and moves are shared with this record.
+     */
+    GameRecord copyAs(long gameId, String[] playerNames, long startMillis) {
+        GameRecord copy = new GameRecord(gameId, Arrays.asList(playerNames), 0, startMillis, partial);
+        copy.rounds.clear();
+        copy.rounds.addAll(rounds);
+        copy.roundMoves.addAll(roundMoves);
+        copy.endMillis = startMillis + (endMillis - this.startMillis);
+        copy.finalScores = finalScores;
+        copy.winnerSeat = winnerSeat;
+        return copy;
+    }
+
+    private void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        moves[moveCount++] = move;
+    }
+}
@@ -0,0 +1,252 @@
+package storage;
+
+import model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Rebuilds the running games from the journal after a restart
+ *
+ * Per shard the newest snapshot file is loaded first, then the segments it does not
+ * cover are replayed on top of it. Without a snapshot every game is dealt again
+ * from its recorded seed and all its events are applied in order.
+ * Games that finished or were aborted are dropped. Shards are replayed in parallel.
+ */
+public class GameRecovery {
+    private final Journal journal;
+    private final Map<Long, RecoveredGame> games;
+    private long highestGameId;
+    private long eventsReplayed;
+    private long gamesFromSnapshots;
+
+    /**
+     * A game rebuilt from the journal
+     */
+    public static class RecoveredGame {
+        public final long gameId;
+        public final Game game;
+        public final List<String> playerNames;
+        public final List<String> sessionTokens;  // Per seat, "" if the seat has none
+        public final List<String> botTypes;       // Per seat, "" if a person plays it
+        int sequence;
+
+        RecoveredGame(long gameId, Game game, List<String> playerNames, List<String> sessionTokens,
+                      List<String> botTypes) {
+            this.gameId = gameId;
+            this.game = game;
+            this.playerNames = playerNames;
+            this.sessionTokens = sessionTokens;
+            this.botTypes = botTypes;
+        }
+
+        /**
+         * Gets the sequence number of the last event applied to this game
+         */
+        public int getSequence() {
+            return sequence;
+        }
+    }
+
+    public GameRecovery(Journal journal) {
+        this.journal = journal;
+        this.games = new TreeMap<>();
+        this.highestGameId = 0;
+    }
+
+    /**
+     * Loads the snapshots and replays the journal of all shards
+     */
+    public void run() throws IOException {
+        List<ShardReplay> replays;
+        try {
+            replays = IntStream.range(0, journal.getShardCount())
+                    .parallel()
+                    .mapToObj(this::replayShard)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        for (ShardReplay replay : replays) {
+            games.putAll(replay.games);
+            highestGameId = Math.max(highestGameId, replay.highestGameId);
+            eventsReplayed += replay.events;
+            gamesFromSnapshots += replay.fromSnapshot;
+        }
+    }
+
+    /**
+     * Gets the games that were still running, oldest first
+     */
+    public List<RecoveredGame> getLiveGames() {
+        return new ArrayList<>(games.values());
+    }
+
+    /**
+     * Gets the highest game id found in the journal (0 if empty)
+     */
+    public long getHighestGameId() {
+        return highestGameId;
+    }
+
+    public long getEventsReplayed() {
+        return eventsReplayed;
+    }
+
+    public long getGamesFromSnapshots() {
+        return gamesFromSnapshots;
+    }
+
+    private ShardReplay replayShard(int shard) {
+        File directory = journal.getDirectory();
+        ShardReplay replay = new ShardReplay();
+        int firstSegment = 0;
+        try {
+            List<Integer> snapshots = Snapshotter.listSnapshots(directory, shard);
+            if (!snapshots.isEmpty()) {
+                firstSegment = snapshots.get(snapshots.size() - 1);
+                replay.load(Snapshotter.read(Snapshotter.snapshotFile(directory, shard, firstSegment)));
+            }
+            for (int segment : JournalShard.listSegments(directory, shard)) {
+                if (segment >= firstSegment) {
+                    replay.replaySegment(JournalShard.segmentFile(directory, shard, segment));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return replay;
+    }
+
+    /**
+     * The games of one shard while they are being rebuilt
+     */
+    private static class ShardReplay {
+        private final Map<Long, RecoveredGame> games = new HashMap<>();
+        private long highestGameId;
+        private long events;
+        private long fromSnapshot;
+
+        void load(List<SnapshotEntry> entries) {
+            for (SnapshotEntry entry : entries) {
+                Game game = entry.state.restore();
+                List<String> names = new ArrayList<>();
+                for (Player player : game.getPlayers()) {
+                    names.add(player.getName());
+                }
+                RecoveredGame recovered = new RecoveredGame(entry.gameId, game, Collections.unmodifiableList(names),
+                        Collections.unmodifiableList(Arrays.asList(entry.sessionTokens)),
+                        Collections.unmodifiableList(Arrays.asList(entry.botTypes)));
+                recovered.sequence = entry.sequence;
+                games.put(entry.gameId, recovered);
+                highestGameId = Math.max(highestGameId, entry.gameId);
+                fromSnapshot++;
+            }
+        }
+
+        void replaySegment(File file) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;  // End of the written part (or a torn record)
+                }
+                ByteBuffer record = buffer.slice();
+                record.limit(length);
+                buffer.position(buffer.position() + length);
+                apply(record);
+                events++;
+            }
+        }
+
+        private void apply(ByteBuffer record) throws IOException {
+            long gameId = record.getLong();
+            int sequence = record.getInt();
+            byte type = record.get();
+            highestGameId = Math.max(highestGameId, gameId);
+
+            RecoveredGame recovered = games.get(gameId);
+            if (recovered != null && sequence <= recovered.sequence) {
+                return;  // Already in the snapshot
+            }
+
+            if (type == JournalEvent.GAME_CREATED) {
+                byte[] payload = new byte[record.remaining()];
+                record.get(payload);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                long seed = in.readLong();
+                String[] names = new String[in.readByte()];
+                String[] tokens = new String[names.length];
+                List<Player> players = new ArrayList<>();
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = in.readUTF();
+                    tokens[i] = in.readUTF();
+                    players.add(new Player(names[i]));
+                }
+                String[] botTypes = new String[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    // Journals of older servers end after the tokens, all their seats count as people
+                    botTypes[i] = in.available() > 0 ? in.readUTF() : "";
+                }
+                recovered = new RecoveredGame(gameId, new Game(players, seed),
+                        Collections.unmodifiableList(Arrays.asList(names)),
+                        Collections.unmodifiableList(Arrays.asList(tokens)),
+                        Collections.unmodifiableList(Arrays.asList(botTypes)));
+                recovered.sequence = sequence;
+                games.put(gameId, recovered);
+                return;
+            }
+
+            if (recovered == null) {
+                return;  // Game ended before the snapshot
+            }
+            recovered.sequence = sequence;
+            Game game = recovered.game;
+
+            try {
+                if (type == JournalEvent.CARD_ACTION) {
+                    Player player = game.getPlayers().get(record.get());
+                    CardAction action = JournalEvent.decodeAction(game, player, record.get(), record.get(), record.get());
+                    if (action == null) {
+                        throw new GameException("Card of journaled action not in hand");
+                    }
+                    List<CardAction> actions = new ArrayList<>();
+                    actions.add(action);
+                    game.doMove(actions, player);
+                } else if (type == JournalEvent.TURN_ENDED) {
+                    game.endTurn();
+                } else if (type == JournalEvent.ROUND_FINISHED) {
+                    game.finishRound(game.getPlayers().get(record.get()));
+                } else if (type == JournalEvent.ROUND_STARTED) {
+                    game.startNewRound(record.getLong());
+                } else if (type == JournalEvent.GAME_FINISHED || type == JournalEvent.GAME_ABORTED) {
+                    games.remove(gameId);
+                }
+            } catch (GameException e) {
+                System.err.println("Cannot replay game " + gameId + ", dropping it: " + e.getMessage());
+                games.remove(gameId);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Append-only journal of everything that happens in the running games
+ *
+ * Games are spread over a fixed number of shards by their id.
+ * Each shard is its own set of memory-mapped segment files with its own flusher,
+ * so games on different shards never wait for each other's fsync.
+ */
+public class Journal implements Closeable {
+    /** Default size of one segment file */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /** Default time the flusher waits to batch appends into one fsync */
+    public static final long DEFAULT_COMMIT_WINDOW_MILLIS = 2;
+
+    private final File directory;
+    private final JournalShard[] shards;
+
+    public Journal(File directory, int shardCount) throws IOException {
+        this(directory, shardCount, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_WINDOW_MILLIS);
+    }
+
+    /**
+     * Opens (or creates) a journal directory
+     *
+     * @param directory Directory that holds the segment files
+     * @param shardCount Number of shards, must stay the same between restarts
+     * @param segmentSize Size of one memory-mapped segment file in bytes
+     * @param commitWindowMillis How long the flusher collects appends before one fsync
+     */
+    public Journal(File directory, int shardCount, int segmentSize, long commitWindowMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        this.directory = directory;
+        this.shards = new JournalShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new JournalShard(directory, i, segmentSize, commitWindowMillis);
+        }
+    }
+
+    /**
+     * Gets the journal handle for a new game
+     */
+    public GameJournal forGame(long gameId) {
+        return new GameJournal(gameId, shardFor(gameId), 0);
+    }
+
+    /**
+     * Gets the journal handle for a game recovered from the journal
+     *
+     * @param sequence The sequence number of the last event of the game
+     */
+    public GameJournal resume(long gameId, int sequence) {
+        return new GameJournal(gameId, shardFor(gameId), sequence);
+    }
+
+    /**
+     * Chooses whether appends wait until their event is on disk (the default)
+     * Without waiting, events still reach the disk within the commit window,
+     * but a crash can lose the last few. Meant for bulk loading and benchmarks.
+     */
+    public void setDurableAppends(boolean durable) {
+        for (JournalShard shard : shards) {
+            shard.setDurableAppends(durable);
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Gets the total number of fsyncs over all shards (for benchmarks)
+     */
+    public long getFlushCount() {
+        long total = 0;
+        for (JournalShard shard : shards) {
+            total += shard.getFlushCount();
+        }
+        return total;
+    }
+
+    JournalShard shardFor(long gameId) {
+        return shards[(int) Math.floorMod(gameId, (long) shards.length)];
+    }
+
+    JournalShard shardAt(int index) {
+        return shards[index];
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (JournalShard shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package storage;
+
+import model.GameException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how many microseconds the journal adds to every move
+ *
+ * Plays simple games (stock first, then hand, else discard) on several threads,
+ * once without a journal and once with one, and prints the time per move.
+ * Usage: JournalBenchmark [movesPerThread] [threads] [directory]
+ */
+public class JournalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int moves = args.length >= 1 ? Integer.parseInt(args[0]) : 20000;
+        int threads = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+        File directory = args.length >= 3 ? new File(args[2])
+                : Files.createTempDirectory("journal-bench").toFile();
+
+        // Warm up the game code first so the comparison is fair
+        run(null, moves, threads);
+        double plain = run(null, moves, threads);
+
+        Journal journal = new Journal(directory, 4);
+        double journaled = run(journal, moves, threads);
+        long flushes = journal.getFlushCount();
+        journal.close();
+
+        long totalMoves = (long) moves * threads;
+        System.out.printf("Moves: %d on %d threads%n", totalMoves, threads);
+        System.out.printf("Without journal: %.2f us/move%n", plain);
+        System.out.printf("With journal:    %.2f us/move%n", journaled);
+        System.out.printf("Added:           %.2f us/move%n", journaled - plain);
+        System.out.printf("Fsyncs: %d (%.1f moves per fsync)%n", flushes, totalMoves / (double) Math.max(1, flushes));
+
+        GameRecovery recovery = new GameRecovery(new Journal(directory, 4));
+        long start = System.nanoTime();
+        recovery.run();
+        System.out.printf("Replayed %d events in %.1f ms%n",
+                recovery.getEventsReplayed(), (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Plays the moves and returns the average wall time per move in microseconds
+     */
+    private static double run(Journal journal, int moves, int threads) throws InterruptedException {
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final long gameId = t + 1;
+            workers.add(new Thread(() -> playGame(journal, gameId, moves)));
+        }
+
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return elapsed / 1000.0 / ((long) moves * threads);
+    }
+
+    private static void playGame(Journal journal, long gameId, int moves) {
+        SimulatedGame game = new SimulatedGame(gameId, 4, journal);
+        try {
+            for (int i = 0; i < moves; i++) {
+                game.step();
+            }
+            game.finish();
+        } catch (GameException e) {
+            System.err.println("Benchmark game " + gameId + " failed: " + e.getMessage());
+        }
+    }
+}
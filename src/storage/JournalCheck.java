@@ -0,0 +1,131 @@
+package storage;
+
+import model.GameException;
+import model.GameSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that recovery stops cleanly at a torn record at the end of a segment
+ *
+ * Plays journaled games over small segments (so every shard rolls a few times), keeps
+ * their state, then plays one more move in the first game and closes the journal. The
+ * first record of that move is torn the way a crash leaves it: its body is written,
+ * its length is not (see JournalShard.append). Recovery must then give back every game
+ * as it was kept, the first game at the sequence before the torn record.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: JournalCheck [games] [moves]
+ */
+public class JournalCheck {
+    private static final int SHARDS = 2;
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length >= 1 ? Integer.parseInt(args[0]) : 20;
+        int moves = args.length >= 2 ? Integer.parseInt(args[1]) : 300;
+
+        File directory = Files.createTempDirectory("journal-check").toFile();
+        try {
+            run(directory, games, moves);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+        System.out.println("OK");
+    }
+
+    private static void run(File directory, int games, int moves) throws IOException, GameException {
+        Journal journal = new Journal(directory, SHARDS, SEGMENT_SIZE, Journal.DEFAULT_COMMIT_WINDOW_MILLIS);
+        journal.setDurableAppends(false);
+        List<SimulatedGame> live = new ArrayList<>();
+        for (int i = 1; i <= games; i++) {
+            live.add(new SimulatedGame(i, 2 + i % 3, journal));
+        }
+        for (int m = 0; m < moves; m++) {
+            for (SimulatedGame game : live) {
+                game.step();
+            }
+        }
+
+        List<byte[]> expected = new ArrayList<>();
+        for (SimulatedGame game : live) {
+            expected.add(encode(GameSnapshot.capture(game.getGame())));
+        }
+        SimulatedGame first = live.get(0);
+        int keptSequence = first.captureSnapshot().sequence;
+        first.step();
+        journal.close();
+
+        int shard = (int) Math.floorMod(1L, (long) SHARDS);
+        List<Integer> segments = JournalShard.listSegments(directory, shard);
+        check(segments.size() > 1, "Shard " + shard + " never rolled to a new segment");
+        File last = JournalShard.segmentFile(directory, shard, segments.get(segments.size() - 1));
+        check(tear(last, 1, keptSequence + 1), "Record " + (keptSequence + 1) + " of game 1 not in " + last);
+
+        journal = new Journal(directory, SHARDS, SEGMENT_SIZE, Journal.DEFAULT_COMMIT_WINDOW_MILLIS);
+        GameRecovery recovery = new GameRecovery(journal);
+        recovery.run();
+        journal.close();
+
+        List<GameRecovery.RecoveredGame> recovered = recovery.getLiveGames();
+        check(recovered.size() == games, recovered.size() + " games recovered, " + games + " played");
+        check(recovery.getHighestGameId() == games, "Highest game id " + recovery.getHighestGameId());
+        for (int i = 0; i < games; i++) {
+            GameRecovery.RecoveredGame game = recovered.get(i);
+            check(game.gameId == i + 1, "Game " + game.gameId + " in place of game " + (i + 1));
+            check(Arrays.equals(encode(GameSnapshot.capture(game.game)), expected.get(i)),
+                    "Game " + game.gameId + " recovered in another state");
+        }
+        check(recovered.get(0).getSequence() == keptSequence,
+                "Game 1 recovered at sequence " + recovered.get(0).getSequence() + ", not " + keptSequence);
+    }
+
+    /**
+     * Clears the length of a record, as if the crash came between its body and its length
+     * @return If the record was found
+     */
+    private static boolean tear(File segment, long gameId, int sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            while (buffer.remaining() >= 4) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    return false;
+                }
+                if (buffer.getLong(start + 4) == gameId && buffer.getInt(start + 12) == sequence) {
+                    buffer.putInt(start, 0);
+                    buffer.force();
+                    return true;
+                }
+                buffer.position(buffer.position() + length);
+            }
+            return false;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static byte[] encode(GameSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,126 @@
+package storage;
+
+import model.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Binary layout of the journal records
+ * Every record is: [int length][long gameId][int sequence][byte type][payload]
+ * The length counts the bytes after itself and is written last,
+ * so a record that was only half written reads as the end of the segment.
+ */
+public class JournalEvent {
+    /** Size of the fixed part of a record (length + gameId + sequence + type) */
+    public static final int HEADER_SIZE = 4 + 8 + 4 + 1;
+
+    /**
+     * payload: long seed, byte seat count, per seat the name and session token (UTF),
+     * then per seat the bot name (UTF, "" for a person; missing in journals of older servers)
+     */
+    public static final byte GAME_CREATED = 1;
+    /** payload: byte seat, byte kind, byte a, byte b */
+    public static final byte CARD_ACTION = 2;
+    /** no payload */
+    public static final byte TURN_ENDED = 3;
+    /** payload: byte winner seat */
+    public static final byte ROUND_FINISHED = 4;
+    /** payload: long seed */
+    public static final byte ROUND_STARTED = 5;
+    /** no payload, the game ended normally */
+    public static final byte GAME_FINISHED = 6;
+    /** no payload, the game was thrown away (disconnect) */
+    public static final byte GAME_ABORTED = 7;
+
+    // Kinds of card actions inside a CARD_ACTION record
+    static final byte STOCK_TO_BUILDING = 0;    // b = building pile
+    static final byte HAND_TO_BUILDING = 1;     // a = card, b = building pile
+    static final byte HAND_TO_DISCARD = 2;      // a = card, b = discard pile
+    static final byte DISCARD_TO_BUILDING = 3;  // a = discard pile, b = building pile
+
+    private JournalEvent() {
+        throw new AssertionError("Cannot instantiate JournalEvent");
+    }
+
+    /**
+     * Writes the header of a record; the length is filled in by finish()
+     */
+    static ByteBuffer begin(int payloadSize, long gameId, int sequence, byte type) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        record.putInt(0);
+        record.putLong(gameId);
+        record.putInt(sequence);
+        record.put(type);
+        return record;
+    }
+
+    static byte[] finish(ByteBuffer record) {
+        record.putInt(0, record.position() - 4);
+        return record.array();
+    }
+
+    /**
+     * Encodes a card action as four bytes: seat, kind, a, b
+     */
+    static void putAction(ByteBuffer record, int seat, CardAction action) {
+        record.put((byte) seat);
+        if (action instanceof CardActionStockPileToBuildingPile) {
+            CardActionStockPileToBuildingPile a = (CardActionStockPileToBuildingPile) action;
+            record.put(STOCK_TO_BUILDING).put((byte) 0).put((byte) a.getBuildingPileIndex());
+        } else if (action instanceof CardActionHandToBuildingPile) {
+            CardActionHandToBuildingPile a = (CardActionHandToBuildingPile) action;
+            record.put(HAND_TO_BUILDING).put(a.getCard().toByte()).put((byte) a.getBuildingPileIndex());
+        } else if (action instanceof CardActionHandToDiscardPile) {
+            CardActionHandToDiscardPile a = (CardActionHandToDiscardPile) action;
+            record.put(HAND_TO_DISCARD).put(a.getCard().toByte()).put((byte) a.getDiscardPile());
+        } else if (action instanceof CardActionDiscardPileToBuildingPile) {
+            CardActionDiscardPileToBuildingPile a = (CardActionDiscardPileToBuildingPile) action;
+            record.put(DISCARD_TO_BUILDING).put((byte) a.getDiscardPileIndex()).put((byte) a.getBuildingPileIndex());
+        } else {
+            throw new IllegalArgumentException("Unknown card action: " + action);
+        }
+    }
+
+    /**
+     * Packs a card action into one int with the same four bytes as the journal
+     * (seat, kind, a, b from high to low), used for the move streams of the archive
+     */
+    public static int packAction(int seat, CardAction action) {
+        ByteBuffer bytes = ByteBuffer.allocate(4);
+        putAction(bytes, seat, action);
+        return bytes.getInt(0);
+    }
+
+    /**
+     * Turns an encoded card action back into a CardAction for the given player
+     *
+     * @return The action, or null if the card is not in the player's hand
+     */
+    static CardAction decodeAction(Game game, Player player, byte kind, byte a, byte b) {
+        if (kind == STOCK_TO_BUILDING) {
+            return new CardActionStockPileToBuildingPile(b);
+        } else if (kind == HAND_TO_BUILDING || kind == HAND_TO_DISCARD) {
+            Card card = findCard(game.getHand(player), a);
+            if (card == null) {
+                return null;
+            }
+            if (kind == HAND_TO_BUILDING) {
+                return new CardActionHandToBuildingPile(card, b);
+            }
+            return new CardActionHandToDiscardPile(card, b);
+        } else if (kind == DISCARD_TO_BUILDING) {
+            return new CardActionDiscardPileToBuildingPile(a, b);
+        }
+        return null;
+    }
+
+    private static Card findCard(List<Card> hand, byte encoded) {
+        for (Card card : hand) {
+            if (card.toByte() == encoded) {
+                return card;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,271 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One shard of the journal: a sequence of memory-mapped segment files
+ *
+ * Appends only copy the record into the mapped segment.
+ * A single flusher thread forces the dirty part of the segment to disk,
+ * waiting up to the commit window so that records appended close together
+ * share one fsync (group commit).
+ */
+class JournalShard implements Closeable {
+    private final File directory;
+    private final int shardIndex;
+    private final int segmentSize;
+    private final long commitWindowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dirty = lock.newCondition();
+    private final Condition flushedChanged = lock.newCondition();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int segmentNumber;
+
+    // Positions are counted in bytes over the whole life of the shard
+    private long appended;
+    private long flushed;
+    private int flushedOffset;  // Offset in the current segment that is already on disk
+    private long flushCount;
+
+    private boolean closed;
+    private Thread flusher;
+
+    // When false, appenders do not wait for their fsync (bulk loading and benchmarks)
+    private volatile boolean durableAppends = true;
+
+    JournalShard(File directory, int shardIndex, int segmentSize, long commitWindowMillis) throws IOException {
+        this.directory = directory;
+        this.shardIndex = shardIndex;
+        this.segmentSize = segmentSize;
+        this.commitWindowNanos = TimeUnit.MILLISECONDS.toNanos(commitWindowMillis);
+
+        // Never append to an old segment, always start a fresh one after the existing ones
+        List<Integer> existing = listSegments(directory, shardIndex);
+        openSegment(existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1);
+
+        flusher = new Thread(this::flushLoop, "journal-flusher-" + shardIndex);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Copies a record into the current segment
+     *
+     * @return The position after the record, to pass to awaitFlushed()
+     */
+    long append(byte[] record) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("Journal shard " + shardIndex + " is closed");
+            }
+            if (record.length > segmentSize) {
+                throw new IOException("Journal record too large: " + record.length);
+            }
+            if (buffer.remaining() < record.length) {
+                rollSegment();
+            }
+            // Body first, length last: a torn record reads as length 0 (end of segment)
+            int start = buffer.position();
+            buffer.position(start + 4);
+            buffer.put(record, 4, record.length - 4);
+            buffer.putInt(start, record.length - 4);
+
+            appended += record.length;
+            dirty.signal();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until everything up to the given position is forced to disk
+     */
+    void awaitFlushed(long position) throws IOException {
+        lock.lock();
+        try {
+            while (flushed < position) {
+                if (closed) {
+                    throw new IOException("Journal shard " + shardIndex + " closed before flush");
+                }
+                flushedChanged.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets how many times the shard was forced to disk (for benchmarks)
+     */
+    long getFlushCount() {
+        lock.lock();
+        try {
+            return flushCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isDurableAppends() {
+        return durableAppends;
+    }
+
+    void setDurableAppends(boolean durableAppends) {
+        this.durableAppends = durableAppends;
+    }
+
+    int getShardIndex() {
+        return shardIndex;
+    }
+
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (!closed) {
+                if (flushed == appended) {
+                    dirty.awaitUninterruptibly();
+                    continue;
+                }
+
+                // Give other appenders the commit window to join this flush
+                long deadline = System.nanoTime() + commitWindowNanos;
+                long left;
+                while (!closed && (left = deadline - System.nanoTime()) > 0) {
+                    dirty.awaitNanos(left);
+                }
+
+                MappedByteBuffer target = buffer;
+                int from = flushedOffset;
+                int to = buffer.position();
+                long position = appended;
+
+                // Force outside the lock so appenders are not blocked by the disk
+                lock.unlock();
+                try {
+                    target.force(from, to - from);
+                } finally {
+                    lock.lock();
+                }
+
+                if (target == buffer) {
+                    flushedOffset = Math.max(flushedOffset, to);
+                }
+                flushed = Math.max(flushed, position);
+                flushCount++;
+                flushedChanged.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held: finishes the current segment and opens the next one
+    private void rollSegment() throws IOException {
+        buffer.force();
+        channel.close();
+        flushed = appended;
+        flushCount++;
+        flushedChanged.signalAll();
+        openSegment(segmentNumber + 1);
+    }
+
+    /**
+     * Closes the current segment and continues in a new one
+     * Every event appended before this call is in an older segment.
+     *
+     * @return The number of the new segment
+     */
+    int startNewSegment() throws IOException {
+        lock.lock();
+        try {
+            rollSegment();
+            return segmentNumber;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+        File file = segmentFile(directory, shardIndex, number);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentNumber = number;
+        flushedOffset = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            buffer.force();
+            flushed = appended;
+            closed = true;
+            dirty.signalAll();
+            flushedChanged.signalAll();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ========== SEGMENT FILES ==========
+
+    static File segmentFile(File directory, int shardIndex, int number) {
+        return new File(directory, String.format("shard-%02d-%08d.log", shardIndex, number));
+    }
+
+    /**
+     * Deletes the segments of a shard that are older than the given segment
+     */
+    static void deleteSegmentsBefore(File directory, int shardIndex, int number) {
+        for (int segment : listSegments(directory, shardIndex)) {
+            if (segment < number && !segmentFile(directory, shardIndex, segment).delete()) {
+                System.err.println("Could not delete journal segment " + segment + " of shard " + shardIndex);
+            }
+        }
+    }
+
+    /**
+     * Lists the segment numbers of a shard, oldest first
+     */
+    static List<Integer> listSegments(File directory, int shardIndex) {
+        List<Integer> numbers = new ArrayList<>();
+        String prefix = String.format("shard-%02d-", shardIndex);
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.endsWith(".log")) {
+                    try {
+                        numbers.add(Integer.parseInt(name.substring(prefix.length(), name.length() - 4)));
+                    } catch (NumberFormatException e) {
+                        // Not one of our segments
+                    }
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+}
@@ -0,0 +1,113 @@
+package storage;
+
+import model.GameException;
+import model.GameSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+
+/**
+ * Measures how fast a server with many live games restarts
+ *
+ * Plays the same workload twice: once with a checkpoint halfway (snapshot + truncated
+ * journal) and once journal only. Then recovers both directories, prints the restart
+ * times and checks that every recovered game is identical to the game in memory.
+ * Usage: RecoveryBenchmark [games] [movesBeforeCheckpoint] [movesAfterCheckpoint]
+ */
+public class RecoveryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length >= 1 ? Integer.parseInt(args[0]) : 10000;
+        int before = args.length >= 2 ? Integer.parseInt(args[1]) : 300;
+        int after = args.length >= 3 ? Integer.parseInt(args[2]) : 30;
+
+        File withSnapshots = Files.createTempDirectory("recovery-snapshots").toFile();
+        File journalOnly = Files.createTempDirectory("recovery-journal").toFile();
+
+        List<SimulatedGame> live = play(withSnapshots, games, before, after, true);
+        play(journalOnly, games, before, after, false);
+
+        System.out.printf("%d live games, %d moves each%n", games, before + after);
+        measure("Snapshot + journal tail", withSnapshots, live);
+        measure("Journal only", journalOnly, live);
+    }
+
+    private static List<SimulatedGame> play(File directory, int games, int before, int after,
+                                            boolean checkpoint) throws IOException, GameException {
+        Journal journal = new Journal(directory, 4);
+        journal.setDurableAppends(false);
+        Snapshotter snapshotter = new Snapshotter(journal);
+
+        List<SimulatedGame> live = new ArrayList<>();
+        for (int i = 1; i <= games; i++) {
+            SimulatedGame game = new SimulatedGame(i, 2 + i % 5, journal);
+            snapshotter.register(i, game);
+            live.add(game);
+        }
+
+        // Interleave the games like a busy server does
+        for (int m = 0; m < before; m++) {
+            for (SimulatedGame game : live) {
+                game.step();
+            }
+        }
+        if (checkpoint) {
+            long start = System.nanoTime();
+            int count = snapshotter.checkpoint();
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Checkpoint of %d games: %.1f ms (%.1f us per game)%n",
+                    count, elapsed / 1e6, elapsed / 1e3 / count);
+        }
+        for (int m = 0; m < after; m++) {
+            for (SimulatedGame game : live) {
+                game.step();
+            }
+        }
+        journal.close();
+        return live;
+    }
+
+    private static void measure(String label, File directory, List<SimulatedGame> expected) throws IOException {
+        long bytes = 0;
+        for (File file : directory.listFiles()) {
+            bytes += file.length();
+        }
+
+        long start = System.nanoTime();
+        Journal journal = new Journal(directory, 4);
+        GameRecovery recovery = new GameRecovery(journal);
+        recovery.run();
+        long elapsed = System.nanoTime() - start;
+        journal.close();
+
+        Map<Long, byte[]> recovered = new HashMap<>();
+        for (GameRecovery.RecoveredGame game : recovery.getLiveGames()) {
+            recovered.put(game.gameId, encode(GameSnapshot.capture(game.game)));
+        }
+        int mismatches = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            byte[] actual = recovered.get((long) i + 1);
+            if (actual == null || !Arrays.equals(actual, encode(GameSnapshot.capture(expected.get(i).getGame())))) {
+                mismatches++;
+            }
+        }
+
+        System.out.printf("%s: restart in %.0f ms (%d games from snapshots, %d events replayed, %.1f MB on disk), %d mismatches%n",
+                label, elapsed / 1e6, recovery.getGamesFromSnapshots(), recovery.getEventsReplayed(),
+                bytes / 1e6, mismatches);
+    }
+
+    private static byte[] encode(GameSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
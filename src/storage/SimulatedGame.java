@@ -0,0 +1,238 @@
+package storage;
+
+import model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A journaled game played by a simple policy, for the storage benchmarks
+ * Plays stock first, then hand cards, then discard pile tops, else discards and ends the turn.
+ * Journals the same events in the same order as GameController.
+ */
+class SimulatedGame implements SnapshotSource {
+    private final Game game;
+    private final GameJournal journal;
+    private final List<Player> players;
+    private final Random random;
+    private int passes;
+
+    // Optional history for the archive benchmark, with a made-up clock of a few seconds per move
+    private GameRecord record;
+    private Random clock;
+    private long nowMillis;
+    private boolean gameOver;
+    private int roundsWon;
+
+    SimulatedGame(long gameId, int seats, Journal journalOrNull) {
+        this.random = new Random(gameId);
+        this.players = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < seats; i++) {
+            names.add("P" + i);
+            players.add(new Player("P" + i));
+        }
+
+        long seed = random.nextLong();
+        this.game = new Game(players, seed);
+        this.journal = journalOrNull == null ? null : journalOrNull.forGame(gameId);
+        if (journal != null) {
+            journal.gameCreated(names, null, null, seed);
+        }
+    }
+
+    Game getGame() {
+        return game;
+    }
+
+    /**
+     * Records the game from now on, as if it started at the given time
+     */
+    void startRecord(long gameId, long startMillis) {
+        List<String> names = new ArrayList<>();
+        for (Player player : players) {
+            names.add(player.getName());
+        }
+        record = new GameRecord(gameId, names, game.getRoundSeed(), startMillis, false);
+        clock = new Random(gameId);
+        nowMillis = startMillis;
+    }
+
+    GameRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Checks if a round ended with an overall winner (play goes on with a new round anyway)
+     */
+    boolean isGameOver() {
+        return gameOver;
+    }
+
+    int getRoundsWon() {
+        return roundsWon;
+    }
+
+    /**
+     * Ends the record now, the player with the highest score wins
+     * The simple policy mostly runs out of cards before a stock pile is empty,
+     * so games to the winning score take very long.
+     */
+    void finishRecord() {
+        if (gameOver) {
+            return;
+        }
+        int leader = 0;
+        int[] scores = new int[players.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = game.getScore(players.get(i));
+            if (scores[i] > scores[leader]) {
+                leader = i;
+            }
+        }
+        record.gameFinished(leader, scores, nowMillis);
+        gameOver = true;
+    }
+
+    /**
+     * Plays one card action (or a pass when the current player has no cards)
+     */
+    synchronized void step() throws GameException {
+        Player player = game.getCurrentPlayer();
+        int seat = players.indexOf(player);
+
+        CardAction action = findBuildingMove(player);
+        boolean discard = action == null;
+        if (discard) {
+            List<Card> hand = game.getHand(player);
+            if (hand.isEmpty()) {
+                // Draw pile ran out: deal a new round instead of passing forever
+                if (++passes > players.size()) {
+                    game.startNewRound(random.nextLong());
+                    if (journal != null) {
+                        journal.roundStarted(game.getRoundSeed());
+                    }
+                    if (record != null && !gameOver) {
+                        // Counts as a round for the seat closest to winning, without points
+                        record.roundFinished(smallestStockSeat(), 0, nowMillis);
+                        record.roundStarted(game.getRoundSeed(), nowMillis);
+                        roundsWon++;
+                    }
+                    passes = 0;
+                } else {
+                    game.endTurn();
+                    if (journal != null) {
+                        journal.turnEnded();
+                    }
+                    if (record != null) {
+                        record.turnEnded(seat);
+                    }
+                }
+                return;
+            }
+            action = new CardActionHandToDiscardPile(hand.get(0), random.nextInt(GameConstants.NUM_DISCARD_PILES));
+        }
+        passes = 0;
+
+        List<CardAction> actions = new ArrayList<>();
+        actions.add(action);
+        game.doMove(actions, player);
+        if (journal != null) {
+            journal.cardAction(seat, action);
+        }
+        if (record != null) {
+            nowMillis += 500 + clock.nextInt(4000);
+            record.cardAction(seat, action);
+        }
+
+        if (game.hasPlayerWon(player)) {
+            RoundResult result = game.finishRound(player);
+            if (journal != null) {
+                journal.roundFinished(seat);
+            }
+            if (record != null && !gameOver) {
+                record.roundFinished(seat, result, nowMillis);
+                if (result.gameOver) {
+                    record.gameFinished(players.indexOf(result.overallWinner), finalScores(result), nowMillis);
+                }
+            }
+            gameOver |= result.gameOver;
+            roundsWon++;
+            game.startNewRound(random.nextLong());
+            if (journal != null) {
+                journal.roundStarted(game.getRoundSeed());
+            }
+            if (record != null && !gameOver) {
+                record.roundStarted(game.getRoundSeed(), nowMillis);
+            }
+        } else if (discard) {
+            game.endTurn();
+            if (journal != null) {
+                journal.turnEnded();
+            }
+            if (record != null) {
+                record.turnEnded(seat);
+            }
+        }
+    }
+
+    /**
+     * Ends the game in the journal
+     */
+    synchronized void finish() {
+        if (journal != null) {
+            journal.gameFinished();
+        }
+    }
+
+    @Override
+    public synchronized SnapshotEntry captureSnapshot() {
+        return new SnapshotEntry(journal.getGameId(), journal.getSequence(), GameSnapshot.capture(game),
+                new String[players.size()], new String[players.size()]);
+    }
+
+    private int smallestStockSeat() {
+        int best = 0;
+        for (int i = 1; i < players.size(); i++) {
+            if (game.getStockPile(players.get(i)).size() < game.getStockPile(players.get(best)).size()) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int[] finalScores(RoundResult result) {
+        int[] scores = new int[players.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = result.allScores.get(players.get(i));
+        }
+        return scores;
+    }
+
+    private CardAction findBuildingMove(Player player) {
+        for (int b = 0; b < GameConstants.NUM_BUILDING_PILES; b++) {
+            CardAction action = new CardActionStockPileToBuildingPile(b);
+            if (action.isValid(game, player)) {
+                return action;
+            }
+        }
+        for (Card card : game.getHand(player)) {
+            for (int b = 0; b < GameConstants.NUM_BUILDING_PILES; b++) {
+                CardAction action = new CardActionHandToBuildingPile(card, b);
+                if (action.isValid(game, player)) {
+                    return action;
+                }
+            }
+        }
+        for (int d = 0; d < GameConstants.NUM_DISCARD_PILES; d++) {
+            for (int b = 0; b < GameConstants.NUM_BUILDING_PILES; b++) {
+                CardAction action = new CardActionDiscardPileToBuildingPile(d, b);
+                if (action.isValid(game, player)) {
+                    return action;
+                }
+            }
+        }
+        return null;
+    }
+}
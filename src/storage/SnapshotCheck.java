@@ -0,0 +1,133 @@
+package storage;
+
+import model.GameException;
+import model.GameSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the round trip of checkpoints: snapshot, truncated journal, recovery
+ *
+ * Plays journaled games over small segments with two checkpoints in between. A game
+ * starts between the checkpoints (it is only in the second snapshot) and one game
+ * finishes after the second. After every checkpoint each shard must have one snapshot
+ * and no segment older than it. Recovery must load the games of the last snapshots,
+ * replay only the journal after them and give back every running game as it is in
+ * memory, without the finished one.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: SnapshotCheck [games] [moves between checkpoints]
+ */
+public class SnapshotCheck {
+    private static final int SHARDS = 2;
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length >= 1 ? Integer.parseInt(args[0]) : 20;
+        int moves = args.length >= 2 ? Integer.parseInt(args[1]) : 300;
+
+        File directory = Files.createTempDirectory("snapshot-check").toFile();
+        try {
+            run(directory, games, moves);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+        System.out.println("OK");
+    }
+
+    private static void run(File directory, int games, int moves) throws IOException, GameException {
+        Journal journal = new Journal(directory, SHARDS, SEGMENT_SIZE, Journal.DEFAULT_COMMIT_WINDOW_MILLIS);
+        journal.setDurableAppends(false);
+        Snapshotter snapshotter = new Snapshotter(journal);
+        List<SimulatedGame> live = new ArrayList<>();
+        for (int i = 1; i <= games; i++) {
+            live.add(start(i, journal, snapshotter));
+        }
+
+        play(live, moves);
+        check(snapshotter.checkpoint() == games, "First checkpoint missed games");
+        checkTruncated(directory);
+
+        // A game that is only in the second snapshot
+        live.add(start(games + 1, journal, snapshotter));
+        play(live, moves);
+        check(snapshotter.checkpoint() == games + 1, "Second checkpoint missed games");
+        checkTruncated(directory);
+
+        // Events after the last checkpoint, and a game that ends there
+        play(live, moves / 10);
+        SimulatedGame finished = live.remove(1);
+        finished.finish();
+        snapshotter.unregister(2);
+        journal.close();
+
+        journal = new Journal(directory, SHARDS, SEGMENT_SIZE, Journal.DEFAULT_COMMIT_WINDOW_MILLIS);
+        GameRecovery recovery = new GameRecovery(journal);
+        recovery.run();
+        journal.close();
+
+        check(recovery.getGamesFromSnapshots() == games + 1,
+                recovery.getGamesFromSnapshots() + " games from snapshots, " + (games + 1) + " in them");
+        check(recovery.getHighestGameId() == games + 1, "Highest game id " + recovery.getHighestGameId());
+        List<GameRecovery.RecoveredGame> recovered = recovery.getLiveGames();
+        check(recovered.size() == live.size(), recovered.size() + " games recovered, " + live.size() + " running");
+        for (int i = 0; i < live.size(); i++) {
+            GameRecovery.RecoveredGame game = recovered.get(i);
+            SnapshotEntry expected = live.get(i).captureSnapshot();
+            check(game.gameId == expected.gameId, "Game " + game.gameId + " in place of game " + expected.gameId);
+            check(game.getSequence() == expected.sequence,
+                    "Game " + game.gameId + " recovered at sequence " + game.getSequence() + ", not " + expected.sequence);
+            check(Arrays.equals(encode(GameSnapshot.capture(game.game)), encode(expected.state)),
+                    "Game " + game.gameId + " recovered in another state");
+        }
+    }
+
+    private static SimulatedGame start(long gameId, Journal journal, Snapshotter snapshotter) {
+        SimulatedGame game = new SimulatedGame(gameId, 2 + (int) (gameId % 3), journal);
+        snapshotter.register(gameId, game);
+        return game;
+    }
+
+    private static void play(List<SimulatedGame> games, int moves) throws GameException {
+        for (int m = 0; m < moves; m++) {
+            for (SimulatedGame game : games) {
+                game.step();
+            }
+        }
+    }
+
+    /**
+     * Checks that every shard has one snapshot, older than none of its segments
+     */
+    private static void checkTruncated(File directory) {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            List<Integer> snapshots = Snapshotter.listSnapshots(directory, shard);
+            check(snapshots.size() == 1, "Shard " + shard + " has " + snapshots.size() + " snapshots");
+            List<Integer> segments = JournalShard.listSegments(directory, shard);
+            check(snapshots.get(0) > 0, "Shard " + shard + " never rolled before its snapshot");
+            check(segments.get(0) == (int) snapshots.get(0),
+                    "Shard " + shard + " kept segment " + segments.get(0) + " before snapshot " + snapshots.get(0));
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static byte[] encode(GameSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,24 @@
+package storage;
+
+import model.GameSnapshot;
+
+/**
+ * Snapshot of one game in a checkpoint file
+ * Journal events of the game up to and including the sequence are already in the snapshot.
+ */
+public class SnapshotEntry {
+    public final long gameId;
+    public final int sequence;
+    public final GameSnapshot state;
+    public final String[] sessionTokens;  // Per seat, "" if the seat has none
+    public final String[] botTypes;       // Per seat, "" if a person plays it
+
+    public SnapshotEntry(long gameId, int sequence, GameSnapshot state, String[] sessionTokens,
+                         String[] botTypes) {
+        this.gameId = gameId;
+        this.sequence = sequence;
+        this.state = state;
+        this.sessionTokens = sessionTokens;
+        this.botTypes = botTypes;
+    }
+}
@@ -0,0 +1,15 @@
+package storage;
+
+/**
+ * A running game that can be included in a journal checkpoint
+ */
+public interface SnapshotSource {
+
+    /**
+     * Copies the game state together with the sequence of its last journaled event
+     * Must be quick: it runs while the game waits.
+     *
+     * @return The snapshot, or null if the game has ended and no longer needs one
+     */
+    SnapshotEntry captureSnapshot();
+}
@@ -0,0 +1,210 @@
+package storage;
+
+import model.GameSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes periodic checkpoints of all running games and truncates the journal
+ *
+ * For every shard a checkpoint:
+ * 1. starts a new journal segment (older segments are complete)
+ * 2. captures each game of the shard (a short copy, the game keeps running)
+ * 3. writes the snapshots to snapshot-SS-NNNNNNNN.bin, NNNNNNNN being the new segment
+ * 4. deletes the older segments and snapshot files
+ *
+ * Events that were appended between 1 and 2 are in the kept segments and in the
+ * snapshot; recovery skips them by their sequence number.
+ */
+public class Snapshotter {
+    private static final int MAGIC = 0x534B4253;  // "SKBS"
+    private static final int VERSION = 3;
+
+    private final Journal journal;
+    private final Map<Long, SnapshotSource> sources;
+    private ScheduledExecutorService scheduler;
+
+    public Snapshotter(Journal journal) {
+        this.journal = journal;
+        this.sources = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds a game to the checkpoints
+     * Must be called before the game's first event is journaled.
+     */
+    public void register(long gameId, SnapshotSource source) {
+        sources.put(gameId, source);
+    }
+
+    public void unregister(long gameId) {
+        sources.remove(gameId);
+    }
+
+    /**
+     * Starts writing a checkpoint every interval on a background thread
+     */
+    public void start(long intervalSeconds) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                System.err.println("Checkpoint failed: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Writes a checkpoint of every shard
+     *
+     * @return The number of games in the checkpoint
+     */
+    public synchronized int checkpoint() throws IOException {
+        int total = 0;
+        for (int shard = 0; shard < journal.getShardCount(); shard++) {
+            total += checkpointShard(shard);
+        }
+        return total;
+    }
+
+    private int checkpointShard(int shardIndex) throws IOException {
+        // Roll first: a game registered after this point has all its events in kept segments
+        int firstKept = journal.shardAt(shardIndex).startNewSegment();
+
+        List<Long> gameIds = new ArrayList<>();
+        for (Long gameId : sources.keySet()) {
+            if (journal.shardFor(gameId).getShardIndex() == shardIndex) {
+                gameIds.add(gameId);
+            }
+        }
+
+        // Capture every game; this is the only part that touches the games
+        List<SnapshotEntry> entries = new ArrayList<>();
+        for (Long gameId : gameIds) {
+            SnapshotSource source = sources.get(gameId);
+            SnapshotEntry entry = source == null ? null : source.captureSnapshot();
+            if (entry == null) {
+                sources.remove(gameId);  // Game ended
+            } else {
+                entries.add(entry);
+            }
+        }
+
+        File directory = journal.getDirectory();
+        File target = snapshotFile(directory, shardIndex, firstKept);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (SnapshotEntry entry : entries) {
+                out.writeLong(entry.gameId);
+                out.writeInt(entry.sequence);
+                entry.state.writeTo(out);
+                out.writeByte(entry.sessionTokens.length);
+                for (String token : entry.sessionTokens) {
+                    out.writeUTF(token == null ? "" : token);
+                }
+                for (String botType : entry.botTypes) {
+                    out.writeUTF(botType == null ? "" : botType);
+                }
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        // The new snapshot covers everything before firstKept
+        JournalShard.deleteSegmentsBefore(directory, shardIndex, firstKept);
+        for (int old : listSnapshots(directory, shardIndex)) {
+            if (old < firstKept) {
+                snapshotFile(directory, shardIndex, old).delete();
+            }
+        }
+        return entries.size();
+    }
+
+    // ========== SNAPSHOT FILES ==========
+
+    static File snapshotFile(File directory, int shardIndex, int segment) {
+        return new File(directory, String.format("snapshot-%02d-%08d.bin", shardIndex, segment));
+    }
+
+    /**
+     * Lists the snapshot files of a shard by the segment they start at, oldest first
+     */
+    static List<Integer> listSnapshots(File directory, int shardIndex) {
+        List<Integer> numbers = new ArrayList<>();
+        String prefix = String.format("snapshot-%02d-", shardIndex);
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && name.endsWith(".bin")) {
+                    try {
+                        numbers.add(Integer.parseInt(name.substring(prefix.length(), name.length() - 4)));
+                    } catch (NumberFormatException e) {
+                        // Not one of our snapshots
+                    }
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    /**
+     * Reads all entries of a snapshot file
+     */
+    static List<SnapshotEntry> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int count = in.readInt();
+            List<SnapshotEntry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long gameId = in.readLong();
+                int sequence = in.readInt();
+                GameSnapshot state = GameSnapshot.readFrom(in);
+                String[] tokens = new String[in.readByte()];
+                for (int t = 0; t < tokens.length; t++) {
+                    tokens[t] = in.readUTF();
+                }
+                String[] botTypes = new String[tokens.length];
+                for (int t = 0; t < botTypes.length; t++) {
+                    botTypes[t] = in.readUTF();
+                }
+                entries.add(new SnapshotEntry(gameId, sequence, state, tokens, botTypes));
+            }
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package tournament;
+
+import bot.TurnPlan;
+import controller.BotSeat;
+import model.*;
+import ranking.EloFit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays a round-robin tournament between bot strategies and rates them
+ *
+ * Every seed of the corpus is played in every seating: each ordered choice of `seats`
+ * different strategies. A game is a whole model.Game to 500 points, played the way
+ * GameController plays bot seats (a stuck round goes to the fewest stock cards).
+ * A seed deals the same cards in every seating, the later rounds too, so every
+ * strategy gets the same deals from every seat.
+ *
+ * The games run in parallel on a fixed pool, one game per task. Every game makes its
+ * own bots, so nothing is shared between the threads. The ratings are fitted to all
+ * games at once (EloFit) and the 95% intervals come from refitting resampled games.
+ *
+ * Usage: Tournament [threads] [seats] [seeds] [strategy...]
+ * seeds is a count (seeds 1 to n) or a file with one seed per line, a strategy is a
+ * bot name of BotSeat.create (heuristic, chain, mcts:256, ismcts:256).
+ */
+public class Tournament {
+    /** Resampled tournaments for the rating intervals */
+    public static final int BOOTSTRAP_SAMPLES = 200;
+
+    private final String[] strategies;
+    private final long[] seeds;
+    private final int seats;
+    private final List<int[]> seatings;
+
+    /**
+     * Creates a tournament
+     * @param strategies The bot names (see BotSeat.create), at least `seats` of them
+     * @param seeds The seed corpus, every seed is played in every seating
+     * @param seats Players per game
+     */
+    public Tournament(String[] strategies, long[] seeds, int seats) {
+        if (seats < GameConstants.MIN_PLAYERS || seats > GameConstants.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Seats must be 2 to 6: " + seats);
+        }
+        if (strategies.length < seats) {
+            throw new IllegalArgumentException("Need at least " + seats + " strategies");
+        }
+        for (String strategy : strategies) {
+            if (BotSeat.create(strategy, 0) == null) {
+                throw new IllegalArgumentException("Unknown strategy: " + strategy);
+            }
+        }
+        this.strategies = strategies;
+        this.seeds = seeds;
+        this.seats = seats;
+        this.seatings = new ArrayList<>();
+        addSeatings(new int[seats], 0, new boolean[strategies.length]);
+    }
+
+    /**
+     * Adds every ordered choice of different strategies for the seats from `seat` on
+     */
+    private void addSeatings(int[] seating, int seat, boolean[] used) {
+        if (seat == seating.length) {
+            seatings.add(seating.clone());
+            return;
+        }
+        for (int s = 0; s < strategies.length; s++) {
+            if (!used[s]) {
+                used[s] = true;
+                seating[seat] = s;
+                addSeatings(seating, seat + 1, used);
+                used[s] = false;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length >= 1 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seats = args.length >= 2 ? Integer.parseInt(args[1]) : 2;
+        long[] seeds = args.length >= 3 ? readSeeds(args[2]) : readSeeds("10");
+        String[] strategies = args.length >= 4 ? Arrays.copyOfRange(args, 3, args.length)
+                : new String[]{"heuristic", "chain", "mcts:64", "ismcts:64"};
+
+        Tournament tournament = new Tournament(strategies, seeds, seats);
+        System.out.printf("%d strategies, %d seats: %d seatings x %d seeds = %d games on %d threads%n",
+                strategies.length, seats, tournament.seatings.size(), seeds.length,
+                tournament.seatings.size() * seeds.length, threads);
+
+        // Game prints every new round, keep that out of the report
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        List<TournamentGame> games;
+        try {
+            games = tournament.run(threads);
+        } finally {
+            System.setOut(out);
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        tournament.printRatings(games);
+        tournament.printHeadToHead(games);
+        printThroughput(games, wallNanos, threads);
+    }
+
+    /**
+     * Reads the seed corpus: a count n gives the seeds 1 to n, otherwise it is a file
+     * with one seed per line
+     */
+    static long[] readSeeds(String countOrFile) throws IOException {
+        Path file = Paths.get(countOrFile);
+        if (!Files.exists(file)) {
+            int count = Integer.parseInt(countOrFile);
+            long[] seeds = new long[count];
+            for (int i = 0; i < count; i++) {
+                seeds[i] = i + 1;
+            }
+            return seeds;
+        }
+        return Files.readAllLines(file).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .mapToLong(Long::parseLong)
+                .toArray();
+    }
+
+    // ========== PLAYING ==========
+
+    /**
+     * Plays every seed in every seating
+     * @param threads Games played at the same time
+     * @return The games, in the order of the seeds and seatings
+     */
+    public List<TournamentGame> run(int threads) throws InterruptedException {
+        AtomicInteger workers = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "tournament-" + workers.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<TournamentGame>> futures = new ArrayList<>();
+            for (long seed : seeds) {
+                for (int[] seating : seatings) {
+                    futures.add(pool.submit(() -> play(seating, seed)));
+                }
+            }
+            List<TournamentGame> games = new ArrayList<>(futures.size());
+            for (Future<TournamentGame> future : futures) {
+                try {
+                    games.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Tournament game failed", e.getCause());
+                }
+            }
+            return games;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays one whole game (to 500 points) between bots on a model.Game
+     * @param seating The strategy of every seat
+     * @param seed Deals the first round; the later rounds are dealt from seeds drawn from it
+     */
+    public TournamentGame play(int[] seating, long seed) throws GameException {
+        long start = System.nanoTime();
+        List<Player> players = new ArrayList<>(seating.length);
+        BotSeat[] bots = new BotSeat[seating.length];
+        for (int s = 0; s < seating.length; s++) {
+            players.add(new Player("Seat" + s));
+            // The same strategy gets the same random numbers in every seating of a seed
+            bots[s] = BotSeat.create(strategies[seating[s]], seed * 31 + seating[s]);
+        }
+
+        Game game = new Game(players, seed);
+        Random roundSeeds = new Random(seed);
+        int rounds = 1;
+        int stuckRounds = 0;
+        int rejected = 0;
+        long turns = 0;
+        long moves = 0;
+        int turnsWithoutPlay = 0;
+        int turnsWithoutBuild = 0;
+
+        while (true) {
+            Player player = game.getCurrentPlayer();
+            BotSeat bot = bots[players.indexOf(player)];
+            boolean played = false;
+            boolean built = false;
+            boolean won = false;
+
+            // Plan and play until the turn is over, planning again after every draw
+            turn:
+            while (true) {
+                TurnPlan plan = bot.plan(GameSnapshot.capture(game), 1);
+                for (int move : plan.getMoves()) {
+                    CardAction action = BotSeat.toAction(game, player, move);
+                    if (action == null) {
+                        break turn;  // END
+                    }
+                    try {
+                        game.doMove(Collections.singletonList(action), player);
+                    } catch (GameException e) {
+                        rejected++;
+                        break turn;  // Like GameController: a move the game does not take ends the turn
+                    }
+                    moves++;
+                    played = true;
+                    boolean discard = action instanceof CardActionHandToDiscardPile;
+                    built |= !discard;
+                    if (game.hasPlayerWon(player)) {
+                        won = true;
+                        break turn;
+                    }
+                    if (discard) {
+                        break turn;
+                    }
+                }
+                if (plan.isComplete() || plan.getMoves().length == 0) {
+                    break;
+                }
+            }
+            turns++;
+
+            Player roundWinner = null;
+            if (won) {
+                roundWinner = player;
+            } else {
+                game.endTurn();
+                turnsWithoutPlay = played ? 0 : turnsWithoutPlay + 1;
+                turnsWithoutBuild = built ? 0 : turnsWithoutBuild + 1;
+                if (isStuck(game, turnsWithoutPlay, turnsWithoutBuild)) {
+                    roundWinner = leastStockLeft(game);
+                    stuckRounds++;
+                }
+            }
+
+            if (roundWinner != null) {
+                RoundResult result = game.finishRound(roundWinner);
+                if (result.gameOver) {
+                    break;
+                }
+                game.startNewRound(roundSeeds.nextLong());
+                rounds++;
+                turnsWithoutPlay = 0;
+                turnsWithoutBuild = 0;
+            }
+        }
+
+        int[] scores = new int[seating.length];
+        for (int s = 0; s < seating.length; s++) {
+            scores[s] = game.getScore(players.get(s));
+        }
+        return new TournamentGame(seed, seating, scores, rounds, stuckRounds, turns, moves, rejected,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * The stuck rule of GameController for a game of only bots: two full rounds of turns
+     * without any card played, or without a building play while the draw pile is empty
+     */
+    private static boolean isStuck(Game game, int turnsWithoutPlay, int turnsWithoutBuild) {
+        int fullRounds = 2 * game.getPlayers().size();
+        return turnsWithoutPlay >= fullRounds
+                || (game.getDrawPileSize() == 0 && turnsWithoutBuild >= fullRounds);
+    }
+
+    private static Player leastStockLeft(Game game) {
+        Player best = null;
+        for (Player player : game.getPlayers()) {
+            if (best == null || game.getStockPile(player).size() < game.getStockPile(best).size()) {
+                best = player;
+            }
+        }
+        return best;
+    }
+
+    // ========== REPORT ==========
+
+    /**
+     * Gets the win matrix of the strategies over some games (see TournamentGame.addPairs)
+     */
+    private double[][] winMatrix(List<TournamentGame> games) {
+        double[][] wins = new double[strategies.length][strategies.length];
+        for (TournamentGame game : games) {
+            game.addPairs(wins);
+        }
+        return wins;
+    }
+
+    /**
+     * Prints the fitted Elo rating of every strategy with its 95% interval, best first
+     */
+    private void printRatings(List<TournamentGame> games) {
+        double[][] wins = winMatrix(games);
+        double[] ratings = EloFit.fit(wins);
+
+        // Bootstrap: refit tournaments of games drawn with replacement
+        Random random = new Random(1);
+        double[][] samples = new double[strategies.length][BOOTSTRAP_SAMPLES];
+        List<TournamentGame> resampled = new ArrayList<>(games.size());
+        for (int b = 0; b < BOOTSTRAP_SAMPLES; b++) {
+            resampled.clear();
+            for (int g = 0; g < games.size(); g++) {
+                resampled.add(games.get(random.nextInt(games.size())));
+            }
+            double[] fitted = EloFit.fit(winMatrix(resampled));
+            for (int s = 0; s < strategies.length; s++) {
+                samples[s][b] = fitted[s];
+            }
+        }
+
+        int[] played = new int[strategies.length];
+        for (TournamentGame game : games) {
+            for (int s : game.getSeating()) {
+                played[s]++;
+            }
+        }
+        Integer[] order = new Integer[strategies.length];
+        for (int s = 0; s < strategies.length; s++) {
+            order[s] = s;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+
+        System.out.printf("%n%-14s %7s %17s %7s %11s%n", "Strategy", "Elo", "95% interval", "Games", "Pair score");
+        for (int s : order) {
+            Arrays.sort(samples[s]);
+            double low = samples[s][(int) (BOOTSTRAP_SAMPLES * 0.025)];
+            double high = samples[s][(int) (BOOTSTRAP_SAMPLES * 0.975) - 1];
+            double won = 0;
+            double pairs = 0;
+            for (int o = 0; o < strategies.length; o++) {
+                won += wins[s][o];
+                pairs += wins[s][o] + wins[o][s];
+            }
+            System.out.printf("%-14s %7.0f %8.0f - %6.0f %7d %10.1f%%%n", strategies[s], ratings[s],
+                    low, high, played[s], pairs == 0 ? 0 : 100 * won / pairs);
+        }
+    }
+
+    /**
+     * Prints the share of the duels every strategy (row) won against every other (column)
+     */
+    private void printHeadToHead(List<TournamentGame> games) {
+        double[][] wins = winMatrix(games);
+        System.out.printf("%nHead to head (duels won by the row)%n%-14s", "");
+        for (String strategy : strategies) {
+            System.out.printf(" %12s", strategy);
+        }
+        System.out.println();
+        for (int s = 0; s < strategies.length; s++) {
+            System.out.printf("%-14s", strategies[s]);
+            for (int o = 0; o < strategies.length; o++) {
+                double pairs = wins[s][o] + wins[o][s];
+                System.out.printf(" %12s", s == o || pairs == 0 ? "-" : String.format("%.1f%%", 100 * wins[s][o] / pairs));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Prints games, rounds and turns per second, and how many threads were busy on average
+     * (the time of all games on their threads over the wall time)
+     */
+    private static void printThroughput(List<TournamentGame> games, long wallNanos, int threads) {
+        long rounds = 0;
+        long stuck = 0;
+        long turns = 0;
+        long moves = 0;
+        long rejected = 0;
+        long gameNanos = 0;
+        for (TournamentGame game : games) {
+            rounds += game.getRounds();
+            stuck += game.getStuckRounds();
+            turns += game.getTurns();
+            moves += game.getMoves();
+            rejected += game.getRejectedMoves();
+            gameNanos += game.getNanos();
+        }
+        double seconds = wallNanos / 1e9;
+        System.out.printf("%n%d games in %.1f s: %.1f games/s, %.0f rounds/s, %.0f turns/s, %.0f moves/s%n",
+                games.size(), seconds, games.size() / seconds, rounds / seconds, turns / seconds, moves / seconds);
+        System.out.printf("%.1f rounds per game (%d stuck), %.1f us per turn on a thread, %d moves rejected%n",
+                (double) rounds / games.size(), stuck, gameNanos / 1e3 / turns, rejected);
+        System.out.printf("%.2f of %d threads busy on average (%d cores)%n",
+                gameNanos / (double) wallNanos, threads, Runtime.getRuntime().availableProcessors());
+    }
+}
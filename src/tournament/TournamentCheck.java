@@ -0,0 +1,103 @@
+package tournament;
+
+import ranking.EloFit;
+import ranking.EloRating;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the fitted ratings and that a tournament does not depend on its threads
+ *
+ * EloFit: win counts made from known ratings (the expected score of every pair over
+ * many games) must give those ratings back, without results every rating is the start
+ * rating, and a player that never won still gets a finite rating below the others.
+ * Tournament: a small round robin played on one thread and on several must give the
+ * same games in the same order, with every seed in every seating.
+ * Throws on the first difference, prints OK otherwise.
+ * Usage: TournamentCheck [threads]
+ */
+public class TournamentCheck {
+    private static final double[] RATINGS = {1200, 1400, 1600, 1800};
+    private static final int GAMES_PER_PAIR = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length >= 1 ? Integer.parseInt(args[0]) : 3;
+        checkFit();
+        checkThreads(threads);
+        System.out.println("OK");
+    }
+
+    private static void checkFit() {
+        int players = RATINGS.length;
+        double[][] wins = new double[players][players];
+        for (int i = 0; i < players; i++) {
+            for (int j = 0; j < players; j++) {
+                if (i != j) {
+                    wins[i][j] = GAMES_PER_PAIR * EloRating.expectedScore(RATINGS[i], RATINGS[j]);
+                }
+            }
+        }
+        // The virtual draws pull the ratings a little together, far less than a point here
+        double[] fitted = EloFit.fit(wins);
+        for (int i = 0; i < players; i++) {
+            check(Math.abs(fitted[i] - RATINGS[i]) < 1, "Fitted " + Arrays.toString(fitted) + " for "
+                    + Arrays.toString(RATINGS));
+        }
+
+        for (double rating : EloFit.fit(new double[players][players])) {
+            check(rating == EloRating.START_RATING, "Rating " + rating + " without any games");
+        }
+
+        double[][] oneLoser = new double[3][3];
+        oneLoser[0][2] = 10;
+        oneLoser[1][2] = 10;
+        oneLoser[0][1] = 5;
+        oneLoser[1][0] = 5;
+        fitted = EloFit.fit(oneLoser);
+        check(Double.isFinite(fitted[2]) && fitted[2] < fitted[0] && fitted[2] < fitted[1]
+                && Math.abs(fitted[0] - fitted[1]) < 1e-6, "Fitted " + Arrays.toString(fitted) + " for one loser");
+    }
+
+    private static void checkThreads(int threads) throws InterruptedException {
+        String[] strategies = {"heuristic", "chain", "heuristic"};
+        long[] seeds = {1, 2};
+        Tournament tournament = new Tournament(strategies, seeds, 2);
+
+        // Game prints every new round
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        List<TournamentGame> alone;
+        List<TournamentGame> together;
+        try {
+            alone = tournament.run(1);
+            together = tournament.run(threads);
+        } finally {
+            System.setOut(out);
+        }
+
+        int seatings = strategies.length * (strategies.length - 1);
+        check(alone.size() == seeds.length * seatings, alone.size() + " games, expected " + seeds.length * seatings);
+        check(together.size() == alone.size(), together.size() + " games on " + threads + " threads");
+        for (int g = 0; g < alone.size(); g++) {
+            TournamentGame a = alone.get(g);
+            TournamentGame b = together.get(g);
+            check(a.getSeed() == seeds[g / seatings], "Game " + g + " has seed " + a.getSeed());
+            check(a.getTurns() > 0 && Arrays.stream(a.getScores()).max().getAsInt() > 0, "Game " + g + " not played");
+            check(a.getSeed() == b.getSeed() && Arrays.equals(a.getSeating(), b.getSeating())
+                    && Arrays.equals(a.getScores(), b.getScores()) && a.getRounds() == b.getRounds()
+                    && a.getTurns() == b.getTurns() && a.getMoves() == b.getMoves(),
+                    "Game " + g + " differs on " + threads + " threads: " + Arrays.toString(a.getScores())
+                            + " and " + Arrays.toString(b.getScores()));
+            check(a.getRejectedMoves() == 0, "Game " + g + " had " + a.getRejectedMoves() + " rejected moves");
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package tournament;
+
+/**
+ * The result of one tournament game: who sat where and the final scores
+ */
+public class TournamentGame {
+    private final long seed;
+    private final int[] seating;     // Strategy index of every seat
+    private final int[] scores;      // Final score of every seat
+    private final int rounds;
+    private final int stuckRounds;
+    private final long turns;
+    private final long moves;
+    private final int rejectedMoves;
+    private final long nanos;
+
+    public TournamentGame(long seed, int[] seating, int[] scores, int rounds, int stuckRounds,
+                          long turns, long moves, int rejectedMoves, long nanos) {
+        this.seed = seed;
+        this.seating = seating;
+        this.scores = scores;
+        this.rounds = rounds;
+        this.stuckRounds = stuckRounds;
+        this.turns = turns;
+        this.moves = moves;
+        this.rejectedMoves = rejectedMoves;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Adds the pairs of this game to a win matrix of strategies
+     * Every pair of seats is a duel: the higher final score won it, equal scores are a draw
+     * (like EloRating).
+     */
+    public void addPairs(double[][] wins) {
+        for (int a = 0; a < seating.length; a++) {
+            for (int b = a + 1; b < seating.length; b++) {
+                if (scores[a] > scores[b]) {
+                    wins[seating[a]][seating[b]] += 1;
+                } else if (scores[a] < scores[b]) {
+                    wins[seating[b]][seating[a]] += 1;
+                } else {
+                    wins[seating[a]][seating[b]] += 0.5;
+                    wins[seating[b]][seating[a]] += 0.5;
+                }
+            }
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int[] getSeating() {
+        return seating;
+    }
+
+    public int[] getScores() {
+        return scores;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Gets the rounds that nobody could win and went to the fewest stock cards
+     */
+    public int getStuckRounds() {
+        return stuckRounds;
+    }
+
+    public long getTurns() {
+        return turns;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    /**
+     * Gets the planned moves the game did not take (a bot that plans wrong)
+     */
+    public int getRejectedMoves() {
+        return rejectedMoves;
+    }
+
+    /**
+     * Gets how long the game took on its thread, in nanoseconds
+     */
+    public long getNanos() {
+        return nanos;
+    }
+}
@@ -23,10 +23,16 @@ public class GameView {
         System.out.println("  PLAY~H.5~B.0 - Play card 5 from hand to building pile 0");
         System.out.println("  PLAY~S~B.1   - Play from stock pile to building pile 1");
         System.out.println("  PLAY~H.3~D.0 - Discard card 3 (ends your turn)");
+        System.out.println("  CHAT~hello   - Send a chat message to your table");
+        System.out.println("  WATCH~Ann    - Watch the game Ann plays in");
         System.out.println("  quit         - Exit game");
         System.out.println();
     }
 
+    public void showChat(String playerName, String message) {
+        System.out.println("[" + playerName + "] " + message);
+    }
+
     public void showPlayerJoined(String playerName) {
         System.out.println(">>> Player joined: " + playerName);
     }